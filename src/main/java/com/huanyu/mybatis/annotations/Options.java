@@ -0,0 +1,39 @@
+package com.huanyu.mybatis.annotations;
+
+import com.huanyu.mybatis.mapping.FetchDirection;
+import com.huanyu.mybatis.mapping.ResultSetType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * ClassName: Options
+ * Package: com.huanyu.mybatis.annotations
+ * Description: 语句的 JDBC 参数注解，与 XML 中的 fetchSize、timeout、resultSetType、fetchDirection 属性对应
+ * 例如 @Options(fetchSize = 500, timeout = 10, resultSetType = ResultSetType.SCROLL_INSENSITIVE)，
+ * fetchSize、timeout 为 -1 时使用全局配置，fetchSize 为 Integer.MIN_VALUE 时 MySQL 驱动逐行流式读取。
+ * 插入语句可以用 @Options(useGeneratedKeys = true, keyProperty = "id") 取回数据库生成的主键，多个属性、列用逗号分隔
+ * @Author: 寰宇
+ * @Create: 2024/7/14 09:40
+ * @Version: 1.0
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Options {
+
+    int fetchSize() default -1;
+
+    int timeout() default -1;
+
+    ResultSetType resultSetType() default ResultSetType.DEFAULT;
+
+    FetchDirection fetchDirection() default FetchDirection.FORWARD;
+
+    boolean useGeneratedKeys() default false;
+
+    String keyProperty() default "";
+
+    String keyColumn() default "";
+}
@@ -0,0 +1,24 @@
+package com.huanyu.mybatis.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * ClassName: WorkloadClass
+ * Package: com.huanyu.mybatis.annotations
+ * Description: 语句的负载类别注解
+ * 标注在方法上只作用于该语句，标注在 Mapper 接口上作为其中全部语句的默认值。
+ * 数据源为该类别配置了分区时，语句使用该分区的连接，例如 @WorkloadClass("reporting")。
+ * 会话的连接在第一次打开时选定分区，之后执行属于其他分区的语句会抛出异常，不同分区的语句需要使用不同的会话
+ * @Author: 寰宇
+ * @Create: 2024/7/11 14:25
+ * @Version: 1.0
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface WorkloadClass {
+
+    String value();
+}
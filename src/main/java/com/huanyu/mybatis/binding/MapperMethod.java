@@ -1,12 +1,22 @@
 package com.huanyu.mybatis.binding;
 
+import com.huanyu.mybatis.cursor.Cursor;
 import com.huanyu.mybatis.mapping.MappedStatement;
 import com.huanyu.mybatis.mapping.SqlCommandType;
 import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.ResultHandler;
+import com.huanyu.mybatis.session.RowBounds;
 import com.huanyu.mybatis.session.SqlSession;
+import com.huanyu.mybatis.session.defaults.DefaultSqlSessionFactory;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * ClassName: MapperMethod
@@ -43,6 +53,31 @@ public class MapperMethod {
      * @return 数据库操作结果
      */
     public Object execute(SqlSession sqlSession, Object[] args) {
+        // 返回 CompletableFuture 的方法放到异步执行器中执行
+        if (method.returnsFuture) {
+            return executeAsync(sqlSession.getConfiguration(), args);
+        }
+        return executeSync(sqlSession, args);
+    }
+
+    /**
+     * 异步执行映射接口中的方法，每次调用使用独立的 SqlSession，执行成功后提交，最后关闭
+     */
+    private CompletableFuture<Object> executeAsync(Configuration configuration, Object[] args) {
+        final DefaultSqlSessionFactory sqlSessionFactory = new DefaultSqlSessionFactory(configuration);
+        return configuration.getAsyncQueryExecutor().submit(() -> {
+            SqlSession sqlSession = sqlSessionFactory.openSession();
+            try {
+                Object result = executeSync(sqlSession, args);
+                sqlSession.commit();
+                return result;
+            } finally {
+                sqlSession.close();
+            }
+        });
+    }
+
+    private Object executeSync(SqlSession sqlSession, Object[] args) {
         Object result = null;
         // 根据SQL语句类型，执行不同操作
         switch (command.getType()) {
@@ -63,8 +98,18 @@ public class MapperMethod {
             }
             case SELECT: {
                 Object param = method.convertArgsToSqlCommandParam(args);
-                if (method.returnsMany) {
-                    result = sqlSession.selectList(command.getName(), param);
+                // 方法返回 void 且带有 ResultHandler 参数，结果逐行交给 ResultHandler
+                // 带有 RowBounds 参数时按它分页
+                RowBounds rowBounds = method.extractRowBounds(args);
+                if (method.returnsVoid && method.hasResultHandler()) {
+                    sqlSession.select(command.getName(), param, rowBounds, method.extractResultHandler(args));
+                    result = null;
+                } else if (method.returnsCursor) {
+                    result = sqlSession.selectCursor(command.getName(), param, rowBounds);
+                } else if (method.returnsStream) {
+                    result = executeForStream(sqlSession, param, rowBounds);
+                } else if (method.returnsMany) {
+                    result = sqlSession.selectList(command.getName(), param, rowBounds);
                 } else {
                     result = sqlSession.selectOne(command.getName(), param);
                 }
@@ -76,6 +121,20 @@ public class MapperMethod {
         return result;
     }
 
+    /**
+     * 以 Stream 的形式返回游标中的数据，Stream 关闭时关闭游标
+     */
+    private <T> Stream<T> executeForStream(SqlSession sqlSession, Object param, RowBounds rowBounds) {
+        Cursor<T> cursor = sqlSession.selectCursor(command.getName(), param, rowBounds);
+        return StreamSupport.stream(cursor.spliterator(), false).onClose(() -> {
+            try {
+                cursor.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Error closing cursor.  Cause: " + e, e);
+            }
+        });
+    }
+
     /**
      * SQL 指令
      */
@@ -109,13 +168,71 @@ public class MapperMethod {
     public static class MethodSignature {
 
         private final boolean returnsMany;
+        private final boolean returnsVoid;
+        private final boolean returnsFuture;
+        private final boolean returnsCursor;
+        private final boolean returnsStream;
         private final Class<?> returnType;
+        private final Integer resultHandlerIndex;
+        private final Integer rowBoundsIndex;
         private final SortedMap<Integer, String> params;
 
         public MethodSignature(Configuration configuration,Method method) {
-            this.returnType = method.getReturnType();
+            this.returnsFuture = CompletableFuture.class.equals(method.getReturnType());
+            // 异步方法以 CompletableFuture<T> 中的 T 作为返回类型
+            this.returnType = returnsFuture ? resolveFutureType(method) : method.getReturnType();
             this.returnsMany = (configuration.getObjectFactory().isCollection(this.returnType) || this.returnType.isArray());
+            this.returnsVoid = void.class.equals(this.returnType);
+            this.returnsCursor = Cursor.class.equals(this.returnType);
+            this.returnsStream = Stream.class.equals(this.returnType);
+            this.resultHandlerIndex = getUniqueParamIndex(method, ResultHandler.class);
+            this.rowBoundsIndex = getUniqueParamIndex(method, RowBounds.class);
             this.params = Collections.unmodifiableSortedMap(getParams(method));
+            // 游标依赖调用方的 Session，不能在异步方法中返回
+            if (returnsFuture && (returnsCursor || returnsStream)) {
+                throw new RuntimeException("Mapper method " + method.getName() + " cannot return a Cursor or Stream asynchronously");
+            }
+        }
+
+        private static Class<?> resolveFutureType(Method method) {
+            Type type = method.getGenericReturnType();
+            if (type instanceof ParameterizedType) {
+                Type actualType = ((ParameterizedType) type).getActualTypeArguments()[0];
+                if (actualType instanceof Class) {
+                    return (Class<?>) actualType;
+                } else if (actualType instanceof ParameterizedType) {
+                    return (Class<?>) ((ParameterizedType) actualType).getRawType();
+                }
+            }
+            return Object.class;
+        }
+
+        public boolean hasResultHandler() {
+            return resultHandlerIndex != null;
+        }
+
+        public ResultHandler extractResultHandler(Object[] args) {
+            return hasResultHandler() ? (ResultHandler) args[resultHandlerIndex] : null;
+        }
+
+        public RowBounds extractRowBounds(Object[] args) {
+            return rowBoundsIndex != null && args[rowBoundsIndex] != null ? (RowBounds) args[rowBoundsIndex] : RowBounds.DEFAULT;
+        }
+
+        // 获取指定类型参数的位置，该类型的参数最多只能有一个
+        private Integer getUniqueParamIndex(Method method, Class<?> paramType) {
+            Integer index = null;
+            final Class<?>[] argTypes = method.getParameterTypes();
+            for (int i = 0; i < argTypes.length; i++) {
+                if (paramType.isAssignableFrom(argTypes[i])) {
+                    if (index == null) {
+                        index = i;
+                    } else {
+                        throw new RuntimeException(method.getName() + " cannot have multiple " + paramType.getSimpleName() + " parameters");
+                    }
+                }
+            }
+            return index;
         }
 
         public Object convertArgsToSqlCommandParam(Object[] args) {
@@ -154,6 +271,10 @@ public class MapperMethod {
             final SortedMap<Integer, String> params = new TreeMap<Integer, String>();
             final Class<?>[] argTypes = method.getParameterTypes();
             for (int i = 0; i < argTypes.length; i++) {
+                // ResultHandler 和 RowBounds 不是 SQL 参数
+                if (ResultHandler.class.isAssignableFrom(argTypes[i]) || RowBounds.class.isAssignableFrom(argTypes[i])) {
+                    continue;
+                }
                 String paramName = String.valueOf(params.size());
                 // 不做 Param 的实现，这部分不处理。如果扩展学习，需要添加 Param 注解并做扩展实现。
                 params.put(i, paramName);
@@ -61,4 +61,12 @@ public abstract class BaseBuilder {
         return value == null ? defaultValue : Boolean.valueOf(value);
     }
 
+    protected Integer integerValueOf(String value, Integer defaultValue) {
+        return value == null ? defaultValue : Integer.valueOf(value);
+    }
+
+    protected Long longValueOf(String value, Long defaultValue) {
+        return value == null ? defaultValue : Long.valueOf(value);
+    }
+
 }
@@ -3,6 +3,7 @@ package com.huanyu.mybatis.builder;
 import com.huanyu.mybatis.cache.Cache;
 import com.huanyu.mybatis.cache.decorators.FifoCache;
 import com.huanyu.mybatis.cache.impl.PerpetualCache;
+import com.huanyu.mybatis.executor.keygen.KeyGenerator;
 import com.huanyu.mybatis.mapping.*;
 import com.huanyu.mybatis.reflection.MetaClass;
 import com.huanyu.mybatis.scripting.LanguageDriver;
@@ -119,7 +120,15 @@ public class MapperBuilderAssistant extends BaseBuilder{
             Class<?> resultType,
             boolean flushCache,
             boolean useCache,
-            LanguageDriver lang
+            LanguageDriver lang,
+            String workloadClass,
+            Integer fetchSize,
+            Integer timeout,
+            ResultSetType resultSetType,
+            FetchDirection fetchDirection,
+            KeyGenerator keyGenerator,
+            String keyProperty,
+            String keyColumn
     ) {
         // 给id加上namespace前缀：com.huanyu.mybatis.dao.IUserDao.queryUserInfoById
         id = applyCurrentNamespace(id, false);
@@ -127,6 +136,18 @@ public class MapperBuilderAssistant extends BaseBuilder{
         boolean isSelect = sqlCommandType == SqlCommandType.SELECT;
 
         MappedStatement.Builder statementBuilder = new MappedStatement.Builder(configuration, id, sqlCommandType, sqlSource, resultType);
+        statementBuilder.workloadClass(workloadClass);
+        // JDBC 语句参数，未指定结果集类型时使用全局配置
+        statementBuilder.fetchSize(fetchSize);
+        statementBuilder.timeout(timeout);
+        statementBuilder.resultSetType(resultSetType == null ? configuration.getDefaultResultSetType() : resultSetType);
+        statementBuilder.fetchDirection(fetchDirection);
+        // 主键生成器，取回的主键写回 keyProperty 指定的属性；为 null 时按全局 useGeneratedKeys 决定
+        if (keyGenerator != null) {
+            statementBuilder.keyGenerator(keyGenerator);
+        }
+        statementBuilder.keyProperty(keyProperty);
+        statementBuilder.keyColumn(keyColumn);
 
         // 结果映射，给 MappedStatement 创建 resultMaps
         setStatementResultMap(resultMap, resultType, statementBuilder);
@@ -2,10 +2,17 @@ package com.huanyu.mybatis.builder.annotation;
 
 import com.huanyu.mybatis.annotations.Delete;
 import com.huanyu.mybatis.annotations.Insert;
+import com.huanyu.mybatis.annotations.Options;
 import com.huanyu.mybatis.annotations.Select;
 import com.huanyu.mybatis.annotations.Update;
+import com.huanyu.mybatis.annotations.WorkloadClass;
 import com.huanyu.mybatis.binding.MapperMethod;
 import com.huanyu.mybatis.builder.MapperBuilderAssistant;
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.executor.keygen.KeyGenerator;
+import com.huanyu.mybatis.executor.keygen.NoKeyGenerator;
+import com.huanyu.mybatis.mapping.FetchDirection;
+import com.huanyu.mybatis.mapping.ResultSetType;
 import com.huanyu.mybatis.mapping.SqlCommandType;
 import com.huanyu.mybatis.mapping.SqlSource;
 import com.huanyu.mybatis.scripting.LanguageDriver;
@@ -16,6 +23,8 @@ import com.huanyu.mybatis.session.RowBounds;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * ClassName: MapperAnnotationBuilder
@@ -98,6 +107,26 @@ public class MapperAnnotationBuilder {
                 resultMapId = parseResultMap(method);
             }
 
+            // JDBC 语句参数
+            Options options = method.getAnnotation(Options.class);
+            Integer fetchSize = null;
+            Integer timeout = null;
+            ResultSetType resultSetType = null;
+            FetchDirection fetchDirection = null;
+            // 主键生成：没有 @Options 时交给全局配置，没有 keyProperty 的语句不会取回主键
+            KeyGenerator keyGenerator = null;
+            String keyProperty = null;
+            String keyColumn = null;
+            if (options != null) {
+                fetchSize = options.fetchSize() > -1 || options.fetchSize() == Integer.MIN_VALUE ? options.fetchSize() : null;
+                timeout = options.timeout() > -1 ? options.timeout() : null;
+                resultSetType = options.resultSetType() == ResultSetType.DEFAULT ? null : options.resultSetType();
+                fetchDirection = options.fetchDirection();
+                keyGenerator = options.useGeneratedKeys() ? configuration.getJdbc3KeyGenerator() : NoKeyGenerator.INSTANCE;
+                keyProperty = options.keyProperty();
+                keyColumn = options.keyColumn();
+            }
+
             // 添加MappedStatement
             assistant.addMappedStatement(
                     mappedStatementId,
@@ -108,20 +137,49 @@ public class MapperAnnotationBuilder {
                     getReturnType(method),
                     false,
                     false,
-                    languageDriver
+                    languageDriver,
+                    getWorkloadClass(method),
+                    fetchSize,
+                    timeout,
+                    resultSetType,
+                    fetchDirection,
+                    keyGenerator,
+                    keyProperty,
+                    keyColumn
             );
         }
     }
 
+    // 获取语句的负载类别，方法上的注解优先于接口上的
+    private String getWorkloadClass(Method method) {
+        WorkloadClass workloadClass = method.getAnnotation(WorkloadClass.class);
+        if (workloadClass == null) {
+            workloadClass = type.getAnnotation(WorkloadClass.class);
+        }
+        return workloadClass == null ? null : workloadClass.value();
+    }
+
     // 获取方法的返回类型
     private Class<?> getReturnType(Method method) {
         // 获取方法的返回类型
         Class<?> returnType = method.getReturnType();
+        Type genericReturnType = method.getGenericReturnType();
+
+        // 异步方法 CompletableFuture<T>，以 T 作为返回类型继续解析
+        if (CompletableFuture.class.equals(returnType) && genericReturnType instanceof ParameterizedType) {
+            genericReturnType = ((ParameterizedType) genericReturnType).getActualTypeArguments()[0];
+            if (genericReturnType instanceof Class) {
+                returnType = (Class<?>) genericReturnType;
+            } else if (genericReturnType instanceof ParameterizedType) {
+                returnType = (Class<?>) ((ParameterizedType) genericReturnType).getRawType();
+            }
+        }
 
-        // 如果返回类型是Collection的子类
-        if (Collection.class.isAssignableFrom(returnType)) {
+        // 如果返回类型是Collection的子类，或者是游标、流
+        if (Collection.class.isAssignableFrom(returnType) || Cursor.class.isAssignableFrom(returnType)
+                || Stream.class.isAssignableFrom(returnType)) {
             // 获取方法的泛型返回类型
-            Type returnTypeParameter = method.getGenericReturnType();
+            Type returnTypeParameter = genericReturnType;
 
             // 如果返回类型是参数化类型
             if (returnTypeParameter instanceof ParameterizedType) {
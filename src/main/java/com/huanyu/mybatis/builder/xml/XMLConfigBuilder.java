@@ -2,12 +2,22 @@ package com.huanyu.mybatis.builder.xml;
 
 import com.huanyu.mybatis.builder.BaseBuilder;
 import com.huanyu.mybatis.datasource.DataSourceFactory;
+import com.huanyu.mybatis.datasource.routing.ReadWriteRoutingDataSource;
+import com.huanyu.mybatis.datasource.routing.Replica;
+import com.huanyu.mybatis.datasource.routing.ReplicaBalancer;
+import com.huanyu.mybatis.dialect.Dialect;
 import com.huanyu.mybatis.io.Resources;
 import com.huanyu.mybatis.mapping.Environment;
+import com.huanyu.mybatis.mapping.ResultSetType;
 import com.huanyu.mybatis.plugin.Interceptor;
 import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.ExecutorType;
 import com.huanyu.mybatis.session.LocalCacheScope;
+import com.huanyu.mybatis.sharding.ShardingRule;
+import com.huanyu.mybatis.sharding.ShardingStrategy;
 import com.huanyu.mybatis.transaction.TransactionFactory;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransactionFactory;
+import com.huanyu.mybatis.transaction.routing.RoutingTransactionFactory;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
@@ -17,6 +27,7 @@ import org.xml.sax.InputSource;
 import javax.sql.DataSource;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
@@ -102,6 +113,30 @@ public class XMLConfigBuilder extends BaseBuilder {
      * <setting name="cacheEnabled" value="false"/>
      * <!--缓存级别：SESSION/STATEMENT-->
      * <setting name="localCacheScope" value="SESSION"/>
+     * <!--默认执行器：SIMPLE/REUSE/BATCH-->
+     * <setting name="defaultExecutorType" value="SIMPLE"/>
+     * <!--异步映射器方法：线程数、队列容量、超时毫秒数、是否使用虚拟线程-->
+     * <setting name="asyncPoolSize" value="16"/>
+     * <setting name="asyncQueueCapacity" value="1024"/>
+     * <setting name="asyncTimeout" value="0"/>
+     * <setting name="asyncVirtualThreads" value="false"/>
+     * <setting name="dialect" value="MYSQL"/>
+     * <!--语句未单独配置时的查询超时秒数、每次读取的行数和结果集类型-->
+     * <setting name="defaultStatementTimeout" value="30"/>
+     * <setting name="defaultFetchSize" value="100"/>
+     * <setting name="defaultResultSetType" value="FORWARD_ONLY"/>
+     * <!--按每条语句读取的行数自动选择 fetchSize：上下限、行数分位数、一批数据的字节数上限、是否注册 JMX-->
+     * <setting name="adaptiveFetchSize" value="true"/>
+     * <setting name="adaptiveFetchMinSize" value="1"/>
+     * <setting name="adaptiveFetchMaxSize" value="10000"/>
+     * <setting name="adaptiveFetchPercentile" value="90"/>
+     * <setting name="adaptiveFetchBufferBytes" value="2097152"/>
+     * <setting name="adaptiveFetchRegisterMbean" value="false"/>
+     * <!--插入语句默认通过 getGeneratedKeys 取回生成的主键-->
+     * <setting name="useGeneratedKeys" value="true"/>
+     * <!--集合参数的 INSERT 改写为多行 INSERT 时，每块的参数个数上限和估算的报文字节数上限-->
+     * <setting name="multiRowInsertMaxParameters" value="1000"/>
+     * <setting name="multiRowInsertMaxPacketSize" value="1048576"/>
      * </settings>
      */
     private void settingsElement(Element context) {
@@ -120,6 +155,38 @@ public class XMLConfigBuilder extends BaseBuilder {
         configuration.setCacheEnabled(booleanValueOf(props.getProperty("cacheEnabled"), true));
         // 根据Properties对象中的"localCacheScope"属性值，设置本地缓存范围
         configuration.setLocalCacheScope(LocalCacheScope.valueOf(props.getProperty("localCacheScope")));
+        // 根据配置文件设置默认的执行器类型
+        configuration.setDefaultExecutorType(ExecutorType.valueOf(props.getProperty("defaultExecutorType", "SIMPLE")));
+        // 异步映射器方法（返回 CompletableFuture）使用的线程池配置
+        configuration.setAsyncPoolSize(integerValueOf(props.getProperty("asyncPoolSize"), configuration.getAsyncPoolSize()));
+        configuration.setAsyncQueueCapacity(integerValueOf(props.getProperty("asyncQueueCapacity"), configuration.getAsyncQueueCapacity()));
+        configuration.setAsyncTimeout(longValueOf(props.getProperty("asyncTimeout"), configuration.getAsyncTimeout()));
+        configuration.setAsyncVirtualThreads(booleanValueOf(props.getProperty("asyncVirtualThreads"), configuration.isAsyncVirtualThreads()));
+        // 语句级别的 JDBC 参数默认值
+        configuration.setDefaultStatementTimeout(integerValueOf(props.getProperty("defaultStatementTimeout"), null));
+        configuration.setDefaultFetchSize(integerValueOf(props.getProperty("defaultFetchSize"), null));
+        configuration.setDefaultResultSetType(ResultSetType.valueOf(props.getProperty("defaultResultSetType", "DEFAULT")));
+        // 自适应 fetchSize
+        configuration.setAdaptiveFetchSize(booleanValueOf(props.getProperty("adaptiveFetchSize"), configuration.isAdaptiveFetchSize()));
+        configuration.setAdaptiveFetchMinSize(integerValueOf(props.getProperty("adaptiveFetchMinSize"), configuration.getAdaptiveFetchMinSize()));
+        configuration.setAdaptiveFetchMaxSize(integerValueOf(props.getProperty("adaptiveFetchMaxSize"), configuration.getAdaptiveFetchMaxSize()));
+        configuration.setAdaptiveFetchPercentile(integerValueOf(props.getProperty("adaptiveFetchPercentile"), configuration.getAdaptiveFetchPercentile()));
+        configuration.setAdaptiveFetchBufferBytes(longValueOf(props.getProperty("adaptiveFetchBufferBytes"), configuration.getAdaptiveFetchBufferBytes()));
+        configuration.setAdaptiveFetchRegisterMbean(booleanValueOf(props.getProperty("adaptiveFetchRegisterMbean"), configuration.isAdaptiveFetchRegisterMbean()));
+        // 主键生成
+        configuration.setUseGeneratedKeys(booleanValueOf(props.getProperty("useGeneratedKeys"), configuration.isUseGeneratedKeys()));
+        // 多行 INSERT
+        configuration.setMultiRowInsertMaxParameters(integerValueOf(props.getProperty("multiRowInsertMaxParameters"), configuration.getMultiRowInsertMaxParameters()));
+        configuration.setMultiRowInsertMaxPacketSize(longValueOf(props.getProperty("multiRowInsertMaxPacketSize"), configuration.getMultiRowInsertMaxPacketSize()));
+        // 数据库方言（MYSQL、POSTGRESQL、ORACLE 或类名），配置后 RowBounds 改写为物理分页
+        String dialect = props.getProperty("dialect");
+        if (dialect != null) {
+            try {
+                configuration.setDialect((Dialect) typeAliasRegistry.resolveAlias(dialect).getDeclaredConstructor().newInstance());
+            } catch (Exception e) {
+                throw new RuntimeException("Error creating dialect " + dialect + ". Cause: " + e, e);
+            }
+        }
     }
 
 
@@ -136,42 +203,53 @@ public class XMLConfigBuilder extends BaseBuilder {
      * <property name="username" value="${username}"/>
      * <property name="password" value="${password}"/>
      * </dataSource>
+     * <!-- 可选：只读副本，写之前的查询按 balancer（ROUND_ROBIN/LEAST_IN_FLIGHT/LATENCY_WEIGHTED 或类名）分配到副本 -->
+     * <replicas balancer="LEAST_IN_FLIGHT">
+     * <dataSource type="POOLED" name="replica-1">
+     * <property name="url" value="${replicaUrl}"/>
+     * </dataSource>
+     * </replicas>
      * </environment>
+     * <!-- 可选：按参数的 shardKey 属性把语句路由到各个分片环境，没有 shard 子节点时全部环境都是分片；
+     * 取不到分片键的查询默认在全部分片上执行后归并，scatterGather="false" 时使用默认环境；
+     * scatterGatherPoolSize 为跨分片查询的线程数，不配置时为处理器数的两倍且不少于分片数 -->
+     * <sharding shardKey="userId" strategy="MOD" scatterGather="true" scatterGatherPoolSize="16">
+     * <shard environment="shard0"/>
+     * <shard environment="shard1"/>
+     * </sharding>
      * </environments>
      */
-    private void environmentsElement(Element context) throws InstantiationException, IllegalAccessException {
+    private void environmentsElement(Element context) throws Exception {
         // 从context元素的“default”属性中获取默认环境ID
         String environment = context.attributeValue("default");
 
         // 获取context元素内的所有“environment”元素
         List<Element> environmentList = context.elements("environment");
+        // 分片用到的环境
+        Element shardingElement = context.element("sharding");
+        List<String> shards = shardingElement == null ? new ArrayList<>() : shardsElement(shardingElement, environmentList);
         for (Element e : environmentList) {
             // 获取当前“environment”元素的ID
             String id = e.attributeValue("id");
 
-            // 检查当前环境是否与默认环境匹配
-            if (environment.equals(id)) {
+            // 只构建默认环境和分片环境
+            if (environment.equals(id) || shards.contains(id)) {
                 // 初始化事务管理器
                 TransactionFactory txFactory = (TransactionFactory) typeAliasRegistry
                         .resolveAlias(e.element("transactionManager").attributeValue("type"))
                         .newInstance();
 
                 // 初始化数据源
-                Element dataSourceElement = e.element("dataSource");
-                DataSourceFactory dataSourceFactory = (DataSourceFactory) typeAliasRegistry
-                        .resolveAlias(dataSourceElement.attributeValue("type"))
-                        .newInstance();
+                DataSource dataSource = dataSourceElement(e.element("dataSource"));
 
-                // 设置数据源的属性
-                List<Element> propertyList = dataSourceElement.elements("property");
-                Properties props = new Properties();
-                for (Element property : propertyList) {
-                    props.setProperty(property.attributeValue("name"), property.attributeValue("value"));
+                // 配置了只读副本时包装为读写分离的数据源，JDBC 事务换成读写分离的事务
+                Element replicasElement = e.element("replicas");
+                if (replicasElement != null) {
+                    dataSource = replicasElement(replicasElement, dataSource);
+                    if (txFactory.getClass() == JdbcTransactionFactory.class) {
+                        txFactory = new RoutingTransactionFactory();
+                    }
                 }
-                dataSourceFactory.setProperties(props);
-
-                // 获取配置好的数据源
-                DataSource dataSource = dataSourceFactory.getDataSource();
 
                 // 使用事务管理器和数据源构建环境
                 Environment.Builder environmentBuilder = new Environment.Builder(id)
@@ -179,9 +257,87 @@ public class XMLConfigBuilder extends BaseBuilder {
                         .dataSource(dataSource);
 
                 // 将构建好的环境设置到配置中
-                configuration.setEnvironment(environmentBuilder.build());
+                if (environment.equals(id)) {
+                    configuration.setEnvironment(environmentBuilder.build());
+                } else {
+                    configuration.addEnvironment(environmentBuilder.build());
+                }
+            }
+        }
+
+        if (shardingElement != null) {
+            for (String shard : shards) {
+                if (configuration.getEnvironment(shard) == null) {
+                    throw new RuntimeException("Sharding references unknown environment '" + shard + "'");
+                }
+            }
+            ShardingStrategy strategy = (ShardingStrategy) typeAliasRegistry
+                    .resolveAlias(shardingElement.attributeValue("strategy", "MOD"))
+                    .getDeclaredConstructor()
+                    .newInstance();
+            Properties properties = new Properties();
+            for (Element property : shardingElement.elements("property")) {
+                properties.setProperty(property.attributeValue("name"), property.attributeValue("value"));
+            }
+            strategy.setProperties(properties);
+            String shardKey = shardingElement.attributeValue("shardKey");
+            if (shardKey == null) {
+                throw new RuntimeException("Sharding requires a shardKey attribute");
+            }
+            ShardingRule shardingRule = new ShardingRule(shardKey, strategy, shards);
+            shardingRule.setScatterGather(Boolean.parseBoolean(shardingElement.attributeValue("scatterGather", "true")));
+            shardingRule.setScatterGatherPoolSize(Integer.parseInt(shardingElement.attributeValue("scatterGatherPoolSize", "0")));
+            shardingRule.setDefaultWrites(Boolean.parseBoolean(shardingElement.attributeValue("defaultWrites", "false")));
+            configuration.setShardingRule(shardingRule);
+        }
+    }
+
+    // 分片的环境 id，没有 shard 子节点时为全部环境
+    private List<String> shardsElement(Element shardingElement, List<Element> environmentList) {
+        List<String> shards = new ArrayList<>();
+        for (Element shard : shardingElement.elements("shard")) {
+            shards.add(shard.attributeValue("environment"));
+        }
+        if (shards.isEmpty()) {
+            for (Element e : environmentList) {
+                shards.add(e.attributeValue("id"));
             }
         }
+        return shards;
+    }
+
+    // 按 dataSource 节点创建数据源
+    private DataSource dataSourceElement(Element dataSourceElement) throws ReflectiveOperationException {
+        DataSourceFactory dataSourceFactory = (DataSourceFactory) typeAliasRegistry
+                .resolveAlias(dataSourceElement.attributeValue("type"))
+                .getDeclaredConstructor()
+                .newInstance();
+
+        // 设置数据源的属性
+        List<Element> propertyList = dataSourceElement.elements("property");
+        Properties props = new Properties();
+        for (Element property : propertyList) {
+            props.setProperty(property.attributeValue("name"), property.attributeValue("value"));
+        }
+        dataSourceFactory.setProperties(props);
+
+        // 获取配置好的数据源
+        return dataSourceFactory.getDataSource();
+    }
+
+    // 按 replicas 节点创建副本，与主库组成读写分离的数据源
+    private DataSource replicasElement(Element replicasElement, DataSource primary) throws ReflectiveOperationException {
+        List<Replica> replicas = new ArrayList<>();
+        List<Element> dataSourceElements = replicasElement.elements("dataSource");
+        for (Element dataSourceElement : dataSourceElements) {
+            String name = dataSourceElement.attributeValue("name", "replica-" + (replicas.size() + 1));
+            replicas.add(new Replica(name, dataSourceElement(dataSourceElement)));
+        }
+        ReplicaBalancer balancer = (ReplicaBalancer) typeAliasRegistry
+                .resolveAlias(replicasElement.attributeValue("balancer", "ROUND_ROBIN"))
+                .getDeclaredConstructor()
+                .newInstance();
+        return new ReadWriteRoutingDataSource(primary, replicas, balancer);
     }
 
 
@@ -2,6 +2,10 @@ package com.huanyu.mybatis.builder.xml;
 
 import com.huanyu.mybatis.builder.BaseBuilder;
 import com.huanyu.mybatis.builder.MapperBuilderAssistant;
+import com.huanyu.mybatis.executor.keygen.KeyGenerator;
+import com.huanyu.mybatis.executor.keygen.NoKeyGenerator;
+import com.huanyu.mybatis.mapping.FetchDirection;
+import com.huanyu.mybatis.mapping.ResultSetType;
 import com.huanyu.mybatis.mapping.SqlCommandType;
 import com.huanyu.mybatis.mapping.SqlSource;
 import com.huanyu.mybatis.scripting.LanguageDriver;
@@ -46,7 +50,9 @@ public class XMLStatementBuilder extends BaseBuilder {
     //  timeout="10000"
     //  fetchSize="256"
     //  statementType="PREPARED"
-    //  resultSetType="FORWARD_ONLY">
+    //  resultSetType="FORWARD_ONLY"
+    //  fetchDirection="FORWARD"
+    //  workloadClass="reporting">
     //  SELECT * FROM PERSON WHERE ID = #{id}
     //</select>
     public void parseStatementNode() {
@@ -69,6 +75,22 @@ public class XMLStatementBuilder extends BaseBuilder {
         boolean isSelect = sqlCommandType == SqlCommandType.SELECT;
         boolean flushCache = Boolean.parseBoolean(element.attributeValue("flushCache", String.valueOf(!isSelect)));
         boolean useCache = Boolean.parseBoolean(element.attributeValue("useCache", String.valueOf(isSelect)));
+        // 负载类别，数据源为其配置了分区时使用该分区的连接
+        String workloadClass = element.attributeValue("workloadClass");
+        // JDBC 语句参数：每次读取的行数、超时秒数、结果集类型（DEFAULT|FORWARD_ONLY|SCROLL_INSENSITIVE|SCROLL_SENSITIVE）和读取方向
+        Integer fetchSize = integerValueOf(element.attributeValue("fetchSize"), null);
+        Integer timeout = integerValueOf(element.attributeValue("timeout"), null);
+        String resultSetType = element.attributeValue("resultSetType");
+        ResultSetType resultSetTypeEnum = resultSetType == null ? null : ResultSetType.valueOf(resultSetType);
+        String fetchDirection = element.attributeValue("fetchDirection");
+        FetchDirection fetchDirectionEnum = fetchDirection == null ? null : FetchDirection.valueOf(fetchDirection);
+
+        // 主键生成：useGeneratedKeys 未配置时交给全局配置（只作用于声明了 keyProperty 的插入语句），keyProperty、keyColumn 多个时用逗号分隔
+        String useGeneratedKeys = element.attributeValue("useGeneratedKeys");
+        KeyGenerator keyGenerator = useGeneratedKeys == null ? null
+                : Boolean.parseBoolean(useGeneratedKeys) ? configuration.getJdbc3KeyGenerator() : NoKeyGenerator.INSTANCE;
+        String keyProperty = element.attributeValue("keyProperty");
+        String keyColumn = element.attributeValue("keyColumn");
 
         // 获取默认语言驱动器
         Class<?> langClass = configuration.getLanguageRegistry().getDefaultDriverClass();
@@ -86,7 +108,15 @@ public class XMLStatementBuilder extends BaseBuilder {
                 resultTypeClass,
                 flushCache,
                 useCache,
-                langDriver);
+                langDriver,
+                workloadClass,
+                fetchSize,
+                timeout,
+                resultSetTypeEnum,
+                fetchDirectionEnum,
+                keyGenerator,
+                keyProperty,
+                keyColumn);
 
     }
 }
@@ -0,0 +1,35 @@
+package com.huanyu.mybatis.cursor;
+
+import java.io.Closeable;
+
+/**
+ * ClassName: Cursor
+ * Package: com.huanyu.mybatis.cursor
+ * Description: 游标
+ * 以迭代器的方式惰性读取查询结果，每次 next 只从 ResultSet 中映射一行，适合处理数据量很大的查询。
+ * 游标持有打开的 Statement 和 ResultSet，使用完毕后需要关闭（SqlSession 关闭时也会一并关闭）
+ * @Author: 寰宇
+ * @Create: 2024/7/5 10:10
+ * @Version: 1.0
+ */
+public interface Cursor<T> extends Closeable, Iterable<T> {
+
+    /**
+     * 游标是否已经开始读取数据
+     * @return 开始读取数据返回 true
+     */
+    boolean isOpen();
+
+    /**
+     * 游标中的数据是否已经全部读取完
+     * @return 全部读取完返回 true
+     */
+    boolean isConsumed();
+
+    /**
+     * 获取当前结果的索引，第一条结果的索引为 0
+     * @return 当前结果的索引，还未读取时返回 -1
+     */
+    int getCurrentIndex();
+
+}
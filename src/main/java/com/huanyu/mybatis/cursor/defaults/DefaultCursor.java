@@ -0,0 +1,229 @@
+package com.huanyu.mybatis.cursor.defaults;
+
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.executor.resultset.DefaultResultSetHandler;
+import com.huanyu.mybatis.executor.resultset.ResultSetWrapper;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.session.ResultContext;
+import com.huanyu.mybatis.session.ResultHandler;
+import com.huanyu.mybatis.session.RowBounds;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * ClassName: DefaultCursor
+ * Package: com.huanyu.mybatis.cursor.defaults
+ * Description: 默认游标实现
+ * 每次迭代调用结果集处理器从 ResultSet 中读取并映射一行，内存中只保留当前这一行的结果对象
+ * @Author: 寰宇
+ * @Create: 2024/7/5 10:25
+ * @Version: 1.0
+ */
+public class DefaultCursor<T> implements Cursor<T> {
+
+    // 结果集处理器，负责把一行数据映射为结果对象
+    private final DefaultResultSetHandler resultSetHandler;
+    // 结果映射
+    private final ResultMap resultMap;
+    // 被包装的结果集
+    private final ResultSetWrapper rsw;
+    // 翻页限制
+    private final RowBounds rowBounds;
+    // 暂存 resultSetHandler 映射出的一行结果
+    private final ObjectWrapperResultHandler<T> objectWrapperResultHandler = new ObjectWrapperResultHandler<>();
+    // 游标关闭时一并关闭的 Statement，由执行器设置；复用 Statement 的执行器不设置
+    private Statement statement;
+
+    // 游标的迭代器，只允许获取一次
+    private final CursorIterator cursorIterator = new CursorIterator();
+    private boolean iteratorRetrieved;
+
+    // 游标的状态
+    private CursorStatus status = CursorStatus.CREATED;
+    // 已经读取的行数
+    private int indexWithRowBound = -1;
+
+    private enum CursorStatus {
+        // 刚刚创建，还未读取数据
+        CREATED,
+        // 正在读取数据
+        OPEN,
+        // 已经关闭，数据可能未读取完
+        CLOSED,
+        // 已经关闭，数据全部读取完
+        CONSUMED
+    }
+
+    public DefaultCursor(DefaultResultSetHandler resultSetHandler, ResultMap resultMap, ResultSetWrapper rsw, RowBounds rowBounds) {
+        this.resultSetHandler = resultSetHandler;
+        this.resultMap = resultMap;
+        this.rsw = rsw;
+        this.rowBounds = rowBounds;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return status == CursorStatus.OPEN;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return status == CursorStatus.CONSUMED;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return rowBounds.getOffset() + cursorIterator.iteratorIndex;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iteratorRetrieved) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        if (isClosed()) {
+            throw new IllegalStateException("A Cursor is already closed.");
+        }
+        iteratorRetrieved = true;
+        return cursorIterator;
+    }
+
+    @Override
+    public void close() {
+        if (isClosed()) {
+            return;
+        }
+        ResultSet rs = rsw.getResultSet();
+        try {
+            // 读取过数据时记录读取的行数，供自适应 fetchSize 使用
+            if (status != CursorStatus.CREATED) {
+                resultSetHandler.recordFetchStatistics(rsw, indexWithRowBound + 1);
+            }
+            if (rs != null) {
+                rs.close();
+            }
+            // 通过执行器拿到的包装 Statement 关闭，连接池缓存的物理 Statement 随之归还而不是被关闭
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException ignore) {
+            // 关闭失败可以忽略
+        } finally {
+            status = CursorStatus.CLOSED;
+        }
+    }
+
+    /**
+     * 设置游标关闭（包括读取完自动关闭）时一并关闭的 Statement
+     */
+    public void closeStatementOnClose(Statement statement) {
+        this.statement = statement;
+    }
+
+    /**
+     * 从结果集中读取下一行，没有更多数据时关闭游标并返回 null
+     */
+    protected T fetchNextUsingRowBound() {
+        T result = fetchNextObjectFromDatabase();
+        // 跳过 offset 之前的行
+        while (objectWrapperResultHandler.fetched && indexWithRowBound < rowBounds.getOffset()) {
+            result = fetchNextObjectFromDatabase();
+        }
+        return result;
+    }
+
+    protected T fetchNextObjectFromDatabase() {
+        objectWrapperResultHandler.fetched = false;
+        if (isClosed()) {
+            return null;
+        }
+        // 超出 limit 限制，不再读取
+        if (indexWithRowBound + 1 - rowBounds.getOffset() >= rowBounds.getLimit()) {
+            close();
+            status = CursorStatus.CONSUMED;
+            return null;
+        }
+        try {
+            status = CursorStatus.OPEN;
+            // 映射一行后 objectWrapperResultHandler 会调用 stop，结果集处理器随即返回
+            resultSetHandler.handleRowValues(rsw, resultMap, objectWrapperResultHandler, RowBounds.DEFAULT, null);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error fetching next row from cursor.  Cause: " + e, e);
+        }
+        T next = objectWrapperResultHandler.result;
+        if (objectWrapperResultHandler.fetched) {
+            indexWithRowBound++;
+        }
+        // 结果集已经读取完
+        if (!objectWrapperResultHandler.fetched) {
+            close();
+            status = CursorStatus.CONSUMED;
+        }
+        objectWrapperResultHandler.result = null;
+        return next;
+    }
+
+    private boolean isClosed() {
+        return status == CursorStatus.CLOSED || status == CursorStatus.CONSUMED;
+    }
+
+    /**
+     * 暂存一行结果的结果处理器
+     */
+    private static class ObjectWrapperResultHandler<T> implements ResultHandler {
+
+        private T result;
+        private boolean fetched;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void handleResult(ResultContext context) {
+            this.result = (T) context.getResultObject();
+            this.fetched = true;
+            context.stop();
+        }
+    }
+
+    /**
+     * 游标的迭代器
+     */
+    private class CursorIterator implements Iterator<T> {
+
+        // 预读的下一个对象
+        private T object;
+        private boolean hasObject;
+        // 迭代器返回的对象的索引
+        private int iteratorIndex = -1;
+
+        @Override
+        public boolean hasNext() {
+            if (!hasObject) {
+                object = fetchNextUsingRowBound();
+                hasObject = objectWrapperResultHandler.fetched && !isConsumed();
+            }
+            return hasObject;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T next = object;
+            object = null;
+            hasObject = false;
+            iteratorIndex++;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Cannot remove element from Cursor");
+        }
+    }
+
+}
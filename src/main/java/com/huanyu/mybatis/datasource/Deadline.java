@@ -0,0 +1,85 @@
+package com.huanyu.mybatis.datasource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClassName: Deadline
+ * Package: com.huanyu.mybatis.datasource
+ * Description: 截止时间
+ * 按 System.nanoTime 记录的绝对时间点，可以通过 SqlSession#setDeadline 设置给会话之后执行的语句，
+ * 也可以通过 Deadline.set 设置给当前线程。执行器取二者中较早的一个：
+ * 获取连接时设置到当前线程，连接池据此缩短排队等待；执行语句时交给 StatementWatchdog，到期后调用 Statement.cancel()
+ * @Author: 寰宇
+ * @Create: 2024/7/14 16:20
+ * @Version: 1.0
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    // 避免 nanoTime + 超时时长溢出
+    private static final long MAX_TIMEOUT_NANOS = Long.MAX_VALUE / 2;
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 从现在起经过 timeout 之后的截止时间
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        long timeoutNanos = Math.max(0, Math.min(unit.toNanos(timeout), MAX_TIMEOUT_NANOS));
+        return new Deadline(System.nanoTime() + timeoutNanos);
+    }
+
+    /**
+     * 剩余的时间，已经到期时为 0 或负数
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * 较早的一个截止时间，都为 null 时返回 null
+     */
+    public static Deadline earliest(Deadline a, Deadline b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.deadlineNanos - b.deadlineNanos <= 0 ? a : b;
+    }
+
+    /**
+     * 设置当前线程的截止时间
+     * @param deadline 截止时间，null 表示没有
+     * @return 之前的截止时间，用于恢复
+     */
+    public static Deadline set(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+        return previous;
+    }
+
+    public static Deadline get() {
+        return CURRENT.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline(remaining " + remaining(TimeUnit.MILLISECONDS) + " ms)";
+    }
+
+}
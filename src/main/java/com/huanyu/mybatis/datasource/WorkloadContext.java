@@ -0,0 +1,39 @@
+package com.huanyu.mybatis.datasource;
+
+/**
+ * ClassName: WorkloadContext
+ * Package: com.huanyu.mybatis.datasource
+ * Description: 当前线程正在获取连接的语句所属的负载类别
+ * 执行器在从事务中获取连接前设置 MappedStatement 的 workloadClass，取完连接后清除；
+ * 支持分区的数据源（如 PooledDataSource）据此把连接请求路由到对应的分区
+ * @Author: 寰宇
+ * @Create: 2024/7/11 14:20
+ * @Version: 1.0
+ */
+public final class WorkloadContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private WorkloadContext() {
+    }
+
+    /**
+     * 设置当前线程的负载类别
+     * @param workloadClass 负载类别，null 表示默认
+     * @return 之前的负载类别，用于恢复
+     */
+    public static String set(String workloadClass) {
+        String previous = CURRENT.get();
+        if (workloadClass == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(workloadClass);
+        }
+        return previous;
+    }
+
+    public static String get() {
+        return CURRENT.get();
+    }
+
+}
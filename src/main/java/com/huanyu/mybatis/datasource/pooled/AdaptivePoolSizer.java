@@ -0,0 +1,114 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ClassName: AdaptivePoolSizer
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 自适应连接池大小的控制器
+ * poolAdaptiveSizing 开启时由 PooledDataSource 定时调度，每一轮：
+ * 1、按利特尔法则估算平均并发 L = 本轮连接被持有的总时长 / 本轮时长，与当前活跃连接数取大，再做指数加权平均得到需求；
+ * 2、目标大小 = 需求 × 1.25 的余量；
+ * 3、有线程在等待连接，或者本轮平均等待超过 poolAdaptiveTargetWait 时立即扩容（每轮最多翻倍）；
+ * 4、利用率低于一半时逐步缩容，每轮最多缩小 10%，多出来的空闲连接直接关闭，借出中的在归还时关闭；
+ * 5、结果限制在 [poolAdaptiveMinConnections, poolAdaptiveMaxConnections] 之间，决策记录到 PoolState。
+ * @Author: 寰宇
+ * @Create: 2024/7/11 10:30
+ * @Version: 1.0
+ */
+public class AdaptivePoolSizer implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+    // 指数加权平均的平滑系数，越大对最近一轮越敏感
+    private static final double ALPHA = 0.3;
+    // 在估算需求之上保留的余量
+    private static final double HEADROOM = 1.25;
+    // 低于该利用率才缩容
+    private static final double SHRINK_UTILIZATION = 0.5;
+
+    private final PooledDataSource dataSource;
+
+    // 上一轮的统计快照
+    private long lastTime;
+    private long lastCheckoutTime;
+    private long lastWaitTime;
+    private long lastWaitCount;
+    // 平滑后的并发需求，负数表示还没有数据
+    private double demand = -1;
+
+    public AdaptivePoolSizer(PooledDataSource dataSource) {
+        this.dataSource = dataSource;
+        PoolState state = dataSource.getPoolState();
+        this.lastTime = System.currentTimeMillis();
+        this.lastCheckoutTime = state.accumulatedCheckoutTime.get();
+        this.lastWaitTime = state.accumulatedWaitTime.get();
+        this.lastWaitCount = state.hadToWaitCount.get();
+    }
+
+    @Override
+    public void run() {
+        try {
+            adjust();
+        } catch (Throwable e) {
+            // 定时任务抛出异常后不会再被调度，这里只记录
+            logger.warn("Adaptive pool sizing failed. Cause: " + e, e);
+        }
+    }
+
+    private void adjust() {
+        PoolState state = dataSource.getPoolState();
+        ConcurrentConnectionBag bag = dataSource.getConnectionBag();
+        long now = System.currentTimeMillis();
+        long elapsed = now - lastTime;
+        if (elapsed <= 0) {
+            return;
+        }
+        long checkoutTime = state.accumulatedCheckoutTime.get();
+        long waitTime = state.accumulatedWaitTime.get();
+        long waitCount = state.hadToWaitCount.get();
+        long heldDelta = checkoutTime - lastCheckoutTime;
+        long waitTimeDelta = waitTime - lastWaitTime;
+        long waitCountDelta = waitCount - lastWaitCount;
+        lastTime = now;
+        lastCheckoutTime = checkoutTime;
+        lastWaitTime = waitTime;
+        lastWaitCount = waitCount;
+
+        // 利特尔法则：平均并发 = 持有总时长 / 观察时长
+        int active = bag.getActiveCount();
+        int waiting = bag.getWaitingThreadCount();
+        double observed = Math.max((double) heldDelta / elapsed, active);
+        demand = demand < 0 ? observed : ALPHA * observed + (1 - ALPHA) * demand;
+        state.estimatedDemand = demand;
+
+        int current = dataSource.getPoolMaximumActiveConnections();
+        int target = (int) Math.ceil(demand * HEADROOM);
+        long averageWait = waitCountDelta == 0 ? 0 : waitTimeDelta / waitCountDelta;
+        boolean starving = waiting > 0 || (waitCountDelta > 0 && averageWait > dataSource.getPoolAdaptiveTargetWait());
+        if (starving) {
+            // 扩容要快：至少容纳正在等待的线程，每轮最多翻倍
+            target = Math.max(target, Math.min(current + Math.max(1, waiting), current * 2));
+        } else if (target < current) {
+            // 缩容要慢：利用率低时每轮最多缩小 10%
+            if (demand / current > SHRINK_UTILIZATION) {
+                target = current;
+            } else {
+                target = Math.max(target, current - Math.max(1, current / 10));
+            }
+        } else {
+            // 没有等待时不主动扩容
+            target = current;
+        }
+        target = Math.max(dataSource.getPoolAdaptiveMinConnections(), Math.min(dataSource.getPoolAdaptiveMaxConnections(), target));
+        if (target != current) {
+            logger.info("Resizing pool " + dataSource.getPoolName() + " from " + current + " to " + target
+                    + " connections (demand=" + String.format("%.2f", demand) + ", active=" + active + ", waiting=" + waiting
+                    + ", averageWait=" + averageWait + "ms).");
+            state.adaptiveResizeCount.incrementAndGet();
+            dataSource.resize(target);
+        }
+    }
+
+}
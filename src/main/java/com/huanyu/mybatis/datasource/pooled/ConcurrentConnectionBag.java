@@ -0,0 +1,310 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ClassName: ConcurrentConnectionBag
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 无锁的连接容器
+ * 取代 PoolState 中用 synchronized 保护的两个 ArrayList，借出和归还都不再加锁：
+ * 1、空闲连接放在无锁的 ConcurrentLinkedDeque 中，连接的归属通过 PooledConnection 上的 CAS 状态来竞争；
+ * 2、每个线程记录自己最近归还的连接（线程亲和），再次借用时优先从中取，减少线程之间的竞争；
+ * 3、有线程在等待时，归还或新建的连接直接移交给最早登记的等待者；
+ * 4、等待者按截止时间挂起，而不是在监视器上 wait 固定的时长，后台建立连接失败时等待者会被立刻唤醒。
+ * @Author: 寰宇
+ * @Create: 2024/7/8 10:20
+ * @Version: 1.0
+ */
+public class ConcurrentConnectionBag {
+
+    // 每个线程最多记住的最近归还的连接数
+    private static final int MAX_THREAD_LOCAL_SIZE = 16;
+
+    // 共享的空闲连接队列
+    private final ConcurrentLinkedDeque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    // 空闲连接数：ConcurrentLinkedDeque.size() 需要遍历整个队列，而且队列中可能留有已被借走、尚未删除的连接，
+    // 这里随连接离开和进入 STATE_NOT_IN_USE 增减，归还连接时可以直接读取
+    private final AtomicInteger idleCount = new AtomicInteger();
+    // 活跃（已借出）的连接
+    private final Set<PooledConnection> activeConnections = ConcurrentHashMap.newKeySet();
+    // 当前线程最近归还的连接，使用弱引用，不影响连接被回收
+    private final ThreadLocal<List<WeakReference<PooledConnection>>> threadList = ThreadLocal.withInitial(() -> new ArrayList<>(MAX_THREAD_LOCAL_SIZE));
+    // 等待连接的线程，按先来后到把连接直接移交给它们
+    private final ConcurrentLinkedDeque<Waiter> waiterQueue = new ConcurrentLinkedDeque<>();
+    // 正在等待连接的线程数
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * 不等待地借出一个空闲连接：先查线程本地的列表，再查共享队列
+     * @return 借到的连接，没有空闲连接时返回 null
+     */
+    public PooledConnection tryBorrow() {
+        // 1. 线程亲和：从最近归还的开始尝试
+        List<WeakReference<PooledConnection>> list = threadList.get();
+        for (int i = list.size() - 1; i >= 0; i--) {
+            PooledConnection connection = list.remove(i).get();
+            if (connection != null && leaveIdle(connection, PooledConnection.STATE_IN_USE)) {
+                // 刚归还的连接在队尾附近，从队尾开始删除
+                idleConnections.removeLastOccurrence(connection);
+                activeConnections.add(connection);
+                return connection;
+            }
+        }
+        // 2. 共享队列：取出的连接如果已经被别的线程抢走，直接丢弃
+        PooledConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            if (leaveIdle(connection, PooledConnection.STATE_IN_USE)) {
+                activeConnections.add(connection);
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 创建一个等待凭证
+     */
+    public Waiter newWaiter() {
+        return new Waiter();
+    }
+
+    /**
+     * 借出一个连接，没有空闲连接时最多等待 timeout
+     * 等待者通过 waiter 登记，归还或新建的连接会直接移交给 waiter；waiter 失败（例如后台建立连接失败）时抛出异常
+     * @param waiter 当前线程的等待凭证
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 借到的连接，超时返回 null
+     * @throws InterruptedException 等待时被中断
+     * @throws SQLException waiter 失败
+     */
+    public PooledConnection borrow(Waiter waiter, long timeout, TimeUnit unit) throws InterruptedException, SQLException {
+        // 先登记为等待者，保证在此之后归还的连接一定会尝试移交
+        waiterQueue.offerLast(waiter);
+        waiters.incrementAndGet();
+        try {
+            // 登记之后再查一次，避免错过登记之前归还的连接
+            PooledConnection connection = tryBorrow();
+            if (connection != null) {
+                // 撤销前可能已经被移交了一个连接，多出来的放回容器
+                PooledConnection extra = waiter.cancel();
+                if (extra != null && activeConnections.remove(extra)) {
+                    extra.setState(PooledConnection.STATE_NOT_IN_USE);
+                    add(extra);
+                }
+                return connection;
+            }
+            try {
+                // 按截止时间挂起
+                return waiter.future.get(timeout, unit);
+            } catch (TimeoutException e) {
+                // 超时的同时可能刚好被移交了连接
+                return waiter.cancel();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                throw new SQLException("Error acquiring connection. Cause: " + cause, cause);
+            } catch (InterruptedException e) {
+                PooledConnection extra = waiter.cancel();
+                if (extra != null && activeConnections.remove(extra)) {
+                    extra.setState(PooledConnection.STATE_NOT_IN_USE);
+                    add(extra);
+                }
+                throw e;
+            }
+        } finally {
+            waiters.decrementAndGet();
+            waiterQueue.remove(waiter);
+        }
+    }
+
+    /**
+     * 归还连接，连接会被当前线程记住，有等待者时直接移交
+     * @param connection 状态为 STATE_NOT_IN_USE 的连接
+     */
+    public void requite(PooledConnection connection) {
+        List<WeakReference<PooledConnection>> list = threadList.get();
+        if (list.size() >= MAX_THREAD_LOCAL_SIZE) {
+            list.remove(0);
+        }
+        list.add(new WeakReference<>(connection));
+        add(connection);
+    }
+
+    /**
+     * 加入一个空闲连接（归还的或新建的），有等待者时直接移交给最早的等待者
+     * @param connection 状态为 STATE_NOT_IN_USE 的连接
+     */
+    public void add(PooledConnection connection) {
+        idleCount.incrementAndGet();
+        idleConnections.offerLast(connection);
+        Waiter waiter;
+        while ((waiter = waiterQueue.pollFirst()) != null) {
+            // 等待者已经撤销、失败或者正在被别的线程处理
+            if (!waiter.claim()) {
+                continue;
+            }
+            // 连接已经被别的线程借走，等待者放回原位
+            if (!leaveIdle(connection, PooledConnection.STATE_IN_USE)) {
+                waiter.release();
+                waiterQueue.offerFirst(waiter);
+                return;
+            }
+            idleConnections.removeLastOccurrence(connection);
+            activeConnections.add(connection);
+            waiter.future.complete(connection);
+            return;
+        }
+    }
+
+    /**
+     * 借出的连接不再归池子管理（归还、被声明超期或被关闭）
+     * @param connection 连接
+     * @return 连接原本是否是活跃连接
+     */
+    public boolean removeActive(PooledConnection connection) {
+        return activeConnections.remove(connection);
+    }
+
+    /**
+     * 活跃连接登记，用于声明超期后直接借出的连接
+     */
+    public void addActive(PooledConnection connection) {
+        connection.setState(PooledConnection.STATE_IN_USE);
+        activeConnections.add(connection);
+    }
+
+    /**
+     * 从空闲连接中移除一个连接（用于关闭或者后台处理），空闲连接被借走时返回 false
+     */
+    public boolean reserve(PooledConnection connection) {
+        if (leaveIdle(connection, PooledConnection.STATE_RESERVED)) {
+            idleConnections.removeFirstOccurrence(connection);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 把 reserve 的连接放回空闲连接中
+     */
+    public void unreserve(PooledConnection connection) {
+        if (connection.compareAndSetState(PooledConnection.STATE_RESERVED, PooledConnection.STATE_NOT_IN_USE)) {
+            add(connection);
+        }
+    }
+
+    /**
+     * 取出并移除第一个空闲连接，用于关闭连接池
+     */
+    public PooledConnection pollIdle() {
+        PooledConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            if (leaveIdle(connection, PooledConnection.STATE_REMOVED)) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 空闲连接的快照
+     */
+    public List<PooledConnection> getIdleConnections() {
+        List<PooledConnection> list = new ArrayList<>();
+        for (PooledConnection connection : idleConnections) {
+            if (connection.getState() == PooledConnection.STATE_NOT_IN_USE) {
+                list.add(connection);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 活跃连接的快照
+     */
+    public List<PooledConnection> getActiveConnections() {
+        return new ArrayList<>(activeConnections);
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    public int getActiveCount() {
+        return activeConnections.size();
+    }
+
+    public int getWaitingThreadCount() {
+        return waiters.get();
+    }
+
+    // 把空闲连接切换到 newState，成功的一方负责把空闲连接数减一
+    private boolean leaveIdle(PooledConnection connection, int newState) {
+        if (connection.compareAndSetState(PooledConnection.STATE_NOT_IN_USE, newState)) {
+            idleCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 等待凭证：只有先认领（claim）成功的一方才能完成它，
+     * 移交连接、撤销等待和通知失败三者之间不会互相覆盖
+     */
+    public static final class Waiter {
+
+        private final CompletableFuture<PooledConnection> future = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Waiter() {
+        }
+
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        private void release() {
+            claimed.set(false);
+        }
+
+        /**
+         * 通知等待者获取连接失败，等待者已经收到连接或者已经撤销时忽略
+         */
+        public void fail(Throwable cause) {
+            if (claim()) {
+                future.completeExceptionally(cause);
+            }
+        }
+
+        /**
+         * 撤销等待，正在移交的连接会等它完成
+         * @return 撤销之前已经移交过来的连接，没有则返回 null
+         */
+        private PooledConnection cancel() {
+            while (!claim()) {
+                if (future.isDone()) {
+                    return future.isCompletedExceptionally() ? null : future.getNow(null);
+                }
+                // 其他线程正在移交或者放回，很快就会结束
+                Thread.yield();
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * ClassName: ConnectionState
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 物理连接的状态
+ * 记录物理连接当前的 autoCommit、隔离级别、只读和 catalog，以及上次提交/回滚之后是否有需要结束的事务（dirty）。
+ * 只有执行写操作、设置保存点，或者在非自动提交模式下执行查询才会标记 dirty，创建语句本身不标记。
+ * 设置的值没有变化时不再访问驱动，读取时直接返回记录的值，只有 dirty 的连接才真正提交或回滚，
+ * 对 MySQL 等驱动可以省掉每个会话好几次网络往返。
+ * 状态跟随物理连接，连接归还重新包装时一并转交。绕过代理直接操作真实连接会使记录失真，不支持这种用法
+ * @Author: 寰宇
+ * @Create: 2024/7/9 14:20
+ * @Version: 1.0
+ */
+public class ConnectionState {
+
+    // 以下状态为 null 表示还不知道，第一次读取时从驱动加载
+    private Boolean autoCommit;
+    private Integer transactionIsolation;
+    private Boolean readOnly;
+    private String catalog;
+    // 上次提交或回滚之后是否可能留下了未结束的事务
+    private boolean dirty;
+
+    public boolean getAutoCommit(Connection connection) throws SQLException {
+        if (autoCommit == null) {
+            autoCommit = connection.getAutoCommit();
+        }
+        return autoCommit;
+    }
+
+    public void setAutoCommit(Connection connection, boolean autoCommit) throws SQLException {
+        if (this.autoCommit != null && this.autoCommit == autoCommit) {
+            return;
+        }
+        // 设置失败时状态未知
+        this.autoCommit = null;
+        connection.setAutoCommit(autoCommit);
+        this.autoCommit = autoCommit;
+        // 切换为自动提交时驱动会提交当前事务
+        if (autoCommit) {
+            dirty = false;
+        }
+    }
+
+    public int getTransactionIsolation(Connection connection) throws SQLException {
+        if (transactionIsolation == null) {
+            transactionIsolation = connection.getTransactionIsolation();
+        }
+        return transactionIsolation;
+    }
+
+    public void setTransactionIsolation(Connection connection, int level) throws SQLException {
+        if (transactionIsolation != null && transactionIsolation == level) {
+            return;
+        }
+        transactionIsolation = null;
+        connection.setTransactionIsolation(level);
+        transactionIsolation = level;
+    }
+
+    public boolean isReadOnly(Connection connection) throws SQLException {
+        if (readOnly == null) {
+            readOnly = connection.isReadOnly();
+        }
+        return readOnly;
+    }
+
+    public void setReadOnly(Connection connection, boolean readOnly) throws SQLException {
+        if (this.readOnly != null && this.readOnly == readOnly) {
+            return;
+        }
+        this.readOnly = null;
+        connection.setReadOnly(readOnly);
+        this.readOnly = readOnly;
+    }
+
+    public String getCatalog(Connection connection) throws SQLException {
+        if (catalog == null) {
+            catalog = connection.getCatalog();
+        }
+        return catalog;
+    }
+
+    public void setCatalog(Connection connection, String catalog) throws SQLException {
+        if (catalog != null && catalog.equals(this.catalog)) {
+            return;
+        }
+        this.catalog = null;
+        connection.setCatalog(catalog);
+        this.catalog = catalog;
+    }
+
+    /**
+     * 执行了写操作（或设置了保存点），之后的提交和回滚不能省略
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * 执行了查询：自动提交模式下查询不会留下事务，不需要标记；
+     * 否则查询已经开启了事务（快照或者锁），同样要在提交或回滚时结束
+     */
+    public void markRead() {
+        if (!Boolean.TRUE.equals(autoCommit)) {
+            dirty = true;
+        }
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 提交，自动提交模式或者没有执行过语句时不访问驱动
+     */
+    public void commit(Connection connection) throws SQLException {
+        if (dirty || autoCommit == null) {
+            connection.commit();
+            dirty = false;
+        }
+    }
+
+    /**
+     * 回滚，没有执行过语句时不访问驱动
+     */
+    public void rollback(Connection connection) throws SQLException {
+        if (dirty || autoCommit == null) {
+            connection.rollback();
+            dirty = false;
+        }
+    }
+
+    /**
+     * 归还或关闭连接时调用：只有非自动提交且 dirty 的连接才需要回滚
+     */
+    public void rollbackIfDirty(Connection connection) throws SQLException {
+        if (dirty && !getAutoCommit(connection)) {
+            connection.rollback();
+        }
+        dirty = false;
+    }
+
+}
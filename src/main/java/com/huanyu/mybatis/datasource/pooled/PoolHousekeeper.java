@@ -0,0 +1,72 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ClassName: PoolHousekeeper
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 连接池的后台维护任务
+ * 由 PooledDataSource 定时调度，每一轮依次：
+ * 1、关闭超过 poolMaxLifetime 的空闲连接（借出中的连接在归还时关闭）；
+ * 2、空闲连接多于 poolMinimumIdle 时，关闭空闲超过 poolIdleTimeout 的连接；
+ * 3、对空闲超过 poolKeepaliveTime 的连接按 poolValidationMode 做一次探活，失效的直接关闭；
+ * 4、空闲连接不足 poolMinimumIdle 时交给创建线程补足；
+ * 5、借出超过 poolLeakDetectionThreshold 的连接打印疑似泄漏告警。
+ * 处理某个空闲连接前先通过 CAS 把它标记为 RESERVED，借出路径不会拿到它，也不需要任何锁
+ * @Author: 寰宇
+ * @Create: 2024/7/8 16:10
+ * @Version: 1.0
+ */
+public class PoolHousekeeper implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PoolHousekeeper.class);
+
+    private final PooledDataSource dataSource;
+
+    public PoolHousekeeper(PooledDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void run() {
+        try {
+            retireIdleConnections();
+            dataSource.fillPool();
+            dataSource.detectLeaks();
+        } catch (Throwable e) {
+            // 定时任务抛出异常后不会再被调度，这里只记录
+            logger.warn("Pool housekeeping failed. Cause: " + e, e);
+        }
+    }
+
+    private void retireIdleConnections() {
+        ConcurrentConnectionBag bag = dataSource.getConnectionBag();
+        long maxLifetime = dataSource.getPoolMaxLifetime();
+        long idleTimeout = dataSource.getPoolIdleTimeout();
+        long keepaliveTime = dataSource.getPoolKeepaliveTime();
+        // 可以因为空闲超时而关闭的连接数
+        int evictable = bag.getIdleCount() - dataSource.getPoolMinimumIdle();
+        for (PooledConnection conn : bag.getIdleConnections()) {
+            // 连接刚好被借走
+            if (!bag.reserve(conn)) {
+                continue;
+            }
+            if (maxLifetime > 0 && conn.getAge() >= maxLifetime) {
+                logger.debug("Retiring connection " + conn.getRealHashCode() + " after reaching max lifetime.");
+                dataSource.closeConnection(conn);
+            } else if (idleTimeout > 0 && evictable > 0 && conn.getTimeElapsedSinceLastUse() >= idleTimeout) {
+                logger.debug("Evicting connection " + conn.getRealHashCode() + " after being idle for " + conn.getTimeElapsedSinceLastUse() + " milliseconds.");
+                evictable--;
+                dataSource.closeConnection(conn);
+            } else if (keepaliveTime > 0 && conn.getTimeElapsedSinceLastValidation() >= keepaliveTime && !dataSource.validateConnection(conn)) {
+                logger.info("Connection " + conn.getRealHashCode() + " failed keepalive, discarding connection.");
+                dataSource.getPoolState().badConnectionCount.incrementAndGet();
+                dataSource.closeConnection(conn);
+            } else {
+                bag.unreserve(conn);
+            }
+        }
+    }
+
+}
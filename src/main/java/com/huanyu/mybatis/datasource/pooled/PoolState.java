@@ -1,88 +1,226 @@
 package com.huanyu.mybatis.datasource.pooled;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * ClassName: PoolState
  * Package: com.huanyu.mybatis.datasource.pooled
  * Description: 池状态
- *
+ * 连接本身由 ConcurrentConnectionBag 管理，这里只保存统计信息，计数器都是原子变量，读写不需要加锁。
+ * 同时作为 PooledDataSourceMXBean 的实现注册到 JMX
  * @Author: 寰宇
  * @Create: 2024/6/14 12:33
  * @Version: 1.0
  */
-public class PoolState {
+public class PoolState implements PooledDataSourceMXBean {
 
     // 池化数据源
     protected PooledDataSource dataSource;
 
-    // 空闲连接
-    protected final List<PooledConnection> idleConnections = new ArrayList<>();
-    // 活跃连接
-    protected final List<PooledConnection> activeConnections = new ArrayList<>();
-
     // 请求次数
-    protected long requestCount = 0;
+    protected final AtomicLong requestCount = new AtomicLong();
 
     // 取出请求花费时间的累计值。从准备取出请求到取出结束的时间为取出请求花费的时间
-    protected long accumulatedRequestTime = 0;
+    protected final AtomicLong accumulatedRequestTime = new AtomicLong();
     // 累积被检出的时间
-    protected long accumulatedCheckoutTime = 0;
+    protected final AtomicLong accumulatedCheckoutTime = new AtomicLong();
     // 声明的过期连接数
-    protected long claimedOverdueConnectionCount = 0;
+    protected final AtomicLong claimedOverdueConnectionCount = new AtomicLong();
     // 过期的连接数的总检出时长
-    protected long accumulatedCheckoutTimeOfOverdueConnections = 0;
+    protected final AtomicLong accumulatedCheckoutTimeOfOverdueConnections = new AtomicLong();
 
     // 总等待时间
-    protected long accumulatedWaitTime = 0;
+    protected final AtomicLong accumulatedWaitTime = new AtomicLong();
     // 要等待的次数
-    protected long hadToWaitCount = 0;
+    protected final AtomicLong hadToWaitCount = new AtomicLong();
     // 失败连接次数
-    protected long badConnectionCount = 0;
+    protected final AtomicLong badConnectionCount = new AtomicLong();
+
+    // 预编译语句缓存命中次数
+    protected final AtomicLong statementCacheHitCount = new AtomicLong();
+    // 预编译语句缓存未命中次数
+    protected final AtomicLong statementCacheMissCount = new AtomicLong();
+    // 持有时间超过泄漏检测阈值的借出次数
+    protected final AtomicLong leakedConnectionCount = new AtomicLong();
+    // 调用方的截止时间先于拿到连接到期的次数
+    protected final AtomicLong deadlineExceededCount = new AtomicLong();
+
+    // 自适应调整连接池大小的次数
+    protected final AtomicLong adaptiveResizeCount = new AtomicLong();
+    // 自适应控制器估算的平均并发需求
+    protected volatile double estimatedDemand;
+
+    // 借出连接耗时（微秒）的分布
+    protected final LatencyHistogram acquireTimeHistogram = new LatencyHistogram();
+    // 连接借出后持有时长（微秒）的分布
+    protected final LatencyHistogram checkoutTimeHistogram = new LatencyHistogram();
 
     public PoolState(PooledDataSource dataSource) {
         this.dataSource = dataSource;
     }
 
-    public synchronized long getRequestCount() {
-        return requestCount;
+    @Override
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getAverageRequestTime() {
+        long requests = requestCount.get();
+        return requests == 0 ? 0 : accumulatedRequestTime.get() / requests;
+    }
+
+    public long getAverageWaitTime() {
+        long waits = hadToWaitCount.get();
+        return waits == 0 ? 0 : accumulatedWaitTime.get() / waits;
+    }
+
+    @Override
+    public long getHadToWaitCount() {
+        return hadToWaitCount.get();
+    }
+
+    @Override
+    public long getBadConnectionCount() {
+        return badConnectionCount.get();
+    }
+
+    @Override
+    public long getClaimedOverdueConnectionCount() {
+        return claimedOverdueConnectionCount.get();
+    }
+
+    public long getAverageOverdueCheckoutTime() {
+        long claimed = claimedOverdueConnectionCount.get();
+        return claimed == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections.get() / claimed;
+    }
+
+    public long getAverageCheckoutTime() {
+        long requests = requestCount.get();
+        return requests == 0 ? 0 : accumulatedCheckoutTime.get() / requests;
+    }
+
+    @Override
+    public long getStatementCacheHitCount() {
+        return statementCacheHitCount.get();
+    }
+
+    @Override
+    public long getStatementCacheMissCount() {
+        return statementCacheMissCount.get();
+    }
+
+    @Override
+    public int getIdleConnectionCount() {
+        return dataSource.getConnectionBag().getIdleCount();
+    }
+
+    @Override
+    public int getActiveConnectionCount() {
+        return dataSource.getConnectionBag().getActiveCount();
+    }
+
+    @Override
+    public int getPendingConnectionCount() {
+        return dataSource.getPendingConnectionCount();
+    }
+
+    @Override
+    public int getTotalConnectionCount() {
+        return dataSource.getTotalConnectionCount();
+    }
+
+    @Override
+    public int getThreadsAwaitingConnection() {
+        return dataSource.getConnectionBag().getWaitingThreadCount();
+    }
+
+    @Override
+    public long getLeakedConnectionCount() {
+        return leakedConnectionCount.get();
+    }
+
+    @Override
+    public long getDeadlineExceededCount() {
+        return deadlineExceededCount.get();
+    }
+
+    @Override
+    public int getMaximumConnectionCount() {
+        return dataSource.getPoolMaximumActiveConnections();
+    }
+
+    @Override
+    public long getAdaptiveResizeCount() {
+        return adaptiveResizeCount.get();
+    }
+
+    @Override
+    public double getEstimatedDemand() {
+        return estimatedDemand;
+    }
+
+    @Override
+    public double getAcquireTimeMean() {
+        return acquireTimeHistogram.getMean();
+    }
+
+    @Override
+    public long getAcquireTimeP50() {
+        return acquireTimeHistogram.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getAcquireTimeP99() {
+        return acquireTimeHistogram.getValueAtPercentile(99);
     }
 
-    public synchronized long getAverageRequestTime() {
-        return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+    @Override
+    public long getAcquireTimeMax() {
+        return acquireTimeHistogram.getMax();
     }
 
-    public synchronized long getAverageWaitTime() {
-        return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+    @Override
+    public double getCheckoutTimeMean() {
+        return checkoutTimeHistogram.getMean();
     }
 
-    public synchronized long getHadToWaitCount() {
-        return hadToWaitCount;
+    @Override
+    public long getCheckoutTimeP50() {
+        return checkoutTimeHistogram.getValueAtPercentile(50);
     }
 
-    public synchronized long getBadConnectionCount() {
-        return badConnectionCount;
+    @Override
+    public long getCheckoutTimeP99() {
+        return checkoutTimeHistogram.getValueAtPercentile(99);
     }
 
-    public synchronized long getClaimedOverdueConnectionCount() {
-        return claimedOverdueConnectionCount;
+    @Override
+    public long getCheckoutTimeMax() {
+        return checkoutTimeHistogram.getMax();
     }
 
-    public synchronized long getAverageOverdueCheckoutTime() {
-        return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+    @Override
+    public void resetHistograms() {
+        acquireTimeHistogram.reset();
+        checkoutTimeHistogram.reset();
     }
 
-    public synchronized long getAverageCheckoutTime() {
-        return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+    public LatencyHistogram getAcquireTimeHistogram() {
+        return acquireTimeHistogram;
     }
 
-    public synchronized int getIdleConnectionCount() {
-        return idleConnections.size();
+    public LatencyHistogram getCheckoutTimeHistogram() {
+        return checkoutTimeHistogram;
     }
 
-    public synchronized int getActiveConnectionCount() {
-        return activeConnections.size();
+    @Override
+    public String toString() {
+        return "PoolState{active=" + getActiveConnectionCount() + ", idle=" + getIdleConnectionCount()
+                + ", pending=" + getPendingConnectionCount() + ", waiting=" + getThreadsAwaitingConnection()
+                + ", requests=" + getRequestCount() + ", hadToWait=" + getHadToWaitCount()
+                + ", bad=" + getBadConnectionCount() + ", overdue=" + getClaimedOverdueConnectionCount()
+                + ", leaked=" + getLeakedConnectionCount() + ", max=" + getMaximumConnectionCount()
+                + ", acquireP99=" + getAcquireTimeP99() + "us, checkoutP99=" + getCheckoutTimeP99() + "us}";
     }
 
 }
@@ -1,24 +1,27 @@
 package com.huanyu.mybatis.datasource.pooled;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ClassName: PooledConnection
  * Package: com.huanyu.mybatis.datasource.pooled
  * Description: 池化代理的连接
- * 真正的Connection的封装
+ * 真正的Connection的封装，交给使用方的是 DelegatingConnection
  * @Author: 寰宇
  * @Create: 2024/6/14 12:30
  * @Version: 1.0
  */
-public class PooledConnection implements InvocationHandler {
+public class PooledConnection {
 
-    private static final String CLOSE = "close";
-    private static final Class<?>[] IFACES = new Class<?>[]{Connection.class};
+    // 连接在连接池中的状态：空闲、借出、已移除、被后台任务占用
+    public static final int STATE_NOT_IN_USE = 0;
+    public static final int STATE_IN_USE = 1;
+    public static final int STATE_REMOVED = -1;
+    public static final int STATE_RESERVED = -2;
 
     // 该连接的哈希值
     private int hashCode = 0;
@@ -28,19 +31,33 @@ public class PooledConnection implements InvocationHandler {
 
     // 真实的连接
     private Connection realConnection;
-    // 代理的连接
+    // 交给使用方的连接
     private Connection proxyConnection;
 
     // 从连接池中取出的时间
-    private long checkoutTimestamp;
+    private volatile long checkoutTimestamp;
     // 创建时间
     private long createdTimestamp;
     // 上次使用时间
-    private long lastUsedTimestamp;
+    private volatile long lastUsedTimestamp;
+    // 最近一次探活成功的时间戳
+    private volatile long lastValidatedTimestamp;
     // 标志所在连接池的连接类型编码
     private int connectionTypeCode;
     // 连接是否可用
-    private boolean valid;
+    private volatile boolean valid;
+    // 在连接池中的状态，借出和归还通过 CAS 竞争
+    private final AtomicInteger state = new AtomicInteger(STATE_NOT_IN_USE);
+    // 预编译语句缓存，归属于物理连接，连接归还再取出时沿用同一个缓存
+    private PreparedStatementCache statementCache;
+    // 物理连接的状态，跟随物理连接转交
+    private ConnectionState connectionState = new ConnectionState();
+    // 这次借出期间创建且尚未关闭的语句数
+    private final AtomicInteger openStatements = new AtomicInteger();
+    // 被采样时记录的借用方调用栈
+    private volatile Throwable leakTrace;
+    // 本次借出是否已经作为疑似泄漏告警过
+    private volatile boolean leakReported;
 
     /**
      * 使用传入的 Connection 和 PooledDataSource 的 SimplePooledConnection 构造函数。
@@ -54,39 +71,60 @@ public class PooledConnection implements InvocationHandler {
         this.dataSource = dataSource;
         this.createdTimestamp = System.currentTimeMillis();
         this.lastUsedTimestamp = System.currentTimeMillis();
+        this.lastValidatedTimestamp = this.lastUsedTimestamp;
         this.valid = true;
-        // 参数依次是：被代理对象的类加载器  被代理对象的接口 包含代理对象的类（实现InvocationHandler接口的类）
-        this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
+        // 直接委托的包装类，不再使用 java.lang.reflect.Proxy
+        this.proxyConnection = new DelegatingConnection(this);
     }
 
     /**
-     * 代理方法
-     * @param proxy 代理对象，未用
-     * @param method 当前执行的方法
-     * @param args 当前执行的方法的参数
-     * @return 方法的返回值
-     * @throws Throwable
+     * 使用方关闭连接：将连接加入连接池中
      */
-    @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        // 获取方法名
-        String methodName = method.getName();
-        // 如果是调用 CLOSE 关闭连接方法，则将连接加入连接池中，并返回null
-        if (CLOSE.hashCode() == methodName.hashCode() && CLOSE.equals(methodName)) {
-            dataSource.pushConnection(this);
-            return null;
-        } else {
-            // 校验连接是否可用
-            if (!Object.class.equals(method.getDeclaringClass())) {
-                // 除了toString()方法，其他方法调用之前要检查connection是否还是合法的,不合法要抛出SQLException
-                checkConnection();
-            }
-            // 其他方法交给connection去调用
-            return method.invoke(realConnection, args);
+    void close() throws SQLException {
+        dataSource.pushConnection(this);
+    }
+
+    /**
+     * 创建预编译语句，开启了语句缓存时优先从缓存中取
+     */
+    PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        return prepareStatement(new PreparedStatementCache.StatementKey(sql, resultSetType, resultSetConcurrency),
+                () -> realConnection.prepareStatement(sql, resultSetType, resultSetConcurrency));
+    }
+
+    /**
+     * 创建执行后返回生成主键的预编译语句，指定了主键列名时只返回这些列，否则按 autoGeneratedKeys 返回
+     */
+    PreparedStatement prepareStatement(String sql, int autoGeneratedKeys, String[] keyColumnNames) throws SQLException {
+        return prepareStatement(new PreparedStatementCache.StatementKey(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, autoGeneratedKeys, keyColumnNames),
+                () -> keyColumnNames != null ? realConnection.prepareStatement(sql, keyColumnNames) : realConnection.prepareStatement(sql, autoGeneratedKeys));
+    }
+
+    private PreparedStatement prepareStatement(PreparedStatementCache.StatementKey key, StatementCreator creator) throws SQLException {
+        if (dataSource.getPoolPreparedStatementCacheSize() <= 0) {
+            return new DelegatingPreparedStatement(this, null, creator.create());
         }
+        PreparedStatementCache cache = getStatementCache();
+        PreparedStatement statement = cache.take(key);
+        // 命中：直接复用已经预编译的语句
+        if (statement != null && !statement.isClosed()) {
+            dataSource.getPoolState().statementCacheHitCount.incrementAndGet();
+        }
+        // 未命中：在真实连接上预编译
+        else {
+            dataSource.getPoolState().statementCacheMissCount.incrementAndGet();
+            statement = creator.create();
+        }
+        return new DelegatingPreparedStatement(this, key, statement);
+    }
+
+    // 在真实连接上预编译语句
+    private interface StatementCreator {
+        PreparedStatement create() throws SQLException;
     }
 
-    private void checkConnection() throws SQLException {
+    // 除了toString()方法，其他方法调用之前要检查connection是否还是合法的,不合法要抛出SQLException
+    void checkConnection() throws SQLException {
         if (!valid) {
             throw new SQLException("Error accessing PooledConnection. Connection is invalid.");
         }
@@ -96,14 +134,37 @@ public class PooledConnection implements InvocationHandler {
         valid = false;
     }
 
+    /**
+     * 代理是否仍然有效（不做 ping），用于判断借出的语句能否放回缓存
+     */
+    public boolean isUsable() {
+        return valid;
+    }
+
     public boolean isValid() {
         return valid && realConnection != null && dataSource.pingConnection(this);
     }
 
+    public int getState() {
+        return state.get();
+    }
+
+    public void setState(int newState) {
+        state.set(newState);
+    }
+
+    public boolean compareAndSetState(int expect, int update) {
+        return state.compareAndSet(expect, update);
+    }
+
     public Connection getRealConnection() {
         return realConnection;
     }
 
+    public PooledDataSource getDataSource() {
+        return dataSource;
+    }
+
     public Connection getProxyConnection() {
         return proxyConnection;
     }
@@ -120,6 +181,66 @@ public class PooledConnection implements InvocationHandler {
         this.connectionTypeCode = connectionTypeCode;
     }
 
+    public synchronized PreparedStatementCache getStatementCache() {
+        if (statementCache == null) {
+            statementCache = new PreparedStatementCache(dataSource.getPoolPreparedStatementCacheSize());
+        }
+        return statementCache;
+    }
+
+    public synchronized void setStatementCache(PreparedStatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * 关闭缓存的全部语句，在真正关闭物理连接之前调用
+     */
+    public synchronized void closeStatementCache() {
+        if (statementCache != null) {
+            statementCache.closeAll();
+            statementCache = null;
+        }
+    }
+
+    void statementOpened() {
+        openStatements.incrementAndGet();
+    }
+
+    void statementClosed() {
+        openStatements.decrementAndGet();
+    }
+
+    /**
+     * 这次借出期间创建且尚未关闭的语句数，大于 0 时连接上可能还有正在读取的结果集（游标）
+     */
+    public int getOpenStatementCount() {
+        return openStatements.get();
+    }
+
+    public ConnectionState getConnectionState() {
+        return connectionState;
+    }
+
+    public void setConnectionState(ConnectionState connectionState) {
+        this.connectionState = connectionState;
+    }
+
+    public Throwable getLeakTrace() {
+        return leakTrace;
+    }
+
+    public void setLeakTrace(Throwable leakTrace) {
+        this.leakTrace = leakTrace;
+    }
+
+    public boolean isLeakReported() {
+        return leakReported;
+    }
+
+    public void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
     public long getCreatedTimestamp() {
         return createdTimestamp;
     }
@@ -140,6 +261,18 @@ public class PooledConnection implements InvocationHandler {
         return System.currentTimeMillis() - lastUsedTimestamp;
     }
 
+    public long getLastValidatedTimestamp() {
+        return lastValidatedTimestamp;
+    }
+
+    public void setLastValidatedTimestamp(long lastValidatedTimestamp) {
+        this.lastValidatedTimestamp = lastValidatedTimestamp;
+    }
+
+    public long getTimeElapsedSinceLastValidation() {
+        return System.currentTimeMillis() - Math.max(lastValidatedTimestamp, lastUsedTimestamp);
+    }
+
     public long getAge() {
         return System.currentTimeMillis() - createdTimestamp;
     }
@@ -1,13 +1,34 @@
 package com.huanyu.mybatis.datasource.pooled;
 
+import com.huanyu.mybatis.datasource.Deadline;
+import com.huanyu.mybatis.datasource.WorkloadContext;
 import com.huanyu.mybatis.datasource.unpooled.UnpooledDataSource;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 import java.io.PrintWriter;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Proxy;
+import java.lang.management.ManagementFactory;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -23,26 +44,87 @@ public class PooledDataSource implements DataSource {
 
     private org.slf4j.Logger logger = LoggerFactory.getLogger(PooledDataSource.class);
 
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
     // 池状态
     private final PoolState state = new PoolState(this);
+    // 无锁的连接容器
+    private final ConcurrentConnectionBag connectionBag = new ConcurrentConnectionBag();
+    // 当前持有的物理连接数（活跃 + 空闲 + 正在建立），通过 CAS 占用名额
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    // 正在后台建立的连接数
+    private final AtomicInteger pendingConnections = new AtomicInteger();
+    // 建立物理连接的线程池
+    private volatile ThreadPoolExecutor connectionCreator;
+    // 后台维护线程
+    private volatile ScheduledExecutorService housekeeper;
+    // 是否已经初始化（启动后台维护、预热）
+    private final AtomicBoolean initialized = new AtomicBoolean();
 
     // 持有一个UnpooledDataSource对象
     private final UnpooledDataSource dataSource;
+    // 按负载类别隔离的分区，每个分区是一个独立的连接池，未配置分区的类别使用本连接池
+    private final Map<String, PooledDataSource> partitions = new ConcurrentHashMap<>();
+    // 分区所属的主连接池，主连接池自身为 null
+    private PooledDataSource parent;
 
-    // 活跃连接数
-    protected int poolMaximumActiveConnections = 10;
-    // 空闲连接数
-    protected int poolMaximumIdleConnections = 5;
+    // 活跃连接数，开启自适应时由 AdaptivePoolSizer 调整
+    protected volatile int poolMaximumActiveConnections = 10;
+    // 空闲连接数，开启自适应时跟随 poolMaximumActiveConnections
+    protected volatile int poolMaximumIdleConnections = 5;
     // 在被强制返回之前,池中连接被检查的时间
     protected int poolMaximumCheckoutTime = 20000;
     // 这是给连接池一个打印日志状态机会的低层次设置,还有重新尝试获得连接, 这些情况下往往需要很长时间 为了避免连接池没有配置时静默失败)。
     protected int poolTimeToWait = 20000;
+    // 一次获取连接最多排队等待的总时长（毫秒），超过后抛出 SQLException，0 表示一直等待（每 poolTimeToWait 重试一轮）
+    protected int poolMaximumQueueWait = 0;
     // 发送到数据的侦测查询,用来验证连接是否正常工作,并且准备 接受请求。默认是“NO PING QUERY SET” ,这会引起许多数据库驱动连接由一 个错误信息而导致失败
     protected String poolPingQuery = "NO PING QUERY SET";
     // 开启或禁用侦测查询
     protected boolean poolPingEnabled = false;
     // 用来配置 poolPingQuery 多次时间被用一次
     protected int poolPingConnectionsNotUsedFor = 0;
+    // 连接校验方式，开启 poolPingEnabled 时为 PING_QUERY
+    protected ValidationMode poolValidationMode = ValidationMode.IS_VALID;
+    // 校验的超时时间（毫秒）
+    protected int poolValidationTimeout = 5000;
+    // 连接在该时长（毫秒）内用过或校验过时，借出时不再校验
+    protected int poolValidationSkipWindow = 500;
+    // 每个物理连接缓存的预编译语句数，0 表示不缓存
+    protected int poolPreparedStatementCacheSize = 0;
+    // 并发建立物理连接的线程数
+    protected int poolConnectionCreatorThreads = 2;
+    // 最少保持的空闲连接数，不足时由后台维护线程补足
+    protected int poolMinimumIdle = 0;
+    // 连接的最长存活时间（毫秒），超过后空闲时由后台关闭、借出中的在归还时关闭，0 表示不限制
+    protected int poolMaxLifetime = 1800000;
+    // 空闲连接多于 poolMinimumIdle 时，空闲超过该时长（毫秒）的连接会被关闭，0 表示不关闭
+    protected int poolIdleTimeout = 600000;
+    // 空闲超过该时长（毫秒）的连接由后台探活一次，0 表示不探活
+    protected int poolKeepaliveTime = 120000;
+    // 后台维护任务的执行间隔（毫秒），在 init 时生效
+    protected int poolHousekeepingPeriod = 30000;
+    // init 时是否预先建立 poolMinimumIdle 个连接
+    protected boolean poolPrefill = false;
+
+    // 连接池名称，用于线程名和 JMX 的 ObjectName
+    protected String poolName = "PooledDataSource-" + POOL_NUMBER.incrementAndGet();
+    // 是否把 PooledDataSourceMXBean 注册到平台 MBeanServer
+    protected boolean poolRegisterMbeans = false;
+    // 连接借出超过该时长（毫秒）视为疑似泄漏并打印告警，0 表示不检测
+    protected int poolLeakDetectionThreshold = 0;
+    // 借出时记录调用栈的采样比例（0 到 1），只有被采样的借出在告警中带有借用方的调用栈
+    protected double poolLeakDetectionSampleRate = 0.1;
+    // 是否根据并发和等待时间自动调整连接池大小
+    protected boolean poolAdaptiveSizing = false;
+    // 自适应调整的下界
+    protected int poolAdaptiveMinConnections = 2;
+    // 自适应调整的上界
+    protected int poolAdaptiveMaxConnections = 50;
+    // 平均等待连接的时长（毫秒）超过该值时扩容
+    protected int poolAdaptiveTargetWait = 10;
+    // 自适应调整的执行间隔（毫秒），在 init 时生效
+    protected int poolAdaptiveSizingPeriod = 1000;
 
     // 存储池子中的连接的编码，编码用("" + url + username + password).hashCode()算出来
     // 因此，整个池子中的所有连接的编码必须是一致的，里面的连接是等价的
@@ -52,170 +134,325 @@ public class PooledDataSource implements DataSource {
         this.dataSource = new UnpooledDataSource();
     }
 
+    /**
+     * 初始化连接池：启动后台维护线程，开启 poolPrefill 时预先建立 poolMinimumIdle 个连接。
+     * 由 PooledDataSourceFactory 在属性设置完成后调用，直接使用时在第一次获取连接时调用，重复调用无效
+     */
+    public void init() {
+        if (!initialized.compareAndSet(false, true)) {
+            return;
+        }
+        for (PooledDataSource partition : partitions.values()) {
+            partition.init();
+        }
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, poolName + "-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        long period = Math.max(1, poolHousekeepingPeriod);
+        executor.scheduleWithFixedDelay(new PoolHousekeeper(this), period, period, TimeUnit.MILLISECONDS);
+        if (poolAdaptiveSizing) {
+            // 初始大小限制在上下界之间
+            resize(Math.max(poolAdaptiveMinConnections, Math.min(poolAdaptiveMaxConnections, poolMaximumActiveConnections)));
+            long sizingPeriod = Math.max(1, poolAdaptiveSizingPeriod);
+            executor.scheduleWithFixedDelay(new AdaptivePoolSizer(this), sizingPeriod, sizingPeriod, TimeUnit.MILLISECONDS);
+        }
+        housekeeper = executor;
+        if (poolRegisterMbeans) {
+            registerMBean();
+        }
+        if (poolPrefill) {
+            prefill();
+        }
+    }
+
+    private ObjectName getObjectName() throws MalformedObjectNameException {
+        return new ObjectName("com.huanyu.mybatis.datasource:type=PooledDataSource,name=" + ObjectName.quote(poolName));
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(state, name);
+            } else {
+                logger.warn("PooledDataSource MBean " + name + " is already registered.");
+            }
+        } catch (Exception e) {
+            // 监控注册失败不影响连接池使用
+            logger.warn("Failed to register PooledDataSource MBean. Cause: " + e);
+        }
+    }
+
+    private void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to unregister PooledDataSource MBean. Cause: " + e);
+        }
+    }
+
+    // 预热：并发建立 poolMinimumIdle 个连接，最多等待 poolTimeToWait
+    private void prefill() {
+        List<CompletableFuture<Void>> creations = fillPool();
+        try {
+            CompletableFuture.allOf(creations.toArray(new CompletableFuture<?>[0])).get(poolTimeToWait, TimeUnit.MILLISECONDS);
+            logger.info("PooledDataSource prefilled " + connectionBag.getIdleCount() + " connections.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // 预热失败不影响使用，连接仍会按需建立
+            logger.warn("PooledDataSource prefill did not complete. Cause: " + e);
+        }
+    }
+
+    /**
+     * 空闲连接（包括正在建立的）不足 poolMinimumIdle 时，交给创建线程补足
+     * @return 提交的建立任务
+     */
+    List<CompletableFuture<Void>> fillPool() {
+        List<CompletableFuture<Void>> creations = new ArrayList<>();
+        while (connectionBag.getIdleCount() + pendingConnections.get() < poolMinimumIdle && reserveConnectionSlot()) {
+            creations.add(submitConnectionCreation(null));
+        }
+        return creations;
+    }
+
+    /**
+     * 调整连接池大小，由 AdaptivePoolSizer 调用。
+     * 扩容时为正在等待的线程补建连接；缩容时关闭多出来的空闲连接，借出中的连接在归还时关闭
+     * @param size 新的最大连接数，空闲连接上限与之相同
+     */
+    void resize(int size) {
+        int previous = poolMaximumActiveConnections;
+        poolMaximumActiveConnections = size;
+        poolMaximumIdleConnections = size;
+        if (size > previous) {
+            int waiting = connectionBag.getWaitingThreadCount();
+            for (int i = 0; i < waiting && reserveConnectionSlot(); i++) {
+                submitConnectionCreation(null);
+            }
+        } else {
+            for (PooledConnection conn : connectionBag.getIdleConnections()) {
+                if (totalConnections.get() <= size) {
+                    break;
+                }
+                if (connectionBag.reserve(conn)) {
+                    logger.debug("Closing connection " + conn.getRealHashCode() + " after pool shrank to " + size + ".");
+                    closeConnection(conn);
+                }
+            }
+        }
+    }
+
+    /**
+     * 关闭连接池：停止后台线程并关闭全部连接
+     */
+    public void shutdown() {
+        for (PooledDataSource partition : partitions.values()) {
+            partition.shutdown();
+        }
+        ScheduledExecutorService executor = housekeeper;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        ThreadPoolExecutor creator = connectionCreator;
+        if (creator != null) {
+            creator.shutdownNow();
+        }
+        if (poolRegisterMbeans) {
+            unregisterMBean();
+        }
+        forceCloseAll();
+    }
+
     /**
      * 收回一个连接
+     * 不再加锁：连接从活跃集合中移除后，重新包装为新的 PooledConnection 放回无锁容器，
+     * 有线程在等待时直接移交给等待者
      * @param connection 连接
      * @throws SQLException
      */
     protected void pushConnection(PooledConnection connection) throws SQLException {
-        synchronized (state) {
-            // 将该连接从活跃连接中删除
-            state.activeConnections.remove(connection);
-            // 判断连接是否有效
-            if (connection.isValid()) { // 当前连接是可用的
-                // 判断连接池未满 + 该连接确实属于该连接池
-                if (state.idleConnections.size() < poolMaximumIdleConnections && connection.getConnectionTypeCode() == expectedConnectionTypeCode) {
-                    state.accumulatedCheckoutTime += connection.getCheckoutTime();
-                    // 它首先检查数据库连接是否处于自动提交模式，如果不是，则调用rollback()方法执行回滚操作。
-                    // 在MyBatis中，如果没有开启自动提交模式，则需要手动提交或回滚事务。因此，这段代码可能是在确保操作完成后，如果没有开启自动提交模式，则执行回滚操作。
-                    // 总的来说，这段代码用于保证数据库的一致性，确保操作完成后，如果未开启自动提交模式，则执行回滚操作。
-                    if (!connection.getRealConnection().getAutoCommit()) { // 如果连接没有设置自动提交
-                        // 将未完成的操作回滚
-                        connection.getRealConnection().rollback();
-                    }
-                    // 实例化一个新的DB连接，加入到idle列表
-                    PooledConnection newConnection = new PooledConnection(connection.getRealConnection(), this);
-                    // 将连接放入空闲连接池
-                    state.idleConnections.add(newConnection);
-                    newConnection.setCreatedTimestamp(connection.getCreatedTimestamp());
-                    newConnection.setLastUsedTimestamp(connection.getLastUsedTimestamp());
-                    // 设置连接为未校验，以便取出时重新校验
-                    connection.invalidate();
-                    logger.info("Returned connection " + newConnection.getRealHashCode() + " to pool.");
-
-                    // 通知其他线程可以来抢DB连接了
-                    state.notifyAll();
-                }
-                // 连接池已满或者该连接不属于该连接池
-                else {
-                    state.accumulatedCheckoutTime += connection.getCheckoutTime();
-                    if (!connection.getRealConnection().getAutoCommit()) {
-                        connection.getRealConnection().rollback();
-                    }
-                    // 将connection关闭
-                    connection.getRealConnection().close();
-                    logger.info("Closed connection " + connection.getRealHashCode() + ".");
-                    connection.invalidate();
-                }
-            } else { // 当前连接不可用
-                logger.info("A bad connection (" + connection.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
-                state.badConnectionCount++;
+        // 将该连接从活跃连接中删除，已经被声明超期或者被强制关闭的连接不在活跃连接中
+        boolean wasActive = connectionBag.removeActive(connection);
+        // 判断连接是否有效，归还时不访问数据库，校验留到下次借出或后台探活
+        if (wasActive) {
+            state.checkoutTimeHistogram.record(connection.getCheckoutTime() * 1000);
+            if (connection.isLeakReported()) {
+                logger.info("Previously reported leaked connection " + connection.getRealHashCode() + " was returned to the pool after " + connection.getCheckoutTime() + " milliseconds.");
+            }
+        }
+        if (wasActive && connection.isUsable()) { // 当前连接是可用的
+            state.accumulatedCheckoutTime.addAndGet(connection.getCheckoutTime());
+            // 非自动提交且执行过语句时，将未完成的操作回滚，保证下一个使用者拿到干净的连接
+            connection.getConnectionState().rollbackIfDirty(connection.getRealConnection());
+            // 判断空闲连接未满 + 连接总数没有超过上限（连接池可能已经缩小）+ 该连接确实属于该连接池 + 没有超过最长存活时间
+            if (connectionBag.getIdleCount() < poolMaximumIdleConnections && totalConnections.get() <= poolMaximumActiveConnections
+                    && connection.getConnectionTypeCode() == expectedConnectionTypeCode
+                    && (poolMaxLifetime <= 0 || connection.getAge() < poolMaxLifetime)) {
+                // 实例化一个新的DB连接，旧的代理连接失效
+                PooledConnection newConnection = new PooledConnection(connection.getRealConnection(), this);
+                newConnection.setCreatedTimestamp(connection.getCreatedTimestamp());
+                newConnection.setLastUsedTimestamp(System.currentTimeMillis());
+                newConnection.setLastValidatedTimestamp(connection.getLastValidatedTimestamp());
+                // 语句缓存和连接状态跟随物理连接
+                newConnection.setStatementCache(connection.getStatementCache());
+                newConnection.setConnectionState(connection.getConnectionState());
+                connection.invalidate();
+                connection.setState(PooledConnection.STATE_REMOVED);
+                // 放回空闲连接，有线程在等待时直接移交
+                connectionBag.requite(newConnection);
+                logger.debug("Returned connection " + newConnection.getRealHashCode() + " to pool.");
+            }
+            // 空闲连接已满、该连接不属于该连接池或者已经超过最长存活时间
+            else {
+                connection.invalidate();
+                closePhysicalConnection(connection);
+                logger.info("Closed connection " + connection.getRealHashCode() + ".");
+                replenishForWaiters();
+            }
+        } else { // 当前连接不可用
+            logger.info("A bad connection (" + connection.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+            state.badConnectionCount.incrementAndGet();
+            // 仍然占着名额的坏连接，关闭并释放名额
+            if (wasActive) {
+                connection.invalidate();
+                closePhysicalConnection(connection);
+                replenishForWaiters();
             }
         }
     }
 
+    /**
+     * 归还的连接被关闭后名额空了出来，有线程在等待时立即补建一个连接移交给它，
+     * 否则等待者要等到 poolTimeToWait 超时才会重新占用名额
+     */
+    private void replenishForWaiters() {
+        if (connectionBag.getWaitingThreadCount() > 0 && reserveConnectionSlot()) {
+            submitConnectionCreation(null);
+        }
+    }
+
     /**
      * 从池化数据源中给出一个连接
+     * 依次尝试：借用空闲连接 -> 有空余名额时交给创建线程在后台新建连接 -> 声明超期不还的连接 -> 按截止时间挂起等待。
+     * 等待期间归还的连接和后台新建的连接都会移交给最早的等待者，建立连接期间其他线程照常借用空闲连接
      * @param username 用户名
      * @param password 密码
      * @return 池化的数据库连接
      * @throws SQLException
      */
     private PooledConnection popConnection(String username, String password) throws SQLException {
+        if (!initialized.get()) {
+            init();
+        }
         boolean countedWait = false;
         PooledConnection conn = null;
-        long t = System.currentTimeMillis();
         // 用于统计取出连接花费的时长的时间起点
+        long t = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         int localBadConnectionCount = 0;
+        // 调用方的截止时间，排队等待不超过剩余的时间，已经到期时直接失败
+        Deadline deadline = Deadline.get();
 
         while (conn == null) {
-            // 给state加同步锁
-            synchronized (state) {
-                // 如果有空闲连接：返回第一个
-                if (!state.idleConnections.isEmpty()) {
-                    // 左移操作，取出第一个连接
-                    conn = state.idleConnections.remove(0);
-                    logger.info("Checked out connection " + conn.getRealHashCode() + " from pool.");
+            // 1. 借用空闲连接
+            conn = connectionBag.tryBorrow();
+            if (conn != null) {
+                logger.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
+            }
+            if (conn == null) {
+                ConcurrentConnectionBag.Waiter waiter = connectionBag.newWaiter();
+                // 2. 池中还有空余名额，交给创建线程在后台新建连接，建立失败时 waiter 被异常完成
+                boolean creating = reserveConnectionSlot();
+                if (creating) {
+                    submitConnectionCreation(waiter);
+                } else {
+                    // 3. 活跃连接数已满，尝试声明借出最久的连接超期
+                    conn = claimOverdueConnection();
                 }
-                // 如果无空闲连接：创建新的连接
-                else {
-                    // 池中还有空余位置
-                    if (state.activeConnections.size() < poolMaximumActiveConnections) {
-                        // 可以创建新连接，也是通过DriverManager.getConnection拿到的连接
-                        conn = new PooledConnection(dataSource.getConnection(), this);
-                        logger.info("Created connection " + conn.getRealHashCode() + ".");
+                // 4. 等待连接归还或者新连接建立
+                if (conn == null) {
+                    if (!creating && !countedWait) {
+                        // 记录发生等待的次数。某次请求等待多轮也只能算作发生了一次等待
+                        state.hadToWaitCount.incrementAndGet();
+                        countedWait = true;
                     }
-                    // 活跃连接数已满
-                    else {
-                        // 取得活跃连接列表的第一个，也就是最老的一个连接
-                        PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-                        // 查看借出去最久的连接已经被借了多久
-                        long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-                        // 如果checkout时间过长，则这个连接标记为过期
-                        if (longestCheckoutTime > poolMaximumCheckoutTime) { // 借出时间超过设定的借出时长
-                            // 声明该连接超期不还
-                            state.claimedOverdueConnectionCount++;
-                            state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-                            state.accumulatedCheckoutTime += longestCheckoutTime;
-                            // 因超期不还而从池中除名
-                            state.activeConnections.remove(oldestActiveConnection);
-                            if (!oldestActiveConnection.getRealConnection().getAutoCommit()) { // 如果超期不还的连接没有设置自动提交事务
-                                // 尝试替它提交回滚事务
-                                try {
-                                    oldestActiveConnection.getRealConnection().rollback();
-                                } catch (SQLException e) {
-                                    // 即使替它回滚事务的操作失败，也不抛出异常，仅仅做一下记录
-                                    logger.info("Bad connection. Could not roll back");
-                                }
-                            }
-                            // 新建一个连接替代超期不还连接的位置
-                            conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
-                            oldestActiveConnection.invalidate();
-                            logger.info("Claimed overdue connection " + conn.getRealHashCode() + ".");
-                        }
-                        // 如果checkout超时时间不够长，则等待
-                        else {
-                            // 继续等待，等待有连接归还到连接池
-                            try {
-                                if (!countedWait) {
-                                    // 记录发生等待的次数。某次请求等待多轮也只能算作发生了一次等待
-                                    state.hadToWaitCount++;
-                                    countedWait = true;
-                                }
-                                logger.info("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
-                                long wt = System.currentTimeMillis();
-                                // 沉睡一段时间再试，防止一直占有计算资源
-                                state.wait(poolTimeToWait);
-                                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
-                            } catch (InterruptedException e) {
-                                break;
-                            }
+                    long timeToWait = poolTimeToWait;
+                    if (poolMaximumQueueWait > 0) {
+                        timeToWait = Math.max(0, Math.min(timeToWait, poolMaximumQueueWait - (System.currentTimeMillis() - t)));
+                    }
+                    if (deadline != null) {
+                        timeToWait = Math.max(0, Math.min(timeToWait, deadline.remaining(TimeUnit.MILLISECONDS)));
+                    }
+                    logger.debug("Waiting as long as " + timeToWait + " milliseconds for connection.");
+                    long wt = System.currentTimeMillis();
+                    try {
+                        // 按截止时间挂起，期间归还或新建的连接会直接移交过来
+                        conn = connectionBag.borrow(waiter, timeToWait, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    } finally {
+                        if (!creating) {
+                            state.accumulatedWaitTime.addAndGet(System.currentTimeMillis() - wt);
                         }
-
                     }
-                }
-                // 获得到连接
-                if (conn != null) {
-                    // 判断连接是否可用
-                    if (conn.isValid()) { // 如果连接可用
-                        if (!conn.getRealConnection().getAutoCommit()) { // 该连接没有设置自动提交
-                            // 回滚未提交的操作
-                            conn.getRealConnection().rollback();
+                    // 这一轮没有等到，超过排队时长时失败，否则重新尝试（包括声明超期连接）
+                    if (conn == null) {
+                        if (deadline != null && deadline.isExpired()) {
+                            state.deadlineExceededCount.incrementAndGet();
+                            throw new SQLTimeoutException("PooledDataSource " + poolName + ": deadline exceeded after " + (System.currentTimeMillis() - t)
+                                    + " milliseconds waiting for a connection (active=" + connectionBag.getActiveCount() + ", max=" + poolMaximumActiveConnections + ").");
                         }
-                        // 每个借出去的连接都到打上数据源的连接类型编码，以便在归还时确保正确
-                        conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
-                        // 数据记录操作
-                        conn.setCheckoutTimestamp(System.currentTimeMillis());
-                        conn.setLastUsedTimestamp(System.currentTimeMillis());
-                        // 加入活跃连接池中
-                        state.activeConnections.add(conn);
-                        state.requestCount++;
-                        state.accumulatedRequestTime += System.currentTimeMillis() - t;
-                    } else { // 连接不可用
-                        logger.info("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
-                        // 如果没拿到，统计信息：失败连接 +1
-                        state.badConnectionCount++;
-                        localBadConnectionCount++;
-                        // 直接删除连接
-                        conn = null;
-                        // 失败次数较多，抛异常
-                        if (localBadConnectionCount > (poolMaximumIdleConnections + 3)) {
-                            logger.debug("PooledDataSource: Could not get a good connection to the database.");
-                            throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+                        if (poolMaximumQueueWait > 0 && System.currentTimeMillis() - t >= poolMaximumQueueWait) {
+                            throw new SQLException("PooledDataSource " + poolName + ": timed out after " + (System.currentTimeMillis() - t)
+                                    + " milliseconds waiting for a connection (active=" + connectionBag.getActiveCount() + ", max=" + poolMaximumActiveConnections + ").");
                         }
+                        continue;
                     }
                 }
             }
+            // 判断连接是否可用
+            // 归还时已经回滚过，借出时只做校验（窗口内用过的连接跳过校验）
+            if (conn.isValid()) { // 如果连接可用
+                // 每个借出去的连接都到打上数据源的连接类型编码，以便在归还时确保正确
+                conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+                // 数据记录操作
+                conn.setCheckoutTimestamp(System.currentTimeMillis());
+                conn.setLastUsedTimestamp(System.currentTimeMillis());
+                state.requestCount.incrementAndGet();
+                state.accumulatedRequestTime.addAndGet(System.currentTimeMillis() - t);
+                state.acquireTimeHistogram.record((System.nanoTime() - startNanos) / 1000);
+                // 按比例采样记录借用方的调用栈，用于泄漏告警
+                if (poolLeakDetectionThreshold > 0 && poolLeakDetectionSampleRate > 0
+                        && ThreadLocalRandom.current().nextDouble() < poolLeakDetectionSampleRate) {
+                    conn.setLeakTrace(new Exception("Apparent connection leak detected"));
+                }
+            } else { // 连接不可用
+                logger.info("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+                // 如果没拿到，统计信息：失败连接 +1
+                state.badConnectionCount.incrementAndGet();
+                localBadConnectionCount++;
+                // 丢弃该连接并释放名额
+                connectionBag.removeActive(conn);
+                conn.invalidate();
+                closePhysicalConnection(conn);
+                conn = null;
+                // 失败次数较多，抛异常
+                if (localBadConnectionCount > (poolMaximumIdleConnections + 3)) {
+                    logger.debug("PooledDataSource: Could not get a good connection to the database.");
+                    throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+                }
+            }
             // 如果到这里还没拿到连接，则会循环此过程，继续尝试取连接
         }
 
@@ -228,91 +465,266 @@ public class PooledDataSource implements DataSource {
     }
 
     /**
-     * 将活动和空闲的连接全部关闭
+     * 在创建线程中建立一个新的物理连接，调用前需要先占用名额。
+     * 建好的连接放入连接容器，由最早的等待者取走；建立失败时释放名额，并通过 waiter 通知发起的线程
+     * @param waiter 发起创建的线程的等待凭证，后台补足空闲连接时为 null
+     * @return 建立完成（无论成功与否）时完成
      */
-    public void forceCloseAll() {
-        synchronized (state) { // 增加同步锁
-            // 重新计算和更新连接类型编码
-            expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
-            // 关闭活跃连接
-            for (int i = state.activeConnections.size(); i > 0; i--) {
-                try {
-                    PooledConnection conn = state.activeConnections.remove(i - 1);
-                    conn.invalidate();
-
-                    Connection realConn = conn.getRealConnection();
-                    if (!realConn.getAutoCommit()) {
-                        realConn.rollback();
-                    }
-                    realConn.close();
-                } catch (Exception ignore) {
-
+    private CompletableFuture<Void> submitConnectionCreation(ConcurrentConnectionBag.Waiter waiter) {
+        pendingConnections.incrementAndGet();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                // 也是通过DriverManager.getConnection拿到的连接
+                PooledConnection conn = new PooledConnection(dataSource.getConnection(), this);
+                logger.info("Created connection " + conn.getRealHashCode() + ".");
+                connectionBag.add(conn);
+                pendingConnections.decrementAndGet();
+                done.complete(null);
+            } catch (Throwable e) {
+                totalConnections.decrementAndGet();
+                pendingConnections.decrementAndGet();
+                if (waiter != null) {
+                    waiter.fail(e);
+                } else {
+                    logger.warn("Failed to create connection in background. Cause: " + e);
                 }
+                done.completeExceptionally(e);
             }
-            // 关闭空闲连接
-            for (int i = state.idleConnections.size(); i > 0; i--) {
-                try {
-                    PooledConnection conn = state.idleConnections.remove(i - 1);
-                    conn.invalidate();
-
-                    Connection realConn = conn.getRealConnection();
-                    if (!realConn.getAutoCommit()) {
-                        realConn.rollback();
-                    }
-                } catch (Exception ignore) {
+        };
+        try {
+            getConnectionCreator().execute(task);
+        } catch (RejectedExecutionException e) {
+            // 创建线程池已经关闭，退化为在当前线程中建立
+            task.run();
+        }
+        return done;
+    }
 
+    // 懒加载创建连接的线程池，空闲的创建线程会超时退出
+    private ThreadPoolExecutor getConnectionCreator() {
+        ThreadPoolExecutor creator = connectionCreator;
+        if (creator == null) {
+            synchronized (this) {
+                creator = connectionCreator;
+                if (creator == null) {
+                    AtomicInteger threadNumber = new AtomicInteger();
+                    int threads = Math.max(1, poolConnectionCreatorThreads);
+                    creator = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, poolName + "-creator-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    creator.allowCoreThreadTimeOut(true);
+                    connectionCreator = creator;
                 }
             }
-            logger.info("PooledDataSource forcefully closed/removed all connections.");
         }
+        return creator;
     }
 
-    protected boolean pingConnection(PooledConnection conn) {
-        boolean result = true;
+    // 占用一个连接名额
+    private boolean reserveConnectionSlot() {
+        int total;
+        do {
+            total = totalConnections.get();
+            if (total >= poolMaximumActiveConnections) {
+                return false;
+            }
+        } while (!totalConnections.compareAndSet(total, total + 1));
+        return true;
+    }
 
+    /**
+     * 找到借出最久的连接，超过 poolMaximumCheckoutTime 时声明其超期，用同一个物理连接创建一个新连接
+     * @return 新连接，没有超期连接时返回 null
+     */
+    private PooledConnection claimOverdueConnection() {
+        // 取得借出去最久的一个连接
+        PooledConnection oldestActiveConnection = null;
+        for (PooledConnection active : connectionBag.getActiveConnections()) {
+            // 检出时间为 0 的连接刚被借出，还在校验中
+            if (active.getCheckoutTimestamp() == 0) {
+                continue;
+            }
+            if (oldestActiveConnection == null || active.getCheckoutTimestamp() < oldestActiveConnection.getCheckoutTimestamp()) {
+                oldestActiveConnection = active;
+            }
+        }
+        if (oldestActiveConnection == null) {
+            return null;
+        }
+        // 查看借出去最久的连接已经被借了多久
+        long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
+        // 借出时间没有超过设定的借出时长，或者已经被其他线程抢先声明
+        if (longestCheckoutTime <= poolMaximumCheckoutTime || !connectionBag.removeActive(oldestActiveConnection)) {
+            return null;
+        }
+        // 声明该连接超期不还
+        state.claimedOverdueConnectionCount.incrementAndGet();
+        state.accumulatedCheckoutTimeOfOverdueConnections.addAndGet(longestCheckoutTime);
+        state.accumulatedCheckoutTime.addAndGet(longestCheckoutTime);
         try {
-            result = !conn.getRealConnection().isClosed();
+            // 如果超期不还的连接没有设置自动提交事务，尝试替它回滚事务
+            oldestActiveConnection.getConnectionState().rollbackIfDirty(oldestActiveConnection.getRealConnection());
         } catch (SQLException e) {
-            logger.info("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
-            result = false;
+            // 即使替它回滚事务的操作失败，也不抛出异常，仅仅做一下记录
+            logger.info("Bad connection. Could not roll back");
+        }
+        // 新建一个连接替代超期不还连接的位置
+        PooledConnection conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
+        conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
+        conn.setStatementCache(oldestActiveConnection.getStatementCache());
+        conn.setConnectionState(oldestActiveConnection.getConnectionState());
+        oldestActiveConnection.invalidate();
+        oldestActiveConnection.setState(PooledConnection.STATE_REMOVED);
+        connectionBag.addActive(conn);
+        logger.info("Claimed overdue connection " + conn.getRealHashCode() + ".");
+        return conn;
+    }
+
+    /**
+     * 关闭物理连接并释放名额
+     */
+    private void closePhysicalConnection(PooledConnection connection) {
+        connection.setState(PooledConnection.STATE_REMOVED);
+        totalConnections.decrementAndGet();
+        try {
+            Connection realConn = connection.getRealConnection();
+            connection.getConnectionState().rollbackIfDirty(realConn);
+            connection.closeStatementCache();
+            realConn.close();
+        } catch (Exception ignore) {
+            // 关闭失败可以忽略
         }
+    }
 
-        if (result) {
-            if (poolPingEnabled) {
-                if (poolPingConnectionsNotUsedFor >= 0 && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
-                    try {
-                        logger.info("Testing connection " + conn.getRealHashCode() + " ...");
-                        Connection realConn = conn.getRealConnection();
-                        Statement statement = realConn.createStatement();
-                        ResultSet resultSet = statement.executeQuery(poolPingQuery);
-                        resultSet.close();
-                        if (!realConn.getAutoCommit()) {
-                            realConn.rollback();
-                        }
-                        result = true;
-                        logger.info("Connection " + conn.getRealHashCode() + " is GOOD!");
-                    } catch (Exception e) {
-                        logger.info("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
-                        try {
-                            conn.getRealConnection().close();
-                        } catch (SQLException ignore) {
-                        }
-                        result = false;
-                        logger.info("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
-                    }
-                }
+    /**
+     * 检查借出超过 poolLeakDetectionThreshold 的连接，每次借出只告警一次
+     */
+    void detectLeaks() {
+        if (poolLeakDetectionThreshold <= 0) {
+            return;
+        }
+        for (PooledConnection conn : connectionBag.getActiveConnections()) {
+            long checkoutTimestamp = conn.getCheckoutTimestamp();
+            if (checkoutTimestamp == 0 || conn.isLeakReported() || System.currentTimeMillis() - checkoutTimestamp <= poolLeakDetectionThreshold) {
+                continue;
+            }
+            conn.setLeakReported(true);
+            state.leakedConnectionCount.incrementAndGet();
+            Throwable trace = conn.getLeakTrace();
+            if (trace != null) {
+                logger.warn("Connection " + conn.getRealHashCode() + " has been checked out for " + conn.getCheckoutTime() + " milliseconds, apparent connection leak.", trace);
+            } else {
+                logger.warn("Connection " + conn.getRealHashCode() + " has been checked out for " + conn.getCheckoutTime() + " milliseconds, apparent connection leak (borrower stack trace not sampled).");
+            }
+        }
+    }
+
+    /**
+     * 使代理失效并关闭物理连接，供后台维护任务关闭 RESERVED 的空闲连接
+     */
+    void closeConnection(PooledConnection connection) {
+        connection.invalidate();
+        closePhysicalConnection(connection);
+    }
+
+    /**
+     * 将活动和空闲的连接全部关闭
+     */
+    public void forceCloseAll() {
+        // 重新计算和更新连接类型编码
+        expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+        // 关闭活跃连接
+        for (PooledConnection conn : connectionBag.getActiveConnections()) {
+            if (connectionBag.removeActive(conn)) {
+                conn.invalidate();
+                closePhysicalConnection(conn);
             }
         }
+        // 关闭空闲连接
+        PooledConnection conn;
+        while ((conn = connectionBag.pollIdle()) != null) {
+            conn.invalidate();
+            closePhysicalConnection(conn);
+        }
+        logger.info("PooledDataSource forcefully closed/removed all connections.");
+    }
 
+    /**
+     * 借出前校验连接，poolValidationSkipWindow 内用过或校验过的连接直接认为可用
+     */
+    protected boolean pingConnection(PooledConnection conn) {
+        if (poolValidationSkipWindow > 0 && conn.getTimeElapsedSinceLastValidation() < poolValidationSkipWindow) {
+            return true;
+        }
+        // 兼容原有配置：侦测查询只对超过 poolPingConnectionsNotUsedFor 未使用的连接执行
+        if (poolValidationMode == ValidationMode.PING_QUERY && conn.getTimeElapsedSinceLastUse() <= poolPingConnectionsNotUsedFor) {
+            return isOpen(conn);
+        }
+        return validateConnection(conn);
+    }
+
+    /**
+     * 按 poolValidationMode 校验连接，不考虑跳过窗口，供借出校验和后台探活使用
+     * @return 连接是否可用
+     */
+    boolean validateConnection(PooledConnection conn) {
+        boolean result;
+        Connection realConn = conn.getRealConnection();
+        switch (poolValidationMode) {
+            case NONE:
+                result = isOpen(conn);
+                break;
+            case PING_QUERY:
+                try (Statement statement = realConn.createStatement()) {
+                    logger.debug("Testing connection " + conn.getRealHashCode() + " ...");
+                    statement.setQueryTimeout(toSeconds(poolValidationTimeout));
+                    statement.executeQuery(poolPingQuery).close();
+                    if (!conn.getConnectionState().getAutoCommit(realConn)) {
+                        realConn.rollback();
+                    }
+                    result = true;
+                } catch (Exception e) {
+                    logger.info("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
+                    result = false;
+                }
+                break;
+            default:
+                try {
+                    // JDBC4 的校验，驱动通常用协议层的 ping 实现，不需要 Statement
+                    result = realConn.isValid(toSeconds(poolValidationTimeout));
+                } catch (SQLException e) {
+                    result = false;
+                }
+                break;
+        }
+        if (result) {
+            conn.setLastValidatedTimestamp(System.currentTimeMillis());
+        } else {
+            logger.info("Connection " + conn.getRealHashCode() + " is BAD.");
+        }
         return result;
     }
 
+    private boolean isOpen(PooledConnection conn) {
+        try {
+            return !conn.getRealConnection().isClosed();
+        } catch (SQLException e) {
+            logger.info("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // 毫秒转为 JDBC 需要的秒，至少 1 秒
+    private static int toSeconds(int millis) {
+        return Math.max(1, (millis + 999) / 1000);
+    }
+
     public static Connection unwrapConnection(Connection conn) {
-        if (Proxy.isProxyClass(conn.getClass())) {
-            InvocationHandler handler = Proxy.getInvocationHandler(conn);
-            if (handler instanceof PooledConnection) {
-                return ((PooledConnection) handler).getRealConnection();
-            }
+        if (conn instanceof DelegatingConnection) {
+            return ((DelegatingConnection) conn).getPooledConnection().getRealConnection();
         }
         return conn;
     }
@@ -328,14 +740,99 @@ public class PooledDataSource implements DataSource {
         return ("" + url + username + password).hashCode();
     }
 
+    /**
+     * 为负载类别创建一个分区（舱壁）：驱动、地址、账号和各项连接池参数复制自本连接池，之后可以单独调整。
+     * 语句的 workloadClass 为该类别时从分区借出连接，分区的连接耗尽不会影响其他类别
+     * @param workloadClass 负载类别
+     * @return 分区连接池，已存在时返回原有分区
+     */
+    public PooledDataSource addPartition(String workloadClass) {
+        return partitions.computeIfAbsent(workloadClass, name -> {
+            PooledDataSource partition = new PooledDataSource();
+            partition.dataSource.setDriver(dataSource.getDriver());
+            partition.dataSource.setUrl(dataSource.getUrl());
+            partition.dataSource.setUsername(dataSource.getUsername());
+            partition.dataSource.setPassword(dataSource.getPassword());
+            partition.dataSource.setAutoCommit(dataSource.getAutoCommit());
+            partition.dataSource.setDefaultTransactionIsolationLevel(dataSource.getDefaultTransactionIsolationLevel());
+            partition.dataSource.setDriverProperties(dataSource.getDriverProperties());
+            partition.forceCloseAll();
+            copyPoolSettingsTo(partition);
+            partition.poolName = poolName + "." + name;
+            partition.parent = this;
+            if (initialized.get()) {
+                partition.init();
+            }
+            return partition;
+        });
+    }
+
+    // 复制连接池参数
+    private void copyPoolSettingsTo(PooledDataSource target) {
+        target.poolMaximumActiveConnections = poolMaximumActiveConnections;
+        target.poolMaximumIdleConnections = poolMaximumIdleConnections;
+        target.poolMaximumCheckoutTime = poolMaximumCheckoutTime;
+        target.poolTimeToWait = poolTimeToWait;
+        target.poolMaximumQueueWait = poolMaximumQueueWait;
+        target.poolPingQuery = poolPingQuery;
+        target.poolPingEnabled = poolPingEnabled;
+        target.poolPingConnectionsNotUsedFor = poolPingConnectionsNotUsedFor;
+        target.poolValidationMode = poolValidationMode;
+        target.poolValidationTimeout = poolValidationTimeout;
+        target.poolValidationSkipWindow = poolValidationSkipWindow;
+        target.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+        target.poolConnectionCreatorThreads = poolConnectionCreatorThreads;
+        target.poolMinimumIdle = poolMinimumIdle;
+        target.poolMaxLifetime = poolMaxLifetime;
+        target.poolIdleTimeout = poolIdleTimeout;
+        target.poolKeepaliveTime = poolKeepaliveTime;
+        target.poolHousekeepingPeriod = poolHousekeepingPeriod;
+        target.poolPrefill = poolPrefill;
+        target.poolRegisterMbeans = poolRegisterMbeans;
+        target.poolLeakDetectionThreshold = poolLeakDetectionThreshold;
+        target.poolLeakDetectionSampleRate = poolLeakDetectionSampleRate;
+        target.poolAdaptiveSizing = poolAdaptiveSizing;
+        target.poolAdaptiveMinConnections = poolAdaptiveMinConnections;
+        target.poolAdaptiveMaxConnections = poolAdaptiveMaxConnections;
+        target.poolAdaptiveTargetWait = poolAdaptiveTargetWait;
+        target.poolAdaptiveSizingPeriod = poolAdaptiveSizingPeriod;
+    }
+
+    public PooledDataSource getPartition(String workloadClass) {
+        return partitions.get(workloadClass);
+    }
+
+    public Map<String, PooledDataSource> getPartitions() {
+        return Collections.unmodifiableMap(partitions);
+    }
+
+    // 按当前线程的负载类别选择分区，没有对应分区时使用本连接池
+    private PooledDataSource route() {
+        return partitions.isEmpty() ? this : route(WorkloadContext.get());
+    }
+
+    private PooledDataSource route(String workloadClass) {
+        PooledDataSource partition = workloadClass == null ? null : partitions.get(workloadClass);
+        return partition == null ? this : partition;
+    }
+
+    /**
+     * 负载类别的语句是否应当使用本连接池（分区）的连接，没有配置分区的类别属于主连接池
+     * @param workloadClass 负载类别，null 表示默认
+     */
+    public boolean servesWorkloadClass(String workloadClass) {
+        return (parent == null ? this : parent).route(workloadClass) == this;
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
-        return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+        PooledDataSource target = route();
+        return target.popConnection(target.dataSource.getUsername(), target.dataSource.getPassword()).getProxyConnection();
     }
 
     @Override
     public Connection getConnection(String username, String password) throws SQLException {
-        return popConnection(username, password).getProxyConnection();
+        return route().popConnection(username, password).getProxyConnection();
     }
 
     protected void finalize() throws Throwable {
@@ -436,6 +933,14 @@ public class PooledDataSource implements DataSource {
         this.poolTimeToWait = poolTimeToWait;
     }
 
+    public int getPoolMaximumQueueWait() {
+        return poolMaximumQueueWait;
+    }
+
+    public void setPoolMaximumQueueWait(int poolMaximumQueueWait) {
+        this.poolMaximumQueueWait = poolMaximumQueueWait;
+    }
+
     public String getPoolPingQuery() {
         return poolPingQuery;
     }
@@ -450,6 +955,11 @@ public class PooledDataSource implements DataSource {
 
     public void setPoolPingEnabled(boolean poolPingEnabled) {
         this.poolPingEnabled = poolPingEnabled;
+        if (poolPingEnabled) {
+            this.poolValidationMode = ValidationMode.PING_QUERY;
+        } else if (poolValidationMode == ValidationMode.PING_QUERY) {
+            this.poolValidationMode = ValidationMode.IS_VALID;
+        }
     }
 
     public int getPoolPingConnectionsNotUsedFor() {
@@ -460,6 +970,193 @@ public class PooledDataSource implements DataSource {
         this.poolPingConnectionsNotUsedFor = poolPingConnectionsNotUsedFor;
     }
 
+    public ValidationMode getPoolValidationMode() {
+        return poolValidationMode;
+    }
+
+    public void setPoolValidationMode(ValidationMode poolValidationMode) {
+        this.poolValidationMode = poolValidationMode;
+    }
+
+    public int getPoolValidationTimeout() {
+        return poolValidationTimeout;
+    }
+
+    public void setPoolValidationTimeout(int poolValidationTimeout) {
+        this.poolValidationTimeout = poolValidationTimeout;
+    }
+
+    public int getPoolValidationSkipWindow() {
+        return poolValidationSkipWindow;
+    }
+
+    public void setPoolValidationSkipWindow(int poolValidationSkipWindow) {
+        this.poolValidationSkipWindow = poolValidationSkipWindow;
+    }
+
+    public int getPoolPreparedStatementCacheSize() {
+        return poolPreparedStatementCacheSize;
+    }
+
+    public void setPoolPreparedStatementCacheSize(int poolPreparedStatementCacheSize) {
+        this.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+    }
+
+    public int getPoolConnectionCreatorThreads() {
+        return poolConnectionCreatorThreads;
+    }
+
+    public void setPoolConnectionCreatorThreads(int poolConnectionCreatorThreads) {
+        this.poolConnectionCreatorThreads = poolConnectionCreatorThreads;
+        ThreadPoolExecutor creator = connectionCreator;
+        if (creator != null) {
+            int threads = Math.max(1, poolConnectionCreatorThreads);
+            if (threads > creator.getMaximumPoolSize()) {
+                creator.setMaximumPoolSize(threads);
+                creator.setCorePoolSize(threads);
+            } else {
+                creator.setCorePoolSize(threads);
+                creator.setMaximumPoolSize(threads);
+            }
+        }
+    }
+
+    public int getPoolMinimumIdle() {
+        return poolMinimumIdle;
+    }
+
+    public void setPoolMinimumIdle(int poolMinimumIdle) {
+        this.poolMinimumIdle = poolMinimumIdle;
+    }
+
+    public int getPoolMaxLifetime() {
+        return poolMaxLifetime;
+    }
+
+    public void setPoolMaxLifetime(int poolMaxLifetime) {
+        this.poolMaxLifetime = poolMaxLifetime;
+    }
+
+    public int getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    public void setPoolIdleTimeout(int poolIdleTimeout) {
+        this.poolIdleTimeout = poolIdleTimeout;
+    }
+
+    public int getPoolKeepaliveTime() {
+        return poolKeepaliveTime;
+    }
+
+    public void setPoolKeepaliveTime(int poolKeepaliveTime) {
+        this.poolKeepaliveTime = poolKeepaliveTime;
+    }
+
+    public int getPoolHousekeepingPeriod() {
+        return poolHousekeepingPeriod;
+    }
+
+    public void setPoolHousekeepingPeriod(int poolHousekeepingPeriod) {
+        this.poolHousekeepingPeriod = poolHousekeepingPeriod;
+    }
+
+    public boolean isPoolPrefill() {
+        return poolPrefill;
+    }
+
+    public void setPoolPrefill(boolean poolPrefill) {
+        this.poolPrefill = poolPrefill;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    public void setPoolName(String poolName) {
+        this.poolName = poolName;
+    }
+
+    public boolean isPoolRegisterMbeans() {
+        return poolRegisterMbeans;
+    }
+
+    public void setPoolRegisterMbeans(boolean poolRegisterMbeans) {
+        this.poolRegisterMbeans = poolRegisterMbeans;
+    }
+
+    public int getPoolLeakDetectionThreshold() {
+        return poolLeakDetectionThreshold;
+    }
+
+    public void setPoolLeakDetectionThreshold(int poolLeakDetectionThreshold) {
+        this.poolLeakDetectionThreshold = poolLeakDetectionThreshold;
+    }
+
+    public double getPoolLeakDetectionSampleRate() {
+        return poolLeakDetectionSampleRate;
+    }
+
+    public void setPoolLeakDetectionSampleRate(double poolLeakDetectionSampleRate) {
+        this.poolLeakDetectionSampleRate = poolLeakDetectionSampleRate;
+    }
+
+    public boolean isPoolAdaptiveSizing() {
+        return poolAdaptiveSizing;
+    }
+
+    public void setPoolAdaptiveSizing(boolean poolAdaptiveSizing) {
+        this.poolAdaptiveSizing = poolAdaptiveSizing;
+    }
+
+    public int getPoolAdaptiveMinConnections() {
+        return poolAdaptiveMinConnections;
+    }
+
+    public void setPoolAdaptiveMinConnections(int poolAdaptiveMinConnections) {
+        this.poolAdaptiveMinConnections = poolAdaptiveMinConnections;
+    }
+
+    public int getPoolAdaptiveMaxConnections() {
+        return poolAdaptiveMaxConnections;
+    }
+
+    public void setPoolAdaptiveMaxConnections(int poolAdaptiveMaxConnections) {
+        this.poolAdaptiveMaxConnections = poolAdaptiveMaxConnections;
+    }
+
+    public int getPoolAdaptiveTargetWait() {
+        return poolAdaptiveTargetWait;
+    }
+
+    public void setPoolAdaptiveTargetWait(int poolAdaptiveTargetWait) {
+        this.poolAdaptiveTargetWait = poolAdaptiveTargetWait;
+    }
+
+    public int getPoolAdaptiveSizingPeriod() {
+        return poolAdaptiveSizingPeriod;
+    }
+
+    public void setPoolAdaptiveSizingPeriod(int poolAdaptiveSizingPeriod) {
+        this.poolAdaptiveSizingPeriod = poolAdaptiveSizingPeriod;
+    }
+
+    public PoolState getPoolState() {
+        return state;
+    }
+
+    public ConcurrentConnectionBag getConnectionBag() {
+        return connectionBag;
+    }
+
+    public int getTotalConnectionCount() {
+        return totalConnections.get();
+    }
+
+    public int getPendingConnectionCount() {
+        return pendingConnections.get();
+    }
+
     public int getExpectedConnectionTypeCode() {
         return expectedConnectionTypeCode;
     }
@@ -1,21 +1,52 @@
 package com.huanyu.mybatis.datasource.pooled;
 
 import com.huanyu.mybatis.datasource.unpooled.UnpooledDataSourceFactory;
+import com.huanyu.mybatis.reflection.MetaObject;
+import com.huanyu.mybatis.reflection.SystemMetaObject;
 
-import javax.sql.DataSource;
+import java.util.Properties;
 
 /**
  * ClassName: PooledDataSourceFactory
  * Package: com.huanyu.mybatis.datasource.pooled
  * Description: 有连接池的数据源工厂
- *
+ * 形如 partition.{负载类别}.{属性名} 的属性为该负载类别创建分区，并覆盖分区的连接池参数，例如：
+ * <property name="partition.reporting.poolMaximumActiveConnections" value="2"/>
  * @Author: 寰宇
  * @Create: 2024/6/14 12:34
  * @Version: 1.0
  */
 public class PooledDataSourceFactory extends UnpooledDataSourceFactory {
 
+    private static final String PARTITION_PREFIX = "partition.";
+
     public PooledDataSourceFactory() {
         this.dataSource = new PooledDataSource();
     }
+
+    @Override
+    public void setProperties(Properties props) {
+        super.setProperties(props);
+        PooledDataSource pooledDataSource = (PooledDataSource) dataSource;
+        // 分区在主连接池的属性全部设置之后创建，先复制主连接池的参数再覆盖
+        for (String key : props.stringPropertyNames()) {
+            if (!key.startsWith(PARTITION_PREFIX)) {
+                continue;
+            }
+            String rest = key.substring(PARTITION_PREFIX.length());
+            int dot = rest.indexOf('.');
+            if (dot <= 0 || dot == rest.length() - 1) {
+                throw new RuntimeException("Invalid partition property '" + key + "', expected partition.{workloadClass}.{property}");
+            }
+            PooledDataSource partition = pooledDataSource.addPartition(rest.substring(0, dot));
+            String propertyName = rest.substring(dot + 1);
+            MetaObject metaObject = SystemMetaObject.forObject(partition);
+            if (!metaObject.hasSetter(propertyName)) {
+                throw new RuntimeException("Unknown partition property '" + key + "'");
+            }
+            metaObject.setValue(propertyName, convertValue(metaObject, propertyName, props.getProperty(key)));
+        }
+        // 属性全部设置完成后再启动后台维护和预热
+        pooledDataSource.init();
+    }
 }
@@ -0,0 +1,77 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+/**
+ * ClassName: PooledDataSourceMXBean
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 连接池的 JMX 监控接口
+ * poolRegisterMbeans 开启时由 PooledDataSource 注册到平台 MBeanServer，
+ * ObjectName 为 com.huanyu.mybatis.datasource:type=PooledDataSource,name={poolName}。
+ * 借出耗时与持有时长的分位数单位为微秒
+ * @Author: 寰宇
+ * @Create: 2024/7/10 15:45
+ * @Version: 1.0
+ */
+public interface PooledDataSourceMXBean {
+
+    /** 活跃（已借出）的连接数 */
+    int getActiveConnectionCount();
+
+    /** 空闲的连接数 */
+    int getIdleConnectionCount();
+
+    /** 正在后台建立的连接数 */
+    int getPendingConnectionCount();
+
+    /** 当前持有的物理连接总数 */
+    int getTotalConnectionCount();
+
+    /** 正在等待连接的线程数 */
+    int getThreadsAwaitingConnection();
+
+    long getRequestCount();
+
+    long getHadToWaitCount();
+
+    long getBadConnectionCount();
+
+    long getClaimedOverdueConnectionCount();
+
+    /** 持有时间超过 poolLeakDetectionThreshold 的借出次数 */
+    long getLeakedConnectionCount();
+
+    /** 排队等待连接期间调用方的截止时间到期的次数 */
+    long getDeadlineExceededCount();
+
+    /** 当前的最大连接数，开启自适应时随负载变化 */
+    int getMaximumConnectionCount();
+
+    /** 自适应调整连接池大小的次数 */
+    long getAdaptiveResizeCount();
+
+    /** 自适应控制器估算的平均并发需求（利特尔法则 + 指数加权平均） */
+    double getEstimatedDemand();
+
+    long getStatementCacheHitCount();
+
+    long getStatementCacheMissCount();
+
+    double getAcquireTimeMean();
+
+    long getAcquireTimeP50();
+
+    long getAcquireTimeP99();
+
+    long getAcquireTimeMax();
+
+    double getCheckoutTimeMean();
+
+    long getCheckoutTimeP50();
+
+    long getCheckoutTimeP99();
+
+    long getCheckoutTimeMax();
+
+    /** 清空两个直方图，重新开始统计 */
+    void resetHistograms();
+
+}
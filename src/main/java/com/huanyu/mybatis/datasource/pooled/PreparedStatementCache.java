@@ -0,0 +1,150 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: PreparedStatementCache
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 预编译语句缓存
+ * 归属于一个物理连接，按 SQL + resultSetType + resultSetConcurrency + 是否返回生成的主键缓存 PreparedStatement，超出容量时按 LRU 淘汰。
+ * 取出的语句会从缓存中移除，直到使用方 close 时才放回，保证同一个语句不会被两处同时使用
+ * @Author: 寰宇
+ * @Create: 2024/7/4 16:20
+ * @Version: 1.0
+ */
+public class PreparedStatementCache {
+
+    // 每个物理连接最多缓存的语句数
+    private final int maxSize;
+    // accessOrder = true 的 LinkedHashMap，最久未使用的语句排在最前面
+    private final LinkedHashMap<StatementKey, PreparedStatement> statements;
+
+    public PreparedStatementCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<StatementKey, PreparedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 2473051342871093316L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatementKey, PreparedStatement> eldest) {
+                // 超出容量则关闭并淘汰最久未使用的语句
+                if (size() > PreparedStatementCache.this.maxSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 取出一个缓存的语句，取出后该语句不再留在缓存中
+     * @param key 语句的键
+     * @return 缓存的语句，没有则返回 null
+     */
+    public synchronized PreparedStatement take(StatementKey key) {
+        return statements.remove(key);
+    }
+
+    /**
+     * 归还一个语句到缓存中
+     * @param key 语句的键
+     * @param statement 真实的语句
+     */
+    public synchronized void offer(StatementKey key, PreparedStatement statement) {
+        PreparedStatement previous = statements.put(key, statement);
+        // 同一个 SQL 被同时使用过两次时，只保留最后归还的一个
+        if (previous != null && previous != statement) {
+            closeQuietly(previous);
+        }
+    }
+
+    /**
+     * 关闭并清空所有缓存的语句
+     */
+    public synchronized void closeAll() {
+        List<PreparedStatement> toClose = new ArrayList<>(statements.values());
+        statements.clear();
+        for (PreparedStatement statement : toClose) {
+            closeQuietly(statement);
+        }
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignore) {
+            // 关闭失败可以忽略
+        }
+    }
+
+    /**
+     * 缓存的键：SQL + resultSetType + resultSetConcurrency + 生成主键的方式（autoGeneratedKeys 或主键列名）
+     */
+    public static final class StatementKey {
+
+        private final String sql;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+        private final int autoGeneratedKeys;
+        // 按列名返回主键时的列名，否则为 null
+        private final String[] keyColumnNames;
+        private final int hashCode;
+
+        public StatementKey(String sql, int resultSetType, int resultSetConcurrency) {
+            this(sql, resultSetType, resultSetConcurrency, Statement.NO_GENERATED_KEYS, null);
+        }
+
+        public StatementKey(String sql, int resultSetType, int resultSetConcurrency, int autoGeneratedKeys, String[] keyColumnNames) {
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+            this.keyColumnNames = keyColumnNames == null ? null : keyColumnNames.clone();
+            this.hashCode = 31 * (31 * (31 * (31 * sql.hashCode() + resultSetType) + resultSetConcurrency) + autoGeneratedKeys)
+                    + Arrays.hashCode(keyColumnNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof StatementKey)) {
+                return false;
+            }
+            StatementKey other = (StatementKey) obj;
+            return resultSetType == other.resultSetType
+                    && resultSetConcurrency == other.resultSetConcurrency
+                    && autoGeneratedKeys == other.autoGeneratedKeys
+                    && Arrays.equals(keyColumnNames, other.keyColumnNames)
+                    && sql.equals(other.sql);
+        }
+
+        @Override
+        public String toString() {
+            String keys = keyColumnNames != null ? Arrays.toString(keyColumnNames) : String.valueOf(autoGeneratedKeys);
+            return resultSetType + ":" + resultSetConcurrency + ":" + keys + ":" + sql;
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+/**
+ * ClassName: ValidationMode
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 连接校验方式
+ * NONE 只检查连接是否已经关闭，不访问数据库
+ * IS_VALID 默认值，使用 JDBC4 的 Connection.isValid，驱动通常用协议层的 ping 实现，开销最小
+ * PING_QUERY 执行 poolPingQuery，适用于不支持 isValid 的老驱动
+ * @Author: 寰宇
+ * @Create: 2024/7/9 09:30
+ * @Version: 1.0
+ */
+public enum ValidationMode {
+    NONE,
+    IS_VALID,
+    PING_QUERY
+}
@@ -0,0 +1,52 @@
+package com.huanyu.mybatis.datasource.routing;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ClassName: LatencyWeightedBalancer
+ * Package: com.huanyu.mybatis.datasource.routing
+ * Description: 按延迟加权，副本被选中的概率与 1 / (平均读耗时 × (在用会话数 + 1)) 成正比
+ * 慢的或者正忙的副本分到更少的请求，但不会完全没有流量，恢复后可以重新被观察到。
+ * 还没有样本的副本按已有样本中最快的计算，保证新加入的副本能够得到流量
+ * @Author: 寰宇
+ * @Create: 2024/7/11 16:25
+ * @Version: 1.0
+ */
+public class LatencyWeightedBalancer implements ReplicaBalancer {
+
+    @Override
+    public Replica select(List<Replica> replicas) {
+        int size = replicas.size();
+        if (size == 1) {
+            return replicas.get(0);
+        }
+        double fastest = Double.MAX_VALUE;
+        for (Replica replica : replicas) {
+            double latency = replica.getLatency();
+            if (latency > 0 && latency < fastest) {
+                fastest = latency;
+            }
+        }
+        if (fastest == Double.MAX_VALUE) {
+            fastest = 1;
+        }
+        double[] weights = new double[size];
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get(i);
+            double latency = replica.getLatency() > 0 ? replica.getLatency() : fastest;
+            weights[i] = 1.0 / (Math.max(latency, 1) * (replica.getInFlight() + 1));
+            total += weights[i];
+        }
+        double point = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < size; i++) {
+            point -= weights[i];
+            if (point < 0) {
+                return replicas.get(i);
+            }
+        }
+        return replicas.get(size - 1);
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.huanyu.mybatis.datasource.routing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ClassName: LeastInFlightBalancer
+ * Package: com.huanyu.mybatis.datasource.routing
+ * Description: 最少在用，选择正在使用的会话最少的副本
+ * 起点轮转，使用数相同的副本之间轮流分配，避免总是落在第一个副本上
+ * @Author: 寰宇
+ * @Create: 2024/7/11 16:20
+ * @Version: 1.0
+ */
+public class LeastInFlightBalancer implements ReplicaBalancer {
+
+    private final AtomicInteger offset = new AtomicInteger();
+
+    @Override
+    public Replica select(List<Replica> replicas) {
+        int size = replicas.size();
+        int start = Math.floorMod(offset.getAndIncrement(), size);
+        Replica selected = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (selected == null || replica.getInFlight() < selected.getInFlight()) {
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+}
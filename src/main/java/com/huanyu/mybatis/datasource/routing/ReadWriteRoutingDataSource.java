@@ -0,0 +1,121 @@
+package com.huanyu.mybatis.datasource.routing;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * ClassName: ReadWriteRoutingDataSource
+ * Package: com.huanyu.mybatis.datasource.routing
+ * Description: 读写分离的数据源
+ * 由一个主库和若干只读副本组成，作为普通 DataSource 使用时（getConnection）总是返回主库连接。
+ * 读写分离由 RoutingTransaction 完成：自动提交的会话在第一次写之前的查询通过 getReplicaConnection 使用 ReplicaBalancer 选出的副本，
+ * 写、加锁读以及之后的全部语句，还有非自动提交会话（事务）中的全部语句使用主库
+ * @Author: 寰宇
+ * @Create: 2024/7/11 16:30
+ * @Version: 1.0
+ */
+public class ReadWriteRoutingDataSource implements DataSource {
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReplicaBalancer balancer;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<Replica> replicas, ReplicaBalancer balancer) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.balancer = balancer;
+    }
+
+    /**
+     * 选择一个副本，没有配置副本时返回 null
+     */
+    public Replica selectReplica() {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        return balancer.select(replicas);
+    }
+
+    /**
+     * 从副本借出一个连接，并计入副本的在用会话数；调用方用完后需要调用 Replica#released
+     * @param replica 副本
+     * @return 副本连接
+     */
+    public Connection getReplicaConnection(Replica replica) throws SQLException {
+        replica.acquired();
+        try {
+            return replica.getDataSource().getConnection();
+        } catch (SQLException | RuntimeException e) {
+            replica.failed();
+            throw e;
+        }
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public ReplicaBalancer getBalancer() {
+        return balancer;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.huanyu.mybatis.datasource.routing;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClassName: Replica
+ * Package: com.huanyu.mybatis.datasource.routing
+ * Description: 只读副本
+ * 包装副本的数据源，并记录负载均衡需要的统计：正在使用该副本连接的会话数，以及每次读的平均耗时（指数加权平均）。
+ * 一次读的耗时是查询语句在副本连接上执行的耗时，由事务在每条语句执行后上报，不包含会话两次查询之间的空闲时间
+ * @Author: 寰宇
+ * @Create: 2024/7/11 16:10
+ * @Version: 1.0
+ */
+public class Replica {
+
+    // 指数加权平均的平滑系数
+    private static final double ALPHA = 0.2;
+
+    private final String name;
+    private final DataSource dataSource;
+
+    // 正在使用该副本连接的会话数
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 借出连接的次数
+    private final AtomicLong requestCount = new AtomicLong();
+    // 借出连接失败的次数
+    private final AtomicLong errorCount = new AtomicLong();
+    // 每次读的平均耗时（微秒），0 表示还没有样本
+    private volatile double latency;
+
+    public Replica(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 会话开始使用该副本
+     */
+    public void acquired() {
+        inFlight.incrementAndGet();
+        requestCount.incrementAndGet();
+    }
+
+    /**
+     * 会话释放副本连接
+     */
+    public void released() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 记录一次查询在该副本上的执行耗时
+     * @param elapsedMicros 执行耗时（微秒）
+     */
+    public void recordLatency(long elapsedMicros) {
+        // 并发更新时可能丢失一次样本，对平均值没有影响
+        double current = latency;
+        latency = current == 0 ? elapsedMicros : ALPHA * elapsedMicros + (1 - ALPHA) * current;
+    }
+
+    /**
+     * 借出连接失败
+     */
+    public void failed() {
+        inFlight.decrementAndGet();
+        errorCount.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public double getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "Replica{name=" + name + ", inFlight=" + getInFlight() + ", requests=" + getRequestCount()
+                + ", errors=" + getErrorCount() + ", latency=" + String.format("%.1f", latency) + "us}";
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.huanyu.mybatis.datasource.routing;
+
+import java.util.List;
+
+/**
+ * ClassName: ReplicaBalancer
+ * Package: com.huanyu.mybatis.datasource.routing
+ * Description: 副本负载均衡策略
+ * 每个只读会话第一次查询时调用一次，选中的副本在会话内保持不变。
+ * 内置 ROUND_ROBIN、LEAST_IN_FLIGHT、LATENCY_WEIGHTED，也可以在 replicas 节点的 balancer 属性中指定自定义实现的类名
+ * @Author: 寰宇
+ * @Create: 2024/7/11 16:15
+ * @Version: 1.0
+ */
+public interface ReplicaBalancer {
+
+    /**
+     * 选择一个副本
+     * @param replicas 全部副本，不为空
+     * @return 选中的副本
+     */
+    Replica select(List<Replica> replicas);
+
+}
@@ -0,0 +1,23 @@
+package com.huanyu.mybatis.datasource.routing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ClassName: RoundRobinBalancer
+ * Package: com.huanyu.mybatis.datasource.routing
+ * Description: 轮询，依次使用每个副本
+ * @Author: 寰宇
+ * @Create: 2024/7/11 16:18
+ * @Version: 1.0
+ */
+public class RoundRobinBalancer implements ReplicaBalancer {
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public Replica select(List<Replica> replicas) {
+        return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+    }
+
+}
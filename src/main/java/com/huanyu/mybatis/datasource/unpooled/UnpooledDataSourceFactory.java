@@ -47,19 +47,28 @@ public class UnpooledDataSourceFactory implements DataSourceFactory {
     /**
      * 根据setter的类型,将配置文件中的值强转成相应的类型
      */
-    private Object convertValue(MetaObject metaObject, String propertyName, String value) {
+    protected Object convertValue(MetaObject metaObject, String propertyName, String value) {
         Object convertedValue = value;
         Class<?> targetType = metaObject.getSetterType(propertyName);
         if (targetType == Integer.class || targetType == int.class) {
             convertedValue = Integer.valueOf(value);
         } else if (targetType == Long.class || targetType == long.class) {
             convertedValue = Long.valueOf(value);
+        } else if (targetType == Double.class || targetType == double.class) {
+            convertedValue = Double.valueOf(value);
         } else if (targetType == Boolean.class || targetType == boolean.class) {
             convertedValue = Boolean.valueOf(value);
+        } else if (targetType.isEnum()) {
+            convertedValue = toEnum(targetType, value);
         }
         return convertedValue;
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object toEnum(Class<?> enumType, String value) {
+        return Enum.valueOf((Class<? extends Enum>) enumType, value.trim().toUpperCase());
+    }
+
     @Override
     public DataSource getDataSource() {
         return dataSource;
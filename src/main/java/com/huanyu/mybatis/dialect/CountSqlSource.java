@@ -0,0 +1,53 @@
+package com.huanyu.mybatis.dialect;
+
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.SqlSource;
+import com.huanyu.mybatis.session.Configuration;
+
+import java.util.Map;
+
+/**
+ * ClassName: CountSqlSource
+ * Package: com.huanyu.mybatis.dialect
+ * Description: 统计总行数的 SQL 源码
+ * 包装查询语句的 SqlSource，生成 BoundSql 之后改写为 COUNT(*)，参数映射保持不变。
+ * 静态 SQL 每次生成的都是同一条语句，这里记住上一次的改写结果，不必每次重新分析
+ * @Author: 寰宇
+ * @Create: 2024/7/13 09:50
+ * @Version: 1.0
+ */
+public class CountSqlSource implements SqlSource {
+
+    private final Configuration configuration;
+    private final SqlSource sqlSource;
+
+    // 上一次改写的原 SQL 和结果，放在一个对象里保证读到的是同一次的结果
+    private volatile String[] lastRewrite;
+
+    public CountSqlSource(Configuration configuration, SqlSource sqlSource) {
+        this.configuration = configuration;
+        this.sqlSource = sqlSource;
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
+        BoundSql countBoundSql = new BoundSql(configuration, getCountSql(boundSql.getSql()), boundSql.getParameterMappings(), boundSql.getParameterObject());
+        for (Map.Entry<String, Object> entry : boundSql.getAdditionalParameters().entrySet()) {
+            countBoundSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+        }
+        return countBoundSql;
+    }
+
+    private String getCountSql(String sql) {
+        String[] rewrite = lastRewrite;
+        if (rewrite != null && rewrite[0].equals(sql)) {
+            return rewrite[1];
+        }
+        Dialect dialect = configuration.getDialect();
+        String countSql = dialect == null ? SqlClauses.toCountSql(sql) : dialect.getCountString(sql);
+        lastRewrite = new String[]{sql, countSql};
+        return countSql;
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.huanyu.mybatis.dialect;
+
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: Dialect
+ * Package: com.huanyu.mybatis.dialect
+ * Description: 数据库方言
+ * 配置了 dialect 时，带 RowBounds 的查询在预编译之前改写为数据库的分页语句（物理分页），
+ * 偏移量和行数以占位符绑定，不同页使用同一条 SQL，可以命中预编译语句缓存。
+ * 没有配置方言时仍由 DefaultResultSetHandler 在内存中跳过和截断（逻辑分页）
+ * @Author: 寰宇
+ * @Create: 2024/7/13 09:10
+ * @Version: 1.0
+ */
+public interface Dialect {
+
+    // 分页参数在 BoundSql 附加参数中的名字
+    String OFFSET_PARAMETER = "_rowBoundsOffset";
+    String LIMIT_PARAMETER = "_rowBoundsLimit";
+
+    /**
+     * 在 SQL 上追加分页子句
+     * @param sql 原 SQL
+     * @param hasOffset 偏移量是否大于 0，为 false 时可以省略偏移量
+     * @param parameters 按占位符出现的顺序加入 OFFSET_PARAMETER、LIMIT_PARAMETER
+     * @return 分页 SQL
+     */
+    String getLimitString(String sql, boolean hasOffset, List<String> parameters);
+
+    /**
+     * 统计总行数的 SQL
+     */
+    default String getCountString(String sql) {
+        return SqlClauses.toCountSql(sql);
+    }
+
+    /**
+     * 把 RowBounds 改写为分页的 BoundSql，分页参数追加在原参数之后
+     */
+    default BoundSql getPageBoundSql(Configuration configuration, BoundSql boundSql, RowBounds rowBounds) {
+        List<String> parameters = new ArrayList<>(2);
+        String sql = getLimitString(boundSql.getSql().trim(), rowBounds.getOffset() > RowBounds.NO_ROW_OFFSET, parameters);
+        List<ParameterMapping> parameterMappings = new ArrayList<>(boundSql.getParameterMappings());
+        for (String parameter : parameters) {
+            parameterMappings.add(new ParameterMapping.Builder(configuration, parameter, Integer.class).build());
+        }
+        BoundSql pageBoundSql = new BoundSql(configuration, sql, parameterMappings, boundSql.getParameterObject());
+        for (Map.Entry<String, Object> entry : boundSql.getAdditionalParameters().entrySet()) {
+            pageBoundSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+        }
+        pageBoundSql.setAdditionalParameter(OFFSET_PARAMETER, rowBounds.getOffset());
+        pageBoundSql.setAdditionalParameter(LIMIT_PARAMETER, rowBounds.getLimit());
+        return pageBoundSql;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.huanyu.mybatis.dialect;
+
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.session.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ClassName: KeysetQuery
+ * Package: com.huanyu.mybatis.dialect
+ * Description: 键集（seek）分页的 SQL 改写
+ * 在最外层的 WHERE 末尾追加 key > ?（没有 WHERE 时补上），原有的 ORDER BY 换成 ORDER BY key，
+ * 行数限制由调用方通过 RowBounds 传入（配置了方言时改写为 LIMIT）。
+ * 每一页都是一次从上一页最后一个键开始的索引查找，扫描得再深代价也不变。
+ * 键必须唯一（主键或唯一索引列）：重复的键值跨越两页时，key > ? 会跳过下一页中与上一页最后一个键相同的行
+ * @Author: 寰宇
+ * @Create: 2024/7/13 15:20
+ * @Version: 1.0
+ */
+public final class KeysetQuery {
+
+    // 上一页最后一个键在 BoundSql 附加参数中的名字
+    public static final String LAST_KEY_PARAMETER = "_keysetLastKey";
+
+    private static final Pattern WHERE = Pattern.compile("\\bWHERE\\b");
+    private static final Pattern AFTER_WHERE = Pattern.compile("\\b(GROUP\\s+BY|HAVING|WINDOW)\\b");
+    // 键列直接拼接进 SQL，只接受标识符或者带表别名的标识符
+    private static final Pattern COLUMN = Pattern.compile("[A-Za-z_][A-Za-z0-9_.]*");
+    private static final Pattern UNSUPPORTED = Pattern.compile("\\b(UNION|INTERSECT|EXCEPT|LIMIT|OFFSET|FETCH)\\b");
+
+    private KeysetQuery() {
+    }
+
+    /**
+     * 生成一页的 BoundSql
+     * @param column 键对应的列，值必须唯一
+     * @param lastKey 上一页最后一行的键，第一页为 null
+     */
+    public static BoundSql build(Configuration configuration, BoundSql boundSql, String column, Object lastKey) {
+        if (column == null || !COLUMN.matcher(column).matches()) {
+            throw new RuntimeException("Invalid keyset column '" + column + "', expected an identifier such as id or t.id");
+        }
+        String sql = boundSql.getSql().trim();
+        if (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1).trim();
+        }
+        String masked = SqlClauses.mask(sql, true);
+        if (UNSUPPORTED.matcher(masked).find()) {
+            throw new RuntimeException("Keyset pagination does not support UNION or LIMIT in the statement. SQL: " + sql);
+        }
+        // 去掉原有的 ORDER BY，按键排序
+        int orderBy = SqlClauses.indexOfOrderBy(masked);
+        if (orderBy >= 0) {
+            if (SqlClauses.countPlaceholders(sql, orderBy, sql.length()) > 0) {
+                throw new RuntimeException("Keyset pagination cannot replace an ORDER BY with parameters. SQL: " + sql);
+            }
+            sql = sql.substring(0, orderBy).trim();
+            masked = masked.substring(0, orderBy);
+        }
+        List<ParameterMapping> parameterMappings = new ArrayList<>(boundSql.getParameterMappings());
+        if (lastKey != null) {
+            Matcher where = WHERE.matcher(masked);
+            Matcher afterWhere = AFTER_WHERE.matcher(masked);
+            int parameterIndex;
+            if (where.find()) {
+                // WHERE (原条件) AND key > ?
+                int conditionStart = where.end();
+                int conditionEnd = afterWhere.find(conditionStart) ? afterWhere.start() : sql.length();
+                parameterIndex = SqlClauses.countPlaceholders(sql, 0, conditionEnd);
+                sql = sql.substring(0, conditionStart) + " (" + sql.substring(conditionStart, conditionEnd).trim() + ") AND "
+                        + column + " > ? " + sql.substring(conditionEnd);
+            } else {
+                int insertAt = afterWhere.find() ? afterWhere.start() : sql.length();
+                parameterIndex = SqlClauses.countPlaceholders(sql, 0, insertAt);
+                sql = sql.substring(0, insertAt).trim() + " WHERE " + column + " > ? " + sql.substring(insertAt);
+            }
+            parameterMappings.add(parameterIndex, new ParameterMapping.Builder(configuration, LAST_KEY_PARAMETER, lastKey.getClass()).build());
+        }
+        sql = sql.trim() + " ORDER BY " + column;
+        BoundSql keysetBoundSql = new BoundSql(configuration, sql, parameterMappings, boundSql.getParameterObject());
+        for (Map.Entry<String, Object> entry : boundSql.getAdditionalParameters().entrySet()) {
+            keysetBoundSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+        }
+        if (lastKey != null) {
+            keysetBoundSql.setAdditionalParameter(LAST_KEY_PARAMETER, lastKey);
+        }
+        return keysetBoundSql;
+    }
+
+}
@@ -0,0 +1,448 @@
+package com.huanyu.mybatis.dialect;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.mapping.SqlSource;
+import com.huanyu.mybatis.reflection.MetaClass;
+import com.huanyu.mybatis.reflection.MetaObject;
+import com.huanyu.mybatis.scripting.defaults.RawSqlSource;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.type.TypeHandlerRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ClassName: MultiRowInsertSqlSource
+ * Package: com.huanyu.mybatis.dialect
+ * Description: 多行 INSERT 的 SQL 源码
+ * 包装单行 INSERT ... VALUES (...) 语句的 SqlSource，把一个集合参数拆成若干块，
+ * 每块改写为 INSERT ... VALUES (...),(...),...，一块只需要一次数据库往返。
+ * 单行 SQL 的分析结果（VALUES 前后的部分和一行的元组）按 SQL 记住，各块只是重复拼接元组，不再重新分析；
+ * 静态 SQL 只生成一次单行 SQL，各块的参数映射按行号复用；
+ * 每行的参数值在拆分时取出，作为附加参数放进该块的 BoundSql。
+ * 块的大小受参数个数上限和估算的报文大小上限约束，动态 SQL 中各行生成的语句不同时也会在此处分块
+ * @Author: 寰宇
+ * @Create: 2024/7/14 10:20
+ * @Version: 1.0
+ */
+public class MultiRowInsertSqlSource implements SqlSource {
+
+    // 第 i 行第 j 个参数在附加参数中的名字为 _multiRow_i_j
+    public static final String ROW_PARAMETER_PREFIX = "_multiRow_";
+
+    private static final Pattern INSERT = Pattern.compile("^\\s*INSERT\\b");
+    private static final Pattern VALUES = Pattern.compile("\\bVALUES?\\s*\\(");
+    // 估算报文大小时非字符串参数按固定字节数计
+    private static final int ESTIMATED_VALUE_BYTES = 16;
+    // 动态 SQL 按单行 SQL 记住的分析结果个数上限，超出时清空重来
+    private static final int MAX_TEMPLATES = 64;
+
+    private final Configuration configuration;
+    private final SqlSource sqlSource;
+
+    // 静态 SQL 与参数无关，单行 SQL 和参数映射只生成一次
+    private final boolean staticSql;
+    private volatile Template staticTemplate;
+    // 动态 SQL 按生成的单行 SQL 记住分析结果，各行交替生成不同的 SQL 时互不覆盖
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+    // 参数类型不能确定 TypeHandler 时，按行对象的类和属性解析出的 Java 类型
+    private final Map<Class<?>, Map<String, Class<?>>> propertyTypes = new ConcurrentHashMap<>();
+
+    public MultiRowInsertSqlSource(Configuration configuration, SqlSource sqlSource) {
+        this.configuration = configuration;
+        this.sqlSource = sqlSource;
+        this.staticSql = sqlSource instanceof RawSqlSource || sqlSource instanceof StaticSqlSource;
+    }
+
+    /**
+     * 参数是 split 生成的块时返回该块的 BoundSql，否则与原语句相同，按单行插入
+     */
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        if (parameterObject instanceof Chunk) {
+            return ((Chunk) parameterObject).getBoundSql();
+        }
+        return sqlSource.getBoundSql(parameterObject);
+    }
+
+    /**
+     * 把要插入的行拆分为若干块，迭代到下一块时才取出该块各行的参数，不会一次持有全部块
+     * @param rows 每个元素是原语句的一个参数对象
+     */
+    public Iterator<Chunk> split(Collection<?> rows) {
+        return new ChunkIterator(rows.iterator());
+    }
+
+    private Template getTemplate(BoundSql rowBoundSql) {
+        String sql = rowBoundSql.getSql();
+        Template template = templates.get(sql);
+        if (template != null) {
+            return template;
+        }
+        if (templates.size() >= MAX_TEMPLATES) {
+            templates.clear();
+        }
+        template = new Template(sql, rowBoundSql.getParameterMappings());
+        Template existing = templates.putIfAbsent(sql, template);
+        return existing != null ? existing : template;
+    }
+
+    // 按 DefaultParameterHandler 的规则取出一行的参数值，静态 SQL 没有附加参数，rowBoundSql 为 null
+    private List<Object> rowValues(List<ParameterMapping> parameterMappings, BoundSql rowBoundSql, Object row) {
+        List<Object> values = new ArrayList<>(parameterMappings.size());
+        MetaObject metaObject = null;
+        for (ParameterMapping parameterMapping : parameterMappings) {
+            String property = parameterMapping.getProperty();
+            if (rowBoundSql != null && rowBoundSql.hasAdditionalParameter(property)) {
+                values.add(rowBoundSql.getAdditionalParameter(property));
+            } else if (row == null) {
+                values.add(null);
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(row.getClass())) {
+                values.add(row);
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(row);
+                }
+                values.add(metaObject.getValue(property));
+            }
+        }
+        return values;
+    }
+
+    // 估算一行参数值占用的字节数
+    private static int estimateBytes(List<Object> values) {
+        int bytes = 0;
+        for (Object value : values) {
+            if (value instanceof CharSequence) {
+                bytes += ((CharSequence) value).length() + 2;
+            } else if (value instanceof byte[]) {
+                bytes += ((byte[]) value).length * 2 + 3;
+            } else {
+                bytes += ESTIMATED_VALUE_BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    // 参数的 Java 类型：单行 SQL 解析时已经确定了 TypeHandler 就沿用，否则按行对象的属性类型，最后才按值本身的类型
+    private Class<?> javaTypeOf(ParameterMapping parameterMapping, Object row, Object value) {
+        TypeHandlerRegistry registry = configuration.getTypeHandlerRegistry();
+        if (parameterMapping.getTypeHandler() != null && parameterMapping.getJavaType() != Object.class) {
+            return parameterMapping.getJavaType();
+        }
+        if (row != null && !registry.hasTypeHandler(row.getClass())) {
+            Class<?> type = propertyTypes.computeIfAbsent(row.getClass(), c -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(parameterMapping.getProperty(), property -> {
+                        MetaClass metaClass = MetaClass.forClass(row.getClass());
+                        return metaClass.hasGetter(property) ? metaClass.getGetterType(property) : Object.class;
+                    });
+            if (registry.hasTypeHandler(type)) {
+                return type;
+            }
+        }
+        if (value != null && registry.hasTypeHandler(value.getClass())) {
+            return value.getClass();
+        }
+        if (row != null && registry.hasTypeHandler(row.getClass())) {
+            return row.getClass();
+        }
+        throw new RuntimeException("Cannot determine the type of parameter '" + parameterMapping.getProperty()
+                + "' for a multi-row insert, declare the parameterType of the statement or use a non-null value");
+    }
+
+    /**
+     * 单行 SQL 的分析结果：INSERT ... VALUES 之前的部分、一行的元组、之后的部分
+     */
+    private static class Template {
+
+        private final String sql;
+        // 单行 SQL 的参数映射，同一个 SQL 的占位符相同
+        private final List<ParameterMapping> rowMappings;
+        private final String prefix;
+        private final String tuple;
+        private final String suffix;
+        // 上一次拼接的行数和 SQL
+        private volatile Object[] lastChunkSql;
+        // 上一次生成的块参数映射和各参数的 Java 类型
+        private volatile ChunkMappings lastChunkMappings;
+
+        Template(String sql, List<ParameterMapping> rowMappings) {
+            this.sql = sql;
+            this.rowMappings = rowMappings;
+            String trimmed = sql.trim();
+            if (trimmed.endsWith(";")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+            }
+            String masked = SqlClauses.mask(trimmed, false);
+            Matcher values = VALUES.matcher(masked);
+            if (!INSERT.matcher(masked).find() || !values.find()) {
+                throw new RuntimeException("Multi-row insert requires an INSERT ... VALUES (...) statement. SQL: " + sql);
+            }
+            int tupleStart = values.end() - 1;
+            int tupleEnd = closingParenthesis(masked, tupleStart);
+            if (tupleEnd < 0) {
+                throw new RuntimeException("Unbalanced parentheses in VALUES of multi-row insert. SQL: " + sql);
+            }
+            String rest = masked.substring(tupleEnd).trim();
+            if (rest.startsWith(",")) {
+                throw new RuntimeException("Multi-row insert requires a single-row VALUES (...) statement. SQL: " + sql);
+            }
+            // 元组之外的参数无法对应到某一行
+            if (SqlClauses.countPlaceholders(trimmed, 0, tupleStart) + SqlClauses.countPlaceholders(trimmed, tupleEnd, trimmed.length()) > 0) {
+                throw new RuntimeException("Multi-row insert supports parameters only inside VALUES (...). SQL: " + sql);
+            }
+            this.prefix = trimmed.substring(0, tupleStart).trim();
+            this.tuple = trimmed.substring(tupleStart, tupleEnd);
+            this.suffix = trimmed.substring(tupleEnd).trim();
+        }
+
+        // 与 start 处左括号配对的右括号之后的位置，不配对时返回 -1
+        private static int closingParenthesis(String masked, int start) {
+            int depth = 0;
+            for (int i = start; i < masked.length(); i++) {
+                char c = masked.charAt(i);
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        int fixedBytes() {
+            return prefix.length() + suffix.length() + 2;
+        }
+
+        // 整块的行数通常相同，记住上一次的结果，复用同一个 SQL 字符串
+        String chunkSql(int rows) {
+            Object[] last = lastChunkSql;
+            if (last != null && (Integer) last[0] == rows) {
+                return (String) last[1];
+            }
+            StringBuilder sql = new StringBuilder(fixedBytes() + rows * (tuple.length() + 1));
+            sql.append(prefix).append(' ');
+            for (int i = 0; i < rows; i++) {
+                if (i > 0) {
+                    sql.append(',');
+                }
+                sql.append(tuple);
+            }
+            if (!suffix.isEmpty()) {
+                sql.append(' ').append(suffix);
+            }
+            String chunkSql = sql.toString();
+            lastChunkSql = new Object[]{rows, chunkSql};
+            return chunkSql;
+        }
+
+        // 块的参数映射只与行号、列号和 Java 类型有关，类型与上一次相同的块取它的前缀，不再逐个创建
+        List<ParameterMapping> chunkMappings(Configuration configuration, List<Class<?>> javaTypes) {
+            ChunkMappings last = lastChunkMappings;
+            if (last != null && last.matches(javaTypes)) {
+                return last.mappings.subList(0, javaTypes.size());
+            }
+            int columns = rowMappings.size();
+            List<ParameterMapping> mappings = new ArrayList<>(javaTypes.size());
+            for (int i = 0; i < javaTypes.size(); i++) {
+                ParameterMapping rowMapping = rowMappings.get(i % columns);
+                ParameterMapping.Builder builder = new ParameterMapping.Builder(configuration,
+                        ROW_PARAMETER_PREFIX + (i / columns) + "_" + (i % columns), javaTypes.get(i));
+                if (rowMapping.getJdbcType() != null) {
+                    builder.jdbcType(rowMapping.getJdbcType());
+                }
+                mappings.add(builder.build());
+            }
+            mappings = Collections.unmodifiableList(mappings);
+            lastChunkMappings = new ChunkMappings(new ArrayList<>(javaTypes), mappings);
+            return mappings;
+        }
+
+    }
+
+    /**
+     * 一块的参数映射和生成它们时各参数的 Java 类型
+     */
+    private static final class ChunkMappings {
+
+        private final List<Class<?>> javaTypes;
+        private final List<ParameterMapping> mappings;
+
+        ChunkMappings(List<Class<?>> javaTypes, List<ParameterMapping> mappings) {
+            this.javaTypes = javaTypes;
+            this.mappings = mappings;
+        }
+
+        // 参数个数不超过这一块，且各参数的 Java 类型依次相同
+        boolean matches(List<Class<?>> types) {
+            if (types.size() > javaTypes.size()) {
+                return false;
+            }
+            for (int i = 0; i < types.size(); i++) {
+                if (types.get(i) != javaTypes.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * 逐块拆分
+     */
+    private class ChunkIterator implements Iterator<Chunk> {
+
+        private final Iterator<?> rows;
+        private ChunkBuilder current;
+        private Chunk next;
+
+        ChunkIterator(Iterator<?> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            while (rows.hasNext()) {
+                Object row = rows.next();
+                Template template = staticTemplate;
+                BoundSql rowBoundSql = null;
+                if (template == null) {
+                    rowBoundSql = sqlSource.getBoundSql(row);
+                    template = getTemplate(rowBoundSql);
+                    if (staticSql) {
+                        staticTemplate = template;
+                        // 静态 SQL 的参数值只来自行对象本身
+                        rowBoundSql = null;
+                    }
+                }
+                List<Object> values = rowValues(rowBoundSql == null ? template.rowMappings : rowBoundSql.getParameterMappings(), rowBoundSql, row);
+                int rowBytes = template.tuple.length() + 1 + estimateBytes(values);
+                // 语句不同或者超出上限时，当前块结束，这一行开始新的一块
+                Chunk full = null;
+                if (current != null && !current.accepts(template, rowBytes)) {
+                    full = current.build();
+                    current = null;
+                }
+                if (current == null) {
+                    current = new ChunkBuilder(template);
+                }
+                current.add(row, values, rowBytes);
+                if (full != null) {
+                    next = full;
+                    return true;
+                }
+            }
+            if (current != null) {
+                next = current.build();
+                current = null;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Chunk next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Chunk chunk = next;
+            next = null;
+            return chunk;
+        }
+
+    }
+
+    /**
+     * 拼接一块
+     */
+    private class ChunkBuilder {
+
+        private final Template template;
+        private final List<ParameterMapping> rowMappings;
+        private final List<Object> rows = new ArrayList<>();
+        private final List<Class<?>> javaTypes = new ArrayList<>();
+        private final List<Object> values = new ArrayList<>();
+        private long bytes;
+
+        ChunkBuilder(Template template) {
+            this.template = template;
+            this.rowMappings = template.rowMappings;
+            this.bytes = template.fixedBytes();
+        }
+
+        boolean accepts(Template rowTemplate, int rowBytes) {
+            if (template != rowTemplate && !template.sql.equals(rowTemplate.sql)) {
+                return false;
+            }
+            int maxParameters = configuration.getMultiRowInsertMaxParameters();
+            if (maxParameters > 0 && values.size() + rowMappings.size() > maxParameters) {
+                return false;
+            }
+            long maxPacketSize = configuration.getMultiRowInsertMaxPacketSize();
+            return maxPacketSize <= 0 || bytes + rowBytes <= maxPacketSize;
+        }
+
+        void add(Object row, List<Object> rowValues, int rowBytes) {
+            for (int j = 0; j < rowMappings.size(); j++) {
+                Object value = rowValues.get(j);
+                javaTypes.add(javaTypeOf(rowMappings.get(j), row, value));
+                values.add(value);
+            }
+            rows.add(row);
+            bytes += rowBytes;
+        }
+
+        Chunk build() {
+            List<ParameterMapping> parameterMappings = template.chunkMappings(configuration, javaTypes);
+            BoundSql boundSql = new BoundSql(configuration, template.chunkSql(rows.size()), parameterMappings, rows);
+            for (int i = 0; i < parameterMappings.size(); i++) {
+                boundSql.setAdditionalParameter(parameterMappings.get(i).getProperty(), values.get(i));
+            }
+            return new Chunk(rows, boundSql);
+        }
+
+    }
+
+    /**
+     * 一块要插入的行，作为派生语句的参数对象交给执行器
+     */
+    public static final class Chunk {
+
+        private final List<Object> rows;
+        private final BoundSql boundSql;
+
+        private Chunk(List<Object> rows, BoundSql boundSql) {
+            this.rows = Collections.unmodifiableList(rows);
+            this.boundSql = boundSql;
+        }
+
+        public List<Object> getRows() {
+            return rows;
+        }
+
+        public BoundSql getBoundSql() {
+            return boundSql;
+        }
+
+        @Override
+        public String toString() {
+            return "Chunk{rows=" + rows.size() + "}";
+        }
+
+    }
+
+}
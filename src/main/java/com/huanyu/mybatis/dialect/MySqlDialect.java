@@ -0,0 +1,26 @@
+package com.huanyu.mybatis.dialect;
+
+import java.util.List;
+
+/**
+ * ClassName: MySqlDialect
+ * Package: com.huanyu.mybatis.dialect
+ * Description: MySQL 方言，LIMIT offset, limit
+ * @Author: 寰宇
+ * @Create: 2024/7/13 09:20
+ * @Version: 1.0
+ */
+public class MySqlDialect implements Dialect {
+
+    @Override
+    public String getLimitString(String sql, boolean hasOffset, List<String> parameters) {
+        if (hasOffset) {
+            parameters.add(OFFSET_PARAMETER);
+            parameters.add(LIMIT_PARAMETER);
+            return sql + " LIMIT ?, ?";
+        }
+        parameters.add(LIMIT_PARAMETER);
+        return sql + " LIMIT ?";
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.huanyu.mybatis.dialect;
+
+import java.util.List;
+
+/**
+ * ClassName: OracleDialect
+ * Package: com.huanyu.mybatis.dialect
+ * Description: Oracle 12c 及以上的方言，使用标准的 OFFSET ... ROWS FETCH NEXT ... ROWS ONLY，SQL Server 2012 及以上同样适用
+ * @Author: 寰宇
+ * @Create: 2024/7/13 09:24
+ * @Version: 1.0
+ */
+public class OracleDialect implements Dialect {
+
+    @Override
+    public String getLimitString(String sql, boolean hasOffset, List<String> parameters) {
+        parameters.add(OFFSET_PARAMETER);
+        parameters.add(LIMIT_PARAMETER);
+        return sql + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.huanyu.mybatis.dialect;
+
+import java.util.List;
+
+/**
+ * ClassName: PostgreSqlDialect
+ * Package: com.huanyu.mybatis.dialect
+ * Description: PostgreSQL 方言，LIMIT limit OFFSET offset，H2、SQLite 同样适用
+ * @Author: 寰宇
+ * @Create: 2024/7/13 09:22
+ * @Version: 1.0
+ */
+public class PostgreSqlDialect implements Dialect {
+
+    @Override
+    public String getLimitString(String sql, boolean hasOffset, List<String> parameters) {
+        parameters.add(LIMIT_PARAMETER);
+        if (hasOffset) {
+            parameters.add(OFFSET_PARAMETER);
+            return sql + " LIMIT ? OFFSET ?";
+        }
+        return sql + " LIMIT ?";
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.huanyu.mybatis.dialect;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ClassName: SqlClauses
+ * Package: com.huanyu.mybatis.dialect
+ * Description: SQL 子句的简单分析工具
+ * 不做完整的语法解析，只在“屏蔽”之后的 SQL 上用正则查找最外层的关键字：
+ * 屏蔽即把引号中的内容、注释（以及可选的括号中的内容）替换为空格，长度和下标与原 SQL 保持一致
+ * @Author: 寰宇
+ * @Create: 2024/7/13 09:30
+ * @Version: 1.0
+ */
+public final class SqlClauses {
+
+    private static final Pattern ORDER_BY = Pattern.compile("\\bORDER\\s+BY\\b");
+    private static final Pattern AFTER_ORDER_BY = Pattern.compile("\\b(LIMIT|OFFSET|FETCH|FOR)\\b");
+    private static final Pattern SELECT = Pattern.compile("^\\s*SELECT\\b");
+    private static final Pattern FROM = Pattern.compile("\\bFROM\\b");
+    // 出现这些关键字时不能直接把选择列表换成 COUNT(*)
+    private static final Pattern NOT_SIMPLE = Pattern.compile("\\b(DISTINCT|GROUP\\s+BY|HAVING|UNION|INTERSECT|EXCEPT|LIMIT|OFFSET|FETCH|TOP)\\b");
+
+    private SqlClauses() {
+    }
+
+    /**
+     * 逐个字符转换为大写，把引号中的内容和注释（-- 开始的行注释和块注释）替换为空格，nested 为 true 时括号中的内容也替换为空格。
+     * 不用 String.toUpperCase：它可能改变字符串长度（如 'ß' 变为 "SS"），屏蔽后的下标就不能用于原 SQL
+     */
+    public static String mask(String sql, boolean nested) {
+        char[] chars = sql.toCharArray();
+        char quote = 0;
+        // 0：不在注释中，'-'：行注释，'*'：块注释
+        char comment = 0;
+        int depth = 0;
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            char next = i + 1 < chars.length ? chars[i + 1] : 0;
+            if (comment == '-') {
+                if (c == '\n' || c == '\r') {
+                    comment = 0;
+                } else {
+                    chars[i] = ' ';
+                }
+            } else if (comment == '*') {
+                chars[i] = ' ';
+                if (c == '*' && next == '/') {
+                    chars[++i] = ' ';
+                    comment = 0;
+                }
+            } else if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                chars[i] = ' ';
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+                chars[i] = ' ';
+            } else if ((c == '-' && next == '-') || (c == '/' && next == '*')) {
+                comment = next == '-' ? '-' : '*';
+                chars[i] = ' ';
+                chars[++i] = ' ';
+            } else if (nested && c == '(') {
+                depth++;
+                chars[i] = ' ';
+            } else if (nested && c == ')') {
+                depth--;
+                chars[i] = ' ';
+            } else if (depth > 0) {
+                chars[i] = ' ';
+            } else {
+                chars[i] = Character.toUpperCase(c);
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 统计 [start, end) 之间的占位符个数，引号中的问号不算
+     */
+    public static int countPlaceholders(String sql, int start, int end) {
+        String masked = mask(sql, false);
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (masked.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 最外层 ORDER BY 关键字的起始位置，没有时返回 -1
+     */
+    public static int indexOfOrderBy(String masked) {
+        Matcher matcher = ORDER_BY.matcher(masked);
+        int index = -1;
+        while (matcher.find()) {
+            index = matcher.start();
+        }
+        return index;
+    }
+
+    /**
+     * 生成统计总行数的 SQL：
+     * 简单查询（没有 DISTINCT、GROUP BY、UNION、LIMIT 等，选择列表中没有参数）直接把选择列表换成 COUNT(*)，
+     * 否则包装为子查询。位于末尾且不含参数的 ORDER BY 对计数没有影响，会被去掉
+     */
+    public static String toCountSql(String sql) {
+        String trimmed = sql.trim();
+        if (trimmed.endsWith(";")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        String masked = mask(trimmed, true);
+        int orderBy = indexOfOrderBy(masked);
+        if (orderBy >= 0 && !AFTER_ORDER_BY.matcher(masked).find(orderBy)
+                && countPlaceholders(trimmed, orderBy, trimmed.length()) == 0) {
+            trimmed = trimmed.substring(0, orderBy).trim();
+            masked = masked.substring(0, orderBy);
+        }
+        Matcher from = FROM.matcher(masked);
+        if (SELECT.matcher(masked).find() && !NOT_SIMPLE.matcher(masked).find() && from.find()
+                && countPlaceholders(trimmed, 0, from.start()) == 0) {
+            return "SELECT COUNT(*) " + trimmed.substring(from.start());
+        }
+        return "SELECT COUNT(*) FROM (" + trimmed + ") tmp_count";
+    }
+
+}
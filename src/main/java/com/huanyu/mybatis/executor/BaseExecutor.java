@@ -2,6 +2,11 @@ package com.huanyu.mybatis.executor;
 
 import com.huanyu.mybatis.cache.CacheKey;
 import com.huanyu.mybatis.cache.impl.PerpetualCache;
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.datasource.Deadline;
+import com.huanyu.mybatis.datasource.WorkloadContext;
+import com.huanyu.mybatis.datasource.pooled.DelegatingConnection;
+import com.huanyu.mybatis.datasource.pooled.PooledDataSource;
 import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.mapping.MappedStatement;
 import com.huanyu.mybatis.mapping.ParameterMapping;
@@ -14,6 +19,7 @@ import com.huanyu.mybatis.transaction.Transaction;
 import com.huanyu.mybatis.type.TypeHandlerRegistry;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
@@ -39,6 +45,8 @@ public abstract class BaseExecutor implements Executor {
     protected PerpetualCache localCache;
 
     private boolean closed;
+    // 会话设置的截止时间
+    protected Deadline deadline;
     // 查询堆栈
     protected int queryStack = 0;
 
@@ -113,6 +121,32 @@ public abstract class BaseExecutor implements Executor {
         return list;
     }
 
+    /**
+     * 以游标的形式查询数据，游标不经过本地缓存
+     * @param ms 映射语句
+     * @param parameter 参数对象
+     * @param rowBounds 翻页限制条件
+     * @param <E> 结果类型
+     * @return 游标
+     * @throws SQLException
+     */
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+        if (closed) {
+            throw new RuntimeException("Executor was closed.");
+        }
+        BoundSql boundSql = ms.getBoundSql(parameter);
+        return queryCursor(ms, parameter, rowBounds, boundSql);
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        if (closed) {
+            throw new RuntimeException("Executor was closed.");
+        }
+        return doQueryCursor(ms, parameter, rowBounds, boundSql);
+    }
+
     /**
      * 从数据库中查询结果
      * @param ms 映射语句
@@ -135,8 +169,10 @@ public abstract class BaseExecutor implements Executor {
             // 删除占位符
             localCache.removeObject(key);
         }
-        // 将查询结果写入缓存
-        localCache.putObject(key, list);
+        // 将查询结果写入缓存；结果交给 ResultHandler 时返回的是空列表，不能缓存，否则之后同样的 selectList 会拿到空结果
+        if (resultHandler == null) {
+            localCache.putObject(key, list);
+        }
         return list;
     }
 
@@ -211,8 +247,33 @@ public abstract class BaseExecutor implements Executor {
         return doUpdate(ms, parameter);
     }
 
+    /**
+     * 刷出批量操作
+     * @return 每个批次的执行结果
+     * @throws SQLException
+     */
+    @Override
+    public List<BatchResult> flushStatements() throws SQLException {
+        return flushStatements(false);
+    }
+
+    /**
+     * 刷出批量操作
+     * @param isRollBack 是否为回滚，回滚时丢弃未执行的批次
+     * @return 每个批次的执行结果
+     * @throws SQLException
+     */
+    public List<BatchResult> flushStatements(boolean isRollBack) throws SQLException {
+        if (closed) {
+            throw new RuntimeException("Executor was closed.");
+        }
+        return doFlushStatements(isRollBack);
+    }
+
     protected abstract int doUpdate(MappedStatement ms, Object parameter) throws SQLException;
-    protected abstract <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql);
+    protected abstract <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException;
+    protected abstract <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException;
+    protected abstract List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException;
 
     @Override
     public Transaction getTransaction() {
@@ -228,6 +289,8 @@ public abstract class BaseExecutor implements Executor {
             throw new RuntimeException("Cannot commit, transaction is already closed");
         }
         clearLocalCache();
+        // 提交之前先刷出批量操作
+        flushStatements();
         if (required) {
             transaction.commit();
         }
@@ -238,6 +301,8 @@ public abstract class BaseExecutor implements Executor {
         if (!closed) {
             try {
                 clearLocalCache();
+                // 回滚时丢弃未执行的批量操作
+                flushStatements(true);
             } finally {
                 if (required) {
                     transaction.rollback();
@@ -274,6 +339,34 @@ public abstract class BaseExecutor implements Executor {
         }
     }
 
+    /**
+     * 获取执行该语句的连接，连接第一次打开时按语句的负载类别选择数据源分区。
+     * 同一个事务内的语句共用第一次打开的连接，读写分离的事务会把写之前的查询交给只读副本。
+     * 连接已经来自另一个分区时拒绝执行，不同负载类别（分区）的语句需要使用不同的会话。
+     * 截止时间同样设置到当前线程，连接池排队等待不会超过剩余的时间
+     */
+    protected Connection getConnection(MappedStatement ms, BoundSql boundSql) throws SQLException {
+        String previous = WorkloadContext.set(ms.getWorkloadClass());
+        Deadline previousDeadline = Deadline.set(Deadline.earliest(deadline, Deadline.get()));
+        Connection connection;
+        try {
+            connection = transaction.getConnection(ms, boundSql);
+        } finally {
+            WorkloadContext.set(previous);
+            Deadline.set(previousDeadline);
+        }
+        // 分区只在连接第一次打开时选定，先执行 OLTP 语句的会话再执行报表语句时，报表会悄悄占用 OLTP 分区的连接
+        if (connection instanceof DelegatingConnection) {
+            PooledDataSource pool = ((DelegatingConnection) connection).getPooledConnection().getDataSource();
+            if (!pool.servesWorkloadClass(ms.getWorkloadClass())) {
+                throw new RuntimeException("Statement " + ms.getId() + " has workload class '" + ms.getWorkloadClass()
+                        + "' but this session already holds a connection from pool " + pool.getPoolName()
+                        + ". Execute statements of different workload classes in separate sessions.");
+            }
+        }
+        return connection;
+    }
+
     protected void closeStatement(Statement statement) {
         // 如果statement不为空，则尝试关闭它
         if (statement != null) {
@@ -285,6 +378,16 @@ public abstract class BaseExecutor implements Executor {
         }
     }
 
+    @Override
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
     @Override
     public void setExecutorWrapper(Executor executor) {
         this.wrapper = wrapper;
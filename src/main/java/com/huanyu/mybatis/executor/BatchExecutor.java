@@ -0,0 +1,173 @@
+package com.huanyu.mybatis.executor;
+
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.cursor.defaults.DefaultCursor;
+import com.huanyu.mybatis.executor.keygen.Jdbc3KeyGenerator;
+import com.huanyu.mybatis.executor.statement.StatementHandler;
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.ResultHandler;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.transaction.Transaction;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ClassName: BatchExecutor
+ * Package: com.huanyu.mybatis.executor
+ * Description: 批量执行器
+ * 连续的、SQL 相同的更新操作会复用同一个 Statement，通过 addBatch 攒批，
+ * 在 flushStatements（提交、回滚、查询之前都会触发）时统一 executeBatch，一个批次只需要一次数据库往返。
+ * executeBatch 交给开启批次的 StatementHandler 执行，与单条语句一样受截止时间约束、计入事务的执行耗时
+ * @Author: 寰宇
+ * @Create: 2024/7/2 10:35
+ * @Version: 1.0
+ */
+public class BatchExecutor extends BaseExecutor {
+
+    // 批量模式下 update 的返回值，真正的影响行数要通过 flushStatements 获取
+    public static final int BATCH_UPDATE_RETURN_VALUE = Integer.MIN_VALUE + 1002;
+
+    // 待执行的 Statement 列表
+    private final List<Statement> statementList = new ArrayList<>();
+    // 与 statementList 一一对应的批量结果
+    private final List<BatchResult> batchResultList = new ArrayList<>();
+    // 与 statementList 一一对应的、开启批次的 StatementHandler，用来执行批次
+    private final List<StatementHandler> handlerList = new ArrayList<>();
+    // 最近一次加入批次的 SQL 和映射语句，用来判断能否继续攒批
+    private String currentSql;
+    private MappedStatement currentStatement;
+
+    public BatchExecutor(Configuration configuration, Transaction transaction) {
+        super(configuration, transaction);
+    }
+
+    @Override
+    protected int doUpdate(MappedStatement ms, Object parameterObject) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        // 新建一个 StatementHandler
+        StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObject, RowBounds.DEFAULT, null, null);
+        BoundSql boundSql = handler.getBoundSql();
+        String sql = boundSql.getSql();
+        Statement stmt;
+        // 与上一条语句的 SQL 和映射语句都相同，则追加到最后一个批次
+        if (sql.equals(currentSql) && ms.equals(currentStatement)) {
+            int last = statementList.size() - 1;
+            stmt = statementList.get(last);
+            BatchResult batchResult = batchResultList.get(last);
+            batchResult.addParameterObject(parameterObject);
+        }
+        // 否则开启一个新的批次
+        else {
+            Connection connection = getConnection(ms, boundSql);
+            stmt = handler.prepare(connection);
+            currentSql = sql;
+            currentStatement = ms;
+            statementList.add(stmt);
+            batchResultList.add(new BatchResult(ms, sql, parameterObject));
+            handlerList.add(handler);
+        }
+        // 绑定参数并加入批次
+        handler.parameterize(stmt);
+        handler.batch(stmt);
+        return BATCH_UPDATE_RETURN_VALUE;
+    }
+
+    @Override
+    protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
+        Statement stmt = null;
+        try {
+            // 查询之前先把攒下的批次刷出，保证能读到之前的写入
+            flushStatements();
+            Configuration configuration = ms.getConfiguration();
+            StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, rowBounds, resultHandler, boundSql);
+            Connection connection = getConnection(ms, handler.getBoundSql());
+            stmt = handler.prepare(connection);
+            handler.parameterize(stmt);
+            return handler.query(stmt, resultHandler);
+        } finally {
+            closeStatement(stmt);
+        }
+    }
+
+    @Override
+    protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        // 打开游标之前先把攒下的批次刷出
+        flushStatements();
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, rowBounds, null, boundSql);
+        Connection connection = getConnection(ms, handler.getBoundSql());
+        Statement stmt = handler.prepare(connection);
+        Cursor<E> cursor;
+        try {
+            handler.parameterize(stmt);
+            cursor = handler.queryCursor(stmt);
+        } catch (SQLException | RuntimeException e) {
+            // 游标没有打开，Statement 没有人负责关闭
+            closeStatement(stmt);
+            throw e;
+        }
+        // 游标关闭时通过包装的 Statement 一并关闭，不能用 closeOnCompletion，它会作用到连接池缓存的物理 Statement 上
+        if (cursor instanceof DefaultCursor) {
+            ((DefaultCursor<E>) cursor).closeStatementOnClose(stmt);
+        }
+        return cursor;
+    }
+
+    @Override
+    protected List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
+        try {
+            List<BatchResult> results = new ArrayList<>();
+            // 回滚时直接丢弃攒下的批次
+            if (isRollback) {
+                return Collections.emptyList();
+            }
+            for (int i = 0, n = statementList.size(); i < n; i++) {
+                Statement stmt = statementList.get(i);
+                BatchResult batchResult = batchResultList.get(i);
+                try {
+                    // 一次往返执行整个批次
+                    batchResult.setUpdateCounts(handlerList.get(i).executeBatch(stmt));
+                    // 整个批次的主键一次取回，按顺序写回每个参数对象
+                    MappedStatement ms = batchResult.getMappedStatement();
+                    if (ms.getKeyGenerator() instanceof Jdbc3KeyGenerator) {
+                        ((Jdbc3KeyGenerator) ms.getKeyGenerator()).processBatch(ms, stmt, batchResult.getParameterObjects());
+                    }
+                } catch (BatchUpdateException e) {
+                    StringBuilder message = new StringBuilder();
+                    message.append(batchResult.getMappedStatement().getId())
+                            .append(" (batch index #")
+                            .append(i + 1)
+                            .append(")")
+                            .append(" failed.");
+                    if (i > 0) {
+                        message.append(" ")
+                                .append(i)
+                                .append(" prior sub executor(s) completed successfully, but will be rolled back.");
+                    }
+                    throw new RuntimeException(message + " Cause: " + e, e);
+                }
+                results.add(batchResult);
+            }
+            return results;
+        } finally {
+            // 无论成功与否，都关闭所有 Statement 并清空批次
+            for (Statement stmt : statementList) {
+                closeStatement(stmt);
+            }
+            currentSql = null;
+            currentStatement = null;
+            statementList.clear();
+            batchResultList.clear();
+            handlerList.clear();
+        }
+    }
+
+}
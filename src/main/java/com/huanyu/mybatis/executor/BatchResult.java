@@ -0,0 +1,64 @@
+package com.huanyu.mybatis.executor;
+
+import com.huanyu.mybatis.mapping.MappedStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ClassName: BatchResult
+ * Package: com.huanyu.mybatis.executor
+ * Description: 批量执行结果
+ * 一个 BatchResult 对应一个 Statement，记录了该批次的 SQL、所有参数对象以及每条语句影响的行数
+ * @Author: 寰宇
+ * @Create: 2024/7/2 10:20
+ * @Version: 1.0
+ */
+public class BatchResult {
+
+    // 该批次对应的映射语句
+    private final MappedStatement mappedStatement;
+    // 该批次执行的 SQL 语句
+    private final String sql;
+    // 该批次中每条语句的参数对象
+    private final List<Object> parameterObjects;
+    // 每条语句影响的行数，executeBatch 之后才有值
+    private int[] updateCounts;
+
+    public BatchResult(MappedStatement mappedStatement, String sql) {
+        super();
+        this.mappedStatement = mappedStatement;
+        this.sql = sql;
+        this.parameterObjects = new ArrayList<>();
+    }
+
+    public BatchResult(MappedStatement mappedStatement, String sql, Object parameterObject) {
+        this(mappedStatement, sql);
+        addParameterObject(parameterObject);
+    }
+
+    public MappedStatement getMappedStatement() {
+        return mappedStatement;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getParameterObjects() {
+        return parameterObjects;
+    }
+
+    public int[] getUpdateCounts() {
+        return updateCounts;
+    }
+
+    public void setUpdateCounts(int[] updateCounts) {
+        this.updateCounts = updateCounts;
+    }
+
+    public void addParameterObject(Object parameterObject) {
+        this.parameterObjects.add(parameterObject);
+    }
+
+}
@@ -4,6 +4,8 @@ import com.alibaba.fastjson.JSON;
 import com.huanyu.mybatis.cache.Cache;
 import com.huanyu.mybatis.cache.CacheKey;
 import com.huanyu.mybatis.cache.TransactionalCacheManager;
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.datasource.Deadline;
 import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.mapping.MappedStatement;
 import com.huanyu.mybatis.session.ResultHandler;
@@ -104,6 +106,24 @@ public class CachingExecutor implements Executor {
         return query(ms, parameter, rowBounds, resultHandler, key, boundSql);
     }
 
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+        // 游标不使用二级缓存
+        flushCacheIfRequired(ms);
+        return delegate.queryCursor(ms, parameter, rowBounds);
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        flushCacheIfRequired(ms);
+        return delegate.queryCursor(ms, parameter, rowBounds, boundSql);
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() throws SQLException {
+        return delegate.flushStatements();
+    }
+
     @Override
     public Transaction getTransaction() {
         return delegate.getTransaction();
@@ -149,6 +169,16 @@ public class CachingExecutor implements Executor {
         return delegate.createCacheKey(ms, parameterObject, rowBounds, boundSql);
     }
 
+    @Override
+    public void setDeadline(Deadline deadline) {
+        delegate.setDeadline(deadline);
+    }
+
+    @Override
+    public Deadline getDeadline() {
+        return delegate.getDeadline();
+    }
+
     @Override
     public void setExecutorWrapper(Executor executor) {
         throw new UnsupportedOperationException("This method should not be called");
@@ -1,6 +1,8 @@
 package com.huanyu.mybatis.executor;
 
 import com.huanyu.mybatis.cache.CacheKey;
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.datasource.Deadline;
 import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.mapping.MappedStatement;
 import com.huanyu.mybatis.session.ResultHandler;
@@ -40,6 +42,15 @@ public interface Executor {
      */
     <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException;
 
+    // 数据查询操作，返回结果为游标形式
+    <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException;
+
+    // 使用指定的 BoundSql 查询，返回结果为游标形式
+    <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException;
+
+    // 刷出批量操作，返回每个批次的执行结果
+    List<BatchResult> flushStatements() throws SQLException;
+
     // 获取事务
     Transaction getTransaction();
     // 提交事务
@@ -56,4 +67,9 @@ public interface Executor {
     CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql);
 
     void setExecutorWrapper(Executor executor);
+
+    // 设置之后执行的语句的截止时间，null 表示没有
+    void setDeadline(Deadline deadline);
+
+    Deadline getDeadline();
 }
@@ -0,0 +1,143 @@
+package com.huanyu.mybatis.executor;
+
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.cursor.defaults.DefaultCursor;
+import com.huanyu.mybatis.executor.keygen.Jdbc3KeyGenerator;
+import com.huanyu.mybatis.executor.statement.StatementHandler;
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.ResultHandler;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.transaction.Transaction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: ReuseExecutor
+ * Package: com.huanyu.mybatis.executor
+ * Description: 可重用执行器
+ * 在事务范围内以 SQL 语句为键缓存已经预编译的 Statement，相同的 SQL 再次执行时只需重新绑定参数和超时等选项，
+ * 在提交、回滚或关闭时统一关闭缓存的 Statement。
+ * 游标不使用缓存的 Statement：游标打开期间再次执行相同的 SQL 会关闭游标正在读取的 ResultSet
+ * @Author: 寰宇
+ * @Create: 2024/7/3 14:05
+ * @Version: 1.0
+ */
+public class ReuseExecutor extends BaseExecutor {
+
+    // SQL 语句（需要返回生成主键时加上前缀）与 Statement 的映射
+    private final Map<String, Statement> statementMap = new HashMap<>();
+
+    public ReuseExecutor(Configuration configuration, Transaction transaction) {
+        super(configuration, transaction);
+    }
+
+    @Override
+    protected int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
+        // 获取（或复用）Statement，执行后不关闭
+        Statement stmt = prepareStatement(handler, ms);
+        return handler.update(stmt);
+    }
+
+    @Override
+    protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, rowBounds, resultHandler, boundSql);
+        Statement stmt = prepareStatement(handler, ms);
+        return handler.query(stmt, resultHandler);
+    }
+
+    @Override
+    protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, rowBounds, null, boundSql);
+        // 游标独占一个不缓存的 Statement，遍历游标时执行相同 SQL 的查询不会关闭它的 ResultSet
+        Connection connection = getConnection(ms, handler.getBoundSql());
+        Statement stmt = handler.prepare(connection);
+        Cursor<E> cursor;
+        try {
+            handler.parameterize(stmt);
+            cursor = handler.queryCursor(stmt);
+        } catch (SQLException | RuntimeException e) {
+            // 游标没有打开，Statement 没有人负责关闭
+            closeStatement(stmt);
+            throw e;
+        }
+        // 游标关闭时一并关闭 Statement
+        if (cursor instanceof DefaultCursor) {
+            ((DefaultCursor<E>) cursor).closeStatementOnClose(stmt);
+        }
+        return cursor;
+    }
+
+    @Override
+    protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        // 关闭缓存的全部 Statement
+        for (Statement stmt : statementMap.values()) {
+            closeStatement(stmt);
+        }
+        statementMap.clear();
+        return Collections.emptyList();
+    }
+
+    /**
+     * 获取 Statement，已缓存且连接仍然可用时直接复用，否则新建并放入缓存
+     */
+    private Statement prepareStatement(StatementHandler handler, MappedStatement ms) throws SQLException {
+        Statement stmt;
+        BoundSql boundSql = handler.getBoundSql();
+        String key = statementKey(ms, boundSql.getSql());
+        Connection connection = getConnection(ms, boundSql);
+        if (hasStatementFor(key, connection)) {
+            stmt = getStatement(key);
+            // 相同 SQL 的映射语句可能配置了不同的超时时间和读取方向
+            handler.setStatementOptions(stmt);
+        } else {
+            // 缓存的语句属于其他连接（读写分离时查询可能从副本切换到主库），先关闭
+            closeStatement(statementMap.remove(key));
+            stmt = handler.prepare(connection);
+            putStatement(key, stmt);
+        }
+        // 重新绑定参数
+        handler.parameterize(stmt);
+        return stmt;
+    }
+
+    // 缓存的键：SQL 相同但需要返回生成主键或结果集类型不同的语句是以不同方式预编译的，不能混用
+    private static String statementKey(MappedStatement ms, String sql) {
+        if (ms.getKeyGenerator() instanceof Jdbc3KeyGenerator) {
+            String[] keyColumns = ms.getKeyColumns();
+            return (keyColumns == null ? "keys:" : "keys" + Arrays.toString(keyColumns) + ":") + sql;
+        }
+        return ms.getResultSetType() + ":" + sql;
+    }
+
+    // 判断是否有该 SQL 对应的、属于当前连接的可用 Statement
+    private boolean hasStatementFor(String sql, Connection connection) {
+        try {
+            Statement stmt = statementMap.get(sql);
+            return stmt != null && stmt.getConnection() == connection && !connection.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Statement getStatement(String s) {
+        return statementMap.get(s);
+    }
+
+    private void putStatement(String sql, Statement stmt) {
+        statementMap.put(sql, stmt);
+    }
+
+}
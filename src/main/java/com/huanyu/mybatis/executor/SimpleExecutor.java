@@ -1,5 +1,7 @@
 package com.huanyu.mybatis.executor;
 
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.cursor.defaults.DefaultCursor;
 import com.huanyu.mybatis.executor.statement.StatementHandler;
 import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.mapping.MappedStatement;
@@ -11,6 +13,7 @@ import com.huanyu.mybatis.transaction.Transaction;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -36,7 +39,7 @@ public class SimpleExecutor extends BaseExecutor{
             // 新建一个 StatementHandler
             StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
             // 准备语句
-            stmt = prepareStatement(handler);
+            stmt = prepareStatement(handler, ms);
             // StatementHandler.update
             return handler.update(stmt);
         } finally {
@@ -45,31 +48,63 @@ public class SimpleExecutor extends BaseExecutor{
     }
 
     @Override
-    protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+    protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
+        Statement stmt = null;
         try {
             Configuration configuration = ms.getConfiguration();
             // 新建一个 StatementHandler
             StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, rowBounds, resultHandler, boundSql);
             // 获取数据库连接
-            Connection connection = transaction.getConnection();
+            Connection connection = getConnection(ms, handler.getBoundSql());
             // Statement是用于执行静态SQL语句并返回其生成的结果的对象
-            Statement stmt = handler.prepare(connection);
+            stmt = handler.prepare(connection);
             // 设置 SQL 语句的参数（假设第一个参数是 Long 类型）
             handler.parameterize(stmt);
             // 执行查询操作
             return handler.query(stmt, resultHandler);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return null;
+        } finally {
+            closeStatement(stmt);
         }
     }
 
-    private Statement prepareStatement(StatementHandler handler) throws SQLException {
+    @Override
+    protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, rowBounds, null, boundSql);
+        Statement stmt = prepareStatement(handler, ms);
+        Cursor<E> cursor;
+        try {
+            cursor = handler.queryCursor(stmt);
+        } catch (SQLException | RuntimeException e) {
+            // 游标没有打开，Statement 没有人负责关闭
+            closeStatement(stmt);
+            throw e;
+        }
+        // 游标关闭时通过包装的 Statement 一并关闭，不能用 closeOnCompletion，它会作用到连接池缓存的物理 Statement 上
+        if (cursor instanceof DefaultCursor) {
+            ((DefaultCursor<E>) cursor).closeStatementOnClose(stmt);
+        }
+        return cursor;
+    }
+
+    @Override
+    protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        // 简单执行器没有需要刷出的批量操作
+        return Collections.emptyList();
+    }
+
+    private Statement prepareStatement(StatementHandler handler, MappedStatement ms) throws SQLException {
         Statement stmt;
-        Connection connection = transaction.getConnection();
+        Connection connection = getConnection(ms, handler.getBoundSql());
         // 准备语句
         stmt = handler.prepare(connection);
-        handler.parameterize(stmt);
+        try {
+            handler.parameterize(stmt);
+        } catch (SQLException | RuntimeException e) {
+            // 调用方还拿不到 Statement，在这里关闭
+            closeStatement(stmt);
+            throw e;
+        }
         return stmt;
     }
 
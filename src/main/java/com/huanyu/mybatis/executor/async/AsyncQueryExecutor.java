@@ -0,0 +1,166 @@
+package com.huanyu.mybatis.executor.async;
+
+import com.huanyu.mybatis.datasource.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ClassName: AsyncQueryExecutor
+ * Package: com.huanyu.mybatis.executor.async
+ * Description: 异步查询执行器
+ * 为返回 CompletableFuture 的映射器方法提供线程池：默认是有界的线程池 + 有界队列，队列满时直接失败；
+ * 运行在 JDK 21+ 且开启 virtualThreads 时改用虚拟线程。
+ * 超时时间作为截止时间设置到执行线程上，由 StatementWatchdog 到期取消正在执行的语句，
+ * 执行线程随之以 SQLTimeoutException 结束并归还连接；中断阻塞在 JDBC I/O 上的线程并不能停止查询。
+ * 截止时间之后再过一段宽限期仍未结束的任务（如卡在取连接以外的地方）由定时器以 TimeoutException 结束并中断，作为兜底。
+ * 取消 CompletableFuture 会中断任务
+ * @Author: 寰宇
+ * @Create: 2024/7/5 15:30
+ * @Version: 1.0
+ */
+public class AsyncQueryExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncQueryExecutor.class);
+
+    // 截止时间之后兜底超时的宽限期，毫秒，留给看门狗取消语句、执行线程结束任务
+    private static final long TIMEOUT_GRACE_MILLIS = 1000;
+
+    // 执行任务的线程池
+    private final ExecutorService executorService;
+    // 负责兜底超时的定时器，只有设置了超时时间才创建
+    private final ScheduledExecutorService timeoutScheduler;
+    // 超时时间，毫秒，0 表示不超时
+    private final long timeoutMillis;
+
+    public AsyncQueryExecutor(int poolSize, int queueCapacity, long timeoutMillis, boolean virtualThreads) {
+        this.timeoutMillis = timeoutMillis;
+        ExecutorService virtualThreadExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            this.executorService = virtualThreadExecutor;
+        } else {
+            this.executorService = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new NamedThreadFactory("mybatis-async-"), new ThreadPoolExecutor.AbortPolicy());
+        }
+        this.timeoutScheduler = timeoutMillis > 0 ? Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("mybatis-async-timeout-")) : null;
+    }
+
+    /**
+     * 提交一个任务
+     * @param task 任务
+     * @param <T> 结果类型
+     * @return 任务的结果，取消它会中断任务
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        // 提交线程上设置的截止时间在执行线程上同样生效，超时时间从提交时开始计算，与之取较早者
+        final Deadline deadline = timeoutMillis > 0
+                ? Deadline.earliest(Deadline.get(), Deadline.after(timeoutMillis, TimeUnit.MILLISECONDS))
+                : Deadline.get();
+        final FutureTask<T> futureTask = new FutureTask<T>(() -> {
+            // 结果已经被取消或超时，不再执行
+            if (future.isDone()) {
+                return null;
+            }
+            // 在队列中等到了截止时间之后，不再占用连接执行
+            if (deadline != null && deadline.isExpired()) {
+                future.completeExceptionally(new TimeoutException("Async query timed out before it started, deadline " + deadline));
+                return null;
+            }
+            Deadline previous = Deadline.set(deadline);
+            try {
+                T result = task.call();
+                future.complete(result);
+                return result;
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+                return null;
+            } finally {
+                Deadline.set(previous);
+            }
+        });
+        try {
+            executorService.execute(futureTask);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new RejectedExecutionException("Async query executor is saturated. Cause: " + e, e));
+            return future;
+        }
+        // 兜底：截止时间之后宽限期内仍未结束，以 TimeoutException 结束
+        if (timeoutScheduler != null) {
+            final ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> {
+                future.completeExceptionally(new TimeoutException("Async query timed out after " + timeoutMillis + " ms"));
+            }, timeoutMillis + TIMEOUT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            future.whenComplete((r, t) -> timeout.cancel(false));
+        }
+        // 取消或兜底超时时中断仍在执行的任务
+        future.whenComplete((r, t) -> {
+            if (t != null && !futureTask.isDone()) {
+                futureTask.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 关闭线程池
+     */
+    public void shutdown() {
+        executorService.shutdown();
+        if (timeoutScheduler != null) {
+            timeoutScheduler.shutdown();
+        }
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，保持对 JDK 8 的编译兼容，JDK 21 以下返回 null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            logger.info("Virtual threads are not available, falling back to a bounded thread pool.");
+            return null;
+        }
+    }
+
+    /**
+     * 线程工厂，创建带名字的守护线程，不阻止 JVM 退出
+     */
+    public static class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        public NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
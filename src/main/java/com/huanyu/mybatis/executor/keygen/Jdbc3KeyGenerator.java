@@ -0,0 +1,170 @@
+package com.huanyu.mybatis.executor.keygen;
+
+import com.huanyu.mybatis.dialect.MultiRowInsertSqlSource;
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.reflection.Reflector;
+import com.huanyu.mybatis.reflection.invoker.Invoker;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.type.TypeHandler;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ClassName: Jdbc3KeyGenerator
+ * Package: com.huanyu.mybatis.executor.keygen
+ * Description: 使用 JDBC3 Statement.getGeneratedKeys 取回数据库生成的主键
+ * 语句以 RETURN_GENERATED_KEYS（或指定的 keyColumn）预编译，执行后与影响的行数一起返回主键，不需要再查询一次。
+ * 主键按顺序写回参数对象：单个对象、集合的每个元素、多行 INSERT 一块中的每一行、批量执行时攒下的每个参数。
+ * 写回使用按参数类和属性缓存的 setter 和 TypeHandler，不再为每一行创建 MetaObject。
+ * TypeHandler 取自所属配置的注册机，每个 Configuration 持有一个实例，通过 Configuration.getJdbc3KeyGenerator 获取
+ * @Author: 寰宇
+ * @Create: 2024/7/14 14:15
+ * @Version: 1.0
+ */
+public class Jdbc3KeyGenerator implements KeyGenerator {
+
+    // 参数类 -> 主键属性 -> setter，没有可用 setter 的属性（嵌套属性等）不缓存
+    private final Map<Class<?>, Map<String, KeySetter>> keySetters = new ConcurrentHashMap<>();
+
+    @Override
+    public void processBefore(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+        // Do Nothing
+    }
+
+    @Override
+    public void processAfter(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+        processBatch(ms, stmt, Collections.singletonList(parameter));
+    }
+
+    /**
+     * 批量执行之后调用，按顺序为每个参数对象写回主键
+     * @param parameters 批次中每次执行的参数对象
+     */
+    public void processBatch(MappedStatement ms, Statement stmt, List<Object> parameters) {
+        String[] keyProperties = ms.getKeyProperties();
+        if (keyProperties == null || keyProperties.length == 0) {
+            return;
+        }
+        List<Object> rows = new ArrayList<>();
+        for (Object parameter : parameters) {
+            collectRows(parameter, rows);
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (ResultSet rs = stmt.getGeneratedKeys()) {
+            String[] columns = keyColumns(ms, keyProperties, rs.getMetaData());
+            Configuration configuration = ms.getConfiguration();
+            // 连续的行通常是同一个类，复用上一行解析出的 setter
+            Class<?> lastType = null;
+            KeySetter[] setters = null;
+            int index = 0;
+            while (index < rows.size() && rs.next()) {
+                Object row = rows.get(index++);
+                if (row == null) {
+                    continue;
+                }
+                if (row.getClass() != lastType) {
+                    lastType = row.getClass();
+                    setters = resolveSetters(configuration, lastType, keyProperties);
+                }
+                for (int i = 0; i < keyProperties.length; i++) {
+                    if (setters[i] != null) {
+                        setters[i].set(row, rs, columns[i]);
+                    } else {
+                        configuration.newMetaObject(row).setValue(keyProperties[i], rs.getObject(columns[i]));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Error getting generated key or setting result to parameter object. Cause: " + e, e);
+        }
+    }
+
+    // 把参数对象展开为要写回主键的行
+    private static void collectRows(Object parameter, List<Object> rows) {
+        if (parameter instanceof MultiRowInsertSqlSource.Chunk) {
+            rows.addAll(((MultiRowInsertSqlSource.Chunk) parameter).getRows());
+        } else if (parameter instanceof Collection) {
+            rows.addAll((Collection<?>) parameter);
+        } else if (parameter instanceof Object[]) {
+            rows.addAll(Arrays.asList((Object[]) parameter));
+        } else if (parameter != null) {
+            rows.add(parameter);
+        }
+    }
+
+    // 主键列名：配置了 keyColumn 时使用它，否则按位置对应生成主键结果集中的列
+    private static String[] keyColumns(MappedStatement ms, String[] keyProperties, ResultSetMetaData metaData) throws SQLException {
+        String[] keyColumns = ms.getKeyColumns();
+        if (keyColumns != null && keyColumns.length == keyProperties.length) {
+            return keyColumns;
+        }
+        if (metaData.getColumnCount() < keyProperties.length) {
+            throw new RuntimeException("Too many key properties " + Arrays.toString(keyProperties) + " for statement " + ms.getId()
+                    + ", the driver returned only " + metaData.getColumnCount() + " generated key column(s)");
+        }
+        String[] columns = new String[keyProperties.length];
+        for (int i = 0; i < keyProperties.length; i++) {
+            columns[i] = metaData.getColumnLabel(i + 1);
+        }
+        return columns;
+    }
+
+    private KeySetter[] resolveSetters(Configuration configuration, Class<?> type, String[] keyProperties) {
+        // Map 和简单类型的参数没有 setter，交给 MetaObject 处理
+        if (Map.class.isAssignableFrom(type) || configuration.getTypeHandlerRegistry().hasTypeHandler(type)) {
+            return new KeySetter[keyProperties.length];
+        }
+        Map<String, KeySetter> setters = keySetters.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+        KeySetter[] result = new KeySetter[keyProperties.length];
+        for (int i = 0; i < keyProperties.length; i++) {
+            String property = keyProperties[i];
+            if (property.indexOf('.') >= 0) {
+                continue;
+            }
+            result[i] = setters.computeIfAbsent(property, p -> {
+                Reflector reflector = Reflector.forClass(type);
+                if (!reflector.hasSetter(p)) {
+                    throw new RuntimeException("No setter found for the keyProperty '" + p + "' in " + type.getName());
+                }
+                Class<?> setterType = reflector.getSetterType(p);
+                return new KeySetter(reflector.getSetInvoker(p), configuration.getTypeHandlerRegistry().getTypeHandler(setterType, null));
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 一个主键属性的 setter 和读取主键列用的 TypeHandler
+     */
+    private static final class KeySetter {
+
+        private final Invoker invoker;
+        // 属性类型没有对应的 TypeHandler 时为 null，直接使用 getObject 的结果
+        private final TypeHandler<?> typeHandler;
+
+        KeySetter(Invoker invoker, TypeHandler<?> typeHandler) {
+            this.invoker = invoker;
+            this.typeHandler = typeHandler;
+        }
+
+        void set(Object row, ResultSet rs, String column) throws Exception {
+            Object value = typeHandler == null ? rs.getObject(column) : typeHandler.getResult(rs, column);
+            invoker.invoke(row, new Object[]{value});
+        }
+
+    }
+
+}
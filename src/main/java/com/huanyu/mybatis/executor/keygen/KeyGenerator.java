@@ -0,0 +1,29 @@
+package com.huanyu.mybatis.executor.keygen;
+
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.mapping.MappedStatement;
+
+import java.sql.Statement;
+
+/**
+ * ClassName: KeyGenerator
+ * Package: com.huanyu.mybatis.executor.keygen
+ * Description: 主键生成器
+ * 在插入语句执行之前或之后为参数对象填充主键
+ * @Author: 寰宇
+ * @Create: 2024/7/14 14:10
+ * @Version: 1.0
+ */
+public interface KeyGenerator {
+
+    /**
+     * 执行插入语句之前调用，用于先取得主键再插入的场景
+     */
+    void processBefore(Executor executor, MappedStatement ms, Statement stmt, Object parameter);
+
+    /**
+     * 执行插入语句之后调用，用于由数据库生成主键的场景
+     */
+    void processAfter(Executor executor, MappedStatement ms, Statement stmt, Object parameter);
+
+}
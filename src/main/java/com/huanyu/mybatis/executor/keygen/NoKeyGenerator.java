@@ -0,0 +1,30 @@
+package com.huanyu.mybatis.executor.keygen;
+
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.mapping.MappedStatement;
+
+import java.sql.Statement;
+
+/**
+ * ClassName: NoKeyGenerator
+ * Package: com.huanyu.mybatis.executor.keygen
+ * Description: 不生成主键，未开启 useGeneratedKeys 的语句使用
+ * @Author: 寰宇
+ * @Create: 2024/7/14 14:12
+ * @Version: 1.0
+ */
+public class NoKeyGenerator implements KeyGenerator {
+
+    public static final NoKeyGenerator INSTANCE = new NoKeyGenerator();
+
+    @Override
+    public void processBefore(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+        // Do Nothing
+    }
+
+    @Override
+    public void processAfter(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+        // Do Nothing
+    }
+
+}
@@ -17,10 +17,13 @@ public class DefaultResultContext implements ResultContext {
     private Object resultObject;
     // 结果计数（表明这是第几个结果对象）
     private int resultCount;
+    // 是否已经停止读取
+    private boolean stopped;
 
     public DefaultResultContext() {
         this.resultObject = null;
         this.resultCount = 0;
+        this.stopped = false;
     }
 
     @Override
@@ -33,6 +36,16 @@ public class DefaultResultContext implements ResultContext {
         return resultCount;
     }
 
+    @Override
+    public void stop() {
+        this.stopped = true;
+    }
+
+    @Override
+    public boolean isStopped() {
+        return stopped;
+    }
+
     public void nextResultObject(Object resultObject) {
         resultCount++;
         this.resultObject = resultObject;
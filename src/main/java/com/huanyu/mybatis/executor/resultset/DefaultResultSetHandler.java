@@ -1,8 +1,11 @@
 package com.huanyu.mybatis.executor.resultset;
 
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.cursor.defaults.DefaultCursor;
 import com.huanyu.mybatis.executor.Executor;
 import com.huanyu.mybatis.executor.result.DefaultResultContext;
 import com.huanyu.mybatis.executor.result.DefaultResultHandler;
+import com.huanyu.mybatis.executor.statement.AdaptiveFetchSizer;
 import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.mapping.MappedStatement;
 import com.huanyu.mybatis.mapping.ResultMap;
@@ -11,6 +14,7 @@ import com.huanyu.mybatis.reflection.MetaClass;
 import com.huanyu.mybatis.reflection.MetaObject;
 import com.huanyu.mybatis.reflection.factory.ObjectFactory;
 import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.ResultContext;
 import com.huanyu.mybatis.session.ResultHandler;
 import com.huanyu.mybatis.session.RowBounds;
 import com.huanyu.mybatis.type.TypeHandler;
@@ -86,6 +90,27 @@ public class DefaultResultSetHandler implements ResultSetHandler{
     }
 
 
+    /**
+     * 将Statement的第一个结果集包装为游标，数据在遍历游标时才逐行映射
+     * @param stmt Statement语句
+     * @return 游标
+     * @throws SQLException
+     */
+    @Override
+    public <E> Cursor<E> handleCursorResultSets(Statement stmt) throws SQLException {
+        ResultSet rs = stmt.getResultSet();
+        if (rs == null) {
+            throw new RuntimeException("Statement " + mappedStatement.getId() + " returned no ResultSet, cannot open a cursor.");
+        }
+        ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration);
+        List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+        // 游标只支持一个结果映射
+        if (resultMaps.size() != 1) {
+            throw new RuntimeException("Cursor results cannot be mapped to multiple resultMaps");
+        }
+        return new DefaultCursor<>(this, resultMaps.get(0), rsw, rowBounds);
+    }
+
     // 尝试获取下一个结果集，并用 ResultSetWrapper 包装返回
     private ResultSetWrapper getNextResultSet(Statement stmt) throws SQLException {
         // 使该方法对糟糕的JDBC驱动程序具有容错能力
@@ -109,28 +134,102 @@ public class DefaultResultSetHandler implements ResultSetHandler{
 
     // 处理单个结果集并将结果添加到 multipleResults 列表中
     private void handleResultSet(ResultSetWrapper rsw, ResultMap resultMap, List<Object> multipleResults, ResultMapping parentMapping) throws SQLException {
-        // 如果 resultHandler 为空，则创建一个新的 DefaultResultHandler
-        if (resultHandler == null) {
-            // 1. 新创建默认结果处理器
-            DefaultResultHandler defaultResultHandler = new DefaultResultHandler(objectFactory);
-            // 2. 封装数据，将结果集中的行映射到结果对象
-            handleRowValuesForSimpleResultMap(rsw, resultMap, defaultResultHandler, rowBounds, null);
-            // 3. 保存结果，将处理后的结果添加到 multipleResults 列表中
-            multipleResults.add(defaultResultHandler.getResultList());
+        try {
+            // 如果 resultHandler 为空，则创建一个新的 DefaultResultHandler
+            if (resultHandler == null) {
+                // 1. 新创建默认结果处理器
+                DefaultResultHandler defaultResultHandler = new DefaultResultHandler(objectFactory);
+                // 2. 封装数据，将结果集中的行映射到结果对象
+                int rows = handleRowValuesForSimpleResultMap(rsw, resultMap, defaultResultHandler, rowBounds, null);
+                recordFetchStatistics(rsw, rows);
+                // 3. 保存结果，将处理后的结果添加到 multipleResults 列表中
+                multipleResults.add(defaultResultHandler.getResultList());
+            }
+            // 否则把每一行直接交给调用方的 resultHandler，不在内存中保存结果
+            else {
+                int rows = handleRowValuesForSimpleResultMap(rsw, resultMap, resultHandler, rowBounds, null);
+                recordFetchStatistics(rsw, rows);
+            }
+        } finally {
+            // 处理完（或被 resultHandler 提前停止）后关闭结果集
+            closeResultSet(rsw.getResultSet());
+        }
+    }
+
+    /**
+     * 开启自适应 fetchSize 时记录这次从结果集读取的行数（包括跳过的行），语句显式配置了 fetchSize 时不记录。
+     * 只是统计信息，失败时忽略
+     */
+    public void recordFetchStatistics(ResultSetWrapper rsw, int rows) {
+        AdaptiveFetchSizer adaptiveFetchSizer = configuration.getAdaptiveFetchSizer();
+        if (adaptiveFetchSizer == null || mappedStatement.getFetchSize() != null) {
+            return;
+        }
+        try {
+            adaptiveFetchSizer.record(mappedStatement.getId(), rows, rsw.getResultSet().getMetaData());
+        } catch (SQLException ignore) {
+            // 统计失败不影响查询结果
         }
     }
 
-    // 处理结果集中的行，将每行映射到结果对象
-    private void handleRowValuesForSimpleResultMap(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler resultHandler, RowBounds rowBounds, ResultMapping parentMapping) throws SQLException {
+    private void closeResultSet(ResultSet rs) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+        } catch (SQLException ignore) {
+            // 关闭失败可以忽略
+        }
+    }
+
+    /**
+     * 处理结果集中的行，直到达到行数限制或者 resultHandler 调用了 stop，游标通过它逐行读取
+     */
+    public void handleRowValues(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler resultHandler, RowBounds rowBounds, ResultMapping parentMapping) throws SQLException {
+        handleRowValuesForSimpleResultMap(rsw, resultMap, resultHandler, rowBounds, parentMapping);
+    }
+
+    // 处理结果集中的行，将每行映射到结果对象，返回从结果集读取的行数（包括跳过的行）
+    private int handleRowValuesForSimpleResultMap(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler resultHandler, RowBounds rowBounds, ResultMapping parentMapping) throws SQLException {
         // 创建一个 DefaultResultContext 用于记录结果上下文
         DefaultResultContext resultContext = new DefaultResultContext();
-        // 遍历结果集中的每一行，直到达到行数限制
-        while (resultContext.getResultCount() < rowBounds.getLimit() && rsw.getResultSet().next()) {
+        // 逻辑分页：跳过 offset 之前的行（配置了方言时已经改写为物理分页，这里的 offset 为 0）
+        int skipped = skipRows(rsw.getResultSet(), rowBounds);
+        // 遍历结果集中的每一行，直到达到行数限制或者被要求停止
+        while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
             // 获取一行的值
             Object rowValue = getRowValue(rsw, resultMap);
             // 调用 resultHandler 处理这一行的值
             callResultHandler(resultHandler, resultContext, rowValue);
         }
+        return skipped + resultContext.getResultCount();
+    }
+
+    // 跳过 offset 之前的行，可滚动的结果集直接定位，返回跳过的行数
+    private int skipRows(ResultSet rs, RowBounds rowBounds) throws SQLException {
+        if (rowBounds.getOffset() <= RowBounds.NO_ROW_OFFSET) {
+            return 0;
+        }
+        if (rs.getType() != ResultSet.TYPE_FORWARD_ONLY) {
+            if (rs.absolute(rowBounds.getOffset())) {
+                return rowBounds.getOffset();
+            }
+            // offset 超出了结果集，跳过的只是结果集中实际有的行
+            int rows = rs.last() ? rs.getRow() : 0;
+            rs.afterLast();
+            return rows;
+        }
+        for (int i = 0; i < rowBounds.getOffset(); i++) {
+            if (!rs.next()) {
+                return i;
+            }
+        }
+        return rowBounds.getOffset();
+    }
+
+    // 判断是否还需要继续读取
+    private boolean shouldProcessMoreRows(ResultContext context, RowBounds rowBounds) {
+        return !context.isStopped() && context.getResultCount() < rowBounds.getLimit();
     }
 
     // 调用 resultHandler 处理结果上下文中的结果对象
@@ -176,6 +275,12 @@ public class DefaultResultSetHandler implements ResultSetHandler{
     private Object createResultObject(ResultSetWrapper rsw, ResultMap resultMap, List<Class<?>> constructorArgTypes, List<Object> constructorArgs, String columnPrefix) throws SQLException {
         // 获取结果映射类型
         final Class<?> resultType = resultMap.getType();
+        // 简单类型（Long、String 等）直接用类型处理器读取第一列
+        if (typeHandlerRegistry.hasTypeHandler(resultType)) {
+            final String columnName = rsw.getColumnNames().get(0);
+            final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, columnName);
+            return typeHandler.getResult(rsw.getResultSet(), columnName);
+        }
         // 创建 MetaClass 用于操作结果类型
         final MetaClass metaType = MetaClass.forClass(resultType);
         // 如果结果类型是接口或有默认构造函数
@@ -1,5 +1,7 @@
 package com.huanyu.mybatis.executor.resultset;
 
+import com.huanyu.mybatis.cursor.Cursor;
+
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
@@ -18,5 +20,8 @@ public interface ResultSetHandler {
     // 将Statement的执行结果处理为List
     <E> List<E> handleResultSets(Statement stmt) throws SQLException;
 
+    // 将Statement的执行结果处理为游标
+    <E> Cursor<E> handleCursorResultSets(Statement stmt) throws SQLException;
+
 
 }
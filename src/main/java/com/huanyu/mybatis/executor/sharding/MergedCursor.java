@@ -0,0 +1,117 @@
+package com.huanyu.mybatis.executor.sharding;
+
+import com.huanyu.mybatis.cursor.Cursor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * ClassName: MergedCursor
+ * Package: com.huanyu.mybatis.executor.sharding
+ * Description: 跨分片归并的游标
+ * 包装各分片的游标，用 MergingIterator 流式归并，每次只从分片游标中多读一行，不会把分片结果全部加载到内存。
+ * 关闭时关闭全部分片游标
+ * @Author: 寰宇
+ * @Create: 2024/7/12 14:50
+ * @Version: 1.0
+ */
+public class MergedCursor<T> implements Cursor<T> {
+
+    private final List<Cursor<T>> cursors;
+    private final MergingIterator<T> mergingIterator;
+    private final CursorIterator cursorIterator = new CursorIterator();
+
+    private boolean iteratorRetrieved;
+    private boolean closed;
+    private boolean consumed;
+    // 已经返回的结果数
+    private int index = -1;
+
+    public MergedCursor(List<Cursor<T>> cursors, ShardOrderBy orderBy, int offset, int limit) {
+        this.cursors = cursors;
+        List<Iterator<T>> iterators = new ArrayList<>(cursors.size());
+        for (Cursor<T> cursor : cursors) {
+            iterators.add(cursor.iterator());
+        }
+        this.mergingIterator = new MergingIterator<>(iterators, orderBy, offset, limit);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && index >= 0;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return index;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iteratorRetrieved) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        if (closed) {
+            throw new IllegalStateException("A Cursor is already closed.");
+        }
+        iteratorRetrieved = true;
+        return cursorIterator;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // 一个分片关闭失败也要继续关闭其他分片
+        for (Cursor<T> cursor : cursors) {
+            try {
+                cursor.close();
+            } catch (IOException ignore) {
+                // 关闭失败可以忽略
+            }
+        }
+    }
+
+    private class CursorIterator implements Iterator<T> {
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            if (!mergingIterator.hasNext()) {
+                // 读完或者达到行数限制，提前释放分片的结果集
+                consumed = true;
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            index++;
+            return mergingIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Cannot remove element from Cursor");
+        }
+
+    }
+
+}
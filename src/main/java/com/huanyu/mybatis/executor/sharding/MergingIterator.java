@@ -0,0 +1,120 @@
+package com.huanyu.mybatis.executor.sharding;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * ClassName: MergingIterator
+ * Package: com.huanyu.mybatis.executor.sharding
+ * Description: 多路归并迭代器
+ * 每个分片的结果已经按 ORDER BY 有序，优先队列里只保存各分片当前的第一行，每取出一行再从同一分片补一行，
+ * 任意时刻只持有 k 行（k 为分片数）。没有排序规则时按分片顺序依次拼接。
+ * 归并之后再应用偏移量和行数限制，行数够了就不再从分片读取
+ * @Author: 寰宇
+ * @Create: 2024/7/12 14:30
+ * @Version: 1.0
+ */
+public class MergingIterator<E> implements Iterator<E> {
+
+    private final List<Iterator<E>> sources;
+    private final ShardOrderBy orderBy;
+    private final PriorityQueue<Head<E>> queue;
+    private final int offset;
+    private final int limit;
+
+    // 拼接模式下当前读取的分片
+    private int sourceIndex;
+    // 已经跳过的行数和已经返回的行数
+    private int skipped;
+    private int returned;
+    private boolean initialized;
+
+    public MergingIterator(List<Iterator<E>> sources, ShardOrderBy orderBy, int offset, int limit) {
+        this.sources = sources;
+        this.orderBy = orderBy;
+        this.offset = offset;
+        this.limit = limit;
+        this.queue = orderBy == null ? null : new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+            int result = orderBy.compare(a.keys, b.keys);
+            // 排序键相同时按分片顺序，保证结果稳定
+            return result != 0 ? result : Integer.compare(a.source, b.source);
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (returned >= limit) {
+            return false;
+        }
+        if (!initialized) {
+            initialized = true;
+            if (queue != null) {
+                for (int i = 0; i < sources.size(); i++) {
+                    advance(i);
+                }
+            }
+            while (skipped < offset && hasNextRow()) {
+                nextRow();
+                skipped++;
+            }
+        }
+        return hasNextRow();
+    }
+
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        returned++;
+        return nextRow();
+    }
+
+    private boolean hasNextRow() {
+        if (queue != null) {
+            return !queue.isEmpty();
+        }
+        while (sourceIndex < sources.size()) {
+            if (sources.get(sourceIndex).hasNext()) {
+                return true;
+            }
+            sourceIndex++;
+        }
+        return false;
+    }
+
+    private E nextRow() {
+        if (queue == null) {
+            return sources.get(sourceIndex).next();
+        }
+        Head<E> head = queue.poll();
+        advance(head.source);
+        return head.row;
+    }
+
+    // 从分片读取下一行放入队列
+    private void advance(int source) {
+        Iterator<E> iterator = sources.get(source);
+        if (iterator.hasNext()) {
+            E row = iterator.next();
+            queue.add(new Head<>(row, orderBy.keysOf(row), source));
+        }
+    }
+
+    private static class Head<E> {
+
+        private final E row;
+        private final Object[] keys;
+        private final int source;
+
+        Head(E row, Object[] keys, int source) {
+            this.row = row;
+            this.keys = keys;
+            this.source = source;
+        }
+
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.huanyu.mybatis.executor.sharding;
+
+import com.huanyu.mybatis.dialect.SqlClauses;
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ClassName: ScatterGatherPlan
+ * Package: com.huanyu.mybatis.executor.sharding
+ * Description: 跨分片查询的执行计划
+ * 分析 SQL 末尾的 ORDER BY 和 LIMIT：
+ * 1、ORDER BY 的列转换为 ShardOrderBy，用于归并各分片已经有序的结果；
+ * 2、LIMIT（支持 LIMIT n、LIMIT m, n、LIMIT n OFFSET m，数值可以是 #{} 参数）下推到分片时改写为 LIMIT m + n，
+ * 偏移量在归并之后再跳过；RowBounds 同样以 (0, offset + limit) 下推，归并后再应用。
+ * 只分析最外层的子句，括号和引号中的内容不参与匹配
+ * @Author: 寰宇
+ * @Create: 2024/7/12 15:10
+ * @Version: 1.0
+ */
+public class ScatterGatherPlan {
+
+    private static final Pattern ORDER_BY = Pattern.compile("\\bORDER\\s+BY\\b");
+    private static final Pattern ORDER_BY_END = Pattern.compile("\\b(LIMIT|OFFSET|FETCH|FOR)\\b");
+    private static final Pattern LIMIT = Pattern.compile("\\bLIMIT\\s+(\\d+|\\?)(?:\\s*,\\s*(\\d+|\\?))?(?:\\s+OFFSET\\s+(\\d+|\\?))?");
+    private static final Pattern OFFSET = Pattern.compile("\\bOFFSET\\b");
+    private static final Pattern DIRECTION = Pattern.compile("(?i)^(.*?)(?:\\s+(ASC|DESC))?(?:\\s+NULLS\\s+(FIRST|LAST))?$", Pattern.DOTALL);
+
+    // 下推到分片的 SQL 和翻页限制
+    private final BoundSql shardBoundSql;
+    private final RowBounds shardRowBounds;
+    // 归并用的排序规则，没有 ORDER BY 时为 null
+    private final ShardOrderBy orderBy;
+    // 归并之后应用的偏移量和行数限制
+    private final int offset;
+    private final int limit;
+
+    private ScatterGatherPlan(BoundSql shardBoundSql, RowBounds shardRowBounds, ShardOrderBy orderBy, int offset, int limit) {
+        this.shardBoundSql = shardBoundSql;
+        this.shardRowBounds = shardRowBounds;
+        this.orderBy = orderBy;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    public static ScatterGatherPlan build(Configuration configuration, MappedStatement ms, BoundSql boundSql, RowBounds rowBounds) {
+        String sql = boundSql.getSql();
+        String masked = SqlClauses.mask(sql, true);
+
+        // LIMIT 子句
+        long sqlOffset = 0;
+        long sqlLimit = RowBounds.NO_ROW_LIMIT;
+        Matcher limitMatcher = LIMIT.matcher(masked);
+        int limitStart = -1;
+        int limitEnd = -1;
+        List<Integer> limitParameters = new ArrayList<>();
+        while (limitMatcher.find()) {
+            limitStart = limitMatcher.start();
+            limitEnd = limitMatcher.end();
+        }
+        if (limitStart >= 0) {
+            limitMatcher = LIMIT.matcher(masked);
+            limitMatcher.find(limitStart);
+            int parameterIndex = SqlClauses.countPlaceholders(sql, 0, limitStart);
+            long[] values = new long[3];
+            for (int group = 1; group <= 3; group++) {
+                String token = limitMatcher.group(group);
+                if (token == null) {
+                    values[group - 1] = -1;
+                } else if ("?".equals(token)) {
+                    limitParameters.add(parameterIndex);
+                    values[group - 1] = parameterValue(configuration, boundSql, parameterIndex++);
+                } else {
+                    values[group - 1] = Long.parseLong(token);
+                }
+            }
+            // LIMIT m, n 中第一个数是偏移量
+            if (values[1] >= 0) {
+                sqlOffset = values[0];
+                sqlLimit = values[1];
+            } else {
+                sqlLimit = values[0];
+                sqlOffset = Math.max(0, values[2]);
+            }
+        }
+        Matcher offsetMatcher = OFFSET.matcher(masked);
+        while (offsetMatcher.find()) {
+            if (offsetMatcher.start() < limitStart || offsetMatcher.start() >= limitEnd) {
+                throw new RuntimeException("Cannot push OFFSET down to shards, use LIMIT ... OFFSET or RowBounds instead. SQL: " + sql);
+            }
+        }
+
+        // 合并 SQL 中的 LIMIT 和 RowBounds，得到归并后要返回的区间 [start, end)
+        long start = sqlOffset + rowBounds.getOffset();
+        long end = Math.min(sqlOffset + sqlLimit, start + rowBounds.getLimit());
+        int shardLimit = (int) Math.min(end, RowBounds.NO_ROW_LIMIT);
+
+        BoundSql shardBoundSql = boundSql;
+        if (limitStart >= 0) {
+            String shardSql = sql.substring(0, limitStart) + "LIMIT " + shardLimit + sql.substring(limitEnd);
+            List<ParameterMapping> parameterMappings = new ArrayList<>(boundSql.getParameterMappings());
+            for (int i = limitParameters.size() - 1; i >= 0; i--) {
+                parameterMappings.remove((int) limitParameters.get(i));
+            }
+            shardBoundSql = new BoundSql(configuration, shardSql, parameterMappings, boundSql.getParameterObject());
+            for (Map.Entry<String, Object> entry : boundSql.getAdditionalParameters().entrySet()) {
+                shardBoundSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+            }
+        }
+        // SQL 中已经有 LIMIT 时不再下推 RowBounds，避免方言再追加一个分页子句
+        RowBounds shardRowBounds = limitStart >= 0 || shardLimit == RowBounds.NO_ROW_LIMIT ? RowBounds.DEFAULT : new RowBounds(RowBounds.NO_ROW_OFFSET, shardLimit);
+
+        ShardOrderBy orderBy = orderByClause(configuration, ms, sql, masked);
+        return new ScatterGatherPlan(shardBoundSql, shardRowBounds, orderBy,
+                (int) Math.min(start, RowBounds.NO_ROW_LIMIT), (int) Math.max(0, Math.min(end - start, RowBounds.NO_ROW_LIMIT)));
+    }
+
+    // 解析最外层的 ORDER BY，没有时返回 null
+    private static ShardOrderBy orderByClause(Configuration configuration, MappedStatement ms, String sql, String masked) {
+        Matcher matcher = ORDER_BY.matcher(masked);
+        int clauseStart = -1;
+        while (matcher.find()) {
+            clauseStart = matcher.end();
+        }
+        if (clauseStart < 0) {
+            return null;
+        }
+        Matcher endMatcher = ORDER_BY_END.matcher(masked);
+        int clauseEnd = endMatcher.find(clauseStart) ? endMatcher.start() : masked.length();
+        List<String> columns = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        List<Boolean> nullsFirst = new ArrayList<>();
+        int itemStart = clauseStart;
+        for (int i = clauseStart; i <= clauseEnd; i++) {
+            if (i < clauseEnd && masked.charAt(i) != ',') {
+                continue;
+            }
+            String item = sql.substring(itemStart, i).trim();
+            if (item.endsWith(";")) {
+                item = item.substring(0, item.length() - 1).trim();
+            }
+            itemStart = i + 1;
+            Matcher direction = DIRECTION.matcher(item);
+            direction.matches();
+            String expression = direction.group(1).trim();
+            boolean desc = "DESC".equalsIgnoreCase(direction.group(2));
+            String nulls = direction.group(3);
+            columns.add(columnOf(expression, sql));
+            descending.add(desc);
+            // 没有指定时升序空值在前，降序空值在后
+            nullsFirst.add(nulls == null ? !desc : "FIRST".equalsIgnoreCase(nulls));
+        }
+        return new ShardOrderBy(configuration, ms, columns, descending, nullsFirst);
+    }
+
+    // 排序表达式对应的结果列名，去掉表别名和引号
+    private static String columnOf(String expression, String sql) {
+        String column = expression.substring(expression.lastIndexOf('.') + 1).replaceAll("[`\"\\[\\]]", "");
+        if (column.isEmpty() || !column.matches("[A-Za-z_][A-Za-z0-9_$]*")) {
+            throw new RuntimeException("Cannot merge shard results ordered by expression '" + expression + "', order by a selected column or alias instead. SQL: " + sql);
+        }
+        return column;
+    }
+
+    // 取出 LIMIT 中 #{} 参数的值
+    private static long parameterValue(Configuration configuration, BoundSql boundSql, int index) {
+        String property = boundSql.getParameterMappings().get(index).getProperty();
+        Object parameterObject = boundSql.getParameterObject();
+        Object value;
+        if (boundSql.hasAdditionalParameter(property)) {
+            value = boundSql.getAdditionalParameter(property);
+        } else if (parameterObject == null) {
+            value = null;
+        } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+            value = parameterObject;
+        } else {
+            value = configuration.newMetaObject(parameterObject).getValue(property);
+        }
+        if (!(value instanceof Number)) {
+            throw new RuntimeException("LIMIT parameter '" + property + "' must be a number, but was " + value);
+        }
+        return ((Number) value).longValue();
+    }
+
+    public BoundSql getShardBoundSql() {
+        return shardBoundSql;
+    }
+
+    public RowBounds getShardRowBounds() {
+        return shardRowBounds;
+    }
+
+    public ShardOrderBy getOrderBy() {
+        return orderBy;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.huanyu.mybatis.executor.sharding;
+
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.ResultMapping;
+import com.huanyu.mybatis.reflection.MetaClass;
+import com.huanyu.mybatis.reflection.MetaObject;
+import com.huanyu.mybatis.session.Configuration;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: ShardOrderBy
+ * Package: com.huanyu.mybatis.executor.sharding
+ * Description: 跨分片归并用的排序规则
+ * 由 SQL 的 ORDER BY 列解析而来：列名先按 resultMap 中显式的 column 映射找属性，找不到再按自动映射（忽略大小写）找，
+ * 结果是 Map 时直接按列名取值，结果是简单类型时比较结果本身。
+ * 空值按数据库的默认习惯，升序排在最前，降序排在最后，可以用 NULLS FIRST/LAST 指定
+ * @Author: 寰宇
+ * @Create: 2024/7/12 14:10
+ * @Version: 1.0
+ */
+public class ShardOrderBy {
+
+    private final Configuration configuration;
+    // 每个排序项对应的属性名，结果是简单类型时为 null
+    private final String[] properties;
+    private final boolean[] descending;
+    private final boolean[] nullsFirst;
+    private final boolean mapResult;
+
+    ShardOrderBy(Configuration configuration, MappedStatement ms, List<String> columns, List<Boolean> descending, List<Boolean> nullsFirst) {
+        this.configuration = configuration;
+        ResultMap resultMap = ms.getResultMaps().get(0);
+        Class<?> type = resultMap.getType();
+        boolean simple = configuration.getTypeHandlerRegistry().hasTypeHandler(type);
+        this.mapResult = Map.class.isAssignableFrom(type);
+        this.properties = new String[columns.size()];
+        this.descending = new boolean[columns.size()];
+        this.nullsFirst = new boolean[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            this.properties[i] = simple ? null : mapResult ? column : resolveProperty(resultMap, type, column);
+            this.descending[i] = descending.get(i);
+            this.nullsFirst[i] = nullsFirst.get(i);
+        }
+    }
+
+    private static String resolveProperty(ResultMap resultMap, Class<?> type, String column) {
+        for (ResultMapping mapping : resultMap.getResultMappings()) {
+            if (column.equalsIgnoreCase(mapping.getColumn())) {
+                return mapping.getProperty();
+            }
+        }
+        String property = MetaClass.forClass(type).findProperty(column, false);
+        if (property == null) {
+            throw new RuntimeException("Cannot merge shard results: ORDER BY column '" + column + "' is not mapped to a property of " + type.getName());
+        }
+        return property;
+    }
+
+    /**
+     * 取出一行结果的排序键，每行只取一次，放进归并队列时缓存起来
+     */
+    public Object[] keysOf(Object row) {
+        Object[] keys = new Object[properties.length];
+        MetaObject metaObject = null;
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i] == null || row == null) {
+                keys[i] = row;
+            } else if (mapResult) {
+                keys[i] = getIgnoreCase((Map<?, ?>) row, properties[i]);
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(row);
+                }
+                keys[i] = metaObject.getValue(properties[i]);
+            }
+        }
+        return keys;
+    }
+
+    private static Object getIgnoreCase(Map<?, ?> row, String column) {
+        Object value = row.get(column);
+        if (value != null || row.containsKey(column)) {
+            return value;
+        }
+        for (Map.Entry<?, ?> entry : row.entrySet()) {
+            if (entry.getKey() instanceof String && column.equalsIgnoreCase((String) entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 比较两行的排序键
+     */
+    public int compare(Object[] left, Object[] right) {
+        for (int i = 0; i < left.length; i++) {
+            // 空值的位置不受升降序翻转的影响
+            if (left[i] == null || right[i] == null) {
+                if (left[i] != right[i]) {
+                    return (left[i] == null) == nullsFirst[i] ? -1 : 1;
+                }
+                continue;
+            }
+            int result = compareValue(left[i], right[i]);
+            if (result != 0) {
+                return descending[i] ? -result : result;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private int compareValue(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number && left.getClass() != right.getClass()) {
+            return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+        }
+        if (left instanceof Comparable) {
+            return ((Comparable) left).compareTo(right);
+        }
+        return left.toString().compareTo(right.toString());
+    }
+
+}
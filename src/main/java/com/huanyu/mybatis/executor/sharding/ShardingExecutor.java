@@ -0,0 +1,390 @@
+package com.huanyu.mybatis.executor.sharding;
+
+import com.huanyu.mybatis.cache.CacheKey;
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.datasource.Deadline;
+import com.huanyu.mybatis.dialect.MultiRowInsertSqlSource;
+import com.huanyu.mybatis.executor.BatchResult;
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.result.DefaultResultContext;
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.Environment;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.ExecutorType;
+import com.huanyu.mybatis.session.ResultHandler;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.sharding.ShardingRule;
+import com.huanyu.mybatis.transaction.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * ClassName: ShardingExecutor
+ * Package: com.huanyu.mybatis.executor.sharding
+ * Description: 分片执行器
+ * 配置了 sharding 时 SqlSession 使用该执行器：每条语句按 ShardingRule 从参数中选出分片，
+ * 取不到分片键的写语句报错（开启 defaultWrites 时使用默认环境），不会静默写到默认环境，
+ * 交给该分片的执行器执行。分片的事务和执行器在第一次用到时才创建，只访问一个分片的会话与不分片时一样只占用一个连接。
+ * 取不到分片键的查询（开启 scatterGather 时）在全部分片上各用一个线程、一个连接并发执行，
+ * 按 ScatterGatherPlan 下推 LIMIT，再按 ORDER BY 多路归并，耗时取决于最慢的分片而不是各分片之和。
+ * 提交、回滚和关闭依次作用于已经打开的全部分片，各分片的提交相互独立，不是分布式事务
+ * @Author: 寰宇
+ * @Create: 2024/7/12 10:00
+ * @Version: 1.0
+ */
+public class ShardingExecutor implements Executor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardingExecutor.class);
+
+    private final Configuration configuration;
+    private final ShardingRule shardingRule;
+    private final ExecutorType executorType;
+    private final TransactionIsolationLevel level;
+    private final boolean autoCommit;
+
+    // 已经打开的分片执行器，按打开顺序
+    private final Map<String, Executor> executors = new LinkedHashMap<>();
+    private boolean closed;
+    // 会话设置的截止时间，传递给每个分片的执行器
+    private Deadline deadline;
+
+    public ShardingExecutor(Configuration configuration, ExecutorType executorType, TransactionIsolationLevel level, boolean autoCommit) {
+        this.configuration = configuration;
+        this.shardingRule = configuration.getShardingRule();
+        this.executorType = executorType;
+        this.level = level;
+        this.autoCommit = autoCommit;
+    }
+
+    /**
+     * 按参数选择分片
+     * @return 分片的环境 id，取不到分片键时返回 null
+     */
+    protected String resolveShard(Object parameter) {
+        // 多行 INSERT 的一块按其中的行选择分片，调用方已经保证同一块的行在同一个分片上
+        if (parameter instanceof MultiRowInsertSqlSource.Chunk) {
+            parameter = ((MultiRowInsertSqlSource.Chunk) parameter).getRows().get(0);
+        }
+        return shardingRule.resolveShard(configuration, parameter);
+    }
+
+    /**
+     * 返回分片的执行器，取不到分片键（shard 为 null）时使用默认环境
+     */
+    protected Executor route(String shard) {
+        return getExecutor(shard == null ? configuration.getEnvironment().getId() : shard);
+    }
+
+    /**
+     * 按参数选择分片，返回该分片的执行器，第一次用到时创建事务和执行器
+     */
+    protected Executor route(Object parameter) {
+        return route(resolveShard(parameter));
+    }
+
+    /**
+     * 获取环境的执行器，第一次用到时创建事务和执行器
+     * @param environmentId 环境 id
+     */
+    public Executor getExecutor(String environmentId) {
+        if (closed) {
+            throw new RuntimeException("Executor was closed.");
+        }
+        Executor executor = executors.get(environmentId);
+        if (executor == null) {
+            Environment environment = configuration.getEnvironment(environmentId);
+            if (environment == null) {
+                throw new RuntimeException("Sharding resolved to unknown environment '" + environmentId + "'");
+            }
+            Transaction tx = environment.getTransactionFactory().newTransaction(environment.getDataSource(), level, autoCommit);
+            executor = configuration.newExecutor(tx, executorType);
+            executor.setDeadline(deadline);
+            executors.put(environmentId, executor);
+            logger.debug("Opened shard " + environmentId + ".");
+        }
+        return executor;
+    }
+
+    /**
+     * 是否需要在全部分片上执行：开启了 scatterGather 且取不到分片键的查询
+     * @param shard 已经按参数选出的分片
+     */
+    protected boolean isScatter(MappedStatement ms, String shard) {
+        return shard == null && shardingRule.isScatterGather() && ms.getSqlCommandType() == SqlCommandType.SELECT;
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter) throws SQLException {
+        String shard = resolveShard(parameter);
+        if (shard == null && !shardingRule.isDefaultWrites()) {
+            throw new RuntimeException("Cannot route " + ms.getSqlCommandType() + " statement '" + ms.getId()
+                    + "' to a shard: the parameter has no value for shard key '" + shardingRule.getShardKey()
+                    + "'. Pass the shard key, or enable defaultWrites for unsharded tables.");
+        }
+        return route(shard).update(ms, parameter);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql) throws SQLException {
+        String shard = resolveShard(parameter);
+        if (isScatter(ms, shard)) {
+            return scatterQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+        }
+        return route(shard).query(ms, parameter, rowBounds, resultHandler, key, boundSql);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
+        String shard = resolveShard(parameter);
+        if (isScatter(ms, shard)) {
+            return scatterQuery(ms, parameter, rowBounds, resultHandler, ms.getBoundSql(parameter));
+        }
+        return route(shard).query(ms, parameter, rowBounds, resultHandler);
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+        String shard = resolveShard(parameter);
+        if (isScatter(ms, shard)) {
+            return scatterQueryCursor(ms, parameter, rowBounds, ms.getBoundSql(parameter));
+        }
+        return route(shard).queryCursor(ms, parameter, rowBounds);
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        String shard = resolveShard(parameter);
+        if (isScatter(ms, shard)) {
+            return scatterQueryCursor(ms, parameter, rowBounds, boundSql);
+        }
+        return route(shard).queryCursor(ms, parameter, rowBounds, boundSql);
+    }
+
+    /**
+     * 在全部分片上查询，归并为一个列表；传入了 resultHandler 时按归并后的顺序逐行交给它
+     */
+    private <E> List<E> scatterQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
+        ScatterGatherPlan plan = ScatterGatherPlan.build(configuration, ms, boundSql, rowBounds);
+        List<List<E>> results = scatter((shard, executor) -> {
+            // 各分片的语句和参数完全相同，缓存的键要带上分片，否则共用的二级缓存会把第一个分片的结果返回给所有分片
+            CacheKey key = executor.createCacheKey(ms, parameter, plan.getShardRowBounds(), plan.getShardBoundSql());
+            key.update(shard);
+            return executor.<E>query(ms, parameter, plan.getShardRowBounds(), Executor.NO_RESULT_HANDLER, key, plan.getShardBoundSql());
+        }, null);
+        List<Iterator<E>> iterators = new ArrayList<>(results.size());
+        for (List<E> result : results) {
+            iterators.add(result.iterator());
+        }
+        MergingIterator<E> merged = new MergingIterator<>(iterators, plan.getOrderBy(), plan.getOffset(), plan.getLimit());
+        List<E> list = new ArrayList<>();
+        DefaultResultContext resultContext = new DefaultResultContext();
+        while (merged.hasNext()) {
+            E row = merged.next();
+            if (resultHandler == null) {
+                list.add(row);
+                continue;
+            }
+            resultContext.nextResultObject(row);
+            resultHandler.handleResult(resultContext);
+            if (resultContext.isStopped()) {
+                break;
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 在全部分片上打开游标，返回流式归并的游标
+     */
+    private <E> Cursor<E> scatterQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
+        ScatterGatherPlan plan = ScatterGatherPlan.build(configuration, ms, boundSql, rowBounds);
+        List<Cursor<E>> cursors = scatter((shard, executor) -> executor.<E>queryCursor(ms, parameter, plan.getShardRowBounds(), plan.getShardBoundSql()), cursor -> {
+            try {
+                cursor.close();
+            } catch (IOException ignore) {
+                // 关闭失败可以忽略
+            }
+        });
+        return new MergedCursor<>(cursors, plan.getOrderBy(), plan.getOffset(), plan.getLimit());
+    }
+
+    /**
+     * 在每个分片上并发执行查询，按分片顺序返回各分片的结果。
+     * 分片的执行器在当前线程中打开，每个分片交给线程池中的一个线程执行，同一个执行器不会被两个线程同时使用。
+     * 有分片失败时等待其他分片结束，用 discard 释放已经成功的结果（如游标），再抛出第一个异常
+     */
+    private <T> List<T> scatter(ShardQuery<T> query, Consumer<T> discard) throws SQLException {
+        List<String> shards = shardingRule.getShards();
+        List<Executor> targets = new ArrayList<>(shards.size());
+        for (String shard : shards) {
+            targets.add(getExecutor(shard));
+        }
+        if (targets.size() == 1) {
+            return Collections.singletonList(query.query(shards.get(0), targets.get(0)));
+        }
+        ExecutorService pool = configuration.getScatterGatherExecutor();
+        List<Future<T>> futures = new ArrayList<>(targets.size());
+        // 调用线程上设置的截止时间同样作用于各个分片的查询
+        Deadline callerDeadline = Deadline.get();
+        for (int i = 0; i < targets.size(); i++) {
+            String shard = shards.get(i);
+            Executor target = targets.get(i);
+            futures.add(pool.submit(() -> {
+                Deadline previous = Deadline.set(callerDeadline);
+                try {
+                    return query.query(shard, target);
+                } finally {
+                    Deadline.set(previous);
+                }
+            }));
+        }
+        List<T> results = new ArrayList<>(targets.size());
+        Throwable failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                for (Future<T> f : futures) {
+                    f.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for shard results. Cause: " + e, e);
+            }
+        }
+        if (failure == null) {
+            return results;
+        }
+        if (discard != null) {
+            for (T result : results) {
+                discard.accept(result);
+            }
+        }
+        if (failure instanceof SQLException) {
+            throw (SQLException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        throw new RuntimeException("Error querying shards. Cause: " + failure, failure);
+    }
+
+    // 在一个分片上执行的查询
+    private interface ShardQuery<T> {
+        T query(String shard, Executor executor) throws SQLException;
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() throws SQLException {
+        List<BatchResult> results = new ArrayList<>();
+        for (Executor executor : executors.values()) {
+            results.addAll(executor.flushStatements());
+        }
+        return results;
+    }
+
+    /**
+     * 分片会话没有单一的事务，返回第一个打开的分片的事务，还没有打开分片时返回 null
+     */
+    @Override
+    public Transaction getTransaction() {
+        if (closed) {
+            throw new RuntimeException("Executor was closed.");
+        }
+        return executors.isEmpty() ? null : executors.values().iterator().next().getTransaction();
+    }
+
+    @Override
+    public void commit(boolean required) throws SQLException {
+        if (closed) {
+            throw new RuntimeException("Cannot commit, transaction is already closed");
+        }
+        for (Executor executor : executors.values()) {
+            executor.commit(required);
+        }
+    }
+
+    @Override
+    public void rollback(boolean required) throws SQLException {
+        if (closed) {
+            return;
+        }
+        // 一个分片回滚失败也要继续回滚其他分片，最后抛出第一个异常
+        SQLException failure = null;
+        for (Executor executor : executors.values()) {
+            try {
+                executor.rollback(required);
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close(boolean forceRollback) {
+        for (Executor executor : executors.values()) {
+            executor.close(forceRollback);
+        }
+        executors.clear();
+        closed = true;
+    }
+
+    @Override
+    public void clearLocalCache() {
+        for (Executor executor : executors.values()) {
+            executor.clearLocalCache();
+        }
+    }
+
+    @Override
+    public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+        return route(parameterObject).createCacheKey(ms, parameterObject, rowBounds, boundSql);
+    }
+
+    @Override
+    public void setExecutorWrapper(Executor executor) {
+        // 分片的执行器各自独立，没有需要传递的包装
+    }
+
+    @Override
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+        for (Executor executor : executors.values()) {
+            executor.setDeadline(deadline);
+        }
+    }
+
+    @Override
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    public Map<String, Executor> getOpenExecutors() {
+        return executors;
+    }
+
+}
@@ -0,0 +1,256 @@
+package com.huanyu.mybatis.executor.statement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * ClassName: AdaptiveFetchSizer
+ * Package: com.huanyu.mybatis.executor.statement
+ * Description: 自适应 fetchSize 的控制器
+ * adaptiveFetchSize 开启时，结果集处理器在每次查询结束后按 MappedStatement 的 id 记录读取的行数和估算的一行字节数，
+ * 语句处理器在下一次执行前向它询问 fetchSize：
+ * 1、取最近 WINDOW 次执行行数的 percentile 分位数，再加 1 行，使驱动在同一次往返中就能读到结果集的末尾；
+ * 2、fetchSize × 一行字节数不超过 bufferBytes，部分驱动（如 Oracle）按声明的列宽为整批预分配缓冲区；
+ * 3、结果限制在 [minFetchSize, maxFetchSize] 之间。
+ * 一行的字节数由结果集元数据估算：定长类型按类型大小，变长类型按声明的精度，大对象和没有精度的列按 MAX_COLUMN_BYTES 计。
+ * 语句上显式配置的 fetchSize 优先，不使用这里的值；还没有记录时使用全局的 defaultFetchSize
+ * @Author: 寰宇
+ * @Create: 2024/7/14 14:00
+ * @Version: 1.0
+ */
+public class AdaptiveFetchSizer implements AdaptiveFetchSizerMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveFetchSizer.class);
+
+    // 参与分位数计算的最近执行次数
+    private static final int WINDOW = 64;
+    // 大对象或者没有声明精度的列按这个字节数估算
+    private static final int MAX_COLUMN_BYTES = 4096;
+
+    private final int minFetchSize;
+    private final int maxFetchSize;
+    private final int percentile;
+    private final long bufferBytes;
+
+    private final ConcurrentMap<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final AtomicLong observationCount = new AtomicLong();
+    private final AtomicLong adjustmentCount = new AtomicLong();
+
+    public AdaptiveFetchSizer(int minFetchSize, int maxFetchSize, int percentile, long bufferBytes) {
+        if (minFetchSize < 1 || maxFetchSize < minFetchSize) {
+            throw new IllegalArgumentException("Invalid adaptive fetch size bounds [" + minFetchSize + ", " + maxFetchSize + "]");
+        }
+        if (percentile < 1 || percentile > 100) {
+            throw new IllegalArgumentException("Adaptive fetch size percentile must be between 1 and 100, but was " + percentile);
+        }
+        this.minFetchSize = minFetchSize;
+        this.maxFetchSize = maxFetchSize;
+        this.percentile = percentile;
+        this.bufferBytes = bufferBytes;
+    }
+
+    /**
+     * 语句当前的 fetchSize，还没有记录时返回 null
+     */
+    public Integer getFetchSize(String statementId) {
+        StatementStats stats = statements.get(statementId);
+        // 刚创建、还没有完成第一次记录时 fetchSize 为 0
+        return stats == null || stats.fetchSize == 0 ? null : stats.fetchSize;
+    }
+
+    /**
+     * 记录一次执行读取的行数
+     * @param metaData 结果集元数据，用于估算一行的字节数
+     */
+    public void record(String statementId, int rows, ResultSetMetaData metaData) throws SQLException {
+        int rowBytes = estimateRowBytes(metaData);
+        StatementStats stats = statements.computeIfAbsent(statementId, id -> new StatementStats());
+        observationCount.incrementAndGet();
+        // 记录前后的 fetchSize 和分位数在同一次加锁中取出，并发记录时不会把别的线程的调整算到这一次
+        int[] change = stats.record(rows, rowBytes);
+        int previous = change[0];
+        int fetchSize = change[1];
+        if (fetchSize != previous) {
+            adjustmentCount.incrementAndGet();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Adaptive fetch size of {} changed from {} to {} (p{} rows {}, ~{} bytes per row)",
+                        statementId, previous, fetchSize, percentile, change[2], rowBytes);
+            }
+        }
+    }
+
+    // 由元数据估算一行的字节数
+    static int estimateRowBytes(ResultSetMetaData metaData) throws SQLException {
+        long bytes = 0;
+        for (int i = 1, n = metaData.getColumnCount(); i <= n; i++) {
+            bytes += estimateColumnBytes(metaData.getColumnType(i), metaData.getPrecision(i));
+        }
+        return (int) Math.max(1, Math.min(bytes, Integer.MAX_VALUE));
+    }
+
+    private static int estimateColumnBytes(int type, int precision) {
+        switch (type) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+            case Types.TINYINT:
+                return 1;
+            case Types.SMALLINT:
+                return 2;
+            case Types.INTEGER:
+            case Types.REAL:
+                return 4;
+            case Types.BIGINT:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.DATE:
+            case Types.TIME:
+                return 8;
+            case Types.TIMESTAMP:
+            case Types.TIME_WITH_TIMEZONE:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return 16;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return precision > 0 ? Math.min(precision / 2 + 2, MAX_COLUMN_BYTES) : 22;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.BINARY:
+            case Types.VARBINARY:
+                return precision > 0 ? Math.min(precision, MAX_COLUMN_BYTES) : MAX_COLUMN_BYTES;
+            default:
+                return MAX_COLUMN_BYTES;
+        }
+    }
+
+    // 根据窗口中的统计选择 fetchSize
+    private int choose(int rowPercentile, int rowBytes) {
+        long fetchSize = (long) rowPercentile + 1;
+        fetchSize = Math.min(fetchSize, Math.max(1, bufferBytes / rowBytes));
+        return (int) Math.max(minFetchSize, Math.min(fetchSize, maxFetchSize));
+    }
+
+    @Override
+    public Map<String, Integer> getFetchSizes() {
+        return snapshot(stats -> stats.fetchSize);
+    }
+
+    @Override
+    public Map<String, Integer> getRowCountPercentiles() {
+        return snapshot(stats -> stats.rowPercentile);
+    }
+
+    @Override
+    public Map<String, Integer> getEstimatedRowBytes() {
+        return snapshot(stats -> stats.rowBytes);
+    }
+
+    private Map<String, Integer> snapshot(ToIntFunction<StatementStats> value) {
+        Map<String, Integer> snapshot = new TreeMap<>();
+        for (Map.Entry<String, StatementStats> entry : statements.entrySet()) {
+            snapshot.put(entry.getKey(), value.applyAsInt(entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    @Override
+    public long getObservationCount() {
+        return observationCount.get();
+    }
+
+    @Override
+    public long getAdjustmentCount() {
+        return adjustmentCount.get();
+    }
+
+    @Override
+    public int getMinFetchSize() {
+        return minFetchSize;
+    }
+
+    @Override
+    public int getMaxFetchSize() {
+        return maxFetchSize;
+    }
+
+    @Override
+    public int getPercentile() {
+        return percentile;
+    }
+
+    @Override
+    public long getBufferBytes() {
+        return bufferBytes;
+    }
+
+    @Override
+    public void reset() {
+        statements.clear();
+    }
+
+    /**
+     * 注册到平台 MBeanServer，失败时只记录日志
+     */
+    public void registerMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("com.huanyu.mybatis.executor:type=AdaptiveFetchSizer,name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+            } else {
+                logger.warn("AdaptiveFetchSizer MBean " + objectName + " is already registered.");
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to register AdaptiveFetchSizer MBean. Cause: " + e);
+        }
+    }
+
+    /**
+     * 一条语句最近 WINDOW 次执行的统计
+     */
+    private class StatementStats {
+
+        // 环形缓冲区
+        private final int[] rows = new int[WINDOW];
+        private int size;
+        private int next;
+
+        private volatile int fetchSize;
+        private volatile int rowPercentile;
+        private volatile int rowBytes;
+
+        // 返回记录前的 fetchSize、记录后的 fetchSize 和行数分位数
+        private synchronized int[] record(int rowCount, int bytes) {
+            int previous = fetchSize;
+            rows[next] = rowCount;
+            next = (next + 1) % WINDOW;
+            if (size < WINDOW) {
+                size++;
+            }
+            // 窗口很小，每次记录后直接排序求分位数
+            int[] sorted = Arrays.copyOf(rows, size);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * size);
+            rowPercentile = sorted[Math.max(0, rank - 1)];
+            rowBytes = bytes;
+            fetchSize = choose(rowPercentile, bytes);
+            return new int[]{previous, fetchSize, rowPercentile};
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.huanyu.mybatis.executor.statement;
+
+import java.util.Map;
+
+/**
+ * ClassName: AdaptiveFetchSizerMXBean
+ * Package: com.huanyu.mybatis.executor.statement
+ * Description: 自适应 fetchSize 的 JMX 监控接口
+ * adaptiveFetchRegisterMbean 开启时注册到平台 MBeanServer，
+ * ObjectName 为 com.huanyu.mybatis.executor:type=AdaptiveFetchSizer,name={环境 id}
+ * @Author: 寰宇
+ * @Create: 2024/7/14 14:10
+ * @Version: 1.0
+ */
+public interface AdaptiveFetchSizerMXBean {
+
+    /** 每条语句当前选择的 fetchSize，键为 MappedStatement 的 id */
+    Map<String, Integer> getFetchSizes();
+
+    /** 每条语句最近一个窗口内行数的分位数 */
+    Map<String, Integer> getRowCountPercentiles();
+
+    /** 每条语句估算的一行字节数 */
+    Map<String, Integer> getEstimatedRowBytes();
+
+    /** 记录的执行次数 */
+    long getObservationCount();
+
+    /** fetchSize 发生变化的次数 */
+    long getAdjustmentCount();
+
+    int getMinFetchSize();
+
+    int getMaxFetchSize();
+
+    int getPercentile();
+
+    long getBufferBytes();
+
+    /** 清空全部统计，重新学习 */
+    void reset();
+}
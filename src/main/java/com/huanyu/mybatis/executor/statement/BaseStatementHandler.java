@@ -1,16 +1,20 @@
 package com.huanyu.mybatis.executor.statement;
 
+import com.huanyu.mybatis.datasource.Deadline;
+import com.huanyu.mybatis.dialect.Dialect;
 import com.huanyu.mybatis.executor.Executor;
 import com.huanyu.mybatis.executor.parameter.ParameterHandler;
 import com.huanyu.mybatis.executor.resultset.ResultSetHandler;
 import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.SqlCommandType;
 import com.huanyu.mybatis.session.Configuration;
 import com.huanyu.mybatis.session.ResultHandler;
 import com.huanyu.mybatis.session.RowBounds;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
 
 /**
@@ -40,11 +44,21 @@ public abstract class BaseStatementHandler implements StatementHandler{
         this.configuration = mappedStatement.getConfiguration();
         this.executor = executor;
         this.mappedStatement = mappedStatement;
-        this.rowBounds = rowBounds;
 
         if (boundSql == null) {
+            // 需要先取得主键的生成器在生成 SQL 之前把主键填入参数对象
+            mappedStatement.getKeyGenerator().processBefore(executor, mappedStatement, null, parameterObject);
             boundSql = mappedStatement.getBoundSql(parameterObject);
         }
+        // 配置了方言时把 RowBounds 改写为物理分页，结果集不再需要跳过和截断。
+        // 缓存的键在改写之前生成，已经包含 RowBounds 的偏移量和行数，不同页的键不会相同
+        Dialect dialect = configuration.getDialect();
+        if (dialect != null && mappedStatement.getSqlCommandType() == SqlCommandType.SELECT
+                && (rowBounds.getOffset() > RowBounds.NO_ROW_OFFSET || rowBounds.getLimit() < RowBounds.NO_ROW_LIMIT)) {
+            boundSql = dialect.getPageBoundSql(configuration, boundSql, rowBounds);
+            rowBounds = RowBounds.DEFAULT;
+        }
+        this.rowBounds = rowBounds;
         this.boundSql = boundSql;
 
         this.parameterObject = parameterObject;
@@ -52,22 +66,109 @@ public abstract class BaseStatementHandler implements StatementHandler{
         this.resultSetHandler = configuration.newResultSetHandler(executor, mappedStatement, rowBounds, resultHandler, boundSql);
     }
 
-    // 从连接中获取一个Statement，并设置事务超时时间
+    // 从连接中获取一个Statement，并设置超时时间和读取方向
     @Override
     public Statement prepare(Connection connection) throws SQLException {
         Statement statement = null;
         try {
             // 实例化 Statement
             statement = instantiateStatement(connection);
-            // 参数设置，可以被抽取，提供配置
-            statement.setQueryTimeout(350);
-            statement.setFetchSize(10000);
+            // 语句可能来自语句缓存，每次都要设置
+            setStatementOptions(statement);
             return statement;
         } catch (Exception e) {
             throw new RuntimeException("Error preparing statement.  Cause: " + e, e);
         }
     }
 
+    @Override
+    public void setStatementOptions(Statement statement) throws SQLException {
+        setStatementTimeout(statement);
+        statement.setFetchDirection(mappedStatement.getFetchDirection().getValue());
+    }
+
+    // 语句的超时时间优先，其次是全局配置，未配置时设为 0 恢复驱动的默认值
+    protected void setStatementTimeout(Statement statement) throws SQLException {
+        Integer timeout = mappedStatement.getTimeout();
+        if (timeout == null) {
+            timeout = configuration.getDefaultStatementTimeout();
+        }
+        statement.setQueryTimeout(timeout == null ? 0 : timeout);
+    }
+
+    /**
+     * 执行查询之前告诉驱动最多需要 offset + limit 行、每次读取多少行，驱动不再缓冲之后会被丢弃的行。
+     * 在每次执行时设置而不是在 prepare 中，因为 ReuseExecutor 按 SQL 复用语句，同一语句的 RowBounds 可能不同
+     */
+    protected void setFetchSizeAndMaxRows(Statement statement) throws SQLException {
+        // 语句上配置的 fetchSize 优先，其次是根据这条语句以往读取的行数学习到的值，最后是全局配置
+        Integer fetchSize = mappedStatement.getFetchSize();
+        if (fetchSize == null) {
+            AdaptiveFetchSizer adaptiveFetchSizer = configuration.getAdaptiveFetchSizer();
+            if (adaptiveFetchSizer != null) {
+                fetchSize = adaptiveFetchSizer.getFetchSize(mappedStatement.getId());
+            }
+        }
+        if (fetchSize == null) {
+            fetchSize = configuration.getDefaultFetchSize();
+        }
+        int rows = fetchSize == null ? 0 : fetchSize;
+        int maxRows = 0;
+        if (rowBounds.getLimit() < RowBounds.NO_ROW_LIMIT) {
+            maxRows = (int) Math.min((long) rowBounds.getOffset() + rowBounds.getLimit(), Integer.MAX_VALUE);
+            // 每次读取的行数超过最大行数没有意义，部分驱动还会拒绝
+            if (rows > maxRows) {
+                rows = maxRows;
+            }
+        }
+        // 先取消上一次执行留下的最大行数，否则新的 fetchSize 可能因为大于它而被拒绝
+        statement.setMaxRows(0);
+        statement.setFetchSize(rows);
+        statement.setMaxRows(maxRows);
+    }
+
+    /**
+     * 批次的执行往往是批量会话中耗时最长的一次调用，与单条语句一样受截止时间约束
+     */
+    @Override
+    public int[] executeBatch(Statement statement) throws SQLException {
+        return executeWithDeadline(statement, statement::executeBatch);
+    }
+
+    /**
+     * 在截止时间内执行语句：执行器或当前线程设置了截止时间时交给看门狗，到期后取消语句，
+     * 因取消而失败的执行抛出 SQLTimeoutException。执行成功后把耗时交给事务（读写分离的事务据此统计副本延迟）
+     */
+    protected <T> T executeWithDeadline(Statement statement, StatementCallback<T> callback) throws SQLException {
+        Deadline deadline = Deadline.earliest(executor.getDeadline(), Deadline.get());
+        if (deadline == null) {
+            return timed(callback);
+        }
+        StatementWatchdog.Watch watch = configuration.getStatementWatchdog().watch(statement, deadline, mappedStatement.getId());
+        try {
+            return timed(callback);
+        } catch (SQLException e) {
+            if (watch.isFired()) {
+                throw new SQLTimeoutException("Statement " + mappedStatement.getId() + " was cancelled after exceeding its deadline.", e);
+            }
+            throw e;
+        } finally {
+            watch.close();
+        }
+    }
+
+    private <T> T timed(StatementCallback<T> callback) throws SQLException {
+        long start = System.nanoTime();
+        T result = callback.doInStatement();
+        executor.getTransaction().executed(mappedStatement, System.nanoTime() - start);
+        return result;
+    }
+
+    // 在语句上执行的操作
+    protected interface StatementCallback<T> {
+        T doInStatement() throws SQLException;
+    }
+
     @Override
     public BoundSql getBoundSql() {
         return boundSql;
@@ -1,13 +1,17 @@
 package com.huanyu.mybatis.executor.statement;
 
+import com.huanyu.mybatis.cursor.Cursor;
 import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.keygen.Jdbc3KeyGenerator;
 import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultSetType;
 import com.huanyu.mybatis.session.ResultHandler;
 import com.huanyu.mybatis.session.RowBounds;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
@@ -30,7 +34,19 @@ public class PreparedStatementHandler extends BaseStatementHandler {
     @Override
     protected Statement instantiateStatement(Connection connection) throws SQLException {
         String sql = boundSql.getSql();
-        return connection.prepareStatement(sql);
+        // 需要取回生成的主键时，让驱动在执行后返回主键，指定了主键列时只返回这些列
+        if (mappedStatement.getKeyGenerator() instanceof Jdbc3KeyGenerator) {
+            String[] keyColumnNames = mappedStatement.getKeyColumns();
+            if (keyColumnNames == null) {
+                return connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            }
+            return connection.prepareStatement(sql, keyColumnNames);
+        }
+        ResultSetType resultSetType = mappedStatement.getResultSetType();
+        if (resultSetType == ResultSetType.DEFAULT) {
+            return connection.prepareStatement(sql);
+        }
+        return connection.prepareStatement(sql, resultSetType.getValue(), ResultSet.CONCUR_READ_ONLY);
     }
 
     @Override
@@ -41,16 +57,41 @@ public class PreparedStatementHandler extends BaseStatementHandler {
     @Override
     public int update(Statement statement) throws SQLException {
         PreparedStatement ps = (PreparedStatement) statement;
-        ps.execute();
-        return ps.getUpdateCount();
+        int rows = executeWithDeadline(ps, () -> {
+            ps.execute();
+            return ps.getUpdateCount();
+        });
+        // 主键随执行结果一起返回，写回参数对象
+        mappedStatement.getKeyGenerator().processAfter(executor, mappedStatement, ps, parameterObject);
+        return rows;
+    }
+
+    @Override
+    public void batch(Statement statement) throws SQLException {
+        PreparedStatement ps = (PreparedStatement) statement;
+        ps.addBatch();
     }
 
     @Override
     public <E> List<E> query(Statement statement, ResultHandler resultHandler) throws SQLException {
         PreparedStatement ps = (PreparedStatement) statement;
-        // 执行真正的查询，查询完成后，结果就在ps中
-        ps.execute();
-        // 由resultSetHandler继续处理结果
-        return resultSetHandler.<E>handleResultSets(ps);
+        setFetchSizeAndMaxRows(ps);
+        // 截止时间覆盖执行和读取结果的全过程
+        return executeWithDeadline(ps, () -> {
+            // 执行真正的查询，查询完成后，结果就在ps中
+            ps.execute();
+            // 由resultSetHandler继续处理结果
+            return resultSetHandler.<E>handleResultSets(ps);
+        });
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
+        PreparedStatement ps = (PreparedStatement) statement;
+        setFetchSizeAndMaxRows(ps);
+        // 截止时间只覆盖执行，之后逐行读取的节奏由调用方控制
+        executeWithDeadline(ps, ps::execute);
+        // 结果集保持打开，交给游标逐行读取
+        return resultSetHandler.handleCursorResultSets(ps);
     }
 }
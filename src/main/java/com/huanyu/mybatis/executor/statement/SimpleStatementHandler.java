@@ -1,12 +1,17 @@
 package com.huanyu.mybatis.executor.statement;
 
+import com.huanyu.mybatis.cursor.Cursor;
 import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.keygen.Jdbc3KeyGenerator;
+import com.huanyu.mybatis.executor.keygen.KeyGenerator;
 import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultSetType;
 import com.huanyu.mybatis.session.ResultHandler;
 import com.huanyu.mybatis.session.RowBounds;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
@@ -28,7 +33,11 @@ public class SimpleStatementHandler extends BaseStatementHandler {
 
     @Override
     protected Statement instantiateStatement(Connection connection) throws SQLException {
-        return connection.createStatement();
+        ResultSetType resultSetType = mappedStatement.getResultSetType();
+        if (resultSetType == ResultSetType.DEFAULT) {
+            return connection.createStatement();
+        }
+        return connection.createStatement(resultSetType.getValue(), ResultSet.CONCUR_READ_ONLY);
     }
 
     @Override
@@ -39,14 +48,40 @@ public class SimpleStatementHandler extends BaseStatementHandler {
     @Override
     public int update(Statement statement) throws SQLException {
         String sql = boundSql.getSql();
-        statement.execute(sql);
-        return statement.getUpdateCount();
+        KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
+        int rows = executeWithDeadline(statement, () -> {
+            if (keyGenerator instanceof Jdbc3KeyGenerator) {
+                statement.execute(sql, Statement.RETURN_GENERATED_KEYS);
+            } else {
+                statement.execute(sql);
+            }
+            return statement.getUpdateCount();
+        });
+        keyGenerator.processAfter(executor, mappedStatement, statement, parameterObject);
+        return rows;
+    }
+
+    @Override
+    public void batch(Statement statement) throws SQLException {
+        String sql = boundSql.getSql();
+        statement.addBatch(sql);
     }
 
     @Override
     public <E> List<E> query(Statement statement, ResultHandler resultHandler) throws SQLException {
         String sql = boundSql.getSql();
-        statement.execute(sql);
-        return resultSetHandler.handleResultSets(statement);
+        setFetchSizeAndMaxRows(statement);
+        return executeWithDeadline(statement, () -> {
+            statement.execute(sql);
+            return resultSetHandler.<E>handleResultSets(statement);
+        });
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
+        String sql = boundSql.getSql();
+        setFetchSizeAndMaxRows(statement);
+        executeWithDeadline(statement, () -> statement.execute(sql));
+        return resultSetHandler.handleCursorResultSets(statement);
     }
 }
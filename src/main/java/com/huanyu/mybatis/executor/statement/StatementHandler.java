@@ -1,5 +1,6 @@
 package com.huanyu.mybatis.executor.statement;
 
+import com.huanyu.mybatis.cursor.Cursor;
 import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.session.ResultHandler;
 
@@ -22,15 +23,27 @@ public interface StatementHandler {
     // 从Connection中创建一个Statement
     Statement prepare(Connection connection) throws SQLException;
 
+    // 设置超时时间和读取方向，复用已经创建的Statement时同样需要重新设置
+    void setStatementOptions(Statement statement) throws SQLException;
+
     // 为Statement绑定实参
     void parameterize(Statement statement) throws SQLException;
 
     // 执行更新
     int update(Statement statement) throws SQLException;
 
+    // 将当前绑定好参数的语句加入批次
+    void batch(Statement statement) throws SQLException;
+
+    // 执行攒下的批次，返回每条语句的影响行数
+    int[] executeBatch(Statement statement) throws SQLException;
+
     // 执行查询操作，返回list
     <E> List<E> query(Statement statement, ResultHandler resultHandler) throws SQLException;
 
+    // 执行查询操作，返回游标
+    <E> Cursor<E> queryCursor(Statement statement) throws SQLException;
+
     // 获取绑定SQL
     BoundSql getBoundSql();
 
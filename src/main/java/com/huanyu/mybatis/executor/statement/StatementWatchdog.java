@@ -0,0 +1,111 @@
+package com.huanyu.mybatis.executor.statement;
+
+import com.huanyu.mybatis.datasource.Deadline;
+import com.huanyu.mybatis.executor.async.AsyncQueryExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClassName: StatementWatchdog
+ * Package: com.huanyu.mybatis.executor.statement
+ * Description: 语句截止时间的看门狗
+ * 所有语句共用一个调度线程：执行前按剩余时间登记一个定时任务，到期时调用 Statement.cancel()，
+ * 语句按时结束则取消任务（取消的任务立即从队列中移除，绝大多数按时完成的语句不会堆积在队列里）。
+ * JDBC 的 setQueryTimeout 只能精确到秒，这里可以精确到毫秒，也不依赖驱动自己的超时实现
+ * @Author: 寰宇
+ * @Create: 2024/7/14 16:40
+ * @Version: 1.0
+ */
+public class StatementWatchdog {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementWatchdog.class);
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    // 因为到期而被取消的语句数
+    private final AtomicLong cancelledCount = new AtomicLong();
+
+    public StatementWatchdog() {
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new AsyncQueryExecutor.NamedThreadFactory("mybatis-watchdog-"));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 登记语句的截止时间，执行结束后必须关闭返回的 Watch
+     * @throws SQLTimeoutException 已经到期时不再执行语句
+     */
+    public Watch watch(Statement statement, Deadline deadline, String statementId) throws SQLTimeoutException {
+        long remaining = deadline.remaining(TimeUnit.NANOSECONDS);
+        if (remaining <= 0) {
+            throw new SQLTimeoutException("Deadline exceeded before executing statement " + statementId);
+        }
+        Watch watch = new Watch(statement, statementId);
+        watch.future = scheduler.schedule(watch, remaining, TimeUnit.NANOSECONDS);
+        return watch;
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 一次执行的登记
+     */
+    public class Watch implements Runnable, AutoCloseable {
+
+        private final Statement statement;
+        private final String statementId;
+        private volatile ScheduledFuture<?> future;
+        private boolean closed;
+        private volatile boolean fired;
+
+        private Watch(Statement statement, String statementId) {
+            this.statement = statement;
+            this.statementId = statementId;
+        }
+
+        // 与 close 互斥：close 返回之后不会再取消这个语句，语句可以放心地复用或者放回缓存
+        @Override
+        public synchronized void run() {
+            if (closed) {
+                return;
+            }
+            fired = true;
+            cancelledCount.incrementAndGet();
+            logger.warn("Statement {} exceeded its deadline, cancelling it.", statementId);
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                logger.warn("Failed to cancel statement " + statementId + ". Cause: " + e);
+            }
+        }
+
+        /**
+         * 是否因为到期被取消过，执行抛出的异常据此转换为 SQLTimeoutException
+         */
+        public boolean isFired() {
+            return fired;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+    }
+
+}
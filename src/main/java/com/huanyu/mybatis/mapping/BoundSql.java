@@ -58,4 +58,8 @@ public class BoundSql {
         return metaParameters.getValue(name);
     }
 
+    public Map<String, Object> getAdditionalParameters() {
+        return additionalParameters;
+    }
+
 }
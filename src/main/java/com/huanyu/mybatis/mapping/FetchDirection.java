@@ -0,0 +1,28 @@
+package com.huanyu.mybatis.mapping;
+
+import java.sql.ResultSet;
+
+/**
+ * ClassName: FetchDirection
+ * Package: com.huanyu.mybatis.mapping
+ * Description: 提示驱动读取结果集的方向
+ * FORWARD 为 JDBC 的默认值，REVERSE、UNKNOWN 一般只对可滚动的结果集有意义
+ * @Author: 寰宇
+ * @Create: 2024/7/14 09:25
+ * @Version: 1.0
+ */
+public enum FetchDirection {
+    FORWARD(ResultSet.FETCH_FORWARD),
+    REVERSE(ResultSet.FETCH_REVERSE),
+    UNKNOWN(ResultSet.FETCH_UNKNOWN);
+
+    private final int value;
+
+    FetchDirection(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+}
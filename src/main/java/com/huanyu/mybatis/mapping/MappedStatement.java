@@ -1,6 +1,8 @@
 package com.huanyu.mybatis.mapping;
 
 import com.huanyu.mybatis.cache.Cache;
+import com.huanyu.mybatis.executor.keygen.KeyGenerator;
+import com.huanyu.mybatis.executor.keygen.NoKeyGenerator;
 import com.huanyu.mybatis.scripting.LanguageDriver;
 import com.huanyu.mybatis.session.Configuration;
 
@@ -49,6 +51,8 @@ public class MappedStatement {
 
     // 执行该语句前是否清除一二级缓存
     private boolean flushCacheRequired;
+    // 主键生成器
+    private KeyGenerator keyGenerator;
     // 存储了主键的属性名
     private String[] keyProperties;
     private String[] keyColumns;
@@ -56,6 +60,16 @@ public class MappedStatement {
     private Cache cache;
     private boolean useCache;
 
+    // 负载类别，数据源据此选择连接分区，null 表示默认分区
+    private String workloadClass;
+
+    // 驱动每次读取的行数、查询超时秒数，null 时使用全局配置
+    private Integer fetchSize;
+    private Integer timeout;
+    // 结果集类型和读取方向
+    private ResultSetType resultSetType;
+    private FetchDirection fetchDirection;
+
     MappedStatement() {
         // constructor disabled
     }
@@ -79,11 +93,19 @@ public class MappedStatement {
             mappedStatement.sqlSource = sqlSource;
             mappedStatement.resultType = resultType;
             mappedStatement.lang = configuration.getDefaultScriptingLanguageInstance();
+            mappedStatement.resultSetType = ResultSetType.DEFAULT;
+            mappedStatement.fetchDirection = FetchDirection.FORWARD;
         }
 
         public MappedStatement build() {
             assert mappedStatement.configuration != null;
             assert mappedStatement.id != null;
+            // 没有指定主键生成器时按全局 useGeneratedKeys，只有声明了 keyProperty 的插入语句才取回主键
+            if (mappedStatement.keyGenerator == null) {
+                Configuration configuration = mappedStatement.configuration;
+                mappedStatement.keyGenerator = configuration.isUseGeneratedKeys() && SqlCommandType.INSERT.equals(mappedStatement.sqlCommandType)
+                        && mappedStatement.keyProperties != null ? configuration.getJdbc3KeyGenerator() : NoKeyGenerator.INSTANCE;
+            }
             mappedStatement.resultMaps = Collections.unmodifiableList(mappedStatement.resultMaps);
             return mappedStatement;
         }
@@ -117,13 +139,58 @@ public class MappedStatement {
             return this;
         }
 
+        public Builder workloadClass(String workloadClass) {
+            mappedStatement.workloadClass = workloadClass;
+            return this;
+        }
+
+        public Builder fetchSize(Integer fetchSize) {
+            mappedStatement.fetchSize = fetchSize;
+            return this;
+        }
+
+        public Builder timeout(Integer timeout) {
+            mappedStatement.timeout = timeout;
+            return this;
+        }
+
+        public Builder resultSetType(ResultSetType resultSetType) {
+            mappedStatement.resultSetType = resultSetType == null ? ResultSetType.DEFAULT : resultSetType;
+            return this;
+        }
+
+        public Builder fetchDirection(FetchDirection fetchDirection) {
+            mappedStatement.fetchDirection = fetchDirection == null ? FetchDirection.FORWARD : fetchDirection;
+            return this;
+        }
+
+        public Builder keyGenerator(KeyGenerator keyGenerator) {
+            mappedStatement.keyGenerator = keyGenerator;
+            return this;
+        }
+
+        // 多个主键属性、主键列用逗号分隔
+        public Builder keyProperty(String keyProperty) {
+            mappedStatement.keyProperties = delimitedStringToArray(keyProperty);
+            return this;
+        }
+
+        public Builder keyColumn(String keyColumn) {
+            mappedStatement.keyColumns = delimitedStringToArray(keyColumn);
+            return this;
+        }
+
     }
 
     private static String[] delimitedStringToArray(String in) {
         if (in == null || in.trim().length() == 0) {
             return null;
         } else {
-            return in.split(",");
+            String[] values = in.split(",");
+            for (int i = 0; i < values.length; i++) {
+                values[i] = values[i].trim();
+            }
+            return values;
         }
     }
 
@@ -155,6 +222,10 @@ public class MappedStatement {
         return resultMaps;
     }
 
+    public KeyGenerator getKeyGenerator() {
+        return keyGenerator;
+    }
+
     public String[] getKeyColumns() {
         return keyColumns;
     }
@@ -180,4 +251,24 @@ public class MappedStatement {
         return cache;
     }
 
+    public String getWorkloadClass() {
+        return workloadClass;
+    }
+
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    public Integer getTimeout() {
+        return timeout;
+    }
+
+    public ResultSetType getResultSetType() {
+        return resultSetType;
+    }
+
+    public FetchDirection getFetchDirection() {
+        return fetchDirection;
+    }
+
 }
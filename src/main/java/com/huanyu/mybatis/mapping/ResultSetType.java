@@ -0,0 +1,30 @@
+package com.huanyu.mybatis.mapping;
+
+import java.sql.ResultSet;
+
+/**
+ * ClassName: ResultSetType
+ * Package: com.huanyu.mybatis.mapping
+ * Description: 结果集类型
+ * DEFAULT 使用驱动的默认值（通常是 FORWARD_ONLY）；
+ * 可滚动的结果集在跳过 RowBounds 的偏移量时直接 absolute 定位，不必逐行 next
+ * @Author: 寰宇
+ * @Create: 2024/7/14 09:20
+ * @Version: 1.0
+ */
+public enum ResultSetType {
+    DEFAULT(-1),
+    FORWARD_ONLY(ResultSet.TYPE_FORWARD_ONLY),
+    SCROLL_INSENSITIVE(ResultSet.TYPE_SCROLL_INSENSITIVE),
+    SCROLL_SENSITIVE(ResultSet.TYPE_SCROLL_SENSITIVE);
+
+    private final int value;
+
+    ResultSetType(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+}
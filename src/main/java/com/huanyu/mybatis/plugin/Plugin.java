@@ -7,18 +7,25 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ClassName: Plugin
  * Package: com.huanyu.mybatis.plugin
  * Description: 代理模式插件
- *
+ * 拦截器的签名和目标类需要代理的接口按类缓存，每次 wrap 不再重复解析注解和遍历父类；
+ * 目标类没有需要拦截的接口时直接返回原对象，不额外套一层代理
  * @Author: 寰宇
  * @Create: 2024/6/27 20:26
  * @Version: 1.0
  */
 public class Plugin implements InvocationHandler {
 
+    // 拦截器类 -> 要拦截的类型与方法
+    private static final Map<Class<?>, Map<Class<?>, Set<Method>>> SIGNATURE_CACHE = new ConcurrentHashMap<>();
+    // 拦截器类 -> (目标类 -> 需要代理的接口)
+    private static final Map<Class<?>, Map<Class<?>, Class<?>[]>> INTERFACES_CACHE = new ConcurrentHashMap<>();
+
     // 被代理对象
     private Object target;
     // 拦截器
@@ -62,13 +69,14 @@ public class Plugin implements InvocationHandler {
      */
     public static Object wrap(Object target, Interceptor interceptor) {
         // 得到拦截器interceptor要拦截的类型与方法
-        Map<Class<?>, Set<Method>> signatureMap = getSignatureMap(interceptor);
+        Map<Class<?>, Set<Method>> signatureMap = SIGNATURE_CACHE.computeIfAbsent(interceptor.getClass(), k -> getSignatureMap(interceptor));
         // 取得要改变行为的类(ParameterHandler|ResultSetHandler|StatementHandler|Executor)，目前只添加了 StatementHandler
         // 被代理对象的类型
         Class<?> type = target.getClass();
         // 取得接口
         // 逐级寻找被代理对象类型的父类，将父类中需要被拦截的全部找出
-        Class<?>[] interfaces = getAllInterfaces(type, signatureMap);
+        Class<?>[] interfaces = INTERFACES_CACHE.computeIfAbsent(interceptor.getClass(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(type, k -> getAllInterfaces(k, signatureMap));
         // 创建代理(StatementHandler)
         // 只要父类中有一个需要拦截，说明被代理对象是需要拦截的
         if (interfaces.length > 0) {
@@ -62,8 +62,14 @@ public class DefaultParameterHandler implements ParameterHandler {
                 // 获取当前参数映射的属性名
                 String propertyName = parameterMapping.getProperty();
                 Object value;
+                // 附加参数（foreach 的元素、分页参数等）优先
+                if (boundSql.hasAdditionalParameter(propertyName)) {
+                    value = boundSql.getAdditionalParameter(propertyName);
+                } else if (parameterObject == null) {
+                    value = null;
+                }
                 // 判断是否有类型处理器用于处理当前参数对象的类型
-                if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+                else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
                     // 如果有类型处理器，则直接使用参数对象作为值
                     value = parameterObject;
                 } else {
@@ -6,19 +6,36 @@ import com.huanyu.mybatis.cache.decorators.FifoCache;
 import com.huanyu.mybatis.cache.impl.PerpetualCache;
 import com.huanyu.mybatis.datasource.druid.DruidDataSourceFactory;
 import com.huanyu.mybatis.datasource.pooled.PooledDataSourceFactory;
+import com.huanyu.mybatis.datasource.routing.LatencyWeightedBalancer;
+import com.huanyu.mybatis.datasource.routing.LeastInFlightBalancer;
+import com.huanyu.mybatis.datasource.routing.RoundRobinBalancer;
 import com.huanyu.mybatis.datasource.unpooled.UnpooledDataSourceFactory;
+import com.huanyu.mybatis.dialect.CountSqlSource;
+import com.huanyu.mybatis.dialect.MultiRowInsertSqlSource;
+import com.huanyu.mybatis.dialect.Dialect;
+import com.huanyu.mybatis.dialect.MySqlDialect;
+import com.huanyu.mybatis.dialect.OracleDialect;
+import com.huanyu.mybatis.dialect.PostgreSqlDialect;
+import com.huanyu.mybatis.executor.BatchExecutor;
 import com.huanyu.mybatis.executor.CachingExecutor;
 import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.ReuseExecutor;
 import com.huanyu.mybatis.executor.SimpleExecutor;
+import com.huanyu.mybatis.executor.async.AsyncQueryExecutor;
+import com.huanyu.mybatis.executor.keygen.Jdbc3KeyGenerator;
 import com.huanyu.mybatis.executor.parameter.ParameterHandler;
 import com.huanyu.mybatis.executor.resultset.DefaultResultSetHandler;
 import com.huanyu.mybatis.executor.resultset.ResultSetHandler;
+import com.huanyu.mybatis.executor.statement.AdaptiveFetchSizer;
 import com.huanyu.mybatis.executor.statement.PreparedStatementHandler;
+import com.huanyu.mybatis.executor.statement.StatementWatchdog;
 import com.huanyu.mybatis.executor.statement.StatementHandler;
 import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.mapping.Environment;
 import com.huanyu.mybatis.mapping.MappedStatement;
 import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.ResultSetType;
+import com.huanyu.mybatis.mapping.SqlCommandType;
 import com.huanyu.mybatis.plugin.Interceptor;
 import com.huanyu.mybatis.plugin.InterceptorChain;
 import com.huanyu.mybatis.reflection.MetaObject;
@@ -27,17 +44,28 @@ import com.huanyu.mybatis.reflection.factory.ObjectFactory;
 import com.huanyu.mybatis.reflection.wrapper.DefaultObjectWrapperFactory;
 import com.huanyu.mybatis.reflection.wrapper.ObjectWrapperFactory;
 import com.huanyu.mybatis.scripting.LanguageDriver;
+import com.huanyu.mybatis.sharding.ModShardingStrategy;
+import com.huanyu.mybatis.sharding.ShardingRule;
 import com.huanyu.mybatis.scripting.LanguageDriverRegistry;
 import com.huanyu.mybatis.scripting.xmltags.XMLLanguageDriver;
 import com.huanyu.mybatis.transaction.Transaction;
 import com.huanyu.mybatis.transaction.jdbc.JdbcTransactionFactory;
+import com.huanyu.mybatis.transaction.routing.RoutingTransactionFactory;
 import com.huanyu.mybatis.type.TypeAliasRegistry;
 import com.huanyu.mybatis.type.TypeHandlerRegistry;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ClassName: Configuration
@@ -58,6 +86,14 @@ public class Configuration {
 
     // 环境
     protected Environment environment;
+    // 全部已构建的环境，分片时每个分片是一个环境
+    protected final Map<String, Environment> environments = new LinkedHashMap<>();
+    // 分片规则，未配置时为 null
+    protected ShardingRule shardingRule;
+    // 跨分片查询的线程池，第一次使用时创建
+    protected volatile ExecutorService scatterGatherExecutor;
+    // 截止时间看门狗，第一次使用时创建
+    protected volatile StatementWatchdog statementWatchdog;
 
    // 映射注册机
     protected MapperRegistry mapperRegistry = new MapperRegistry(this);
@@ -66,9 +102,56 @@ public class Configuration {
     protected boolean cacheEnabled = true;
     // 缓存机制，默认不配置的情况是 SESSION
     protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
+    // 默认的执行器类型，默认不配置的情况是 SIMPLE
+    protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
+
+    // 异步映射器方法的线程数
+    protected int asyncPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+    // 异步映射器方法的等待队列容量，队列满时直接失败
+    protected int asyncQueueCapacity = 1024;
+    // 异步映射器方法的超时时间，毫秒，0 表示不超时；作为截止时间交给看门狗取消执行中的语句
+    protected long asyncTimeout = 0;
+    // JDK 21+ 时是否使用虚拟线程
+    protected boolean asyncVirtualThreads = false;
+    // 异步执行器，第一次使用时创建
+    protected volatile AsyncQueryExecutor asyncQueryExecutor;
+
+    // 数据库方言，配置后带 RowBounds 的查询改写为物理分页
+    protected Dialect dialect;
+
+    // 语句未配置时使用的查询超时秒数、驱动每次读取的行数，null 表示使用驱动的默认值
+    protected Integer defaultStatementTimeout;
+    protected Integer defaultFetchSize;
+    // 语句未配置时使用的结果集类型
+    protected ResultSetType defaultResultSetType = ResultSetType.DEFAULT;
+
+    // 是否按每条语句实际读取的行数自动选择 fetchSize
+    protected boolean adaptiveFetchSize = false;
+    // 自适应 fetchSize 的上下限、使用的行数分位数、一批数据的字节数上限
+    protected int adaptiveFetchMinSize = 1;
+    protected int adaptiveFetchMaxSize = 10000;
+    protected int adaptiveFetchPercentile = 90;
+    protected long adaptiveFetchBufferBytes = 2 * 1024 * 1024;
+    // 是否把 AdaptiveFetchSizerMXBean 注册到平台 MBeanServer
+    protected boolean adaptiveFetchRegisterMbean = false;
+    // 自适应 fetchSize 的控制器，第一次使用时创建
+    protected volatile AdaptiveFetchSizer adaptiveFetchSizer;
+
+    // 插入语句默认是否通过 getGeneratedKeys 取回数据库生成的主键，只对声明了 keyProperty 的语句生效
+    protected boolean useGeneratedKeys = false;
+    // 本配置的语句共用的主键生成器，它缓存的 setter 和 TypeHandler 来自本配置的类型处理器注册机
+    protected final Jdbc3KeyGenerator jdbc3KeyGenerator = new Jdbc3KeyGenerator();
+
+    // 多行 INSERT 每块的参数个数上限、估算的报文字节数上限，小于等于 0 表示不限制
+    protected int multiRowInsertMaxParameters = 1000;
+    protected long multiRowInsertMaxPacketSize = 1024 * 1024;
 
     // 映射的语句，存在Map里
     protected final Map<String, MappedStatement> mappedStatements = new HashMap<>();
+    // 由查询语句派生的 COUNT 语句，第一次使用时创建
+    protected final Map<String, MappedStatement> countStatements = new ConcurrentHashMap<>();
+    // 由 INSERT 语句派生的多行 INSERT 语句，第一次使用时创建
+    protected final Map<String, MappedStatement> multiRowInsertStatements = new ConcurrentHashMap<>();
 
     // 缓存,存在Map里
     protected final Map<String, Cache> caches = new HashMap<>();
@@ -96,11 +179,22 @@ public class Configuration {
 
     public Configuration() {
         typeAliasRegistry.registerAlias("JDBC", JdbcTransactionFactory.class);
+        typeAliasRegistry.registerAlias("ROUTING", RoutingTransactionFactory.class);
 
         typeAliasRegistry.registerAlias("DRUID", DruidDataSourceFactory.class);
         typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
         typeAliasRegistry.registerAlias("POOLED", PooledDataSourceFactory.class);
 
+        typeAliasRegistry.registerAlias("ROUND_ROBIN", RoundRobinBalancer.class);
+        typeAliasRegistry.registerAlias("LEAST_IN_FLIGHT", LeastInFlightBalancer.class);
+        typeAliasRegistry.registerAlias("LATENCY_WEIGHTED", LatencyWeightedBalancer.class);
+
+        typeAliasRegistry.registerAlias("MOD", ModShardingStrategy.class);
+
+        typeAliasRegistry.registerAlias("MYSQL", MySqlDialect.class);
+        typeAliasRegistry.registerAlias("POSTGRESQL", PostgreSqlDialect.class);
+        typeAliasRegistry.registerAlias("ORACLE", OracleDialect.class);
+
         typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
         typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
 
@@ -131,6 +225,177 @@ public class Configuration {
         return mappedStatements.get(id);
     }
 
+    /**
+     * 获取查询语句对应的 COUNT 语句，id 为原 id 加上 "!count"，结果类型为 Long，每个语句只派生一次
+     */
+    public MappedStatement getCountStatement(MappedStatement ms) {
+        return countStatements.computeIfAbsent(ms.getId(), id -> {
+            String countId = id + "!count";
+            List<ResultMap> resultMaps = new ArrayList<>();
+            resultMaps.add(new ResultMap.Builder(this, countId + "-Inline", Long.class, new ArrayList<>()).build());
+            return new MappedStatement.Builder(this, countId, SqlCommandType.SELECT, new CountSqlSource(this, ms.getSqlSource()), Long.class)
+                    .resource(ms.getResource())
+                    .resultMaps(resultMaps)
+                    .cache(ms.getCache())
+                    .useCache(ms.isUseCache())
+                    .workloadClass(ms.getWorkloadClass())
+                    .timeout(ms.getTimeout())
+                    .build();
+        });
+    }
+
+    /**
+     * 获取 INSERT 语句对应的多行 INSERT 语句，id 为原 id 加上 "!multi"，参数对象为 MultiRowInsertSqlSource.Chunk，每个语句只派生一次
+     */
+    public MappedStatement getMultiRowInsertStatement(MappedStatement ms) {
+        if (ms.getSqlCommandType() != SqlCommandType.INSERT) {
+            throw new RuntimeException("Multi-row insert requires an INSERT statement, but " + ms.getId() + " is " + ms.getSqlCommandType());
+        }
+        return multiRowInsertStatements.computeIfAbsent(ms.getId(), id ->
+                new MappedStatement.Builder(this, id + "!multi", SqlCommandType.INSERT, new MultiRowInsertSqlSource(this, ms.getSqlSource()), ms.getResultType())
+                        .resource(ms.getResource())
+                        .resultMaps(ms.getResultMaps())
+                        .cache(ms.getCache())
+                        .flushCacheRequired(ms.isFlushCacheRequired())
+                        .workloadClass(ms.getWorkloadClass())
+                        .timeout(ms.getTimeout())
+                        .keyGenerator(ms.getKeyGenerator())
+                        .keyProperty(ms.getKeyProperties() == null ? null : String.join(",", ms.getKeyProperties()))
+                        .keyColumn(ms.getKeyColumns() == null ? null : String.join(",", ms.getKeyColumns()))
+                        .build());
+    }
+
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    public void setDialect(Dialect dialect) {
+        this.dialect = dialect;
+    }
+
+    public Integer getDefaultStatementTimeout() {
+        return defaultStatementTimeout;
+    }
+
+    public void setDefaultStatementTimeout(Integer defaultStatementTimeout) {
+        this.defaultStatementTimeout = defaultStatementTimeout;
+    }
+
+    public Integer getDefaultFetchSize() {
+        return defaultFetchSize;
+    }
+
+    public void setDefaultFetchSize(Integer defaultFetchSize) {
+        this.defaultFetchSize = defaultFetchSize;
+    }
+
+    public ResultSetType getDefaultResultSetType() {
+        return defaultResultSetType;
+    }
+
+    public void setDefaultResultSetType(ResultSetType defaultResultSetType) {
+        this.defaultResultSetType = defaultResultSetType;
+    }
+
+    /**
+     * 获取自适应 fetchSize 的控制器，未开启时返回 null，第一次调用时按当前配置创建
+     */
+    public AdaptiveFetchSizer getAdaptiveFetchSizer() {
+        if (!adaptiveFetchSize) {
+            return null;
+        }
+        AdaptiveFetchSizer sizer = adaptiveFetchSizer;
+        if (sizer == null) {
+            synchronized (this) {
+                sizer = adaptiveFetchSizer;
+                if (sizer == null) {
+                    sizer = new AdaptiveFetchSizer(adaptiveFetchMinSize, adaptiveFetchMaxSize, adaptiveFetchPercentile, adaptiveFetchBufferBytes);
+                    if (adaptiveFetchRegisterMbean) {
+                        sizer.registerMBean(environment == null ? "default" : environment.getId());
+                    }
+                    adaptiveFetchSizer = sizer;
+                }
+            }
+        }
+        return sizer;
+    }
+
+    public boolean isAdaptiveFetchSize() {
+        return adaptiveFetchSize;
+    }
+
+    public void setAdaptiveFetchSize(boolean adaptiveFetchSize) {
+        this.adaptiveFetchSize = adaptiveFetchSize;
+    }
+
+    public int getAdaptiveFetchMinSize() {
+        return adaptiveFetchMinSize;
+    }
+
+    public void setAdaptiveFetchMinSize(int adaptiveFetchMinSize) {
+        this.adaptiveFetchMinSize = adaptiveFetchMinSize;
+    }
+
+    public int getAdaptiveFetchMaxSize() {
+        return adaptiveFetchMaxSize;
+    }
+
+    public void setAdaptiveFetchMaxSize(int adaptiveFetchMaxSize) {
+        this.adaptiveFetchMaxSize = adaptiveFetchMaxSize;
+    }
+
+    public int getAdaptiveFetchPercentile() {
+        return adaptiveFetchPercentile;
+    }
+
+    public void setAdaptiveFetchPercentile(int adaptiveFetchPercentile) {
+        this.adaptiveFetchPercentile = adaptiveFetchPercentile;
+    }
+
+    public long getAdaptiveFetchBufferBytes() {
+        return adaptiveFetchBufferBytes;
+    }
+
+    public void setAdaptiveFetchBufferBytes(long adaptiveFetchBufferBytes) {
+        this.adaptiveFetchBufferBytes = adaptiveFetchBufferBytes;
+    }
+
+    public boolean isAdaptiveFetchRegisterMbean() {
+        return adaptiveFetchRegisterMbean;
+    }
+
+    public void setAdaptiveFetchRegisterMbean(boolean adaptiveFetchRegisterMbean) {
+        this.adaptiveFetchRegisterMbean = adaptiveFetchRegisterMbean;
+    }
+
+    public boolean isUseGeneratedKeys() {
+        return useGeneratedKeys;
+    }
+
+    public Jdbc3KeyGenerator getJdbc3KeyGenerator() {
+        return jdbc3KeyGenerator;
+    }
+
+    public void setUseGeneratedKeys(boolean useGeneratedKeys) {
+        this.useGeneratedKeys = useGeneratedKeys;
+    }
+
+    public int getMultiRowInsertMaxParameters() {
+        return multiRowInsertMaxParameters;
+    }
+
+    public void setMultiRowInsertMaxParameters(int multiRowInsertMaxParameters) {
+        this.multiRowInsertMaxParameters = multiRowInsertMaxParameters;
+    }
+
+    public long getMultiRowInsertMaxPacketSize() {
+        return multiRowInsertMaxPacketSize;
+    }
+
+    public void setMultiRowInsertMaxPacketSize(long multiRowInsertMaxPacketSize) {
+        this.multiRowInsertMaxPacketSize = multiRowInsertMaxPacketSize;
+    }
+
     public TypeAliasRegistry getTypeAliasRegistry() {
         return typeAliasRegistry;
     }
@@ -141,6 +406,89 @@ public class Configuration {
 
     public void setEnvironment(Environment environment) {
         this.environment = environment;
+        addEnvironment(environment);
+    }
+
+    public void addEnvironment(Environment environment) {
+        environments.put(environment.getId(), environment);
+    }
+
+    public Environment getEnvironment(String id) {
+        return environments.get(id);
+    }
+
+    public Map<String, Environment> getEnvironments() {
+        return environments;
+    }
+
+    public ShardingRule getShardingRule() {
+        return shardingRule;
+    }
+
+    public void setShardingRule(ShardingRule shardingRule) {
+        this.shardingRule = shardingRule;
+    }
+
+    /**
+     * 获取跨分片查询的线程池，第一次调用时创建。
+     * 每个分片的查询占用一个线程，线程数取分片规则的 scatterGatherPoolSize（不配置时为处理器数的两倍），且不少于分片数，
+     * 线程都忙时分片查询排队等待；空闲线程 60 秒后回收，关闭 SqlSessionFactory 时关闭线程池
+     */
+    public ExecutorService getScatterGatherExecutor() {
+        ExecutorService executor = scatterGatherExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = scatterGatherExecutor;
+                if (executor == null) {
+                    int poolSize = shardingRule == null || shardingRule.getScatterGatherPoolSize() <= 0
+                            ? Runtime.getRuntime().availableProcessors() * 2 : shardingRule.getScatterGatherPoolSize();
+                    if (shardingRule != null) {
+                        poolSize = Math.max(poolSize, shardingRule.getShards().size());
+                    }
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(), new AsyncQueryExecutor.NamedThreadFactory("mybatis-scatter-"));
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                    scatterGatherExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 获取截止时间看门狗，第一次调用时创建，全部会话共用一个调度线程
+     */
+    public StatementWatchdog getStatementWatchdog() {
+        StatementWatchdog watchdog = statementWatchdog;
+        if (watchdog == null) {
+            synchronized (this) {
+                watchdog = statementWatchdog;
+                if (watchdog == null) {
+                    watchdog = new StatementWatchdog();
+                    statementWatchdog = watchdog;
+                }
+            }
+        }
+        return watchdog;
+    }
+
+    /**
+     * 关闭配置创建的后台线程：跨分片查询线程池、异步执行器和截止时间看门狗，再次使用时重新创建
+     */
+    public synchronized void close() {
+        if (scatterGatherExecutor != null) {
+            scatterGatherExecutor.shutdown();
+            scatterGatherExecutor = null;
+        }
+        if (asyncQueryExecutor != null) {
+            asyncQueryExecutor.shutdown();
+            asyncQueryExecutor = null;
+        }
+        if (statementWatchdog != null) {
+            statementWatchdog.shutdown();
+            statementWatchdog = null;
+        }
     }
 
     public String getDatabaseId() {
@@ -158,7 +506,22 @@ public class Configuration {
      * 生产执行器
      */
     public Executor newExecutor(Transaction transaction) {
-        Executor executor = new SimpleExecutor(this, transaction);
+        return newExecutor(transaction, defaultExecutorType);
+    }
+
+    /**
+     * 根据执行器类型生产执行器
+     */
+    public Executor newExecutor(Transaction transaction, ExecutorType executorType) {
+        executorType = executorType == null ? defaultExecutorType : executorType;
+        Executor executor;
+        if (ExecutorType.BATCH == executorType) {
+            executor = new BatchExecutor(this, transaction);
+        } else if (ExecutorType.REUSE == executorType) {
+            executor = new ReuseExecutor(this, transaction);
+        } else {
+            executor = new SimpleExecutor(this, transaction);
+        }
         // 配置开启缓存，创建 CachingExecutor(默认就是有缓存)装饰者模式
         if (cacheEnabled) {
             executor = new CachingExecutor(executor); // 具体装饰类
@@ -235,6 +598,64 @@ public class Configuration {
         this.localCacheScope = localCacheScope;
     }
 
+    public ExecutorType getDefaultExecutorType() {
+        return defaultExecutorType;
+    }
+
+    public void setDefaultExecutorType(ExecutorType defaultExecutorType) {
+        // 默认执行器类型不会为 null，newExecutor 只需要回退到它
+        this.defaultExecutorType = defaultExecutorType == null ? ExecutorType.SIMPLE : defaultExecutorType;
+    }
+
+    /**
+     * 获取异步执行器，第一次调用时按当前配置创建
+     */
+    public AsyncQueryExecutor getAsyncQueryExecutor() {
+        AsyncQueryExecutor executor = asyncQueryExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = asyncQueryExecutor;
+                if (executor == null) {
+                    executor = new AsyncQueryExecutor(asyncPoolSize, asyncQueueCapacity, asyncTimeout, asyncVirtualThreads);
+                    asyncQueryExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    public int getAsyncPoolSize() {
+        return asyncPoolSize;
+    }
+
+    public void setAsyncPoolSize(int asyncPoolSize) {
+        this.asyncPoolSize = asyncPoolSize;
+    }
+
+    public int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+        this.asyncQueueCapacity = asyncQueueCapacity;
+    }
+
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    public void setAsyncTimeout(long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    public boolean isAsyncVirtualThreads() {
+        return asyncVirtualThreads;
+    }
+
+    public void setAsyncVirtualThreads(boolean asyncVirtualThreads) {
+        this.asyncVirtualThreads = asyncVirtualThreads;
+    }
+
     public boolean isCacheEnabled() {
         return cacheEnabled;
     }
@@ -0,0 +1,18 @@
+package com.huanyu.mybatis.session;
+
+/**
+ * ClassName: ExecutorType
+ * Package: com.huanyu.mybatis.session
+ * Description: 执行器类型
+ * SIMPLE 默认值，每次执行都会创建新的 Statement，执行完即关闭
+ * REUSE 在事务范围内按 SQL 缓存 Statement，相同的 SQL 只预编译一次
+ * BATCH 将连续的、SQL 相同的更新语句合并为一个 Statement 批量执行，遇到查询、提交、回滚时统一刷出
+ * @Author: 寰宇
+ * @Create: 2024/7/2 10:12
+ * @Version: 1.0
+ */
+public enum ExecutorType {
+    SIMPLE,
+    REUSE,
+    BATCH
+}
@@ -0,0 +1,104 @@
+package com.huanyu.mybatis.session;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * ClassName: KeysetPager
+ * Package: com.huanyu.mybatis.session
+ * Description: 键集分页的结果
+ * 由 SqlSession#selectByKeyset 返回，按页惰性查询：迭代到下一页时才以上一页最后一行的键执行一次查询，
+ * 某一页不足 pageSize 行时结束。每次调用 iterator() 都从头开始扫描。
+ * 查询在创建它的 SqlSession 上执行，不能跨线程使用，也不能在 Session 关闭之后使用
+ * @Author: 寰宇
+ * @Create: 2024/7/13 15:40
+ * @Version: 1.0
+ */
+public class KeysetPager<E> implements Iterable<List<E>> {
+
+    // 按上一页最后一个键（第一页为 null）查询一页
+    private final Function<Object, List<E>> pageLoader;
+    // 从一行结果中取出键
+    private final Function<E, Object> keyExtractor;
+    private final int pageSize;
+
+    public KeysetPager(Function<Object, List<E>> pageLoader, Function<E, Object> keyExtractor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Keyset page size must be positive, but was " + pageSize);
+        }
+        this.pageLoader = pageLoader;
+        this.keyExtractor = keyExtractor;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public Iterator<List<E>> iterator() {
+        return new PageIterator();
+    }
+
+    /**
+     * 以页为元素的流
+     */
+    public Stream<List<E>> pages() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * 展开为逐行的流
+     */
+    public Stream<E> rows() {
+        return pages().flatMap(List::stream);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    private class PageIterator implements Iterator<List<E>> {
+
+        private List<E> nextPage;
+        private Object lastKey;
+        private boolean finished;
+
+        @Override
+        public boolean hasNext() {
+            if (nextPage != null) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            List<E> page = pageLoader.apply(lastKey);
+            // 不足一页说明已经扫描到末尾，不再查询
+            if (page.size() < pageSize) {
+                finished = true;
+            }
+            if (page.isEmpty()) {
+                return false;
+            }
+            Object key = keyExtractor.apply(page.get(page.size() - 1));
+            if (key == null) {
+                throw new RuntimeException("Keyset pagination requires a non-null key, but the last row of the page has none");
+            }
+            lastKey = key;
+            nextPage = page;
+            return true;
+        }
+
+        @Override
+        public List<E> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<E> page = nextPage;
+            nextPage = null;
+            return page;
+        }
+
+    }
+
+}
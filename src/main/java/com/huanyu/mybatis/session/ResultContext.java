@@ -20,4 +20,14 @@ public interface ResultContext {
      * 获取记录数
      */
     int getResultCount();
+
+    /**
+     * 停止读取后续的结果，结果集会被关闭
+     */
+    void stop();
+
+    /**
+     * 是否已经停止读取
+     */
+    boolean isStopped();
 }
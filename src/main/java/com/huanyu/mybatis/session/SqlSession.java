@@ -1,5 +1,10 @@
 package com.huanyu.mybatis.session;
 
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.datasource.Deadline;
+import com.huanyu.mybatis.executor.BatchResult;
+
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -47,6 +52,104 @@ public interface SqlSession {
      */
     <E> List<E> selectList(String statement, Object parameter);
 
+    /**
+     * Retrieve a list of mapped objects from the statement key and parameter,
+     * within the specified row bounds.
+     * 分页获取多条记录，配置了 dialect 时改写为数据库的分页语句，否则在内存中跳过和截断
+     *
+     * @param <E>       the returned list element type
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param rowBounds Bounds to limit object retrieval
+     * @return List of mapped object
+     */
+    <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds);
+
+    /**
+     * Count the rows the statement would return.
+     * 统计查询语句的总行数，执行由该语句派生的 COUNT(*) 语句，与 selectList(statement, parameter, rowBounds) 配合分页
+     *
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @return total number of rows
+     */
+    long selectCount(String statement, Object parameter);
+
+    /**
+     * Retrieve a single row mapped from the statement key and parameter
+     * using a {@code ResultHandler}.
+     * 查询结果不再放入 List，而是逐行交给 handler 处理，handler 可以通过 ResultContext.stop() 提前结束读取
+     *
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param handler   ResultHandler that will handle each retrieved row
+     */
+    void select(String statement, Object parameter, ResultHandler handler);
+
+    /**
+     * Retrieve a single row mapped from the statement key and parameter using a {@code ResultHandler}
+     * and {@code RowBounds}.
+     *
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param rowBounds RowBound instance to limit the query results
+     * @param handler   ResultHandler that will handle each retrieved row
+     */
+    void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler);
+
+    /**
+     * Retrieve a single row mapped from the statement
+     * using a {@code ResultHandler}.
+     *
+     * @param statement Unique identifier matching the statement to use.
+     * @param handler   ResultHandler that will handle each retrieved row
+     */
+    void select(String statement, ResultHandler handler);
+
+    /**
+     * A Cursor offers the same results as a List, except it fetches data lazily using an Iterator.
+     * 以游标的形式获取多条记录，遍历游标时才逐行读取和映射，游标需要关闭（Session 关闭时也会一并关闭）
+     *
+     * @param <T>       the returned cursor element type.
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @return Cursor of mapped objects
+     */
+    <T> Cursor<T> selectCursor(String statement, Object parameter);
+
+    /**
+     * A Cursor offers the same results as a List, except it fetches data lazily using an Iterator.
+     *
+     * @param <T>       the returned cursor element type.
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param rowBounds Bounds to limit object retrieval
+     * @return Cursor of mapped objects
+     */
+    <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds);
+
+    /**
+     * Walk the statement's results page by page using keyset (seek) pagination.
+     * 键集分页：每一页在语句上追加 key > 上一页最后一个键、ORDER BY key 并限制 pageSize 行，
+     * 返回的 KeysetPager 在迭代时才逐页查询，适合遍历整张表，深度翻页也只是一次索引查找。
+     * 键必须唯一，键值重复的行跨越两页时后一页中的这些行会被跳过
+     *
+     * @param <E>         the returned element type
+     * @param statement   Unique identifier matching the statement to use.
+     * @param parameter   A parameter object to pass to the statement.
+     * @param keyProperty 结果对象中唯一且有序的键属性，对应的列取 resultMap 中的映射，没有映射时与属性同名
+     * @param pageSize    每页的行数
+     * @return pages of mapped objects
+     */
+    <E> KeysetPager<E> selectByKeyset(String statement, Object parameter, String keyProperty, int pageSize);
+
+    /**
+     * 键集分页，显式指定键对应的列（列在 SELECT 中使用了别名或者带表别名时）
+     *
+     * @param keyColumn WHERE 和 ORDER BY 中使用的列，如 t.id，只能是（带表别名的）标识符
+     */
+    <E> KeysetPager<E> selectByKeyset(String statement, Object parameter, String keyProperty, String keyColumn, int pageSize);
+
     /**
      * Execute an insert statement with the given parameter object. Any generated
      * autoincrement values or selectKey entries will modify the given parameter
@@ -59,6 +162,16 @@ public interface SqlSession {
      */
     int insert(String statement, Object parameter);
 
+    /**
+     * 多行插入：rows 中每个元素是 INSERT 语句的一个参数对象，按参数个数和报文大小上限分块，
+     * 每块改写为 INSERT ... VALUES (...),(...),... 执行一次。insert 的参数是集合时也走这里，返回各块行数之和
+     *
+     * @param statement 单行 INSERT ... VALUES (...) 语句
+     * @param rows 要插入的行
+     * @return 每块一个结果，包含该块的 SQL、行对象和影响的行数；BATCH 执行器下影响的行数要在 flushStatements 之后获取
+     */
+    List<BatchResult> insertMultiRow(String statement, Collection<?> rows);
+
     /**
      * Execute an update statement. The number of rows affected will be returned.
      * 更新记录
@@ -86,6 +199,20 @@ public interface SqlSession {
      */
     void commit();
 
+    /**
+     * Discards pending batch statements and rolls database connection back.
+     * 回滚事务，未刷出的批量操作会被丢弃
+     */
+    void rollback();
+
+    /**
+     * Flushes batch statements.
+     * 刷出批量操作，返回每个批次的执行结果
+     *
+     * @return BatchResult list of updated records 每个批次的执行结果
+     */
+    List<BatchResult> flushStatements();
+
     /**
      * 关闭Session
      */
@@ -96,6 +223,17 @@ public interface SqlSession {
      */
     void clearCache();
 
+    /**
+     * 设置之后执行的语句的截止时间，例如 setDeadline(Deadline.after(200, TimeUnit.MILLISECONDS))，
+     * 到期后正在执行的语句被取消，排队等待连接也不会超过剩余的时间，失败时抛出的异常由 SQLTimeoutException 引起。
+     * 与当前线程通过 Deadline.set 设置的截止时间同时存在时，以较早的为准
+     *
+     * @param deadline 截止时间，null 表示取消
+     */
+    void setDeadline(Deadline deadline);
+
+    Deadline getDeadline();
+
     /**
      * Retrieves a mapper.
      * 得到映射器，这个巧妙的使用了泛型，使得类型安全
@@ -9,11 +9,32 @@ package com.huanyu.mybatis.session;
  * @Create: 2024/6/11 15:59
  * @Version: 1.0
  */
-public interface SqlSessionFactory {
+public interface SqlSessionFactory extends AutoCloseable {
 
     /**
      * 打开一个 session
      * @return SqlSession
      */
     SqlSession openSession();
+
+    /**
+     * 使用指定类型的执行器打开一个 session
+     * @param execType 执行器类型
+     * @return SqlSession
+     */
+    SqlSession openSession(ExecutorType execType);
+
+    /**
+     * 打开一个 session，autoCommit 为 true 时每条语句单独提交。
+     * 读写分离时只有自动提交的 session 会把查询交给只读副本，事务中的查询都在主库执行
+     * @param autoCommit 是否自动提交
+     * @return SqlSession
+     */
+    SqlSession openSession(boolean autoCommit);
+
+    /**
+     * 关闭工厂创建的后台线程池，已经打开的 session 不受影响，数据源由使用方自行关闭
+     */
+    @Override
+    void close();
 }
@@ -1,16 +1,36 @@
 package com.huanyu.mybatis.session.defaults;
 
 import com.alibaba.fastjson.JSON;
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.datasource.Deadline;
+import com.huanyu.mybatis.dialect.KeysetQuery;
+import com.huanyu.mybatis.dialect.MultiRowInsertSqlSource;
+import com.huanyu.mybatis.executor.BatchExecutor;
+import com.huanyu.mybatis.executor.BatchResult;
 import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.mapping.BoundSql;
 import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.ResultMapping;
+import com.huanyu.mybatis.mapping.SqlCommandType;
 import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.KeysetPager;
+import com.huanyu.mybatis.session.ResultHandler;
 import com.huanyu.mybatis.session.RowBounds;
 import com.huanyu.mybatis.session.SqlSession;
+import com.huanyu.mybatis.sharding.ShardingRule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * ClassName: DefaultSqlSession
@@ -31,6 +51,9 @@ public class DefaultSqlSession implements SqlSession {
     // 执行器
     private Executor executor;
 
+    // 本 Session 打开的游标，关闭 Session 时一并关闭
+    private List<Cursor<?>> cursorList;
+
     public DefaultSqlSession(Configuration configuration, Executor executor) {
         this.configuration = configuration;
         this.executor = executor;
@@ -57,21 +80,181 @@ public class DefaultSqlSession implements SqlSession {
 
     @Override
     public <E> List<E> selectList(String statement, Object parameter) {
+        return selectList(statement, parameter, RowBounds.DEFAULT);
+    }
+
+    @Override
+    public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
+        logger.info("执行查询 statement：{} parameter：{}", statement, JSON.toJSONString(parameter));
+        MappedStatement ms = configuration.getMappedStatement(statement);
+        try {
+            return executor.query(ms, parameter, rowBounds, Executor.NO_RESULT_HANDLER);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error querying database.  Cause: " + e, e);
+        }
+    }
+
+    @Override
+    public long selectCount(String statement, Object parameter) {
+        logger.info("执行计数查询 statement：{} parameter：{}", statement, JSON.toJSONString(parameter));
+        MappedStatement ms = configuration.getCountStatement(configuration.getMappedStatement(statement));
+        try {
+            List<Long> list = executor.query(ms, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+            // 分片时各分片分别计数，这里求和
+            long count = 0;
+            for (Long value : list) {
+                count += value == null ? 0 : value;
+            }
+            return count;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error querying database.  Cause: " + e, e);
+        }
+    }
+
+    @Override
+    public void select(String statement, Object parameter, ResultHandler handler) {
+        select(statement, parameter, RowBounds.DEFAULT, handler);
+    }
+
+    @Override
+    public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
         logger.info("执行查询 statement：{} parameter：{}", statement, JSON.toJSONString(parameter));
         MappedStatement ms = configuration.getMappedStatement(statement);
         try {
-            return executor.query(ms, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+            executor.query(ms, parameter, rowBounds, handler);
         } catch (SQLException e) {
-            throw new RuntimeException("Error querying database.  Cause: " + e);
+            throw new RuntimeException("Error querying database.  Cause: " + e, e);
+        }
+    }
+
+    @Override
+    public void select(String statement, ResultHandler handler) {
+        select(statement, null, handler);
+    }
+
+    @Override
+    public <T> Cursor<T> selectCursor(String statement, Object parameter) {
+        return selectCursor(statement, parameter, RowBounds.DEFAULT);
+    }
+
+    @Override
+    public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+        logger.info("执行游标查询 statement：{} parameter：{}", statement, JSON.toJSONString(parameter));
+        MappedStatement ms = configuration.getMappedStatement(statement);
+        try {
+            Cursor<T> cursor = executor.queryCursor(ms, parameter, rowBounds);
+            registerCursor(cursor);
+            return cursor;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error querying database.  Cause: " + e, e);
+        }
+    }
+
+    @Override
+    public <E> KeysetPager<E> selectByKeyset(String statement, Object parameter, String keyProperty, int pageSize) {
+        return selectByKeyset(statement, parameter, keyProperty, null, pageSize);
+    }
+
+    @Override
+    public <E> KeysetPager<E> selectByKeyset(String statement, Object parameter, String keyProperty, String keyColumn, int pageSize) {
+        MappedStatement ms = configuration.getMappedStatement(statement);
+        String column = keyColumn != null ? keyColumn : resolveKeyColumn(ms, keyProperty);
+        RowBounds rowBounds = new RowBounds(RowBounds.NO_ROW_OFFSET, pageSize);
+        return new KeysetPager<>(lastKey -> {
+            logger.info("执行键集分页查询 statement：{} lastKey：{}", statement, lastKey);
+            BoundSql boundSql = KeysetQuery.build(configuration, ms.getBoundSql(parameter), column, lastKey);
+            // 通过游标读取一页，整表扫描的各页不会堆积在本地缓存中
+            List<E> page = new ArrayList<>();
+            try (Cursor<E> cursor = executor.queryCursor(ms, parameter, rowBounds, boundSql)) {
+                for (E row : cursor) {
+                    page.add(row);
+                }
+            } catch (SQLException | IOException e) {
+                throw new RuntimeException("Error querying database.  Cause: " + e, e);
+            }
+            return page;
+        }, row -> keyOf(row, keyProperty), pageSize);
+    }
+
+    // 键属性对应的列，优先取 resultMap 中的映射
+    private String resolveKeyColumn(MappedStatement ms, String keyProperty) {
+        for (ResultMap resultMap : ms.getResultMaps()) {
+            for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+                if (keyProperty.equals(resultMapping.getProperty()) && resultMapping.getColumn() != null) {
+                    return resultMapping.getColumn();
+                }
+            }
+        }
+        return keyProperty;
+    }
+
+    // 从一行结果中取出键，结果是简单类型时就是它本身
+    private Object keyOf(Object row, String keyProperty) {
+        if (row == null || configuration.getTypeHandlerRegistry().hasTypeHandler(row.getClass())) {
+            return row;
         }
+        return configuration.newMetaObject(row).getValue(keyProperty);
     }
 
     @Override
     public int insert(String statement, Object parameter) {
+        // 参数是集合时改写为多行 INSERT，返回各块影响的行数之和
+        if (parameter instanceof Collection && configuration.getMappedStatement(statement).getSqlCommandType() == SqlCommandType.INSERT) {
+            int count = 0;
+            for (BatchResult result : insertMultiRow(statement, (Collection<?>) parameter)) {
+                if (result.getUpdateCounts() == null) {
+                    return BatchExecutor.BATCH_UPDATE_RETURN_VALUE;
+                }
+                count += result.getUpdateCounts()[0];
+            }
+            return count;
+        }
         // 在 Mybatis 中 insert 调用的是 update
         return update(statement, parameter);
     }
 
+    @Override
+    public List<BatchResult> insertMultiRow(String statement, Collection<?> rows) {
+        MappedStatement ms = configuration.getMultiRowInsertStatement(configuration.getMappedStatement(statement));
+        MultiRowInsertSqlSource sqlSource = (MultiRowInsertSqlSource) ms.getSqlSource();
+        List<BatchResult> results = new ArrayList<>();
+        try {
+            for (Collection<?> group : groupByShard(rows)) {
+                Iterator<MultiRowInsertSqlSource.Chunk> chunks = sqlSource.split(group);
+                while (chunks.hasNext()) {
+                    MultiRowInsertSqlSource.Chunk chunk = chunks.next();
+                    int count = executor.update(ms, chunk);
+                    BatchResult result = new BatchResult(ms, chunk.getBoundSql().getSql());
+                    for (Object row : chunk.getRows()) {
+                        result.addParameterObject(row);
+                    }
+                    // 批量执行器要到 flushStatements 时才知道影响的行数
+                    if (count != BatchExecutor.BATCH_UPDATE_RETURN_VALUE) {
+                        result.setUpdateCounts(new int[]{count});
+                    }
+                    results.add(result);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating database.  Cause: " + e, e);
+        }
+        logger.info("多行插入 statement：{} rows：{} chunks：{}", statement, rows.size(), results.size());
+        return results;
+    }
+
+    // 配置了分片时按行所在的分片分组，保证同一块的行都落在同一个分片上
+    private Collection<? extends Collection<?>> groupByShard(Collection<?> rows) {
+        ShardingRule shardingRule = configuration.getShardingRule();
+        if (shardingRule == null) {
+            return Collections.singletonList(rows);
+        }
+        Map<String, List<Object>> groups = new LinkedHashMap<>();
+        for (Object row : rows) {
+            groups.computeIfAbsent(String.valueOf(shardingRule.resolveShard(configuration, row)), shard -> new ArrayList<>()).add(row);
+        }
+        return groups.values();
+    }
+
     @Override
     public int update(String statement, Object parameter) {
         MappedStatement ms = configuration.getMappedStatement(statement);
@@ -96,9 +279,52 @@ public class DefaultSqlSession implements SqlSession {
         }
     }
 
+    @Override
+    public void rollback() {
+        try {
+            executor.rollback(true);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error rolling back transaction.  Cause: " + e);
+        }
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() {
+        try {
+            return executor.flushStatements();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error flushing statements.  Cause: " + e);
+        }
+    }
+
     @Override
     public void close() {
-        executor.close(true);
+        try {
+            // 先关闭游标，再关闭执行器（归还连接）
+            closeCursors();
+        } finally {
+            executor.close(true);
+        }
+    }
+
+    private void closeCursors() {
+        if (cursorList != null && !cursorList.isEmpty()) {
+            for (Cursor<?> cursor : cursorList) {
+                try {
+                    cursor.close();
+                } catch (IOException e) {
+                    throw new RuntimeException("Error closing cursor.  Cause: " + e, e);
+                }
+            }
+            cursorList.clear();
+        }
+    }
+
+    private <T> void registerCursor(Cursor<T> cursor) {
+        if (cursorList == null) {
+            cursorList = new ArrayList<>();
+        }
+        cursorList.add(cursor);
     }
 
     @Override
@@ -106,6 +332,16 @@ public class DefaultSqlSession implements SqlSession {
         executor.clearLocalCache();
     }
 
+    @Override
+    public void setDeadline(Deadline deadline) {
+        executor.setDeadline(deadline);
+    }
+
+    @Override
+    public Deadline getDeadline() {
+        return executor.getDeadline();
+    }
+
 
 
     @Override
@@ -1,8 +1,10 @@
 package com.huanyu.mybatis.session.defaults;
 
 import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.sharding.ShardingExecutor;
 import com.huanyu.mybatis.mapping.Environment;
 import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.ExecutorType;
 import com.huanyu.mybatis.session.SqlSession;
 import com.huanyu.mybatis.session.SqlSessionFactory;
 import com.huanyu.mybatis.session.TransactionIsolationLevel;
@@ -33,16 +35,41 @@ public class DefaultSqlSessionFactory implements SqlSessionFactory {
     // 这样就可以在使用 SqlSession 时获取每个代理类的映射器对象。
     @Override
     public SqlSession openSession() {
+        return openSessionFromDataSource(configuration.getDefaultExecutorType(), TransactionIsolationLevel.READ_COMMITTED, false);
+    }
+
+    @Override
+    public SqlSession openSession(ExecutorType execType) {
+        return openSessionFromDataSource(execType, TransactionIsolationLevel.READ_COMMITTED, false);
+    }
+
+    @Override
+    public SqlSession openSession(boolean autoCommit) {
+        return openSessionFromDataSource(configuration.getDefaultExecutorType(), TransactionIsolationLevel.READ_COMMITTED, autoCommit);
+    }
+
+    /**
+     * 从数据源中获取连接并创建 SqlSession
+     * @param execType 执行器类型
+     * @param level 事务隔离级别
+     * @param autoCommit 是否自动提交
+     * @return SqlSession
+     */
+    private SqlSession openSessionFromDataSource(ExecutorType execType, TransactionIsolationLevel level, boolean autoCommit) {
+        // 配置了分片时，事务在语句路由到分片后才创建
+        if (configuration.getShardingRule() != null) {
+            return new DefaultSqlSession(configuration, new ShardingExecutor(configuration, execType, level, autoCommit));
+        }
         Transaction tx = null;
         try {
             // 获取当前配置的环境信息
             final Environment environment = configuration.getEnvironment();
             // 获取事务工厂
             TransactionFactory transactionFactory = environment.getTransactionFactory();
-            // 创建新的事务，并设置事务隔离级别为 READ_COMMITTED，自动提交为 false
-            tx = transactionFactory.newTransaction(configuration.getEnvironment().getDataSource(), TransactionIsolationLevel.READ_COMMITTED, false);
-            // 创建执行器
-            final Executor executor = configuration.newExecutor(tx);
+            // 创建新的事务，并设置事务隔离级别和自动提交
+            tx = transactionFactory.newTransaction(configuration.getEnvironment().getDataSource(), level, autoCommit);
+            // 根据执行器类型创建执行器
+            final Executor executor = configuration.newExecutor(tx, execType);
             // 使用配置和执行器创建 DefaultSqlSession 对象，并返回
             return new DefaultSqlSession(configuration, executor);
         } catch (Exception e) {
@@ -59,4 +86,9 @@ public class DefaultSqlSessionFactory implements SqlSessionFactory {
         }
     }
 
+    @Override
+    public void close() {
+        configuration.close();
+    }
+
 }
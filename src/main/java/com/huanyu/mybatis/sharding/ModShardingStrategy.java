@@ -0,0 +1,27 @@
+package com.huanyu.mybatis.sharding;
+
+import java.util.List;
+
+/**
+ * ClassName: ModShardingStrategy
+ * Package: com.huanyu.mybatis.sharding
+ * Description: 取模分片
+ * 整数类型的分片键按数值取模，使分片结果与数据库中手工分片的规则一致；其他类型按 hashCode 取模
+ * @Author: 寰宇
+ * @Create: 2024/7/12 09:35
+ * @Version: 1.0
+ */
+public class ModShardingStrategy implements ShardingStrategy {
+
+    @Override
+    public String doSharding(Object shardKey, List<String> shards) {
+        long value;
+        if (shardKey instanceof Long || shardKey instanceof Integer || shardKey instanceof Short || shardKey instanceof Byte) {
+            value = ((Number) shardKey).longValue();
+        } else {
+            value = shardKey.hashCode();
+        }
+        return shards.get((int) Math.floorMod(value, (long) shards.size()));
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.huanyu.mybatis.sharding;
+
+import com.huanyu.mybatis.reflection.MetaObject;
+import com.huanyu.mybatis.session.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ClassName: ShardingRule
+ * Package: com.huanyu.mybatis.sharding
+ * Description: 分片规则
+ * 对应 environments 下的 sharding 节点：
+ * <sharding shardKey="userId" strategy="MOD">
+ *     <shard environment="shard0"/>
+ *     <shard environment="shard1"/>
+ * </sharding>
+ * 通过 MetaObject 从参数对象（实体或 Map）上读取分片键属性，参数本身是简单类型（如 Long）时视为取不到分片键；
+ * 取不到分片键的查询默认在全部分片上并发执行后归并（scatterGather="false" 时使用默认环境）；
+ * 取不到分片键的写语句（如 deleteById(Long)）会写到错误的库或者什么都没写，默认直接报错，
+ * 确实需要写不分片的表时用 defaultWrites="true" 显式开启，这些写语句使用默认环境
+ * @Author: 寰宇
+ * @Create: 2024/7/12 09:40
+ * @Version: 1.0
+ */
+public class ShardingRule {
+
+    private final String shardKey;
+    private final ShardingStrategy strategy;
+    private final List<String> shards;
+    // 取不到分片键的查询是否在全部分片上执行
+    private boolean scatterGather = true;
+    // 跨分片查询的线程数，0 表示按处理器数和分片数自动选择
+    private int scatterGatherPoolSize;
+    // 取不到分片键的写语句是否使用默认环境，关闭时报错
+    private boolean defaultWrites;
+
+    public ShardingRule(String shardKey, ShardingStrategy strategy, List<String> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Sharding rule requires at least one shard");
+        }
+        this.shardKey = shardKey;
+        this.strategy = strategy;
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+    }
+
+    /**
+     * 从参数对象中取出分片键属性的值。
+     * 只认配置的 shardKey 属性：参数本身是简单类型（如 selectById(orderId) 的 Long）时无法知道它是不是分片键，
+     * 当作取不到分片键，查询在全部分片上执行，不会按一个无关的值路由到错误的分片
+     * @return 分片键的值，取不到时返回 null
+     */
+    public Object getShardKeyValue(Configuration configuration, Object parameterObject) {
+        if (parameterObject == null || configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+            return null;
+        }
+        MetaObject metaObject = configuration.newMetaObject(parameterObject);
+        if (!metaObject.hasGetter(shardKey)) {
+            return null;
+        }
+        return metaObject.getValue(shardKey);
+    }
+
+    /**
+     * 为参数对象选择分片
+     * @return 分片的环境 id，取不到分片键时返回 null
+     */
+    public String resolveShard(Configuration configuration, Object parameterObject) {
+        Object value = getShardKeyValue(configuration, parameterObject);
+        return value == null ? null : strategy.doSharding(value, shards);
+    }
+
+    public String getShardKey() {
+        return shardKey;
+    }
+
+    public ShardingStrategy getStrategy() {
+        return strategy;
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    public boolean isScatterGather() {
+        return scatterGather;
+    }
+
+    public void setScatterGather(boolean scatterGather) {
+        this.scatterGather = scatterGather;
+    }
+
+    public int getScatterGatherPoolSize() {
+        return scatterGatherPoolSize;
+    }
+
+    public void setScatterGatherPoolSize(int scatterGatherPoolSize) {
+        this.scatterGatherPoolSize = scatterGatherPoolSize;
+    }
+
+    public boolean isDefaultWrites() {
+        return defaultWrites;
+    }
+
+    public void setDefaultWrites(boolean defaultWrites) {
+        this.defaultWrites = defaultWrites;
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.huanyu.mybatis.sharding;
+
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * ClassName: ShardingStrategy
+ * Package: com.huanyu.mybatis.sharding
+ * Description: 分片策略
+ * 根据分片键的值从全部分片中选出一个，分片是 environments 中的环境 id。
+ * 内置 MOD（取模），也可以在 sharding 节点的 strategy 属性中指定自定义实现的类名，sharding 节点下的 property 通过 setProperties 传入
+ * @Author: 寰宇
+ * @Create: 2024/7/12 09:30
+ * @Version: 1.0
+ */
+public interface ShardingStrategy {
+
+    /**
+     * 选择分片
+     * @param shardKey 分片键的值，不为 null
+     * @param shards 全部分片的环境 id，按配置顺序
+     * @return 选中的环境 id
+     */
+    String doSharding(Object shardKey, List<String> shards);
+
+    /**
+     * 设置 sharding 节点下配置的属性
+     */
+    default void setProperties(Properties properties) {
+        // 默认没有属性
+    }
+
+}
@@ -1,5 +1,8 @@
 package com.huanyu.mybatis.transaction;
 
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.MappedStatement;
+
 import java.sql.Connection;
 import java.sql.SQLException;
 
@@ -21,6 +24,28 @@ public interface Transaction {
      */
     Connection getConnection() throws SQLException;
 
+    /**
+     * 获取执行该语句使用的连接，默认与 getConnection() 相同。
+     * 读写分离的事务据此把查询路由到只读副本
+     * @param ms 要执行的语句
+     * @param boundSql 要执行的 SQL，读写分离的事务据此识别加锁读（SELECT ... FOR UPDATE）
+     * @return 数据库连接
+     * @throws SQLException
+     */
+    default Connection getConnection(MappedStatement ms, BoundSql boundSql) throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * 语句在该事务的连接上执行完成后调用，默认不做任何处理。
+     * 读写分离的事务据此统计只读副本每次查询的耗时
+     * @param ms 执行的语句
+     * @param elapsedNanos 执行耗时（纳秒）
+     */
+    default void executed(MappedStatement ms, long elapsedNanos) {
+        // Do Nothing
+    }
+
     /**
      * 提交事务
      * @throws SQLException
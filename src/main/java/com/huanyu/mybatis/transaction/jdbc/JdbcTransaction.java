@@ -41,10 +41,17 @@ public class JdbcTransaction implements Transaction {
 
     @Override
     public Connection getConnection() throws SQLException {
+        // 同一个事务内复用同一个连接，批量执行的语句与提交/回滚必须落在同一连接上
+        if (connection == null) {
+            openConnection();
+        }
+        return connection;
+    }
+
+    protected void openConnection() throws SQLException {
         connection = dataSource.getConnection();
         connection.setTransactionIsolation(level.getLevel());
         connection.setAutoCommit(autoCommit);
-        return connection;
     }
 
     @Override
@@ -63,8 +70,9 @@ public class JdbcTransaction implements Transaction {
 
     @Override
     public void close() throws SQLException {
-        if (connection != null && !connection.getAutoCommit()) {
+        if (connection != null) {
             connection.close();
+            connection = null;
         }
     }
 }
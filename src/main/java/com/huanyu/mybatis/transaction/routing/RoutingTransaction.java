@@ -0,0 +1,163 @@
+package com.huanyu.mybatis.transaction.routing;
+
+import com.huanyu.mybatis.datasource.pooled.DelegatingConnection;
+import com.huanyu.mybatis.datasource.routing.ReadWriteRoutingDataSource;
+import com.huanyu.mybatis.datasource.routing.Replica;
+import com.huanyu.mybatis.dialect.SqlClauses;
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.regex.Pattern;
+
+/**
+ * ClassName: RoutingTransaction
+ * Package: com.huanyu.mybatis.transaction.routing
+ * Description: 读写分离的事务
+ * 主库连接和事务管理沿用 JdbcTransaction；自动提交的会话在第一次写之前的查询使用一个只读副本的连接，
+ * 副本在第一次查询时由负载均衡策略选出，会话内保持不变。
+ * 非自动提交的会话本身就是一个事务，其中的查询可能是"先读后写"的一部分，全部在主库执行，不会读到副本上滞后的数据；
+ * 加锁读（FOR UPDATE、FOR SHARE、LOCK IN SHARE MODE）在副本上既拿不到锁也读不到最新数据，同样使用主库。
+ * 写语句、加锁读以及之后的全部语句使用主库，保证会话能读到自己的写入；副本不可用时查询回退到主库。
+ * 切换到主库后副本连接上没有未关闭的语句（如仍在读取的游标）时立即归还，会话不会同时占用两个连接。
+ * 每条查询在副本上的执行耗时上报给副本，作为按延迟加权的负载均衡的样本
+ * @Author: 寰宇
+ * @Create: 2024/7/11 16:40
+ * @Version: 1.0
+ */
+public class RoutingTransaction extends JdbcTransaction {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingTransaction.class);
+
+    // 加锁读的子句，在屏蔽了字符串、注释和括号内容的大写 SQL 上匹配
+    private static final Pattern LOCKING_READ = Pattern.compile("\\bFOR\\s+(NO\\s+KEY\\s+)?UPDATE\\b|\\bFOR\\s+(KEY\\s+)?SHARE\\b|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b");
+
+    private final ReadWriteRoutingDataSource routingDataSource;
+
+    // 会话使用的副本及其连接
+    private Replica replica;
+    private Connection replicaConnection;
+    // 最近一次交出的是否是副本连接，执行耗时据此计入副本的统计
+    private boolean onReplica;
+    // 会话中是否已经写过（或加锁读过），之后全部语句使用主库
+    private boolean written;
+
+    public RoutingTransaction(ReadWriteRoutingDataSource dataSource, TransactionIsolationLevel level, boolean autoCommit) {
+        super(dataSource, level, autoCommit);
+        this.routingDataSource = dataSource;
+    }
+
+    @Override
+    public Connection getConnection(MappedStatement ms, BoundSql boundSql) throws SQLException {
+        if (ms.getSqlCommandType() != SqlCommandType.SELECT || isLockingRead(boundSql)) {
+            written = true;
+        }
+        onReplica = false;
+        if (written) {
+            releaseReplicaIfIdle();
+            return getConnection();
+        }
+        // 事务中的查询在主库执行
+        if (!autoCommit) {
+            return getConnection();
+        }
+        if (replicaConnection == null && !openReplicaConnection()) {
+            return getConnection();
+        }
+        onReplica = true;
+        return replicaConnection;
+    }
+
+    @Override
+    public void executed(MappedStatement ms, long elapsedNanos) {
+        if (onReplica && replica != null) {
+            replica.recordLatency(elapsedNanos / 1000);
+        }
+    }
+
+    // 是否是加锁读，加锁读之后通常紧跟着写入
+    private static boolean isLockingRead(BoundSql boundSql) {
+        return boundSql != null && LOCKING_READ.matcher(SqlClauses.mask(boundSql.getSql(), true)).find();
+    }
+
+    // 选择副本并借出连接，失败时返回 false，这次查询使用主库
+    private boolean openReplicaConnection() {
+        Replica selected = routingDataSource.selectReplica();
+        if (selected == null) {
+            return false;
+        }
+        Connection conn;
+        try {
+            conn = routingDataSource.getReplicaConnection(selected);
+        } catch (SQLException e) {
+            logger.warn("Replica " + selected.getName() + " is unavailable, reading from primary. Cause: " + e);
+            return false;
+        }
+        try {
+            // 副本只读，查询不需要事务
+            conn.setAutoCommit(true);
+            conn.setReadOnly(true);
+        } catch (SQLException e) {
+            logger.warn("Replica " + selected.getName() + " is unavailable, reading from primary. Cause: " + e);
+            closeQuietly(conn);
+            selected.released();
+            return false;
+        }
+        replica = selected;
+        replicaConnection = conn;
+        return true;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            releaseReplica();
+        } finally {
+            super.close();
+        }
+    }
+
+    /**
+     * 写过之后副本连接不再使用，没有未关闭的语句时归还。
+     * 只有池化连接能知道是否还有语句（如游标）在读取，其他连接保留到事务关闭
+     */
+    private void releaseReplicaIfIdle() {
+        if (replicaConnection instanceof DelegatingConnection
+                && ((DelegatingConnection) replicaConnection).getPooledConnection().getOpenStatementCount() == 0) {
+            releaseReplica();
+        }
+    }
+
+    private void releaseReplica() {
+        if (replicaConnection == null) {
+            return;
+        }
+        closeQuietly(replicaConnection);
+        replica.released();
+        replicaConnection = null;
+        replica = null;
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignore) {
+            // 关闭失败可以忽略
+        }
+    }
+
+    public boolean isWritten() {
+        return written;
+    }
+
+    public Replica getReplica() {
+        return replica;
+    }
+
+}
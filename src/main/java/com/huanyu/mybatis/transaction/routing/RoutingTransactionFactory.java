@@ -0,0 +1,30 @@
+package com.huanyu.mybatis.transaction.routing;
+
+import com.huanyu.mybatis.datasource.routing.ReadWriteRoutingDataSource;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.Transaction;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransactionFactory;
+
+import javax.sql.DataSource;
+
+/**
+ * ClassName: RoutingTransactionFactory
+ * Package: com.huanyu.mybatis.transaction.routing
+ * Description: RoutingTransaction 工厂
+ * 数据源是 ReadWriteRoutingDataSource 时创建读写分离的事务，否则与 JdbcTransactionFactory 相同。
+ * 环境配置了 replicas 节点时 XMLConfigBuilder 会自动使用该工厂替换 JDBC 事务工厂
+ * @Author: 寰宇
+ * @Create: 2024/7/11 16:45
+ * @Version: 1.0
+ */
+public class RoutingTransactionFactory extends JdbcTransactionFactory {
+
+    @Override
+    public Transaction newTransaction(DataSource dataSource, TransactionIsolationLevel level, boolean autoCommit) {
+        if (dataSource instanceof ReadWriteRoutingDataSource) {
+            return new RoutingTransaction((ReadWriteRoutingDataSource) dataSource, level, autoCommit);
+        }
+        return super.newTransaction(dataSource, level, autoCommit);
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.huanyu.mybatis.cursor.defaults;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.SimpleExecutor;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransaction;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ClassName: DefaultCursorTest
+ * Package: com.huanyu.mybatis.cursor.defaults
+ * Description: 游标按需读取和关闭的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 17:40
+ * @Version: 1.0
+ */
+public class DefaultCursorTest {
+
+    private static final String SELECT_SQL = "SELECT id FROM item";
+
+    private final Configuration configuration = new Configuration();
+    private FakeDatabase database;
+    private Executor executor;
+
+    @BeforeMethod
+    public void setUp() {
+        database = FakeDatabase.create();
+        Object[][] rows = new Object[100][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{(long) i + 1};
+        }
+        database.table(SELECT_SQL, new String[]{"id"}, rows);
+        executor = new SimpleExecutor(configuration, new JdbcTransaction(database.newDataSource(), TransactionIsolationLevel.READ_COMMITTED, true));
+    }
+
+    @Test
+    public void test_rowsAreFetchedOnDemand() throws Exception {
+        Cursor<Long> cursor = executor.queryCursor(select(), null, RowBounds.DEFAULT);
+        Assert.assertEquals(database.getFetchedRows(), 0);
+        Assert.assertFalse(cursor.isOpen());
+
+        Iterator<Long> iterator = cursor.iterator();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(iterator.next());
+        }
+        Assert.assertEquals(ids, Arrays.asList(1L, 2L, 3L));
+        Assert.assertEquals(database.getFetchedRows(), 3);
+        Assert.assertEquals(cursor.getCurrentIndex(), 2);
+        Assert.assertTrue(cursor.isOpen());
+
+        // 提前关闭时关闭结果集和游标独占的语句
+        cursor.close();
+        Assert.assertFalse(cursor.isOpen());
+        Assert.assertFalse(cursor.isConsumed());
+        Assert.assertEquals(database.count("closeResultSet " + SELECT_SQL), 1);
+        Assert.assertEquals(database.count("closeStatement " + SELECT_SQL), 1);
+        Assert.assertFalse(iterator.hasNext());
+        executor.close(false);
+    }
+
+    @Test
+    public void test_cursorClosesItselfWhenConsumed() throws Exception {
+        Cursor<Long> cursor = executor.queryCursor(select(), null, RowBounds.DEFAULT);
+        int count = 0;
+        for (Long ignored : cursor) {
+            count++;
+        }
+        Assert.assertEquals(count, 100);
+        Assert.assertTrue(cursor.isConsumed());
+        Assert.assertEquals(database.count("closeResultSet " + SELECT_SQL), 1);
+        Assert.assertEquals(database.count("closeStatement " + SELECT_SQL), 1);
+        cursor.close();
+        Assert.assertEquals(database.count("closeStatement " + SELECT_SQL), 1);
+        executor.close(false);
+    }
+
+    @Test
+    public void test_rowBoundsLimitStopsReading() throws Exception {
+        Cursor<Long> cursor = executor.queryCursor(select(), null, new RowBounds(10, 5));
+        List<Long> ids = new ArrayList<>();
+        cursor.forEach(ids::add);
+        Assert.assertEquals(ids, Arrays.asList(11L, 12L, 13L, 14L, 15L));
+        Assert.assertTrue(cursor.isConsumed());
+        Assert.assertEquals(cursor.getCurrentIndex(), 14);
+        // 读到 limit 即停止，不会读完整个结果集
+        Assert.assertEquals(database.getFetchedRows(), 15);
+        executor.close(false);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void test_onlyOneIteratorIsAllowed() throws Exception {
+        Cursor<Long> cursor = executor.queryCursor(select(), null, RowBounds.DEFAULT);
+        cursor.iterator();
+        try {
+            cursor.iterator();
+        } finally {
+            cursor.close();
+            executor.close(false);
+        }
+    }
+
+    @Test
+    public void test_closedCursorCannotBeIterated() throws Exception {
+        Cursor<Long> cursor = executor.queryCursor(select(), null, RowBounds.DEFAULT);
+        cursor.close();
+        try {
+            cursor.iterator();
+            Assert.fail("closed cursor returned an iterator");
+        } catch (IllegalStateException expected) {
+            // 预期的异常
+        }
+        Assert.assertEquals(database.getFetchedRows(), 0);
+        executor.close(false);
+    }
+
+    private MappedStatement select() {
+        List<ResultMap> resultMaps = new ArrayList<>();
+        resultMaps.add(new ResultMap.Builder(configuration, "item.select-Inline", Long.class, new ArrayList<>()).build());
+        return new MappedStatement.Builder(configuration, "item.select", SqlCommandType.SELECT,
+                new StaticSqlSource(configuration, SELECT_SQL, new ArrayList<>()), Long.class)
+                .resultMaps(resultMaps).build();
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.huanyu.mybatis.datasource.pooled.PooledDataSourceTest.awaitWaiters;
+import static com.huanyu.mybatis.datasource.pooled.PooledDataSourceTest.dataSource;
+
+/**
+ * ClassName: AdaptivePoolSizerTest
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 自适应连接池大小的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 17:10
+ * @Version: 1.0
+ */
+public class AdaptivePoolSizerTest {
+
+    private PooledDataSource dataSource;
+
+    @AfterMethod
+    public void shutdown() {
+        if (dataSource != null) {
+            dataSource.shutdown();
+            dataSource = null;
+        }
+    }
+
+    @Test
+    public void test_growsWhenThreadsAreWaiting() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMaximumActiveConnections(2);
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        CompletableFuture<Long> waiter = CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            try (Connection ignored = dataSource.getConnection()) {
+                return System.currentTimeMillis() - start;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        awaitWaiters(dataSource, 1);
+
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(dataSource);
+        Thread.sleep(20);
+        sizer.run();
+        // 扩容后直接为等待的线程建立连接
+        Assert.assertEquals(dataSource.getPoolMaximumActiveConnections(), 3);
+        Assert.assertEquals(dataSource.getPoolState().getAdaptiveResizeCount(), 1);
+        long waited = waiter.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(waited < dataSource.getPoolTimeToWait() / 4, "waited " + waited + " ms");
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void test_growthIsLimitedByMaximum() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMaximumActiveConnections(2);
+        dataSource.setPoolAdaptiveMaxConnections(2);
+        dataSource.setPoolMaximumQueueWait(2000);
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        CompletableFuture<Void> waiter = CompletableFuture.runAsync(() -> {
+            try {
+                dataSource.getConnection().close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        awaitWaiters(dataSource, 1);
+
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(dataSource);
+        Thread.sleep(20);
+        sizer.run();
+        Assert.assertEquals(dataSource.getPoolMaximumActiveConnections(), 2);
+        Assert.assertEquals(dataSource.getPoolState().getAdaptiveResizeCount(), 0);
+        first.close();
+        waiter.get(5, TimeUnit.SECONDS);
+        second.close();
+    }
+
+    @Test
+    public void test_shrinksGraduallyWhenIdle() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMaximumActiveConnections(20);
+        dataSource.setPoolMaximumIdleConnections(20);
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            connections.add(dataSource.getConnection());
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 20);
+
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(dataSource);
+        Thread.sleep(20);
+        sizer.run();
+        // 每轮最多缩小 10%，多出来的空闲连接直接关闭
+        Assert.assertEquals(dataSource.getPoolMaximumActiveConnections(), 18);
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 18);
+        Assert.assertEquals(database.getClosedConnections(), 2);
+
+        Thread.sleep(20);
+        sizer.run();
+        Assert.assertEquals(dataSource.getPoolMaximumActiveConnections(), 17);
+        Assert.assertEquals(dataSource.getPoolState().getAdaptiveResizeCount(), 2);
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ClassName: ConcurrentConnectionBagTest
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 无锁连接容器的测试
+ * 物理连接用动态代理模拟，不访问数据库
+ * @Author: 寰宇
+ * @Create: 2024/7/15 10:10
+ * @Version: 1.0
+ */
+public class ConcurrentConnectionBagTest {
+
+    @Test
+    public void test_borrowAndRequiteTrackIdleCount() {
+        ConcurrentConnectionBag bag = new ConcurrentConnectionBag();
+        List<PooledConnection> connections = fill(bag, 3);
+        Assert.assertEquals(bag.getIdleCount(), 3);
+
+        PooledConnection borrowed = bag.tryBorrow();
+        Assert.assertNotNull(borrowed);
+        Assert.assertEquals(borrowed.getState(), PooledConnection.STATE_IN_USE);
+        Assert.assertEquals(bag.getIdleCount(), 2);
+        Assert.assertEquals(bag.getActiveCount(), 1);
+
+        giveBack(bag, borrowed);
+        Assert.assertEquals(bag.getIdleCount(), 3);
+        Assert.assertEquals(bag.getActiveCount(), 0);
+        // 线程亲和：刚归还的连接被同一个线程优先借到
+        Assert.assertSame(bag.tryBorrow(), borrowed);
+        Assert.assertTrue(connections.contains(borrowed));
+    }
+
+    @Test
+    public void test_tryBorrowReturnsNullWhenEmpty() {
+        ConcurrentConnectionBag bag = new ConcurrentConnectionBag();
+        fill(bag, 1);
+        Assert.assertNotNull(bag.tryBorrow());
+        Assert.assertNull(bag.tryBorrow());
+        Assert.assertEquals(bag.getIdleCount(), 0);
+    }
+
+    @Test
+    public void test_reserveAndUnreserve() {
+        ConcurrentConnectionBag bag = new ConcurrentConnectionBag();
+        PooledConnection connection = fill(bag, 1).get(0);
+
+        Assert.assertTrue(bag.reserve(connection));
+        Assert.assertEquals(connection.getState(), PooledConnection.STATE_RESERVED);
+        Assert.assertEquals(bag.getIdleCount(), 0);
+        Assert.assertNull(bag.tryBorrow());
+        // 已经被保留的连接不能再保留
+        Assert.assertFalse(bag.reserve(connection));
+
+        bag.unreserve(connection);
+        Assert.assertEquals(bag.getIdleCount(), 1);
+        Assert.assertSame(bag.tryBorrow(), connection);
+    }
+
+    @Test
+    public void test_pollIdleRemovesConnections() {
+        ConcurrentConnectionBag bag = new ConcurrentConnectionBag();
+        fill(bag, 2);
+        Assert.assertNotNull(bag.pollIdle());
+        Assert.assertNotNull(bag.pollIdle());
+        Assert.assertNull(bag.pollIdle());
+        Assert.assertEquals(bag.getIdleCount(), 0);
+        Assert.assertTrue(bag.getIdleConnections().isEmpty());
+    }
+
+    @Test
+    public void test_borrowTimesOut() throws Exception {
+        ConcurrentConnectionBag bag = new ConcurrentConnectionBag();
+        long start = System.nanoTime();
+        Assert.assertNull(bag.borrow(bag.newWaiter(), 50, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertEquals(bag.getWaitingThreadCount(), 0);
+    }
+
+    @Test
+    public void test_addHandsOffToWaiter() throws Exception {
+        ConcurrentConnectionBag bag = new ConcurrentConnectionBag();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PooledConnection> waiting = executor.submit(() -> bag.borrow(bag.newWaiter(), 5, TimeUnit.SECONDS));
+            while (bag.getWaitingThreadCount() == 0) {
+                Thread.sleep(1);
+            }
+            PooledConnection connection = newConnection();
+            bag.add(connection);
+            Assert.assertSame(waiting.get(5, TimeUnit.SECONDS), connection);
+            Assert.assertEquals(connection.getState(), PooledConnection.STATE_IN_USE);
+            // 直接移交的连接不计入空闲连接
+            Assert.assertEquals(bag.getIdleCount(), 0);
+            Assert.assertEquals(bag.getActiveCount(), 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_failedWaiterThrows() throws Exception {
+        ConcurrentConnectionBag bag = new ConcurrentConnectionBag();
+        ConcurrentConnectionBag.Waiter waiter = bag.newWaiter();
+        waiter.fail(new SQLException("connect failed"));
+        try {
+            bag.borrow(waiter, 5, TimeUnit.SECONDS);
+            Assert.fail("expected SQLException");
+        } catch (SQLException e) {
+            Assert.assertEquals(e.getMessage(), "connect failed");
+        }
+    }
+
+    @Test
+    public void test_concurrentBorrowNeverSharesConnection() throws Exception {
+        int connections = 4;
+        int threads = 8;
+        int iterations = 2000;
+        ConcurrentConnectionBag bag = new ConcurrentConnectionBag();
+        fill(bag, connections);
+        // 每个连接当前的持有者数，大于 1 说明同一个连接被同时借给了两个线程
+        Map<PooledConnection, AtomicInteger> holders = new ConcurrentHashMap<>();
+        AtomicInteger shared = new AtomicInteger();
+        AtomicInteger timeouts = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        PooledConnection connection = bag.tryBorrow();
+                        if (connection == null) {
+                            connection = bag.borrow(bag.newWaiter(), 5, TimeUnit.SECONDS);
+                        }
+                        if (connection == null) {
+                            timeouts.incrementAndGet();
+                            continue;
+                        }
+                        AtomicInteger count = holders.computeIfAbsent(connection, c -> new AtomicInteger());
+                        if (count.incrementAndGet() > 1) {
+                            shared.incrementAndGet();
+                        }
+                        count.decrementAndGet();
+                        giveBack(bag, connection);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(shared.get(), 0);
+        Assert.assertEquals(timeouts.get(), 0);
+        Assert.assertEquals(bag.getActiveCount(), 0);
+        Assert.assertEquals(bag.getIdleCount(), connections);
+        Assert.assertEquals(bag.getIdleConnections().size(), connections);
+        Assert.assertEquals(bag.getWaitingThreadCount(), 0);
+    }
+
+    // 按 PooledDataSource.pushConnection 的顺序归还连接
+    private static void giveBack(ConcurrentConnectionBag bag, PooledConnection connection) {
+        Assert.assertTrue(bag.removeActive(connection));
+        connection.setState(PooledConnection.STATE_NOT_IN_USE);
+        bag.requite(connection);
+    }
+
+    private static List<PooledConnection> fill(ConcurrentConnectionBag bag, int size) {
+        List<PooledConnection> connections = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            PooledConnection connection = newConnection();
+            bag.add(connection);
+            connections.add(connection);
+        }
+        return connections;
+    }
+
+    private static PooledConnection newConnection() {
+        Connection connection = (Connection) Proxy.newProxyInstance(ConcurrentConnectionBagTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "FakeConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return new PooledConnection(connection, null);
+    }
+
+}
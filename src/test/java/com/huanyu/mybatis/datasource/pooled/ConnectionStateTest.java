@@ -0,0 +1,117 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static com.huanyu.mybatis.datasource.pooled.PooledDataSourceTest.dataSource;
+
+/**
+ * ClassName: ConnectionStateTest
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 物理连接状态记录的测试，省掉没有变化的设置和没有事务的回滚
+ * @Author: 寰宇
+ * @Create: 2024/7/16 15:30
+ * @Version: 1.0
+ */
+public class ConnectionStateTest {
+
+    private static final String SELECT_SQL = "SELECT id FROM user";
+    private static final String UPDATE_SQL = "UPDATE user SET name = 'a'";
+
+    private PooledDataSource dataSource;
+
+    @AfterMethod
+    public void shutdown() {
+        if (dataSource != null) {
+            dataSource.shutdown();
+            dataSource = null;
+        }
+    }
+
+    @Test
+    public void test_unchangedSettingsAreNotSentAgain() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        for (int i = 0; i < 3; i++) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+                Assert.assertFalse(connection.getAutoCommit());
+                Assert.assertEquals(connection.getTransactionIsolation(), Connection.TRANSACTION_READ_COMMITTED);
+            }
+        }
+        // 状态跟随物理连接，后续借出时设置相同的值不访问驱动
+        Assert.assertEquals(database.getOpenedConnections(), 1);
+        Assert.assertEquals(database.count("setAutoCommit"), 1);
+        Assert.assertEquals(database.count("setTransactionIsolation"), 1);
+        Assert.assertEquals(database.count("getAutoCommit"), 0);
+        Assert.assertEquals(database.count("getTransactionIsolation"), 0);
+    }
+
+    @Test
+    public void test_cleanConnectionIsNotRolledBack() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            // 没有执行过语句，提交和回滚都不访问驱动
+            connection.commit();
+            connection.rollback();
+            connection.prepareStatement(UPDATE_SQL).close();
+        }
+        Assert.assertEquals(database.count("commit"), 0);
+        Assert.assertEquals(database.count("rollback"), 0);
+    }
+
+    @Test
+    public void test_dirtyConnectionIsRolledBackOnReturn() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+                statement.executeUpdate();
+            }
+        }
+        Assert.assertEquals(database.count("rollback"), 1);
+
+        // 提交之后归还不再回滚
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+                statement.executeUpdate();
+            }
+            connection.commit();
+        }
+        Assert.assertEquals(database.count("commit"), 1);
+        Assert.assertEquals(database.count("rollback"), 1);
+    }
+
+    @Test
+    public void test_queryOutsideAutoCommitIsRolledBack() throws Exception {
+        FakeDatabase database = FakeDatabase.create().table(SELECT_SQL, new String[]{"id"}, new Object[]{1L});
+        dataSource = dataSource(database);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_SQL); ResultSet rs = statement.executeQuery()) {
+                Assert.assertTrue(rs.next());
+            }
+        }
+        // 自动提交模式下的查询不留下事务
+        Assert.assertEquals(database.count("rollback"), 0);
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_SQL); ResultSet rs = statement.executeQuery()) {
+                Assert.assertTrue(rs.next());
+            }
+        }
+        Assert.assertEquals(database.count("rollback"), 1);
+    }
+
+}
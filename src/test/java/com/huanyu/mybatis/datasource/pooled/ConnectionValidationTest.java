@@ -0,0 +1,81 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+
+import static com.huanyu.mybatis.datasource.pooled.PooledDataSourceTest.dataSource;
+
+/**
+ * ClassName: ConnectionValidationTest
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 借出连接时校验的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 15:00
+ * @Version: 1.0
+ */
+public class ConnectionValidationTest {
+
+    private PooledDataSource dataSource;
+
+    @AfterMethod
+    public void shutdown() {
+        if (dataSource != null) {
+            dataSource.shutdown();
+            dataSource = null;
+        }
+    }
+
+    @Test
+    public void test_validationIsSkippedWithinWindow() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolValidationSkipWindow(200);
+        dataSource.getConnection().close();
+        database.clearLog();
+
+        // 刚用过的连接直接借出
+        dataSource.getConnection().close();
+        Assert.assertEquals(database.count("isValid"), 0);
+
+        Thread.sleep(250);
+        dataSource.getConnection().close();
+        Assert.assertEquals(database.count("isValid"), 1);
+        Assert.assertEquals(database.getOpenedConnections(), 1);
+    }
+
+    @Test
+    public void test_invalidConnectionIsDiscardedAndReplaced() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolValidationSkipWindow(0);
+        dataSource.getConnection().close();
+        // 空闲中的物理连接断开
+        dataSource.getConnectionBag().getIdleConnections().get(0).getRealConnection().close();
+
+        try (Connection connection = dataSource.getConnection()) {
+            Assert.assertFalse(connection.isClosed());
+        }
+        Assert.assertEquals(database.getOpenedConnections(), 2);
+        Assert.assertEquals(dataSource.getPoolState().getBadConnectionCount(), 1);
+        Assert.assertEquals(dataSource.getTotalConnectionCount(), 1);
+    }
+
+    @Test
+    public void test_noneModeOnlyChecksClosed() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolValidationSkipWindow(0);
+        dataSource.setPoolValidationMode(ValidationMode.NONE);
+        dataSource.getConnection().close();
+        database.setValid(false);
+
+        dataSource.getConnection().close();
+        Assert.assertEquals(database.count("isValid"), 0);
+        Assert.assertEquals(database.getOpenedConnections(), 1);
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static com.huanyu.mybatis.datasource.pooled.PooledDataSourceTest.dataSource;
+
+/**
+ * ClassName: DelegatingConnectionTest
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 池化连接及其语句、结果集包装的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 16:00
+ * @Version: 1.0
+ */
+public class DelegatingConnectionTest {
+
+    private static final String SELECT_SQL = "SELECT id FROM user";
+    private static final String UPDATE_SQL = "UPDATE user SET name = 'a'";
+
+    private PooledDataSource dataSource;
+
+    @AfterMethod
+    public void shutdown() {
+        if (dataSource != null) {
+            dataSource.shutdown();
+            dataSource = null;
+        }
+    }
+
+    @Test
+    public void test_statementsAndResultSetsReturnThePooledConnection() throws Exception {
+        FakeDatabase database = FakeDatabase.create().table(SELECT_SQL, new String[]{"id"}, new Object[]{1L});
+        dataSource = dataSource(database);
+        try (Connection connection = dataSource.getConnection()) {
+            Assert.assertTrue(connection instanceof DelegatingConnection);
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_SQL); ResultSet rs = statement.executeQuery()) {
+                Assert.assertSame(statement.getConnection(), connection);
+                Assert.assertSame(rs.getStatement().getConnection(), connection);
+            }
+            try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(SELECT_SQL)) {
+                Assert.assertTrue(statement instanceof DelegatingStatement);
+                Assert.assertSame(statement.getConnection(), connection);
+                Assert.assertSame(rs.getStatement().getConnection(), connection);
+            }
+            try (CallableStatement statement = connection.prepareCall("{call refresh()}")) {
+                Assert.assertTrue(statement instanceof DelegatingCallableStatement);
+                Assert.assertSame(statement.getConnection(), connection);
+            }
+        }
+    }
+
+    @Test
+    public void test_openStatementsAreCounted() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        try (Connection connection = dataSource.getConnection()) {
+            PooledConnection pooled = ((DelegatingConnection) connection).getPooledConnection();
+            Statement statement = connection.createStatement();
+            PreparedStatement prepared = connection.prepareStatement(UPDATE_SQL);
+            Assert.assertEquals(pooled.getOpenStatementCount(), 2);
+            statement.close();
+            prepared.close();
+            // 重复关闭不重复计数
+            prepared.close();
+            Assert.assertEquals(pooled.getOpenStatementCount(), 0);
+        }
+    }
+
+    @Test
+    public void test_writeThroughCreatedStatementIsRolledBack() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(UPDATE_SQL);
+            }
+        }
+        Assert.assertEquals(database.count("rollback"), 1);
+    }
+
+    @Test
+    public void test_returnedConnectionCannotBeUsed() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        Connection connection = dataSource.getConnection();
+        connection.close();
+        // 重复归还无效
+        connection.close();
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 1);
+
+        Assert.assertThrows(SQLException.class, () -> connection.prepareStatement(UPDATE_SQL));
+        Assert.assertThrows(SQLException.class, connection::createStatement);
+        Assert.assertThrows(SQLException.class, connection::commit);
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.util.function.BooleanSupplier;
+
+import static com.huanyu.mybatis.datasource.pooled.PooledDataSourceTest.dataSource;
+
+/**
+ * ClassName: PoolHousekeeperTest
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 连接池后台维护任务的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 14:10
+ * @Version: 1.0
+ */
+public class PoolHousekeeperTest {
+
+    private PooledDataSource dataSource;
+
+    @AfterMethod
+    public void shutdown() {
+        if (dataSource != null) {
+            dataSource.shutdown();
+            dataSource = null;
+        }
+    }
+
+    @Test
+    public void test_connectionPastMaxLifetimeIsRetired() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMaxLifetime(100);
+        dataSource.getConnection().close();
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 1);
+
+        new PoolHousekeeper(dataSource).run();
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 1);
+
+        Thread.sleep(150);
+        new PoolHousekeeper(dataSource).run();
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 0);
+        Assert.assertEquals(dataSource.getTotalConnectionCount(), 0);
+        Assert.assertEquals(database.getClosedConnections(), 1);
+    }
+
+    @Test
+    public void test_idleConnectionsAreEvictedDownToMinimumIdle() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMinimumIdle(1);
+        dataSource.setPoolIdleTimeout(100);
+        Connection[] connections = {dataSource.getConnection(), dataSource.getConnection(), dataSource.getConnection()};
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 3);
+
+        Thread.sleep(150);
+        new PoolHousekeeper(dataSource).run();
+        // 只关闭多于 poolMinimumIdle 的部分
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 1);
+        Assert.assertEquals(database.getClosedConnections(), 2);
+        Assert.assertEquals(database.getOpenedConnections(), 3);
+    }
+
+    @Test
+    public void test_failedKeepaliveDiscardsConnection() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolKeepaliveTime(100);
+        dataSource.getConnection().close();
+
+        database.setValid(false);
+        Thread.sleep(150);
+        new PoolHousekeeper(dataSource).run();
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 0);
+        Assert.assertEquals(dataSource.getPoolState().getBadConnectionCount(), 1);
+        Assert.assertEquals(database.getClosedConnections(), 1);
+    }
+
+    @Test
+    public void test_minimumIdleIsFilledInBackground() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMinimumIdle(2);
+        dataSource.setPoolHousekeepingPeriod(20);
+        dataSource.init();
+        Assert.assertEquals(database.getOpenedConnections(), 0);
+
+        await(() -> dataSource.getConnectionBag().getIdleCount() == 2);
+        // 借走一个后再补足
+        Connection borrowed = dataSource.getConnection();
+        await(() -> dataSource.getConnectionBag().getIdleCount() == 2);
+        Assert.assertEquals(database.getOpenedConnections(), 3);
+        borrowed.close();
+    }
+
+    @Test
+    public void test_prefillCreatesMinimumIdleOnInit() {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMinimumIdle(3);
+        dataSource.setPoolPrefill(true);
+        dataSource.init();
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 3);
+        Assert.assertEquals(database.getOpenedConnections(), 3);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not reached");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+}
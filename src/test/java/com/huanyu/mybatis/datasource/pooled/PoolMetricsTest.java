@@ -0,0 +1,115 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+
+import static com.huanyu.mybatis.datasource.pooled.PooledDataSourceTest.dataSource;
+
+/**
+ * ClassName: PoolMetricsTest
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 连接池监控指标、JMX 注册和泄漏检测的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 16:40
+ * @Version: 1.0
+ */
+public class PoolMetricsTest {
+
+    private PooledDataSource dataSource;
+
+    @AfterMethod
+    public void shutdown() {
+        if (dataSource != null) {
+            dataSource.shutdown();
+            dataSource = null;
+        }
+    }
+
+    @Test
+    public void test_histogramPercentilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(histogram.getCount(), 1000);
+        Assert.assertEquals(histogram.getMax(), 1000);
+        Assert.assertEquals(histogram.getMean(), 500.5, 0.001);
+        // 对数分桶的相对误差不超过 12.5%
+        long p50 = histogram.getValueAtPercentile(50);
+        long p99 = histogram.getValueAtPercentile(99);
+        Assert.assertTrue(p50 >= 500 && p50 <= 500 * 1.125, "p50 " + p50);
+        Assert.assertTrue(p99 >= 990 && p99 <= 1000, "p99 " + p99);
+
+        histogram.reset();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getValueAtPercentile(99), 0);
+    }
+
+    @Test
+    public void test_stateCountsRequestsAndConnections() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        PoolState state = dataSource.getPoolState();
+        Assert.assertEquals(state.getActiveConnectionCount(), 2);
+        Assert.assertEquals(state.getIdleConnectionCount(), 0);
+        first.close();
+        second.close();
+        dataSource.getConnection().close();
+
+        Assert.assertEquals(state.getRequestCount(), 3);
+        Assert.assertEquals(state.getActiveConnectionCount(), 0);
+        Assert.assertEquals(state.getIdleConnectionCount(), 2);
+        Assert.assertTrue(state.getAcquireTimeMax() >= state.getAcquireTimeP50());
+        Assert.assertEquals(state.getHadToWaitCount(), 0);
+    }
+
+    @Test
+    public void test_mbeanIsRegisteredOnInitAndRemovedOnShutdown() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolName("metrics-test");
+        dataSource.setPoolRegisterMbeans(true);
+        dataSource.getConnection().close();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.huanyu.mybatis.datasource:type=PooledDataSource,name=" + ObjectName.quote("metrics-test"));
+        Assert.assertTrue(server.isRegistered(name));
+        Assert.assertEquals(server.getAttribute(name, "RequestCount"), 1L);
+        Assert.assertEquals(server.getAttribute(name, "IdleConnectionCount"), 1);
+
+        dataSource.shutdown();
+        dataSource = null;
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void test_leakIsReportedOnceWithSampledTrace() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolLeakDetectionThreshold(50);
+        dataSource.setPoolLeakDetectionSampleRate(1.0);
+        Connection connection = dataSource.getConnection();
+        PooledConnection pooled = ((DelegatingConnection) connection).getPooledConnection();
+        Assert.assertNotNull(pooled.getLeakTrace());
+
+        dataSource.detectLeaks();
+        Assert.assertEquals(dataSource.getPoolState().getLeakedConnectionCount(), 0);
+
+        Thread.sleep(100);
+        dataSource.detectLeaks();
+        dataSource.detectLeaks();
+        Assert.assertTrue(pooled.isLeakReported());
+        Assert.assertEquals(dataSource.getPoolState().getLeakedConnectionCount(), 1);
+        connection.close();
+    }
+
+}
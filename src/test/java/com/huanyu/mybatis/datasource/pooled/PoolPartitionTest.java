@@ -0,0 +1,125 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.datasource.WorkloadContext;
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.SimpleExecutor;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransaction;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.huanyu.mybatis.datasource.pooled.PooledDataSourceTest.dataSource;
+
+/**
+ * ClassName: PoolPartitionTest
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 按负载类别划分连接池分区的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 17:40
+ * @Version: 1.0
+ */
+public class PoolPartitionTest {
+
+    private static final String SELECT_SQL = "SELECT id FROM item";
+
+    private final Configuration configuration = new Configuration();
+
+    private PooledDataSource dataSource;
+
+    @AfterMethod
+    public void shutdown() {
+        WorkloadContext.set(null);
+        if (dataSource != null) {
+            dataSource.shutdown();
+            dataSource = null;
+        }
+    }
+
+    @Test
+    public void test_connectionsAreBorrowedFromWorkloadPartition() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        PooledDataSource report = dataSource.addPartition("report");
+        Assert.assertSame(dataSource.addPartition("report"), report);
+
+        WorkloadContext.set("report");
+        try (Connection connection = dataSource.getConnection()) {
+            Assert.assertSame(pool(connection), report);
+        }
+        // 没有配置分区的类别使用主连接池
+        WorkloadContext.set("batch");
+        try (Connection connection = dataSource.getConnection()) {
+            Assert.assertSame(pool(connection), dataSource);
+        }
+        WorkloadContext.set(null);
+        try (Connection connection = dataSource.getConnection()) {
+            Assert.assertSame(pool(connection), dataSource);
+        }
+        Assert.assertEquals(report.getConnectionBag().getIdleCount(), 1);
+        Assert.assertEquals(dataSource.getConnectionBag().getIdleCount(), 1);
+    }
+
+    @Test
+    public void test_exhaustedPartitionDoesNotBlockOtherWorkloads() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMaximumQueueWait(100);
+        PooledDataSource report = dataSource.addPartition("report");
+        report.setPoolMaximumActiveConnections(1);
+
+        WorkloadContext.set("report");
+        Connection held = dataSource.getConnection();
+        Assert.assertThrows(SQLException.class, dataSource::getConnection);
+
+        WorkloadContext.set(null);
+        long start = System.currentTimeMillis();
+        try (Connection connection = dataSource.getConnection()) {
+            Assert.assertSame(pool(connection), dataSource);
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 100);
+        held.close();
+    }
+
+    @Test
+    public void test_sessionRejectsStatementOfAnotherPartition() throws Exception {
+        FakeDatabase database = FakeDatabase.create().table(SELECT_SQL, new String[]{"id"}, new Object[]{1L});
+        dataSource = dataSource(database);
+        dataSource.addPartition("report");
+        Executor executor = new SimpleExecutor(configuration, new JdbcTransaction(dataSource, TransactionIsolationLevel.READ_COMMITTED, false));
+
+        Assert.assertEquals(executor.query(select("item.report", "report"), null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER).size(), 1);
+        try {
+            executor.query(select("item.oltp", null), null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+            Assert.fail("statement of the main pool ran on a partition connection");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("already holds a connection from pool " + dataSource.getPoolName() + ".report"), e.getMessage());
+        }
+        executor.close(false);
+    }
+
+    private static PooledDataSource pool(Connection connection) {
+        return ((DelegatingConnection) connection).getPooledConnection().getDataSource();
+    }
+
+    private MappedStatement select(String id, String workloadClass) {
+        List<ResultMap> resultMaps = new ArrayList<>();
+        resultMaps.add(new ResultMap.Builder(configuration, id + "-Inline", Long.class, new ArrayList<>()).build());
+        return new MappedStatement.Builder(configuration, id, SqlCommandType.SELECT,
+                new StaticSqlSource(configuration, SELECT_SQL, new ArrayList<>()), Long.class)
+                .resultMaps(resultMaps).workloadClass(workloadClass).build();
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClassName: PooledDataSourceTest
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 池化数据源借出、归还和补建连接的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 10:20
+ * @Version: 1.0
+ */
+public class PooledDataSourceTest {
+
+    private PooledDataSource dataSource;
+
+    @AfterMethod
+    public void shutdown() {
+        if (dataSource != null) {
+            dataSource.shutdown();
+            dataSource = null;
+        }
+    }
+
+    @Test
+    public void test_retiredConnectionIsReplacedForWaiter() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMaximumActiveConnections(1);
+        dataSource.setPoolMaxLifetime(200);
+
+        Connection first = dataSource.getConnection();
+        CompletableFuture<Long> waiter = CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            try (Connection ignored = dataSource.getConnection()) {
+                return System.currentTimeMillis() - start;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        awaitWaiters(dataSource, 1);
+        // 超过最长存活时间后归还，物理连接被关闭
+        Thread.sleep(250);
+        first.close();
+
+        long waited = waiter.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(waited < dataSource.getPoolTimeToWait() / 4, "waited " + waited + " ms");
+        Assert.assertEquals(database.getOpenedConnections(), 2);
+        Assert.assertTrue(database.getClosedConnections() >= 1);
+    }
+
+    @Test
+    public void test_badConnectionIsReplacedForWaiter() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMaximumActiveConnections(1);
+
+        dataSource.getConnection();
+        CompletableFuture<Long> waiter = CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            try (Connection ignored = dataSource.getConnection()) {
+                return System.currentTimeMillis() - start;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        awaitWaiters(dataSource, 1);
+        // 借出中的连接失效后归还，作为坏连接丢弃
+        PooledConnection active = dataSource.getConnectionBag().getActiveConnections().get(0);
+        active.invalidate();
+        dataSource.pushConnection(active);
+
+        long waited = waiter.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(waited < dataSource.getPoolTimeToWait() / 4, "waited " + waited + " ms");
+        Assert.assertEquals(database.getOpenedConnections(), 2);
+    }
+
+    @Test
+    public void test_connectionsAreCreatedInParallel() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        database.setConnectLatency(300);
+        dataSource = dataSource(database);
+        dataSource.setPoolConnectionCreatorThreads(4);
+
+        // 每个借用方一个线程，公共线程池的并行度可能不足 4
+        ExecutorService borrowerThreads = Executors.newFixedThreadPool(4);
+        try {
+            long start = System.currentTimeMillis();
+            List<CompletableFuture<Connection>> borrowers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                borrowers.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return dataSource.getConnection();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }, borrowerThreads));
+            }
+            List<Connection> connections = new ArrayList<>();
+            for (CompletableFuture<Connection> borrower : borrowers) {
+                connections.add(borrower.get(5, TimeUnit.SECONDS));
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            for (Connection connection : connections) {
+                connection.close();
+            }
+            // 四个连接同时建立，总耗时远小于依次建立的 1200 毫秒
+            Assert.assertTrue(elapsed < 900, "elapsed " + elapsed + " ms");
+            Assert.assertEquals(database.getOpenedConnections(), 4);
+        } finally {
+            borrowerThreads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_returnedConnectionIsHandedOffWhileCreationIsPending() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = dataSource(database);
+        dataSource.setPoolMaximumActiveConnections(2);
+
+        Connection first = dataSource.getConnection();
+        database.setConnectLatency(2000);
+        CompletableFuture<Long> waiter = CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            try (Connection ignored = dataSource.getConnection()) {
+                return System.currentTimeMillis() - start;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        awaitWaiters(dataSource, 1);
+        Assert.assertEquals(dataSource.getPendingConnectionCount(), 1);
+        // 新连接还在建立，归还的连接直接移交给等待的线程
+        first.close();
+
+        long waited = waiter.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(waited < 1000, "waited " + waited + " ms");
+        Assert.assertEquals(database.getOpenedConnections(), 1);
+    }
+
+    static PooledDataSource dataSource(FakeDatabase database) {
+        PooledDataSource dataSource = new PooledDataSource();
+        dataSource.setDriver(FakeDatabase.Driver.class.getName());
+        dataSource.setUrl(database.getUrl());
+        dataSource.setPoolRegisterMbeans(false);
+        return dataSource;
+    }
+
+    static void awaitWaiters(PooledDataSource dataSource, int waiters) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dataSource.getConnectionBag().getWaitingThreadCount() < waiters) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("no thread is waiting for a connection");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+}
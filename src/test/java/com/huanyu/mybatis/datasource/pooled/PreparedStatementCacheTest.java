@@ -0,0 +1,146 @@
+package com.huanyu.mybatis.datasource.pooled;
+
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+
+/**
+ * ClassName: PreparedStatementCacheTest
+ * Package: com.huanyu.mybatis.datasource.pooled
+ * Description: 池化连接上预编译语句缓存的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 17:10
+ * @Version: 1.0
+ */
+public class PreparedStatementCacheTest {
+
+    private static final String SQL_A = "SELECT id FROM a WHERE id = ?";
+    private static final String SQL_B = "SELECT id FROM b WHERE id = ?";
+    private static final String SQL_C = "SELECT id FROM c WHERE id = ?";
+
+    private PooledDataSource dataSource;
+
+    @AfterMethod
+    public void shutdown() {
+        if (dataSource != null) {
+            dataSource.shutdown();
+            dataSource = null;
+        }
+    }
+
+    @Test
+    public void test_statementSurvivesConnectionCheckout() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = cachingDataSource(database, 4);
+
+        try (Connection conn = dataSource.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(SQL_A);
+            ps.setLong(1, 1L);
+            ps.addBatch();
+            ps.close();
+        }
+        // 关闭时清理参数和批次后放回缓存，并不真正关闭
+        Assert.assertEquals(database.count("clearParameters " + SQL_A), 1);
+        Assert.assertEquals(database.count("closeStatement "), 0);
+
+        try (Connection conn = dataSource.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(SQL_A);
+            Assert.assertFalse(ps.isClosed());
+            ps.setLong(1, 2L);
+            ps.executeQuery().close();
+            ps.close();
+        }
+        Assert.assertEquals(database.getOpenedConnections(), 1);
+        Assert.assertEquals(database.count("prepare " + SQL_A), 1);
+        Assert.assertEquals(dataSource.getPoolState().statementCacheHitCount.get(), 1);
+    }
+
+    @Test
+    public void test_closedHandleCannotBeUsedAgain() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = cachingDataSource(database, 4);
+        try (Connection conn = dataSource.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(SQL_A);
+            ps.close();
+            // 缓存的语句已经交还，旧的句柄不能再操作它
+            try {
+                ps.setLong(1, 1L);
+                Assert.fail("closed statement handle was usable");
+            } catch (SQLException expected) {
+                // 预期的异常
+            }
+            Assert.assertTrue(ps.isClosed());
+        }
+    }
+
+    @Test
+    public void test_sameSqlInUseTwiceGetsTwoStatements() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = cachingDataSource(database, 4);
+        try (Connection conn = dataSource.getConnection()) {
+            PreparedStatement first = conn.prepareStatement(SQL_A);
+            PreparedStatement second = conn.prepareStatement(SQL_A);
+            Assert.assertNotSame(((DelegatingPreparedStatement) first).getRealStatement(), ((DelegatingPreparedStatement) second).getRealStatement());
+            first.close();
+            second.close();
+        }
+        // 两个都归还时只保留最后一个
+        Assert.assertEquals(database.count("prepare " + SQL_A), 2);
+        Assert.assertEquals(database.count("closeStatement " + SQL_A), 1);
+    }
+
+    @Test
+    public void test_leastRecentlyUsedStatementIsEvicted() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = cachingDataSource(database, 2);
+        try (Connection conn = dataSource.getConnection()) {
+            conn.prepareStatement(SQL_A).close();
+            conn.prepareStatement(SQL_B).close();
+            conn.prepareStatement(SQL_A).close();
+            conn.prepareStatement(SQL_C).close();
+        }
+        // B 最久未使用，被淘汰并关闭
+        Assert.assertEquals(database.getLog("closeStatement "), Collections.singletonList("closeStatement " + SQL_B));
+        Assert.assertEquals(database.count("prepare " + SQL_A), 1);
+    }
+
+    @Test
+    public void test_resultSetTypeIsPartOfKey() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = cachingDataSource(database, 4);
+        try (Connection conn = dataSource.getConnection()) {
+            conn.prepareStatement(SQL_A).close();
+            PreparedStatement scrollable = conn.prepareStatement(SQL_A, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            Assert.assertEquals(scrollable.getResultSetType(), ResultSet.TYPE_SCROLL_INSENSITIVE);
+            scrollable.close();
+        }
+        Assert.assertEquals(database.count("prepare " + SQL_A), 2);
+    }
+
+    @Test
+    public void test_statementsAreClosedWithPhysicalConnection() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        dataSource = cachingDataSource(database, 4);
+        try (Connection conn = dataSource.getConnection()) {
+            conn.prepareStatement(SQL_A).close();
+            conn.prepareStatement(SQL_B).close();
+        }
+        dataSource.forceCloseAll();
+        Assert.assertEquals(database.count("closeStatement "), 2);
+        Assert.assertEquals(database.getClosedConnections(), 1);
+    }
+
+    private static PooledDataSource cachingDataSource(FakeDatabase database, int cacheSize) {
+        PooledDataSource dataSource = PooledDataSourceTest.dataSource(database);
+        dataSource.setPoolPreparedStatementCacheSize(cacheSize);
+        return dataSource;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.huanyu.mybatis.datasource.routing;
+
+import com.huanyu.mybatis.datasource.unpooled.UnpooledDataSource;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ClassName: ReplicaBalancerTest
+ * Package: com.huanyu.mybatis.datasource.routing
+ * Description: 副本负载均衡策略的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 18:10
+ * @Version: 1.0
+ */
+public class ReplicaBalancerTest {
+
+    private final Replica first = new Replica("replica-1", null);
+    private final Replica second = new Replica("replica-2", null);
+    private final Replica third = new Replica("replica-3", null);
+    private final List<Replica> replicas = Arrays.asList(first, second, third);
+
+    @Test
+    public void test_roundRobinCyclesThroughReplicas() {
+        ReplicaBalancer balancer = new RoundRobinBalancer();
+        for (int i = 0; i < 6; i++) {
+            Assert.assertSame(balancer.select(replicas), replicas.get(i % 3));
+        }
+    }
+
+    @Test
+    public void test_leastInFlightPrefersIdleReplica() {
+        ReplicaBalancer balancer = new LeastInFlightBalancer();
+        first.acquired();
+        first.acquired();
+        third.acquired();
+        for (int i = 0; i < 5; i++) {
+            Assert.assertSame(balancer.select(replicas), second);
+        }
+        second.acquired();
+        second.acquired();
+        Assert.assertSame(balancer.select(replicas), third);
+    }
+
+    @Test
+    public void test_latencyWeightedPrefersFasterReplica() {
+        ReplicaBalancer balancer = new LatencyWeightedBalancer();
+        first.recordLatency(100);
+        second.recordLatency(1000);
+        List<Replica> pair = Arrays.asList(first, second);
+        int fast = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (balancer.select(pair) == first) {
+                fast++;
+            }
+        }
+        // 权重与延迟成反比，约 10:1
+        Assert.assertTrue(fast > 800, "fast replica selected " + fast + " times");
+        Assert.assertTrue(fast < 1000, "slow replica was never selected");
+    }
+
+    @Test
+    public void test_failedReplicaConnectionIsNotCountedInFlight() {
+        // 驱动不认识的地址，借出连接失败
+        UnpooledDataSource unreachable = FakeDatabase.create().newDataSource();
+        unreachable.setUrl("jdbc:unreachable:replica");
+        Replica broken = new Replica("broken", unreachable);
+        ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(FakeDatabase.create().newDataSource(),
+                Collections.singletonList(broken), new RoundRobinBalancer());
+        Assert.assertSame(dataSource.selectReplica(), broken);
+        Assert.assertThrows(SQLException.class, () -> dataSource.getReplicaConnection(broken));
+        Assert.assertEquals(broken.getInFlight(), 0);
+        Assert.assertEquals(broken.getRequestCount(), 1);
+        Assert.assertEquals(broken.getErrorCount(), 1);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.huanyu.mybatis.dialect;
+
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.mapping.SqlSource;
+import com.huanyu.mybatis.session.Configuration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ClassName: CountSqlSourceTest
+ * Package: com.huanyu.mybatis.dialect
+ * Description: 统计总行数的 SQL 源码的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/15 14:50
+ * @Version: 1.0
+ */
+public class CountSqlSourceTest {
+
+    @Test
+    public void test_rewritesSqlAndKeepsParameters() {
+        Configuration configuration = new Configuration();
+        List<ParameterMapping> mappings = Collections.singletonList(new ParameterMapping.Builder(configuration, "id", Long.class).build());
+        SqlSource source = parameter -> {
+            BoundSql boundSql = new BoundSql(configuration, "SELECT id, name FROM item WHERE id > ? ORDER BY id", mappings, parameter);
+            boundSql.setAdditionalParameter("_extra", "x");
+            return boundSql;
+        };
+
+        BoundSql count = new CountSqlSource(configuration, source).getBoundSql(5L);
+        Assert.assertEquals(count.getSql(), "SELECT COUNT(*) FROM item WHERE id > ?");
+        Assert.assertSame(count.getParameterMappings(), mappings);
+        Assert.assertEquals(count.getParameterObject(), 5L);
+        Assert.assertEquals(count.getAdditionalParameter("_extra"), "x");
+    }
+
+    @Test
+    public void test_followsDynamicSql() {
+        Configuration configuration = new Configuration();
+        SqlSource source = parameter -> new BoundSql(configuration,
+                Boolean.TRUE.equals(parameter) ? "SELECT DISTINCT name FROM item" : "SELECT name FROM item", Collections.emptyList(), parameter);
+        CountSqlSource countSqlSource = new CountSqlSource(configuration, source);
+
+        Assert.assertEquals(countSqlSource.getBoundSql(false).getSql(), "SELECT COUNT(*) FROM item");
+        Assert.assertEquals(countSqlSource.getBoundSql(true).getSql(), "SELECT COUNT(*) FROM (SELECT DISTINCT name FROM item) tmp_count");
+        Assert.assertEquals(countSqlSource.getBoundSql(false).getSql(), "SELECT COUNT(*) FROM item");
+    }
+
+    @Test
+    public void test_usesConfiguredDialect() {
+        Configuration configuration = new Configuration();
+        configuration.setDialect(new MySqlDialect() {
+            @Override
+            public String getCountString(String sql) {
+                return "SELECT COUNT(1) FROM (" + sql + ") c";
+            }
+        });
+        SqlSource source = parameter -> new BoundSql(configuration, "SELECT id FROM item", Collections.emptyList(), parameter);
+        Assert.assertEquals(new CountSqlSource(configuration, source).getBoundSql(null).getSql(), "SELECT COUNT(1) FROM (SELECT id FROM item) c");
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.huanyu.mybatis.dialect;
+
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ClassName: DialectTest
+ * Package: com.huanyu.mybatis.dialect
+ * Description: 数据库方言分页改写的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/15 14:30
+ * @Version: 1.0
+ */
+public class DialectTest {
+
+    private final Configuration configuration = new Configuration();
+
+    @Test
+    public void test_mySqlLimit() {
+        List<String> parameters = new ArrayList<>();
+        Assert.assertEquals(new MySqlDialect().getLimitString("SELECT * FROM t", true, parameters), "SELECT * FROM t LIMIT ?, ?");
+        Assert.assertEquals(parameters, Arrays.asList(Dialect.OFFSET_PARAMETER, Dialect.LIMIT_PARAMETER));
+
+        parameters.clear();
+        Assert.assertEquals(new MySqlDialect().getLimitString("SELECT * FROM t", false, parameters), "SELECT * FROM t LIMIT ?");
+        Assert.assertEquals(parameters, Collections.singletonList(Dialect.LIMIT_PARAMETER));
+    }
+
+    @Test
+    public void test_postgreSqlLimitOffset() {
+        List<String> parameters = new ArrayList<>();
+        Assert.assertEquals(new PostgreSqlDialect().getLimitString("SELECT * FROM t", true, parameters), "SELECT * FROM t LIMIT ? OFFSET ?");
+        Assert.assertEquals(parameters, Arrays.asList(Dialect.LIMIT_PARAMETER, Dialect.OFFSET_PARAMETER));
+
+        parameters.clear();
+        Assert.assertEquals(new PostgreSqlDialect().getLimitString("SELECT * FROM t", false, parameters), "SELECT * FROM t LIMIT ?");
+        Assert.assertEquals(parameters, Collections.singletonList(Dialect.LIMIT_PARAMETER));
+    }
+
+    @Test
+    public void test_oracleOffsetFetch() {
+        List<String> parameters = new ArrayList<>();
+        Assert.assertEquals(new OracleDialect().getLimitString("SELECT * FROM t", false, parameters),
+                "SELECT * FROM t OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+        Assert.assertEquals(parameters, Arrays.asList(Dialect.OFFSET_PARAMETER, Dialect.LIMIT_PARAMETER));
+    }
+
+    @Test
+    public void test_pageBoundSqlAppendsParametersAfterOriginalOnes() {
+        List<ParameterMapping> mappings = Collections.singletonList(new ParameterMapping.Builder(configuration, "name", String.class).build());
+        BoundSql boundSql = new BoundSql(configuration, "SELECT * FROM t WHERE name = ? ", mappings, "n1");
+        boundSql.setAdditionalParameter("_extra", 1);
+
+        BoundSql page = new MySqlDialect().getPageBoundSql(configuration, boundSql, new RowBounds(20, 10));
+        Assert.assertEquals(page.getSql(), "SELECT * FROM t WHERE name = ? LIMIT ?, ?");
+        Assert.assertEquals(page.getParameterMappings().size(), 3);
+        Assert.assertEquals(page.getParameterMappings().get(0).getProperty(), "name");
+        Assert.assertEquals(page.getParameterMappings().get(1).getProperty(), Dialect.OFFSET_PARAMETER);
+        Assert.assertEquals(page.getParameterMappings().get(2).getProperty(), Dialect.LIMIT_PARAMETER);
+        Assert.assertEquals(page.getAdditionalParameter(Dialect.OFFSET_PARAMETER), 20);
+        Assert.assertEquals(page.getAdditionalParameter(Dialect.LIMIT_PARAMETER), 10);
+        Assert.assertEquals(page.getAdditionalParameter("_extra"), 1);
+        Assert.assertEquals(page.getParameterObject(), "n1");
+        // 原 BoundSql 不受影响
+        Assert.assertEquals(boundSql.getParameterMappings().size(), 1);
+    }
+
+    @Test
+    public void test_pageBoundSqlWithoutOffsetOnlyBindsLimit() {
+        BoundSql boundSql = new BoundSql(configuration, "SELECT * FROM t", new ArrayList<>(), null);
+        BoundSql page = new PostgreSqlDialect().getPageBoundSql(configuration, boundSql, new RowBounds(0, 5));
+        Assert.assertEquals(page.getSql(), "SELECT * FROM t LIMIT ?");
+        Assert.assertEquals(page.getParameterMappings().size(), 1);
+        Assert.assertEquals(page.getParameterMappings().get(0).getProperty(), Dialect.LIMIT_PARAMETER);
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.huanyu.mybatis.dialect;
+
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.session.Configuration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ClassName: KeysetQueryTest
+ * Package: com.huanyu.mybatis.dialect
+ * Description: 键集分页 SQL 改写的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/15 15:10
+ * @Version: 1.0
+ */
+public class KeysetQueryTest {
+
+    private final Configuration configuration = new Configuration();
+
+    @Test
+    public void test_firstPageOnlyReplacesOrderBy() {
+        BoundSql page = KeysetQuery.build(configuration, boundSql("SELECT id, name FROM item ORDER BY name DESC"), "id", null);
+        Assert.assertEquals(page.getSql(), "SELECT id, name FROM item ORDER BY id");
+        Assert.assertTrue(page.getParameterMappings().isEmpty());
+        Assert.assertFalse(page.hasAdditionalParameter(KeysetQuery.LAST_KEY_PARAMETER));
+    }
+
+    @Test
+    public void test_addsWhereWhenMissing() {
+        BoundSql page = KeysetQuery.build(configuration, boundSql("SELECT id, name FROM item;"), "id", 100L);
+        Assert.assertEquals(page.getSql(), "SELECT id, name FROM item WHERE id > ? ORDER BY id");
+        Assert.assertEquals(page.getParameterMappings().size(), 1);
+        Assert.assertEquals(page.getParameterMappings().get(0).getProperty(), KeysetQuery.LAST_KEY_PARAMETER);
+        Assert.assertEquals(page.getParameterMappings().get(0).getJavaType(), Long.class);
+        Assert.assertEquals(page.getAdditionalParameter(KeysetQuery.LAST_KEY_PARAMETER), 100L);
+    }
+
+    @Test
+    public void test_wrapsExistingConditionAndKeepsParameterOrder() {
+        BoundSql boundSql = boundSql("SELECT id FROM item WHERE a = ? OR b = ? ORDER BY id", "a", "b");
+        boundSql.setAdditionalParameter("_extra", 1);
+        BoundSql page = KeysetQuery.build(configuration, boundSql, "item.id", 7);
+        Assert.assertEquals(page.getSql(), "SELECT id FROM item WHERE (a = ? OR b = ?) AND item.id > ? ORDER BY item.id");
+        Assert.assertEquals(properties(page), new String[]{"a", "b", KeysetQuery.LAST_KEY_PARAMETER});
+        Assert.assertEquals(page.getAdditionalParameter("_extra"), 1);
+        // 原 BoundSql 不受影响
+        Assert.assertEquals(boundSql.getParameterMappings().size(), 2);
+    }
+
+    @Test
+    public void test_keyConditionGoesBeforeGroupBy() {
+        BoundSql boundSql = boundSql("SELECT id, COUNT(*) FROM item WHERE a = ? GROUP BY id HAVING COUNT(*) > ?", "a", "min");
+        BoundSql page = KeysetQuery.build(configuration, boundSql, "id", 3L);
+        Assert.assertEquals(page.getSql(), "SELECT id, COUNT(*) FROM item WHERE (a = ?) AND id > ? GROUP BY id HAVING COUNT(*) > ? ORDER BY id");
+        Assert.assertEquals(properties(page), new String[]{"a", KeysetQuery.LAST_KEY_PARAMETER, "min"});
+    }
+
+    @Test
+    public void test_nestedWhereIsIgnored() {
+        BoundSql page = KeysetQuery.build(configuration, boundSql("SELECT id FROM (SELECT id FROM item WHERE a = ?) t", "a"), "id", 1L);
+        Assert.assertEquals(page.getSql(), "SELECT id FROM (SELECT id FROM item WHERE a = ?) t WHERE id > ? ORDER BY id");
+        Assert.assertEquals(properties(page), new String[]{"a", KeysetQuery.LAST_KEY_PARAMETER});
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Invalid keyset column.*")
+    public void test_invalidColumnIsRejected() {
+        KeysetQuery.build(configuration, boundSql("SELECT id FROM item"), "id; DROP TABLE item", 1L);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Keyset pagination does not support UNION or LIMIT.*")
+    public void test_unionIsRejected() {
+        KeysetQuery.build(configuration, boundSql("SELECT id FROM a UNION SELECT id FROM b"), "id", null);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Keyset pagination does not support UNION or LIMIT.*")
+    public void test_limitIsRejected() {
+        KeysetQuery.build(configuration, boundSql("SELECT id FROM item ORDER BY id LIMIT 10"), "id", null);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Keyset pagination cannot replace an ORDER BY with parameters.*")
+    public void test_orderByWithParametersIsRejected() {
+        KeysetQuery.build(configuration, boundSql("SELECT id FROM item ORDER BY FIELD(id, ?)", "first"), "id", null);
+    }
+
+    private BoundSql boundSql(String sql, String... properties) {
+        List<ParameterMapping> parameterMappings = new ArrayList<>();
+        for (String property : properties) {
+            parameterMappings.add(new ParameterMapping.Builder(configuration, property, Object.class).build());
+        }
+        return new BoundSql(configuration, sql, parameterMappings, null);
+    }
+
+    private static String[] properties(BoundSql boundSql) {
+        return boundSql.getParameterMappings().stream().map(ParameterMapping::getProperty).toArray(String[]::new);
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.huanyu.mybatis.dialect;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.mapping.SqlSource;
+import com.huanyu.mybatis.scripting.defaults.RawSqlSource;
+import com.huanyu.mybatis.session.Configuration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ClassName: MultiRowInsertSqlSourceTest
+ * Package: com.huanyu.mybatis.dialect
+ * Description: 多行 INSERT 分块的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/15 15:40
+ * @Version: 1.0
+ */
+public class MultiRowInsertSqlSourceTest {
+
+    private static final String INSERT_SQL = "INSERT INTO t (id, name) VALUES (#{id}, #{name})";
+
+    @Test
+    public void test_chunksAreLimitedByParameterCount() {
+        Configuration configuration = configuration(4, 0);
+        MultiRowInsertSqlSource source = new MultiRowInsertSqlSource(configuration, new RawSqlSource(configuration, INSERT_SQL, Item.class));
+        List<MultiRowInsertSqlSource.Chunk> chunks = drain(source.split(items(5)));
+
+        Assert.assertEquals(chunks.size(), 3);
+        Assert.assertEquals(chunks.get(0).getRows().size(), 2);
+        Assert.assertEquals(chunks.get(1).getRows().size(), 2);
+        Assert.assertEquals(chunks.get(2).getRows().size(), 1);
+        Assert.assertEquals(chunks.get(0).getBoundSql().getSql(), "INSERT INTO t (id, name) VALUES (?, ?),(?, ?)");
+        Assert.assertEquals(chunks.get(2).getBoundSql().getSql(), "INSERT INTO t (id, name) VALUES (?, ?)");
+    }
+
+    @Test
+    public void test_rowValuesBecomeAdditionalParameters() {
+        Configuration configuration = configuration(4, 0);
+        MultiRowInsertSqlSource source = new MultiRowInsertSqlSource(configuration, new RawSqlSource(configuration, INSERT_SQL, Item.class));
+        MultiRowInsertSqlSource.Chunk chunk = source.split(items(2)).next();
+
+        BoundSql boundSql = chunk.getBoundSql();
+        List<ParameterMapping> mappings = boundSql.getParameterMappings();
+        Assert.assertEquals(mappings.size(), 4);
+        String[] names = {"_multiRow_0_0", "_multiRow_0_1", "_multiRow_1_0", "_multiRow_1_1"};
+        Object[] values = {0L, "item-0", 1L, "item-1"};
+        for (int i = 0; i < names.length; i++) {
+            Assert.assertEquals(mappings.get(i).getProperty(), names[i]);
+            Assert.assertEquals(boundSql.getAdditionalParameter(names[i]), values[i]);
+        }
+        Assert.assertEquals(mappings.get(0).getJavaType(), Long.class);
+        Assert.assertEquals(mappings.get(1).getJavaType(), String.class);
+        Assert.assertEquals(boundSql.getParameterObject(), chunk.getRows());
+        // 块作为参数对象时直接返回它的 BoundSql
+        Assert.assertSame(source.getBoundSql(chunk), boundSql);
+    }
+
+    @Test
+    public void test_chunksAreLimitedByPacketSize() {
+        // 固定部分为 INSERT ... VALUES 加 2 字节，每行为元组加逗号、16 字节的数值和带引号的字符串
+        String prefix = "INSERT INTO t (id, name) VALUES";
+        int rowBytes = "(?, ?)".length() + 1 + 16 + "item-0".length() + 2;
+        Configuration configuration = configuration(0, prefix.length() + 2 + rowBytes * 2);
+        MultiRowInsertSqlSource source = new MultiRowInsertSqlSource(configuration, new RawSqlSource(configuration, INSERT_SQL, Item.class));
+        List<MultiRowInsertSqlSource.Chunk> chunks = drain(source.split(items(3)));
+
+        Assert.assertEquals(chunks.size(), 2);
+        Assert.assertEquals(chunks.get(0).getRows().size(), 2);
+        Assert.assertEquals(chunks.get(1).getRows().size(), 1);
+    }
+
+    @Test
+    public void test_equalChunksReuseSqlAndMappings() {
+        Configuration configuration = configuration(4, 0);
+        MultiRowInsertSqlSource source = new MultiRowInsertSqlSource(configuration, new RawSqlSource(configuration, INSERT_SQL, Item.class));
+        List<MultiRowInsertSqlSource.Chunk> chunks = drain(source.split(items(5)));
+
+        BoundSql first = chunks.get(0).getBoundSql();
+        BoundSql second = chunks.get(1).getBoundSql();
+        BoundSql last = chunks.get(2).getBoundSql();
+        Assert.assertSame(second.getSql(), first.getSql());
+        for (int i = 0; i < first.getParameterMappings().size(); i++) {
+            Assert.assertSame(second.getParameterMappings().get(i), first.getParameterMappings().get(i));
+        }
+        // 较短的最后一块取前缀
+        Assert.assertSame(last.getParameterMappings().get(1), first.getParameterMappings().get(1));
+        Assert.assertEquals(last.getAdditionalParameter("_multiRow_0_1"), "item-4");
+    }
+
+    @Test
+    public void test_scalarRowsWithStaticSqlSource() {
+        Configuration configuration = configuration(0, 0);
+        List<ParameterMapping> mappings = Collections.singletonList(new ParameterMapping.Builder(configuration, "value", String.class).build());
+        MultiRowInsertSqlSource source = new MultiRowInsertSqlSource(configuration,
+                new StaticSqlSource(configuration, "INSERT INTO tag (name) VALUES (?);", mappings));
+        List<MultiRowInsertSqlSource.Chunk> chunks = drain(source.split(Arrays.asList("a", "b", "c")));
+
+        Assert.assertEquals(chunks.size(), 1);
+        BoundSql boundSql = chunks.get(0).getBoundSql();
+        Assert.assertEquals(boundSql.getSql(), "INSERT INTO tag (name) VALUES (?),(?),(?)");
+        Assert.assertEquals(boundSql.getAdditionalParameter("_multiRow_2_0"), "c");
+    }
+
+    @Test
+    public void test_differentDynamicSqlStartsNewChunk() {
+        Configuration configuration = configuration(0, 0);
+        SqlSource dynamic = parameter -> {
+            Item item = (Item) parameter;
+            List<ParameterMapping> mappings = new ArrayList<>();
+            mappings.add(new ParameterMapping.Builder(configuration, "id", Long.class).build());
+            if (item.getName() == null) {
+                return new BoundSql(configuration, "INSERT INTO t (id) VALUES (?)", mappings, parameter);
+            }
+            mappings.add(new ParameterMapping.Builder(configuration, "name", String.class).build());
+            return new BoundSql(configuration, "INSERT INTO t (id, name) VALUES (?, ?)", mappings, parameter);
+        };
+        MultiRowInsertSqlSource source = new MultiRowInsertSqlSource(configuration, dynamic);
+        List<MultiRowInsertSqlSource.Chunk> chunks = drain(source.split(Arrays.asList(
+                new Item(1L, "a"), new Item(2L, "b"), new Item(3L, null), new Item(4L, "d"))));
+
+        Assert.assertEquals(chunks.size(), 3);
+        Assert.assertEquals(chunks.get(0).getBoundSql().getSql(), "INSERT INTO t (id, name) VALUES (?, ?),(?, ?)");
+        Assert.assertEquals(chunks.get(1).getBoundSql().getSql(), "INSERT INTO t (id) VALUES (?)");
+        Assert.assertEquals(chunks.get(2).getBoundSql().getSql(), "INSERT INTO t (id, name) VALUES (?, ?)");
+        Assert.assertEquals(chunks.get(2).getBoundSql().getAdditionalParameter("_multiRow_0_0"), 4L);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Multi-row insert requires an INSERT \\.\\.\\. VALUES.*")
+    public void test_nonInsertIsRejected() {
+        Configuration configuration = configuration(0, 0);
+        MultiRowInsertSqlSource source = new MultiRowInsertSqlSource(configuration,
+                new RawSqlSource(configuration, "UPDATE t SET name = #{name} WHERE id = #{id}", Item.class));
+        source.split(items(1)).hasNext();
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Multi-row insert supports parameters only inside VALUES.*")
+    public void test_parametersOutsideValuesAreRejected() {
+        Configuration configuration = configuration(0, 0);
+        MultiRowInsertSqlSource source = new MultiRowInsertSqlSource(configuration,
+                new RawSqlSource(configuration, "INSERT INTO t (id, name) VALUES (#{id}, 'x') ON DUPLICATE KEY UPDATE name = #{name}", Item.class));
+        source.split(items(1)).hasNext();
+    }
+
+    private static Configuration configuration(int maxParameters, long maxPacketSize) {
+        Configuration configuration = new Configuration();
+        configuration.setMultiRowInsertMaxParameters(maxParameters);
+        configuration.setMultiRowInsertMaxPacketSize(maxPacketSize);
+        return configuration;
+    }
+
+    private static List<Item> items(int count) {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new Item((long) i, "item-" + i));
+        }
+        return items;
+    }
+
+    private static <E> List<E> drain(Iterator<E> iterator) {
+        List<E> elements = new ArrayList<>();
+        while (iterator.hasNext()) {
+            elements.add(iterator.next());
+        }
+        return elements;
+    }
+
+    public static class Item {
+
+        private Long id;
+        private String name;
+
+        public Item() {
+        }
+
+        public Item(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.huanyu.mybatis.dialect;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * ClassName: SqlClausesTest
+ * Package: com.huanyu.mybatis.dialect
+ * Description: SQL 子句分析工具的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/15 14:10
+ * @Version: 1.0
+ */
+public class SqlClausesTest {
+
+    @Test
+    public void test_maskKeepsLengthAndHidesQuotedText() {
+        String sql = "select name from t where name = 'order by ?' and (id > ?)";
+        String masked = SqlClauses.mask(sql, false);
+        Assert.assertEquals(masked.length(), sql.length());
+        Assert.assertTrue(masked.startsWith("SELECT NAME FROM T"));
+        Assert.assertFalse(masked.contains("ORDER BY"));
+        Assert.assertTrue(masked.contains("(ID > ?)"));
+    }
+
+    @Test
+    public void test_maskKeepsLengthForCaseExpandingCharacters() {
+        // 'ß' 用 String.toUpperCase 会变成 "SS"，之后的下标整体偏移
+        String sql = "SELECT * FROM straße WHERE größe > ? ORDER BY id";
+        String masked = SqlClauses.mask(sql, true);
+        Assert.assertEquals(masked.length(), sql.length());
+        Assert.assertEquals(SqlClauses.indexOfOrderBy(masked), sql.indexOf("ORDER BY"));
+        Assert.assertEquals(SqlClauses.toCountSql(sql), "SELECT COUNT(*) FROM straße WHERE größe > ?");
+    }
+
+    @Test
+    public void test_maskHidesComments() {
+        String sql = "SELECT id -- order by name\nFROM t /* from x order by y */ WHERE a = ? ORDER BY id";
+        String masked = SqlClauses.mask(sql, false);
+        Assert.assertEquals(masked.length(), sql.length());
+        Assert.assertEquals(SqlClauses.indexOfOrderBy(masked), sql.lastIndexOf("ORDER BY"));
+        Assert.assertEquals(masked.indexOf("FROM"), sql.indexOf("FROM t"));
+        Assert.assertTrue(masked.contains("\nFROM T"));
+        // 注释中的问号不是占位符，引号中的注释符号不开启注释
+        Assert.assertEquals(SqlClauses.countPlaceholders("SELECT /* ? */ '--' AS a, ? FROM t", 0, 34), 1);
+        Assert.assertTrue(SqlClauses.mask("SELECT '--' AS a FROM t", false).endsWith("AS A FROM T"));
+    }
+
+    @Test
+    public void test_maskNestedHidesParentheses() {
+        String masked = SqlClauses.mask("SELECT * FROM (SELECT id FROM t ORDER BY id) x ORDER BY id", true);
+        Assert.assertEquals(masked.indexOf("ORDER BY"), masked.lastIndexOf("ORDER BY"));
+        Assert.assertFalse(masked.contains("SELECT ID"));
+    }
+
+    @Test
+    public void test_countPlaceholdersSkipsQuotedQuestionMarks() {
+        String sql = "SELECT * FROM t WHERE a = ? AND b = '?' AND c = ?";
+        Assert.assertEquals(SqlClauses.countPlaceholders(sql, 0, sql.length()), 2);
+        Assert.assertEquals(SqlClauses.countPlaceholders(sql, 0, sql.indexOf("AND")), 1);
+    }
+
+    @Test
+    public void test_indexOfOrderByFindsOutermostClause() {
+        String sql = "SELECT * FROM (SELECT id FROM t ORDER BY id) x ORDER BY id DESC";
+        Assert.assertEquals(SqlClauses.indexOfOrderBy(SqlClauses.mask(sql, true)), sql.lastIndexOf("ORDER BY"));
+        Assert.assertEquals(SqlClauses.indexOfOrderBy(SqlClauses.mask("SELECT * FROM t", true)), -1);
+    }
+
+    @Test
+    public void test_simpleQueryReplacesSelectList() {
+        Assert.assertEquals(SqlClauses.toCountSql("SELECT id, name FROM item WHERE id > ? ORDER BY id"),
+                "SELECT COUNT(*) FROM item WHERE id > ?");
+        Assert.assertEquals(SqlClauses.toCountSql("select * from item;"), "SELECT COUNT(*) from item");
+    }
+
+    @Test
+    public void test_complexQueriesAreWrapped() {
+        Assert.assertEquals(SqlClauses.toCountSql("SELECT DISTINCT name FROM item"),
+                "SELECT COUNT(*) FROM (SELECT DISTINCT name FROM item) tmp_count");
+        Assert.assertEquals(SqlClauses.toCountSql("SELECT name, COUNT(*) FROM item GROUP BY name"),
+                "SELECT COUNT(*) FROM (SELECT name, COUNT(*) FROM item GROUP BY name) tmp_count");
+        Assert.assertEquals(SqlClauses.toCountSql("SELECT id FROM a UNION SELECT id FROM b"),
+                "SELECT COUNT(*) FROM (SELECT id FROM a UNION SELECT id FROM b) tmp_count");
+    }
+
+    @Test
+    public void test_parametersInSelectListForceWrapping() {
+        Assert.assertEquals(SqlClauses.toCountSql("SELECT ? AS tag, id FROM item"),
+                "SELECT COUNT(*) FROM (SELECT ? AS tag, id FROM item) tmp_count");
+    }
+
+    @Test
+    public void test_orderByIsKeptWhenItMatters() {
+        // ORDER BY 之后还有 LIMIT 时不能去掉
+        Assert.assertEquals(SqlClauses.toCountSql("SELECT id FROM item ORDER BY id LIMIT 10"),
+                "SELECT COUNT(*) FROM (SELECT id FROM item ORDER BY id LIMIT 10) tmp_count");
+        // ORDER BY 中有参数时保留，占位符个数不变
+        Assert.assertEquals(SqlClauses.toCountSql("SELECT id FROM item ORDER BY FIELD(id, ?)"),
+                "SELECT COUNT(*) FROM item ORDER BY FIELD(id, ?)");
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.huanyu.mybatis.executor;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.datasource.Deadline;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransaction;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClassName: BatchExecutorTest
+ * Package: com.huanyu.mybatis.executor
+ * Description: 批量执行器的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 15:20
+ * @Version: 1.0
+ */
+public class BatchExecutorTest {
+
+    private static final String INSERT_SQL = "INSERT INTO item (id) VALUES (?)";
+    private static final String UPDATE_SQL = "UPDATE item SET flag = 1 WHERE id = ?";
+    private static final String SELECT_SQL = "SELECT id FROM item";
+
+    private final Configuration configuration = new Configuration();
+
+    @Test
+    public void test_consecutiveStatementsShareBatch() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        database.setUpdateCount(1);
+        BatchExecutor executor = newExecutor(database);
+        MappedStatement insert = insert();
+        MappedStatement update = update();
+
+        Assert.assertEquals(executor.update(insert, 1L), BatchExecutor.BATCH_UPDATE_RETURN_VALUE);
+        executor.update(insert, 2L);
+        executor.update(update, 1L);
+        executor.update(insert, 3L);
+        // 刷出之前只攒批，不执行
+        Assert.assertEquals(database.count("executeBatch "), 0);
+        Assert.assertEquals(database.count("addBatch "), 4);
+
+        List<BatchResult> results = executor.flushStatements();
+        Assert.assertEquals(database.getLog("executeBatch "), Arrays.asList(
+                "executeBatch " + INSERT_SQL + " 2", "executeBatch " + UPDATE_SQL + " 1", "executeBatch " + INSERT_SQL + " 1"));
+        // SQL 改变后开启新的批次，不与更早的同 SQL 批次合并，保持执行顺序
+        Assert.assertEquals(database.count("prepare " + INSERT_SQL), 2);
+        Assert.assertEquals(results.size(), 3);
+        Assert.assertEquals(results.get(0).getParameterObjects(), Arrays.asList(1L, 2L));
+        Assert.assertEquals(results.get(0).getUpdateCounts(), new int[]{1, 1});
+        Assert.assertSame(results.get(1).getMappedStatement(), update);
+        Assert.assertEquals(database.count("closeStatement "), 3);
+        Assert.assertTrue(executor.flushStatements().isEmpty());
+        executor.close(false);
+    }
+
+    @Test
+    public void test_queryFlushesPendingBatch() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        BatchExecutor executor = newExecutor(database);
+        MappedStatement insert = insert();
+        executor.update(insert, 1L);
+        executor.update(insert, 2L);
+        executor.query(select(), null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+
+        List<String> log = database.getLog();
+        int flushed = log.indexOf("executeBatch " + INSERT_SQL + " 2");
+        Assert.assertTrue(flushed >= 0);
+        Assert.assertTrue(flushed < log.indexOf("executeQuery " + SELECT_SQL));
+        executor.close(false);
+    }
+
+    @Test
+    public void test_commitFlushesBeforeCommitting() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        BatchExecutor executor = newExecutor(database);
+        executor.update(insert(), 1L);
+        executor.commit(true);
+
+        List<String> log = database.getLog();
+        int flushed = log.indexOf("executeBatch " + INSERT_SQL + " 1");
+        Assert.assertTrue(flushed >= 0);
+        Assert.assertTrue(flushed < log.lastIndexOf("commit"));
+        executor.close(false);
+    }
+
+    @Test
+    public void test_rollbackDiscardsPendingBatch() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        BatchExecutor executor = newExecutor(database);
+        MappedStatement insert = insert();
+        executor.update(insert, 1L);
+        executor.update(insert, 2L);
+        executor.rollback(true);
+
+        Assert.assertEquals(database.count("executeBatch "), 0);
+        Assert.assertEquals(database.count("closeStatement " + INSERT_SQL), 1);
+        Assert.assertTrue(executor.flushStatements().isEmpty());
+        executor.close(false);
+    }
+
+    @Test
+    public void test_flushIsCancelledAtDeadline() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        BatchExecutor executor = newExecutor(database);
+        MappedStatement insert = insert();
+        executor.update(insert, 1L);
+        executor.update(insert, 2L);
+
+        database.setQueryLatency(10000);
+        executor.setDeadline(Deadline.after(100, TimeUnit.MILLISECONDS));
+        long start = System.currentTimeMillis();
+        try {
+            executor.flushStatements();
+            Assert.fail("batch was not cancelled");
+        } catch (SQLTimeoutException e) {
+            Assert.assertTrue(e.getMessage().contains(insert.getId()), e.getMessage());
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertEquals(database.count("cancel " + INSERT_SQL), 1);
+        // 失败的批次同样被清空，语句已关闭
+        Assert.assertEquals(database.count("closeStatement " + INSERT_SQL), 1);
+        Assert.assertTrue(executor.flushStatements().isEmpty());
+        executor.close(true);
+    }
+
+    private BatchExecutor newExecutor(FakeDatabase database) {
+        return new BatchExecutor(configuration, new JdbcTransaction(database.newDataSource(), TransactionIsolationLevel.READ_COMMITTED, false));
+    }
+
+    private MappedStatement update() {
+        return new MappedStatement.Builder(configuration, "item.update", SqlCommandType.UPDATE,
+                new StaticSqlSource(configuration, UPDATE_SQL,
+                        Collections.singletonList(new ParameterMapping.Builder(configuration, "id", Long.class).build())), Integer.class)
+                .resultMaps(new ArrayList<>()).build();
+    }
+
+    private MappedStatement select() {
+        List<ResultMap> resultMaps = new ArrayList<>();
+        resultMaps.add(new ResultMap.Builder(configuration, "item.select-Inline", Long.class, new ArrayList<>()).build());
+        return new MappedStatement.Builder(configuration, "item.select", SqlCommandType.SELECT,
+                new StaticSqlSource(configuration, SELECT_SQL, new ArrayList<>()), Long.class)
+                .resultMaps(resultMaps).build();
+    }
+
+    private MappedStatement insert() {
+        return new MappedStatement.Builder(configuration, "item.insert", SqlCommandType.INSERT,
+                new StaticSqlSource(configuration, INSERT_SQL,
+                        Collections.singletonList(new ParameterMapping.Builder(configuration, "id", Long.class).build())), Integer.class)
+                .resultMaps(new ArrayList<>()).build();
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.huanyu.mybatis.executor;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.cursor.Cursor;
+import com.huanyu.mybatis.datasource.routing.ReadWriteRoutingDataSource;
+import com.huanyu.mybatis.datasource.routing.Replica;
+import com.huanyu.mybatis.datasource.routing.RoundRobinBalancer;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.FetchDirection;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.ResultSetType;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransaction;
+import com.huanyu.mybatis.transaction.routing.RoutingTransaction;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ClassName: ReuseExecutorTest
+ * Package: com.huanyu.mybatis.executor
+ * Description: 可重用执行器的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 16:40
+ * @Version: 1.0
+ */
+public class ReuseExecutorTest {
+
+    private static final String SELECT_SQL = "SELECT id FROM item";
+
+    private final Configuration configuration = new Configuration();
+
+    @Test
+    public void test_statementIsReusedUntilCommit() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        ReuseExecutor executor = newExecutor(database);
+        MappedStatement select = select("item.select");
+        for (int i = 0; i < 3; i++) {
+            executor.clearLocalCache();
+            executor.query(select, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        }
+        Assert.assertEquals(database.count("prepare " + SELECT_SQL), 1);
+        Assert.assertEquals(database.count("executeQuery " + SELECT_SQL), 3);
+        Assert.assertEquals(database.count("closeStatement "), 0);
+
+        // 提交时关闭缓存的语句，之后重新预编译
+        executor.commit(true);
+        Assert.assertEquals(database.count("closeStatement " + SELECT_SQL), 1);
+        executor.query(select, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(database.count("prepare " + SELECT_SQL), 2);
+        executor.close(false);
+    }
+
+    @Test
+    public void test_statementIsPreparedAgainAfterConnectionSwitch() throws Exception {
+        FakeDatabase primary = FakeDatabase.create();
+        FakeDatabase replica = FakeDatabase.create();
+        ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(primary.newDataSource(),
+                Collections.singletonList(new Replica("replica-1", replica.newDataSource())), new RoundRobinBalancer());
+        ReuseExecutor executor = new ReuseExecutor(configuration, new RoutingTransaction(dataSource, TransactionIsolationLevel.READ_COMMITTED, true));
+        MappedStatement select = select("item.select");
+        MappedStatement insert = new MappedStatement.Builder(configuration, "item.insert", SqlCommandType.INSERT,
+                new StaticSqlSource(configuration, "INSERT INTO item (id) VALUES (1)", new ArrayList<>()), Integer.class)
+                .resultMaps(new ArrayList<>()).build();
+
+        executor.query(select, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(replica.count("prepare " + SELECT_SQL), 1);
+        // 写入之后查询切换到主库，副本连接上缓存的语句不能再用
+        executor.update(insert, null);
+        executor.query(select, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(primary.count("prepare " + SELECT_SQL), 1);
+        Assert.assertEquals(primary.count("executeQuery " + SELECT_SQL), 1);
+        Assert.assertEquals(replica.count("executeQuery " + SELECT_SQL), 1);
+        Assert.assertEquals(replica.count("closeStatement " + SELECT_SQL), 1);
+        executor.close(false);
+    }
+
+    @Test
+    public void test_cursorIsNotClosedByQueryWithSameSql() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        database.table(SELECT_SQL, new String[]{"id"}, new Object[]{1L}, new Object[]{2L}, new Object[]{3L});
+        ReuseExecutor executor = newExecutor(database);
+        MappedStatement select = select("item.select");
+
+        List<Long> ids = new ArrayList<>();
+        try (Cursor<Long> cursor = executor.queryCursor(select, null, RowBounds.DEFAULT)) {
+            for (Long id : cursor) {
+                ids.add(id);
+                // 遍历游标时执行相同 SQL 的查询
+                executor.clearLocalCache();
+                Assert.assertEquals(executor.query(select, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER).size(), 3);
+            }
+        }
+        Assert.assertEquals(ids, Arrays.asList(1L, 2L, 3L));
+        // 游标和查询各一个 Statement，游标的随游标关闭，查询的仍然缓存
+        Assert.assertEquals(database.count("prepare " + SELECT_SQL), 2);
+        Assert.assertEquals(database.count("closeStatement " + SELECT_SQL), 1);
+        executor.close(false);
+        Assert.assertEquals(database.count("closeStatement " + SELECT_SQL), 2);
+    }
+
+    @Test
+    public void test_resultSetTypeIsPartOfStatementKey() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        database.table(SELECT_SQL, new String[]{"id"}, new Object[]{1L}, new Object[]{2L}, new Object[]{3L});
+        ReuseExecutor executor = newExecutor(database);
+        MappedStatement forwardOnly = select("item.forwardOnly");
+        MappedStatement scrollable = selectBuilder("item.scrollable").resultSetType(ResultSetType.SCROLL_INSENSITIVE).build();
+
+        executor.query(forwardOnly, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        // 可滚动的语句通过 absolute 跳过偏移量，不能复用只进的语句
+        List<Long> page = executor.query(scrollable, null, new RowBounds(1, 1), Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(page, Arrays.asList(2L));
+        Assert.assertEquals(database.count("prepare " + SELECT_SQL), 2);
+
+        // 相同类型的语句仍然复用
+        executor.query(scrollable, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(database.count("prepare " + SELECT_SQL), 2);
+        executor.close(false);
+    }
+
+    @Test
+    public void test_statementOptionsAreReappliedOnReuse() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        ReuseExecutor executor = newExecutor(database);
+        MappedStatement fast = selectBuilder("item.fast").timeout(5).build();
+        MappedStatement slow = selectBuilder("item.slow").timeout(60).fetchDirection(FetchDirection.REVERSE).build();
+
+        executor.query(fast, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        database.clearLog();
+        executor.query(slow, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(database.count("prepare "), 0);
+        Assert.assertEquals(database.getLog("setQueryTimeout "), Arrays.asList("setQueryTimeout 60"));
+        Assert.assertEquals(database.getLog("setFetchDirection "), Arrays.asList("setFetchDirection " + ResultSet.FETCH_REVERSE));
+
+        database.clearLog();
+        executor.clearLocalCache();
+        executor.query(fast, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(database.getLog("setQueryTimeout "), Arrays.asList("setQueryTimeout 5"));
+        Assert.assertEquals(database.getLog("setFetchDirection "), Arrays.asList("setFetchDirection " + ResultSet.FETCH_FORWARD));
+        executor.close(false);
+    }
+
+    private ReuseExecutor newExecutor(FakeDatabase database) {
+        return new ReuseExecutor(configuration, new JdbcTransaction(database.newDataSource(), TransactionIsolationLevel.READ_COMMITTED, true));
+    }
+
+    private MappedStatement select(String id) {
+        return selectBuilder(id).build();
+    }
+
+    private MappedStatement.Builder selectBuilder(String id) {
+        List<ResultMap> resultMaps = new ArrayList<>();
+        resultMaps.add(new ResultMap.Builder(configuration, id + "-Inline", Long.class, new ArrayList<>()).build());
+        return new MappedStatement.Builder(configuration, id, SqlCommandType.SELECT,
+                new StaticSqlSource(configuration, SELECT_SQL, new ArrayList<>()), Long.class)
+                .resultMaps(resultMaps);
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.huanyu.mybatis.executor.async;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.datasource.Deadline;
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.SimpleExecutor;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransaction;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ClassName: AsyncQueryExecutorTest
+ * Package: com.huanyu.mybatis.executor.async
+ * Description: 异步查询执行器超时的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 16:00
+ * @Version: 1.0
+ */
+public class AsyncQueryExecutorTest {
+
+    private static final String SELECT_SQL = "SELECT id FROM item";
+
+    private AsyncQueryExecutor asyncExecutor;
+
+    @AfterMethod
+    public void shutdown() {
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+            asyncExecutor = null;
+        }
+    }
+
+    @Test
+    public void test_timeoutBecomesWorkerDeadline() throws Exception {
+        asyncExecutor = new AsyncQueryExecutor(1, 1, 5000, false);
+        Deadline deadline = asyncExecutor.submit(Deadline::get).get(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(deadline);
+        long remaining = deadline.remaining(TimeUnit.MILLISECONDS);
+        Assert.assertTrue(remaining > 0 && remaining <= 5000, "remaining " + remaining);
+
+        // 提交线程上更早的截止时间优先
+        Deadline caller = Deadline.after(1000, TimeUnit.MILLISECONDS);
+        Deadline previous = Deadline.set(caller);
+        try {
+            Assert.assertSame(asyncExecutor.submit(Deadline::get).get(5, TimeUnit.SECONDS), caller);
+        } finally {
+            Deadline.set(previous);
+        }
+    }
+
+    @Test
+    public void test_timeoutCancelsRunningStatement() throws Exception {
+        asyncExecutor = new AsyncQueryExecutor(1, 1, 200, false);
+        FakeDatabase database = FakeDatabase.create();
+        database.setQueryLatency(10000);
+        Configuration configuration = new Configuration();
+        MappedStatement select = select(configuration);
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<List<Object>> future = asyncExecutor.submit(() -> {
+            Executor executor = new SimpleExecutor(configuration,
+                    new JdbcTransaction(database.newDataSource(), TransactionIsolationLevel.READ_COMMITTED, true));
+            try {
+                return executor.query(select, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+            } finally {
+                executor.close(false);
+            }
+        });
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("query was not cancelled");
+        } catch (ExecutionException e) {
+            // 由看门狗取消语句结束，而不是兜底的超时
+            Assert.assertTrue(e.getCause() instanceof SQLTimeoutException, String.valueOf(e.getCause()));
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 200 + 1000, "took " + (System.currentTimeMillis() - start) + " ms");
+        Assert.assertEquals(database.count("cancel " + SELECT_SQL), 1);
+        // 连接已经随执行器关闭
+        Assert.assertEquals(database.getClosedConnections(), 1);
+    }
+
+    @Test
+    public void test_taskQueuedPastDeadlineDoesNotRun() throws Exception {
+        asyncExecutor = new AsyncQueryExecutor(1, 1, 100, false);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> blocker = asyncExecutor.submit(() -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Object> queued = asyncExecutor.submit(() -> {
+            ran.set(true);
+            return null;
+        });
+        Thread.sleep(200);
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        try {
+            queued.get(5, TimeUnit.SECONDS);
+            Assert.fail("queued task completed normally");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException, String.valueOf(e.getCause()));
+        }
+        Assert.assertFalse(ran.get());
+    }
+
+    @Test
+    public void test_backstopTimeoutCompletesStuckTask() throws Exception {
+        asyncExecutor = new AsyncQueryExecutor(1, 1, 50, false);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<Object> future = asyncExecutor.submit(() -> {
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("stuck task completed normally");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException, String.valueOf(e.getCause()));
+        }
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_saturatedExecutorRejectsImmediately() throws Exception {
+        asyncExecutor = new AsyncQueryExecutor(1, 1, 0, false);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> running = asyncExecutor.submit(() -> release.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> queued = asyncExecutor.submit(() -> "queued");
+        CompletableFuture<Object> rejected = asyncExecutor.submit(() -> "rejected");
+        Assert.assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+            Assert.fail("saturated executor accepted a task");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException, String.valueOf(e.getCause()));
+        }
+        release.countDown();
+        Assert.assertEquals(running.get(5, TimeUnit.SECONDS), true);
+        Assert.assertEquals(queued.get(5, TimeUnit.SECONDS), "queued");
+    }
+
+    @Test
+    public void test_cancelInterruptsRunningTask() throws Exception {
+        asyncExecutor = new AsyncQueryExecutor(1, 1, 0, false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<Object> future = asyncExecutor.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(true);
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    private static MappedStatement select(Configuration configuration) {
+        List<ResultMap> resultMaps = new ArrayList<>();
+        resultMaps.add(new ResultMap.Builder(configuration, "item.select-Inline", Long.class, new ArrayList<>()).build());
+        return new MappedStatement.Builder(configuration, "item.select", SqlCommandType.SELECT,
+                new StaticSqlSource(configuration, SELECT_SQL, new ArrayList<>()), Long.class)
+                .resultMaps(resultMaps).build();
+    }
+
+}
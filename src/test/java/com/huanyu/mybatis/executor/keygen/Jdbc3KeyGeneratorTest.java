@@ -0,0 +1,225 @@
+package com.huanyu.mybatis.executor.keygen;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: Jdbc3KeyGeneratorTest
+ * Package: com.huanyu.mybatis.executor.keygen
+ * Description: 取回数据库生成主键的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/15 16:20
+ * @Version: 1.0
+ */
+public class Jdbc3KeyGeneratorTest {
+
+    @Test
+    public void test_singleParameter() {
+        Configuration configuration = new Configuration();
+        User user = new User("a");
+        configuration.getJdbc3KeyGenerator().processAfter(null, insert(configuration, "id", null), statement(keys("GENERATED_KEY", 11L)), user);
+        Assert.assertEquals(user.getId(), Long.valueOf(11L));
+    }
+
+    @Test
+    public void test_collectionParameterIsWrittenInOrder() {
+        Configuration configuration = new Configuration();
+        List<User> users = Arrays.asList(new User("a"), new User("b"), new User("c"));
+        configuration.getJdbc3KeyGenerator().processAfter(null, insert(configuration, "id", null),
+                statement(keys("GENERATED_KEY", 1L, 2L, 3L)), users);
+        Assert.assertEquals(users.get(0).getId(), Long.valueOf(1L));
+        Assert.assertEquals(users.get(1).getId(), Long.valueOf(2L));
+        Assert.assertEquals(users.get(2).getId(), Long.valueOf(3L));
+    }
+
+    @Test
+    public void test_batchParametersAreExpanded() {
+        Configuration configuration = new Configuration();
+        User first = new User("a");
+        User[] array = {new User("b"), new User("c")};
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(first);
+        parameters.add(array);
+        configuration.getJdbc3KeyGenerator().processBatch(insert(configuration, "id", null), statement(keys("GENERATED_KEY", 5L, 6L, 7L)), parameters);
+        Assert.assertEquals(first.getId(), Long.valueOf(5L));
+        Assert.assertEquals(array[0].getId(), Long.valueOf(6L));
+        Assert.assertEquals(array[1].getId(), Long.valueOf(7L));
+    }
+
+    @Test
+    public void test_fewerKeysThanRowsLeavesTheRestUntouched() {
+        Configuration configuration = new Configuration();
+        List<User> users = Arrays.asList(new User("a"), new User("b"));
+        configuration.getJdbc3KeyGenerator().processAfter(null, insert(configuration, "id", null), statement(keys("GENERATED_KEY", 1L)), users);
+        Assert.assertEquals(users.get(0).getId(), Long.valueOf(1L));
+        Assert.assertNull(users.get(1).getId());
+    }
+
+    @Test
+    public void test_keyColumnSelectsGeneratedColumn() {
+        Configuration configuration = new Configuration();
+        List<String> labels = Arrays.asList("created_at", "user_id");
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{"2024-07-15", 42L});
+        User user = new User("a");
+        configuration.getJdbc3KeyGenerator().processAfter(null, insert(configuration, "id", "user_id"), statement(resultSet(labels, rows)), user);
+        Assert.assertEquals(user.getId(), Long.valueOf(42L));
+    }
+
+    @Test
+    public void test_mapParameter() {
+        Configuration configuration = new Configuration();
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("name", "a");
+        configuration.getJdbc3KeyGenerator().processAfter(null, insert(configuration, "id", null), statement(keys("GENERATED_KEY", 9L)), parameter);
+        Assert.assertEquals(parameter.get("id"), 9L);
+    }
+
+    @Test
+    public void test_withoutKeyPropertyKeysAreNotRead() {
+        Configuration configuration = new Configuration();
+        Statement statement = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+            throw new AssertionError("unexpected call " + method.getName());
+        });
+        configuration.getJdbc3KeyGenerator().processAfter(null, insert(configuration, null, null), statement, new User("a"));
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = ".*No setter found for the keyProperty 'uuid'.*")
+    public void test_missingSetterIsReported() {
+        Configuration configuration = new Configuration();
+        configuration.getJdbc3KeyGenerator().processAfter(null, insert(configuration, "uuid", null), statement(keys("GENERATED_KEY", 1L)), new User("a"));
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = ".*Too many key properties \\[id, version\\].*")
+    public void test_tooManyKeyPropertiesAreReported() {
+        Configuration configuration = new Configuration();
+        configuration.getJdbc3KeyGenerator().processAfter(null, insert(configuration, "id,version", null), statement(keys("GENERATED_KEY", 1L)), new User("a"));
+    }
+
+    @Test
+    public void test_defaultKeyGeneratorFollowsUseGeneratedKeys() {
+        Configuration configuration = new Configuration();
+        configuration.setUseGeneratedKeys(true);
+        Assert.assertSame(insert(configuration, "id", null).getKeyGenerator(), configuration.getJdbc3KeyGenerator());
+        // 没有 keyProperty 的插入语句和非插入语句不取回主键
+        Assert.assertSame(insert(configuration, null, null).getKeyGenerator(), NoKeyGenerator.INSTANCE);
+        MappedStatement update = new MappedStatement.Builder(configuration, "test.update", SqlCommandType.UPDATE,
+                new StaticSqlSource(configuration, "UPDATE user SET name = ?"), Integer.class)
+                .resultMaps(new ArrayList<>()).keyProperty("id").build();
+        Assert.assertSame(update.getKeyGenerator(), NoKeyGenerator.INSTANCE);
+
+        configuration.setUseGeneratedKeys(false);
+        Assert.assertSame(insert(configuration, "id", null).getKeyGenerator(), NoKeyGenerator.INSTANCE);
+    }
+
+    @Test
+    public void test_eachConfigurationHasItsOwnInstance() {
+        Assert.assertNotSame(new Configuration().getJdbc3KeyGenerator(), new Configuration().getJdbc3KeyGenerator());
+    }
+
+    private static MappedStatement insert(Configuration configuration, String keyProperty, String keyColumn) {
+        MappedStatement.Builder builder = new MappedStatement.Builder(configuration, "test.insert", SqlCommandType.INSERT,
+                new StaticSqlSource(configuration, "INSERT INTO user (name) VALUES (?)"), Integer.class)
+                .resultMaps(new ArrayList<>());
+        if (keyProperty != null) {
+            builder.keyProperty(keyProperty);
+        }
+        if (keyColumn != null) {
+            builder.keyColumn(keyColumn);
+        }
+        return builder.build();
+    }
+
+    private static Statement statement(ResultSet generatedKeys) {
+        return (Statement) Proxy.newProxyInstance(Jdbc3KeyGeneratorTest.class.getClassLoader(), new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+            if ("getGeneratedKeys".equals(method.getName())) {
+                return generatedKeys;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private static ResultSet keys(String label, Object... values) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Object value : values) {
+            rows.add(new Object[]{value});
+        }
+        return resultSet(Arrays.asList(label), rows);
+    }
+
+    // 只支持按列名读取的只进结果集
+    private static ResultSet resultSet(List<String> labels, List<Object[]> rows) {
+        ClassLoader classLoader = Jdbc3KeyGeneratorTest.class.getClassLoader();
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(classLoader, new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return labels.size();
+                case "getColumnLabel":
+                    return labels.get((Integer) args[0] - 1);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        int[] cursor = {-1};
+        return (ResultSet) Proxy.newProxyInstance(classLoader, new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "next":
+                    return ++cursor[0] < rows.size();
+                case "getMetaData":
+                    return metaData;
+                case "close":
+                    return null;
+                case "getObject":
+                case "getLong":
+                    return rows.get(cursor[0])[labels.indexOf((String) args[0])];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    public static class User {
+
+        private Long id;
+        private String name;
+
+        public User() {
+        }
+
+        public User(String name) {
+            this.name = name;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+    }
+
+}
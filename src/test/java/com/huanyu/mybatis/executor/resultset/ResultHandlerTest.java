@@ -0,0 +1,110 @@
+package com.huanyu.mybatis.executor.resultset;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.SimpleExecutor;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransaction;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ClassName: ResultHandlerTest
+ * Package: com.huanyu.mybatis.executor.resultset
+ * Description: 自定义结果处理器逐行接收结果和提前停止的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/17 09:20
+ * @Version: 1.0
+ */
+public class ResultHandlerTest {
+
+    private static final String SELECT_SQL = "SELECT id FROM item";
+
+    private final Configuration configuration = new Configuration();
+    private FakeDatabase database;
+    private Executor executor;
+
+    @BeforeMethod
+    public void setUp() {
+        database = FakeDatabase.create();
+        Object[][] rows = new Object[50][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{(long) i + 1};
+        }
+        database.table(SELECT_SQL, new String[]{"id"}, rows);
+        executor = new SimpleExecutor(configuration, new JdbcTransaction(database.newDataSource(), TransactionIsolationLevel.READ_COMMITTED, true));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.close(false);
+    }
+
+    @Test
+    public void test_stopEndsReadingEarly() throws Exception {
+        List<Object> received = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        List<Object> list = executor.query(select(), null, RowBounds.DEFAULT, context -> {
+            received.add(context.getResultObject());
+            counts.add(context.getResultCount());
+            if (received.size() == 3) {
+                context.stop();
+            }
+        });
+        Assert.assertEquals(received, Arrays.asList(1L, 2L, 3L));
+        Assert.assertEquals(counts, Arrays.asList(1, 2, 3));
+        // 停止后不再读取结果集，并关闭它
+        Assert.assertEquals(database.getFetchedRows(), 3);
+        Assert.assertEquals(database.count("closeResultSet " + SELECT_SQL), 1);
+        // 结果交给了 resultHandler，不在内存中保存
+        Assert.assertTrue(list.isEmpty());
+    }
+
+    @Test
+    public void test_rowsArePushedWithoutBeingCollected() throws Exception {
+        int[] received = {0};
+        List<Object> list = executor.query(select(), null, RowBounds.DEFAULT, context -> received[0]++);
+        Assert.assertEquals(received[0], 50);
+        Assert.assertTrue(list.isEmpty());
+    }
+
+    @Test
+    public void test_rowBoundsApplyToResultHandler() throws Exception {
+        List<Object> received = new ArrayList<>();
+        executor.query(select(), null, new RowBounds(5, 3), context -> received.add(context.getResultObject()));
+        Assert.assertEquals(received, Arrays.asList(6L, 7L, 8L));
+    }
+
+    @Test
+    public void test_resultHandlerQueriesBypassLocalCache() throws Exception {
+        MappedStatement select = select();
+        int[] received = {0};
+        executor.query(select, null, RowBounds.DEFAULT, context -> received[0]++);
+        executor.query(select, null, RowBounds.DEFAULT, context -> received[0]++);
+        Assert.assertEquals(received[0], 100);
+        Assert.assertEquals(database.count("executeQuery " + SELECT_SQL), 2);
+        // 之后不带 resultHandler 的查询也不会拿到空的缓存结果
+        Assert.assertEquals(executor.query(select, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER).size(), 50);
+    }
+
+    private MappedStatement select() {
+        List<ResultMap> resultMaps = new ArrayList<>();
+        resultMaps.add(new ResultMap.Builder(configuration, "item.select-Inline", Long.class, new ArrayList<>()).build());
+        return new MappedStatement.Builder(configuration, "item.select", SqlCommandType.SELECT,
+                new StaticSqlSource(configuration, SELECT_SQL, new ArrayList<>()), Long.class)
+                .resultMaps(resultMaps).build();
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.huanyu.mybatis.executor.resultset;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.SimpleExecutor;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.ResultSetType;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransaction;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ClassName: RowBoundsTest
+ * Package: com.huanyu.mybatis.executor.resultset
+ * Description: RowBounds 下推为最大行数以及可滚动结果集直接定位的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/17 10:10
+ * @Version: 1.0
+ */
+public class RowBoundsTest {
+
+    private static final String SELECT_SQL = "SELECT id FROM item";
+
+    private final Configuration configuration = new Configuration();
+    private FakeDatabase database;
+    private Executor executor;
+
+    @BeforeMethod
+    public void setUp() {
+        database = FakeDatabase.create();
+        Object[][] rows = new Object[50][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{(long) i + 1};
+        }
+        database.table(SELECT_SQL, new String[]{"id"}, rows);
+        executor = new SimpleExecutor(configuration, new JdbcTransaction(database.newDataSource(), TransactionIsolationLevel.READ_COMMITTED, true));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.close(false);
+    }
+
+    @Test
+    public void test_limitIsPushedDownAsMaxRows() throws Exception {
+        configuration.setDefaultFetchSize(100);
+        List<Object> list = executor.query(select(ResultSetType.FORWARD_ONLY), null, new RowBounds(2, 3), Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(list, Arrays.asList(3L, 4L, 5L));
+        // 驱动最多返回 offset + limit 行，每次读取的行数不超过最大行数
+        Assert.assertEquals(database.getLog("setMaxRows "), Arrays.asList("setMaxRows 0", "setMaxRows 5"));
+        Assert.assertEquals(database.getLog("setFetchSize "), Collections.singletonList("setFetchSize 5"));
+        Assert.assertEquals(database.getFetchedRows(), 5);
+    }
+
+    @Test
+    public void test_noLimitLeavesMaxRowsUnset() throws Exception {
+        List<Object> list = executor.query(select(ResultSetType.FORWARD_ONLY), null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(list.size(), 50);
+        Assert.assertEquals(database.getLog("setMaxRows "), Arrays.asList("setMaxRows 0", "setMaxRows 0"));
+    }
+
+    @Test
+    public void test_scrollableResultSetSkipsOffsetWithAbsolute() throws Exception {
+        List<Object> list = executor.query(select(ResultSetType.SCROLL_INSENSITIVE), null, new RowBounds(40, 5), Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(list, Arrays.asList(41L, 42L, 43L, 44L, 45L));
+        // 偏移量之前的行没有逐行读取
+        Assert.assertEquals(database.getFetchedRows(), 5);
+    }
+
+    @Test
+    public void test_forwardOnlyResultSetSkipsOffsetRowByRow() throws Exception {
+        List<Object> list = executor.query(select(ResultSetType.FORWARD_ONLY), null, new RowBounds(40, 5), Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(list, Arrays.asList(41L, 42L, 43L, 44L, 45L));
+        Assert.assertEquals(database.getFetchedRows(), 45);
+    }
+
+    @Test
+    public void test_offsetBeyondScrollableResultSetReturnsNothing() throws Exception {
+        List<Object> list = executor.query(select(ResultSetType.SCROLL_INSENSITIVE), null, new RowBounds(60, RowBounds.NO_ROW_LIMIT), Executor.NO_RESULT_HANDLER);
+        Assert.assertTrue(list.isEmpty());
+        Assert.assertEquals(database.getFetchedRows(), 0);
+    }
+
+    private MappedStatement select(ResultSetType resultSetType) {
+        List<ResultMap> resultMaps = new ArrayList<>();
+        resultMaps.add(new ResultMap.Builder(configuration, "item.select-Inline", Long.class, new ArrayList<>()).build());
+        return new MappedStatement.Builder(configuration, "item.select", SqlCommandType.SELECT,
+                new StaticSqlSource(configuration, SELECT_SQL, new ArrayList<>()), Long.class)
+                .resultMaps(resultMaps).resultSetType(resultSetType).build();
+    }
+
+}
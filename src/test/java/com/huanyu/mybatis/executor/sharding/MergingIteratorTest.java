@@ -0,0 +1,126 @@
+package com.huanyu.mybatis.executor.sharding;
+
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * ClassName: MergingIteratorTest
+ * Package: com.huanyu.mybatis.executor.sharding
+ * Description: 多路归并迭代器的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/15 11:05
+ * @Version: 1.0
+ */
+public class MergingIteratorTest {
+
+    private final Configuration configuration = new Configuration();
+
+    @Test
+    public void test_mergesSortedShards() {
+        List<Iterator<Long>> sources = sources(Arrays.asList(1L, 4L, 7L), Arrays.asList(2L, 5L, 8L), Arrays.asList(3L, 6L, 9L));
+        Assert.assertEquals(drain(new MergingIterator<>(sources, ascending(), 0, RowBounds.NO_ROW_LIMIT)),
+                Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L));
+    }
+
+    @Test
+    public void test_mergesDescendingWithOffsetAndLimit() {
+        ShardOrderBy descending = new ShardOrderBy(configuration, ShardOrderByTest.statement(configuration, Long.class, Collections.emptyList()),
+                Collections.singletonList("id"), Collections.singletonList(true), Collections.singletonList(false));
+        List<Iterator<Long>> sources = sources(Arrays.asList(9L, 6L, 3L), Arrays.asList(8L, 5L, 2L), Arrays.asList(7L, 4L, 1L));
+        Assert.assertEquals(drain(new MergingIterator<>(sources, descending, 2, 4)), Arrays.asList(7L, 6L, 5L, 4L));
+    }
+
+    @Test
+    public void test_concatenatesShardsWithoutOrderBy() {
+        List<Iterator<Long>> sources = sources(Arrays.asList(3L, 1L), Collections.emptyList(), Arrays.asList(2L));
+        Assert.assertEquals(drain(new MergingIterator<>(sources, null, 1, RowBounds.NO_ROW_LIMIT)), Arrays.asList(1L, 2L));
+    }
+
+    @Test
+    public void test_equalKeysKeepShardOrder() {
+        ShardOrderBy byAmount = new ShardOrderBy(configuration, ShardOrderByTest.statement(configuration, ShardOrderByTest.Order.class, Collections.emptyList()),
+                Collections.singletonList("amount"), Collections.singletonList(false), Collections.singletonList(true));
+        ShardOrderByTest.Order a = new ShardOrderByTest.Order(1L, 10L);
+        ShardOrderByTest.Order b = new ShardOrderByTest.Order(2L, 10L);
+        ShardOrderByTest.Order c = new ShardOrderByTest.Order(3L, 5L);
+        List<Iterator<ShardOrderByTest.Order>> sources = new ArrayList<>();
+        sources.add(Collections.singletonList(b).iterator());
+        sources.add(Arrays.asList(c, a).iterator());
+        Assert.assertEquals(drain(new MergingIterator<>(sources, byAmount, 0, RowBounds.NO_ROW_LIMIT)), Arrays.asList(c, b, a));
+    }
+
+    @Test
+    public void test_stopsReadingShardsOnceLimitIsReached() {
+        CountingIterator first = new CountingIterator(Arrays.asList(1L, 3L, 5L, 7L, 9L));
+        CountingIterator second = new CountingIterator(Arrays.asList(2L, 4L, 6L, 8L, 10L));
+        MergingIterator<Long> merged = new MergingIterator<>(Arrays.asList(first, second), ascending(), 0, 3);
+        Assert.assertEquals(drain(merged), Arrays.asList(1L, 2L, 3L));
+        // 队列里只保存各分片当前的第一行
+        Assert.assertTrue(first.read + second.read <= 5, "read " + (first.read + second.read) + " rows");
+        Assert.assertFalse(merged.hasNext());
+    }
+
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void test_nextAfterEndThrows() {
+        MergingIterator<Long> merged = new MergingIterator<>(sources(Collections.emptyList()), ascending(), 0, RowBounds.NO_ROW_LIMIT);
+        Assert.assertFalse(merged.hasNext());
+        merged.next();
+    }
+
+    private ShardOrderBy ascending() {
+        return new ShardOrderBy(configuration, ShardOrderByTest.statement(configuration, Long.class, Collections.emptyList()),
+                Collections.singletonList("id"), Collections.singletonList(false), Collections.singletonList(true));
+    }
+
+    @SafeVarargs
+    private static List<Iterator<Long>> sources(List<Long>... shards) {
+        List<Iterator<Long>> sources = new ArrayList<>();
+        for (List<Long> shard : shards) {
+            sources.add(shard.iterator());
+        }
+        return sources;
+    }
+
+    private static <E> List<E> drain(Iterator<E> iterator) {
+        List<E> rows = new ArrayList<>();
+        while (iterator.hasNext()) {
+            rows.add(iterator.next());
+        }
+        return rows;
+    }
+
+    /**
+     * 记录读取了多少行的分片结果
+     */
+    private static class CountingIterator implements Iterator<Long> {
+
+        private final Iterator<Long> delegate;
+        private int read;
+
+        CountingIterator(List<Long> rows) {
+            this.delegate = rows.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public Long next() {
+            read++;
+            return delegate.next();
+        }
+
+    }
+
+}
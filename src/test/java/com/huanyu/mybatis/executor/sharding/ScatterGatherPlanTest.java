@@ -0,0 +1,136 @@
+package com.huanyu.mybatis.executor.sharding;
+
+import com.huanyu.mybatis.mapping.BoundSql;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: ScatterGatherPlanTest
+ * Package: com.huanyu.mybatis.executor.sharding
+ * Description: 跨分片查询执行计划的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/15 11:30
+ * @Version: 1.0
+ */
+public class ScatterGatherPlanTest {
+
+    private final Configuration configuration = new Configuration();
+    private final MappedStatement ms = ShardOrderByTest.statement(configuration, ShardOrderByTest.Order.class, Collections.emptyList());
+
+    @Test
+    public void test_limitWithOffsetIsPushedDownAsOffsetPlusLimit() {
+        ScatterGatherPlan plan = plan("SELECT id, amount FROM orders ORDER BY amount DESC LIMIT 10, 5", null, RowBounds.DEFAULT);
+        Assert.assertEquals(plan.getShardBoundSql().getSql(), "SELECT id, amount FROM orders ORDER BY amount DESC LIMIT 15");
+        Assert.assertEquals(plan.getOffset(), 10);
+        Assert.assertEquals(plan.getLimit(), 5);
+        // SQL 中已经有 LIMIT 时不再下推 RowBounds
+        Assert.assertSame(plan.getShardRowBounds(), RowBounds.DEFAULT);
+        Assert.assertNotNull(plan.getOrderBy());
+    }
+
+    @Test
+    public void test_limitOffsetSyntax() {
+        ScatterGatherPlan plan = plan("SELECT id, amount FROM orders ORDER BY id LIMIT 5 OFFSET 20", null, RowBounds.DEFAULT);
+        Assert.assertEquals(plan.getShardBoundSql().getSql(), "SELECT id, amount FROM orders ORDER BY id LIMIT 25");
+        Assert.assertEquals(plan.getOffset(), 20);
+        Assert.assertEquals(plan.getLimit(), 5);
+    }
+
+    @Test
+    public void test_limitParametersAreResolvedAndRemoved() {
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("userId", 3L);
+        parameter.put("size", 5);
+        parameter.put("start", 10);
+        ScatterGatherPlan plan = plan("SELECT id, amount FROM orders WHERE user_id = ? ORDER BY id LIMIT ? OFFSET ?", parameter,
+                RowBounds.DEFAULT, "userId", "size", "start");
+        BoundSql shardBoundSql = plan.getShardBoundSql();
+        Assert.assertEquals(shardBoundSql.getSql(), "SELECT id, amount FROM orders WHERE user_id = ? ORDER BY id LIMIT 15");
+        Assert.assertEquals(shardBoundSql.getParameterMappings().size(), 1);
+        Assert.assertEquals(shardBoundSql.getParameterMappings().get(0).getProperty(), "userId");
+        Assert.assertEquals(plan.getOffset(), 10);
+        Assert.assertEquals(plan.getLimit(), 5);
+    }
+
+    @Test
+    public void test_rowBoundsArePushedDownWithoutLimit() {
+        ScatterGatherPlan plan = plan("SELECT id, amount FROM orders ORDER BY id", null, new RowBounds(20, 10));
+        Assert.assertEquals(plan.getShardBoundSql().getSql(), "SELECT id, amount FROM orders ORDER BY id");
+        Assert.assertEquals(plan.getShardRowBounds().getOffset(), RowBounds.NO_ROW_OFFSET);
+        Assert.assertEquals(plan.getShardRowBounds().getLimit(), 30);
+        Assert.assertEquals(plan.getOffset(), 20);
+        Assert.assertEquals(plan.getLimit(), 10);
+    }
+
+    @Test
+    public void test_rowBoundsApplyInsideSqlLimit() {
+        ScatterGatherPlan plan = plan("SELECT id, amount FROM orders ORDER BY id LIMIT 10", null, new RowBounds(8, 5));
+        Assert.assertEquals(plan.getShardBoundSql().getSql(), "SELECT id, amount FROM orders ORDER BY id LIMIT 10");
+        Assert.assertEquals(plan.getOffset(), 8);
+        Assert.assertEquals(plan.getLimit(), 2);
+    }
+
+    @Test
+    public void test_unboundedQueryIsNotRewritten() {
+        ScatterGatherPlan plan = plan("SELECT id, amount FROM orders", null, RowBounds.DEFAULT);
+        Assert.assertEquals(plan.getShardBoundSql().getSql(), "SELECT id, amount FROM orders");
+        Assert.assertSame(plan.getShardRowBounds(), RowBounds.DEFAULT);
+        Assert.assertNull(plan.getOrderBy());
+        Assert.assertEquals(plan.getOffset(), 0);
+        Assert.assertEquals(plan.getLimit(), RowBounds.NO_ROW_LIMIT);
+    }
+
+    @Test
+    public void test_nestedOrderByAndLimitAreIgnored() {
+        ScatterGatherPlan plan = plan("SELECT id, amount FROM (SELECT id, amount FROM orders ORDER BY id LIMIT 3) t", null, RowBounds.DEFAULT);
+        Assert.assertNull(plan.getOrderBy());
+        Assert.assertEquals(plan.getShardBoundSql().getSql(), "SELECT id, amount FROM (SELECT id, amount FROM orders ORDER BY id LIMIT 3) t");
+        Assert.assertEquals(plan.getLimit(), RowBounds.NO_ROW_LIMIT);
+    }
+
+    @Test
+    public void test_orderByUsesColumnWithoutTableAlias() {
+        ScatterGatherPlan plan = plan("SELECT o.id, o.amount FROM orders o ORDER BY o.amount DESC, `o`.`id`", null, RowBounds.DEFAULT);
+        ShardOrderBy orderBy = plan.getOrderBy();
+        Object[] keys = orderBy.keysOf(new ShardOrderByTest.Order(4L, 9L));
+        Assert.assertEquals(keys[0], 9L);
+        Assert.assertEquals(keys[1], 4L);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Cannot push OFFSET down.*")
+    public void test_standaloneOffsetIsRejected() {
+        plan("SELECT id, amount FROM orders ORDER BY id OFFSET 10 ROWS", null, RowBounds.DEFAULT);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Cannot merge shard results ordered by expression.*")
+    public void test_orderByExpressionIsRejected() {
+        plan("SELECT id, amount FROM orders ORDER BY amount * 2", null, RowBounds.DEFAULT);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "LIMIT parameter 'size' must be a number.*")
+    public void test_nonNumericLimitParameterIsRejected() {
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("size", "ten");
+        plan("SELECT id, amount FROM orders LIMIT ?", parameter, RowBounds.DEFAULT, "size");
+    }
+
+    private ScatterGatherPlan plan(String sql, Object parameter, RowBounds rowBounds, String... properties) {
+        List<ParameterMapping> parameterMappings = new ArrayList<>();
+        for (String property : properties) {
+            parameterMappings.add(new ParameterMapping.Builder(configuration, property, Object.class).build());
+        }
+        BoundSql boundSql = new BoundSql(configuration, sql, parameterMappings, parameter);
+        return ScatterGatherPlan.build(configuration, ms, boundSql, rowBounds);
+    }
+
+}
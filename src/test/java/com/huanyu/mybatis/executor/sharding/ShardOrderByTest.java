@@ -0,0 +1,151 @@
+package com.huanyu.mybatis.executor.sharding;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.ResultMapping;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: ShardOrderByTest
+ * Package: com.huanyu.mybatis.executor.sharding
+ * Description: 跨分片归并排序规则的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/15 10:40
+ * @Version: 1.0
+ */
+public class ShardOrderByTest {
+
+    private final Configuration configuration = new Configuration();
+
+    @Test
+    public void test_resolvesPropertyFromResultMapColumn() {
+        List<ResultMapping> mappings = Collections.singletonList(
+                new ResultMapping.Builder(configuration, "amount", "order_amount", Long.class).build());
+        ShardOrderBy orderBy = orderBy(statement(Order.class, mappings), "order_amount", false, true);
+        Assert.assertEquals(orderBy.keysOf(new Order(1L, 30L))[0], 30L);
+    }
+
+    @Test
+    public void test_resolvesPropertyByAutoMappingIgnoringCase() {
+        ShardOrderBy orderBy = orderBy(statement(Order.class, Collections.emptyList()), "AMOUNT", false, true);
+        Assert.assertEquals(orderBy.keysOf(new Order(1L, 30L))[0], 30L);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = ".*'missing' is not mapped.*")
+    public void test_unmappedColumnIsRejected() {
+        orderBy(statement(Order.class, Collections.emptyList()), "missing", false, true);
+    }
+
+    @Test
+    public void test_mapResultsAreReadByColumnIgnoringCase() {
+        ShardOrderBy orderBy = orderBy(statement(HashMap.class, Collections.emptyList()), "amount", false, true);
+        Map<String, Object> row = new HashMap<>();
+        row.put("AMOUNT", 7L);
+        Assert.assertEquals(orderBy.keysOf(row)[0], 7L);
+    }
+
+    @Test
+    public void test_simpleResultsCompareThemselves() {
+        ShardOrderBy orderBy = orderBy(statement(Long.class, Collections.emptyList()), "id", true, false);
+        Assert.assertEquals(orderBy.keysOf(5L)[0], 5L);
+        // 降序
+        Assert.assertTrue(orderBy.compare(orderBy.keysOf(5L), orderBy.keysOf(3L)) < 0);
+    }
+
+    @Test
+    public void test_nullsKeepTheirPositionRegardlessOfDirection() {
+        MappedStatement ms = statement(Long.class, Collections.emptyList());
+        Object[] none = {null};
+        Object[] one = {1L};
+        // 升序默认空值在前
+        Assert.assertTrue(orderBy(ms, "id", false, true).compare(none, one) < 0);
+        // 降序默认空值在后
+        Assert.assertTrue(orderBy(ms, "id", true, false).compare(none, one) > 0);
+        // NULLS LAST 的升序
+        Assert.assertTrue(orderBy(ms, "id", false, false).compare(none, one) > 0);
+        Assert.assertEquals(orderBy(ms, "id", false, true).compare(none, new Object[]{null}), 0);
+    }
+
+    @Test
+    public void test_mixedNumberTypesCompareByValue() {
+        ShardOrderBy orderBy = orderBy(statement(Long.class, Collections.emptyList()), "id", false, true);
+        Assert.assertTrue(orderBy.compare(new Object[]{2}, new Object[]{10L}) < 0);
+        Assert.assertEquals(orderBy.compare(new Object[]{new java.math.BigDecimal("10.0")}, new Object[]{10L}), 0);
+    }
+
+    @Test
+    public void test_laterColumnsBreakTies() {
+        MappedStatement ms = statement(Order.class, Collections.emptyList());
+        ShardOrderBy orderBy = new ShardOrderBy(configuration, ms, Arrays.asList("amount", "id"),
+                Arrays.asList(true, false), Arrays.asList(false, true));
+        Object[] first = orderBy.keysOf(new Order(1L, 30L));
+        Object[] second = orderBy.keysOf(new Order(2L, 30L));
+        Object[] third = orderBy.keysOf(new Order(3L, 10L));
+        Assert.assertTrue(orderBy.compare(first, second) < 0);
+        Assert.assertTrue(orderBy.compare(second, third) < 0);
+    }
+
+    private ShardOrderBy orderBy(MappedStatement ms, String column, boolean descending, boolean nullsFirst) {
+        return new ShardOrderBy(configuration, ms, Collections.singletonList(column),
+                Collections.singletonList(descending), Collections.singletonList(nullsFirst));
+    }
+
+    private MappedStatement statement(Class<?> type, List<ResultMapping> mappings) {
+        return statement(configuration, type, mappings);
+    }
+
+    static MappedStatement statement(Configuration configuration, Class<?> type, List<ResultMapping> mappings) {
+        ResultMap resultMap = new ResultMap.Builder(configuration, "test.select-Inline", type, mappings).build();
+        return new MappedStatement.Builder(configuration, "test.select", SqlCommandType.SELECT,
+                new StaticSqlSource(configuration, "SELECT 1"), type)
+                .resultMaps(Collections.singletonList(resultMap))
+                .build();
+    }
+
+    public static class Order {
+
+        private Long id;
+        private Long amount;
+
+        public Order() {
+        }
+
+        public Order(Long id, Long amount) {
+            this.id = id;
+            this.amount = amount;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public Long getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Long amount) {
+            this.amount = amount;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + amount;
+        }
+
+    }
+
+}
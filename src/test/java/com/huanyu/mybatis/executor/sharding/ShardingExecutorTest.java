@@ -0,0 +1,166 @@
+package com.huanyu.mybatis.executor.sharding;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.Environment;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ParameterMapping;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.ExecutorType;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.sharding.ModShardingStrategy;
+import com.huanyu.mybatis.sharding.ShardingRule;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransactionFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassName: ShardingExecutorTest
+ * Package: com.huanyu.mybatis.executor.sharding
+ * Description: 分片执行器路由的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 14:30
+ * @Version: 1.0
+ */
+public class ShardingExecutorTest {
+
+    private static final String DELETE_SQL = "DELETE FROM orders WHERE user_id = ?";
+    private static final String SELECT_SQL = "SELECT id FROM orders WHERE user_id = ?";
+
+    private Configuration configuration;
+    private ShardingRule shardingRule;
+    private FakeDatabase defaultDatabase;
+    private FakeDatabase shard0;
+    private FakeDatabase shard1;
+
+    @BeforeMethod
+    public void setUp() {
+        defaultDatabase = FakeDatabase.create();
+        shard0 = FakeDatabase.create();
+        shard1 = FakeDatabase.create();
+        configuration = new Configuration();
+        configuration.setEnvironment(environment("default", defaultDatabase));
+        configuration.addEnvironment(environment("shard0", shard0));
+        configuration.addEnvironment(environment("shard1", shard1));
+        shardingRule = new ShardingRule("userId", new ModShardingStrategy(), Arrays.asList("shard0", "shard1"));
+        configuration.setShardingRule(shardingRule);
+    }
+
+    @Test
+    public void test_writeIsRoutedByShardKey() throws Exception {
+        ShardingExecutor executor = newExecutor();
+        Assert.assertEquals(executor.update(delete(), userId(3L)), 1);
+        Assert.assertEquals(shard1.getLog("execute "), Collections.singletonList("execute " + DELETE_SQL));
+        // 只打开用到的分片
+        Assert.assertEquals(shard0.getOpenedConnections(), 0);
+        Assert.assertEquals(defaultDatabase.getOpenedConnections(), 0);
+        Assert.assertEquals(executor.getOpenExecutors().keySet(), Collections.singleton("shard1"));
+
+        executor.update(delete(), userId(4L));
+        Assert.assertEquals(shard0.count("execute "), 1);
+        executor.close(false);
+    }
+
+    @Test
+    public void test_writeWithoutShardKeyIsRejected() {
+        ShardingExecutor executor = newExecutor();
+        try {
+            executor.update(delete(), 3L);
+            Assert.fail("write without shard key was executed");
+        } catch (Exception e) {
+            Assert.assertTrue(e.getMessage().contains("shard key 'userId'"), e.getMessage());
+        }
+        Assert.assertEquals(defaultDatabase.getOpenedConnections(), 0);
+        Assert.assertEquals(shard0.getOpenedConnections(), 0);
+        Assert.assertEquals(shard1.getOpenedConnections(), 0);
+        executor.close(false);
+    }
+
+    @Test
+    public void test_defaultWritesUseDefaultEnvironment() throws Exception {
+        shardingRule.setDefaultWrites(true);
+        ShardingExecutor executor = newExecutor();
+        executor.update(delete(), 3L);
+        Assert.assertEquals(defaultDatabase.count("execute " + DELETE_SQL), 1);
+        Assert.assertEquals(shard0.getOpenedConnections() + shard1.getOpenedConnections(), 0);
+        executor.close(false);
+    }
+
+    @Test
+    public void test_queryWithShardKeyUsesOneShard() throws Exception {
+        shard0.table(SELECT_SQL, new String[]{"id"}, new Object[]{10L}, new Object[]{11L});
+        ShardingExecutor executor = newExecutor();
+        List<Long> ids = executor.query(select(), userId(2L), RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(ids, Arrays.asList(10L, 11L));
+        Assert.assertEquals(shard1.getOpenedConnections(), 0);
+        executor.close(false);
+    }
+
+    @Test
+    public void test_queryWithoutShardKeyScattersToAllShards() throws Exception {
+        shard0.table(SELECT_SQL, new String[]{"id"}, new Object[]{10L});
+        shard1.table(SELECT_SQL, new String[]{"id"}, new Object[]{20L}, new Object[]{21L});
+        ShardingExecutor executor = newExecutor();
+        List<Long> ids = executor.query(select(), 7L, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(ids, Arrays.asList(10L, 20L, 21L));
+        Assert.assertEquals(defaultDatabase.getOpenedConnections(), 0);
+        executor.close(false);
+    }
+
+    @Test
+    public void test_queryWithoutShardKeyUsesDefaultWhenScatterIsDisabled() throws Exception {
+        shardingRule.setScatterGather(false);
+        defaultDatabase.table(SELECT_SQL, new String[]{"id"}, new Object[]{1L});
+        ShardingExecutor executor = newExecutor();
+        List<Long> ids = executor.query(select(), 7L, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(ids, Collections.singletonList(1L));
+        Assert.assertEquals(shard0.getOpenedConnections() + shard1.getOpenedConnections(), 0);
+        executor.close(false);
+    }
+
+    private ShardingExecutor newExecutor() {
+        return new ShardingExecutor(configuration, ExecutorType.SIMPLE, TransactionIsolationLevel.READ_COMMITTED, true);
+    }
+
+    private MappedStatement delete() {
+        return new MappedStatement.Builder(configuration, "orders.delete", SqlCommandType.DELETE,
+                sqlSource(DELETE_SQL), Integer.class)
+                .resultMaps(new ArrayList<>()).build();
+    }
+
+    private MappedStatement select() {
+        List<ResultMap> resultMaps = new ArrayList<>();
+        resultMaps.add(new ResultMap.Builder(configuration, "orders.select-Inline", Long.class, new ArrayList<>()).build());
+        return new MappedStatement.Builder(configuration, "orders.select", SqlCommandType.SELECT,
+                sqlSource(SELECT_SQL), Long.class)
+                .resultMaps(resultMaps).build();
+    }
+
+    private StaticSqlSource sqlSource(String sql) {
+        return new StaticSqlSource(configuration, sql,
+                Collections.singletonList(new ParameterMapping.Builder(configuration, "userId", Long.class).build()));
+    }
+
+    private static Map<String, Object> userId(long userId) {
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("userId", userId);
+        return parameter;
+    }
+
+    private static Environment environment(String id, FakeDatabase database) {
+        return new Environment(id, new JdbcTransactionFactory(), database.newDataSource());
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.huanyu.mybatis.executor.statement;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.SimpleExecutor;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransaction;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ClassName: AdaptiveFetchSizerTest
+ * Package: com.huanyu.mybatis.executor.statement
+ * Description: 根据读取的行数学习 fetchSize 的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/17 11:00
+ * @Version: 1.0
+ */
+public class AdaptiveFetchSizerTest {
+
+    private static final String SELECT_SQL = "SELECT id FROM item";
+
+    @Test
+    public void test_fetchSizeFollowsRowCountPercentile() throws Exception {
+        AdaptiveFetchSizer sizer = new AdaptiveFetchSizer(1, 10000, 90, 2 * 1024 * 1024);
+        Assert.assertNull(sizer.getFetchSize("item.select"));
+        for (int rows = 1; rows <= 10; rows++) {
+            sizer.record("item.select", rows, metaData(Types.BIGINT));
+        }
+        // p90 为 9 行，多取 1 行使驱动在同一次往返中读到结果集的末尾
+        Assert.assertEquals(sizer.getFetchSize("item.select"), Integer.valueOf(10));
+        Assert.assertEquals(sizer.getRowCountPercentiles().get("item.select"), Integer.valueOf(9));
+        Assert.assertEquals(sizer.getEstimatedRowBytes().get("item.select"), Integer.valueOf(8));
+        Assert.assertEquals(sizer.getObservationCount(), 10);
+        Assert.assertNull(sizer.getFetchSize("item.other"));
+    }
+
+    @Test
+    public void test_fetchSizeIsLimitedByBuffer() throws Exception {
+        AdaptiveFetchSizer sizer = new AdaptiveFetchSizer(1, 10000, 90, 800);
+        // 一行 8 + 92 字节，缓冲区最多容纳 8 行
+        sizer.record("item.select", 1000, metaData(Types.BIGINT, Types.VARCHAR));
+        Assert.assertEquals(sizer.getFetchSize("item.select"), Integer.valueOf(8));
+    }
+
+    @Test
+    public void test_fetchSizeIsLimitedByBounds() throws Exception {
+        AdaptiveFetchSizer sizer = new AdaptiveFetchSizer(5, 50, 100, 2 * 1024 * 1024);
+        sizer.record("item.small", 0, metaData(Types.BIGINT));
+        sizer.record("item.large", 1000, metaData(Types.BIGINT));
+        Assert.assertEquals(sizer.getFetchSize("item.small"), Integer.valueOf(5));
+        Assert.assertEquals(sizer.getFetchSize("item.large"), Integer.valueOf(50));
+
+        sizer.reset();
+        Assert.assertNull(sizer.getFetchSize("item.large"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void test_invalidBoundsAreRejected() {
+        new AdaptiveFetchSizer(100, 10, 90, 1024);
+    }
+
+    @Test
+    public void test_learnedFetchSizeIsUsedOnNextExecution() throws Exception {
+        FakeDatabase database = FakeDatabase.create();
+        Object[][] rows = new Object[20][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{(long) i};
+        }
+        database.table(SELECT_SQL, new String[]{"id"}, rows);
+        Configuration configuration = new Configuration();
+        configuration.setAdaptiveFetchSize(true);
+        Executor executor = new SimpleExecutor(configuration, new JdbcTransaction(database.newDataSource(), TransactionIsolationLevel.READ_COMMITTED, true));
+
+        MappedStatement select = select(configuration, "item.select", null);
+        executor.query(select, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        executor.clearLocalCache();
+        executor.query(select, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(database.getLog("setFetchSize "), Arrays.asList("setFetchSize 0", "setFetchSize 21"));
+
+        // 语句上显式配置的 fetchSize 优先，也不参与学习
+        database.clearLog();
+        executor.query(select(configuration, "item.fixed", 7), null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        Assert.assertEquals(database.getLog("setFetchSize "), Collections.singletonList("setFetchSize 7"));
+        Assert.assertNull(configuration.getAdaptiveFetchSizer().getFetchSize("item.fixed"));
+        executor.close(false);
+    }
+
+    private static MappedStatement select(Configuration configuration, String id, Integer fetchSize) {
+        List<ResultMap> resultMaps = new ArrayList<>();
+        resultMaps.add(new ResultMap.Builder(configuration, id + "-Inline", Long.class, new ArrayList<>()).build());
+        return new MappedStatement.Builder(configuration, id, SqlCommandType.SELECT,
+                new StaticSqlSource(configuration, SELECT_SQL, new ArrayList<>()), Long.class)
+                .resultMaps(resultMaps).fetchSize(fetchSize).build();
+    }
+
+    // 变长列声明的精度为 92
+    private static ResultSetMetaData metaData(int... types) {
+        return (ResultSetMetaData) Proxy.newProxyInstance(AdaptiveFetchSizerTest.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return types.length;
+                case "getColumnType":
+                    return types[(Integer) args[0] - 1];
+                case "getPrecision":
+                    return 92;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.huanyu.mybatis.executor.statement;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.datasource.Deadline;
+import com.huanyu.mybatis.executor.Executor;
+import com.huanyu.mybatis.executor.SimpleExecutor;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.ResultMap;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.RowBounds;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import com.huanyu.mybatis.transaction.jdbc.JdbcTransaction;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClassName: StatementWatchdogTest
+ * Package: com.huanyu.mybatis.executor.statement
+ * Description: 语句截止时间到期后由看门狗取消的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/17 11:40
+ * @Version: 1.0
+ */
+public class StatementWatchdogTest {
+
+    private static final String SELECT_SQL = "SELECT id FROM item";
+
+    private final Configuration configuration = new Configuration();
+    private FakeDatabase database;
+    private Executor executor;
+
+    @BeforeMethod
+    public void setUp() {
+        database = FakeDatabase.create().table(SELECT_SQL, new String[]{"id"}, new Object[]{1L});
+        executor = new SimpleExecutor(configuration, new JdbcTransaction(database.newDataSource(), TransactionIsolationLevel.READ_COMMITTED, true));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        Deadline.set(null);
+        executor.close(false);
+    }
+
+    @Test
+    public void test_slowQueryIsCancelledAtDeadline() throws Exception {
+        database.setQueryLatency(10000);
+        executor.setDeadline(Deadline.after(100, TimeUnit.MILLISECONDS));
+        long start = System.currentTimeMillis();
+        try {
+            executor.query(select(), null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+            Assert.fail("query was not cancelled");
+        } catch (SQLTimeoutException e) {
+            Assert.assertTrue(e.getMessage().contains("item.select"), e.getMessage());
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertEquals(database.count("cancel " + SELECT_SQL), 1);
+        Assert.assertEquals(configuration.getStatementWatchdog().getCancelledCount(), 1);
+    }
+
+    @Test
+    public void test_threadDeadlineAppliesWithoutExecutorDeadline() throws Exception {
+        database.setQueryLatency(10000);
+        Deadline.set(Deadline.after(100, TimeUnit.MILLISECONDS));
+        Assert.assertThrows(SQLTimeoutException.class, () -> executor.query(select(), null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER));
+        Assert.assertEquals(database.count("cancel " + SELECT_SQL), 1);
+    }
+
+    @Test
+    public void test_finishedQueryIsNotCancelledLater() throws Exception {
+        executor.setDeadline(Deadline.after(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(executor.query(select(), null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER).size(), 1);
+        // 执行结束后登记已经撤销，到期时不会取消可能被复用的语句
+        Thread.sleep(200);
+        Assert.assertEquals(database.count("cancel "), 0);
+        Assert.assertEquals(configuration.getStatementWatchdog().getCancelledCount(), 0);
+    }
+
+    @Test
+    public void test_expiredDeadlineSkipsExecution() throws Exception {
+        executor.setDeadline(Deadline.after(0, TimeUnit.MILLISECONDS));
+        Assert.assertThrows(SQLTimeoutException.class, () -> executor.query(select(), null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER));
+        Assert.assertEquals(database.count("executeQuery "), 0);
+        Assert.assertEquals(database.count("execute "), 0);
+    }
+
+    private MappedStatement select() {
+        List<ResultMap> resultMaps = new ArrayList<>();
+        resultMaps.add(new ResultMap.Builder(configuration, "item.select-Inline", Long.class, new ArrayList<>()).build());
+        return new MappedStatement.Builder(configuration, "item.select", SqlCommandType.SELECT,
+                new StaticSqlSource(configuration, SELECT_SQL, new ArrayList<>()), Long.class)
+                .resultMaps(resultMaps).build();
+    }
+
+}
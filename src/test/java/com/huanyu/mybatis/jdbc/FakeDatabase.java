@@ -0,0 +1,743 @@
+package com.huanyu.mybatis.jdbc;
+
+import com.huanyu.mybatis.datasource.unpooled.UnpooledDataSource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * ClassName: FakeDatabase
+ * Package: com.huanyu.mybatis.jdbc
+ * Description: 测试用的内存数据库
+ * 连接、语句和结果集都用动态代理模拟，按 SQL 返回预先设置的行，并把对驱动的调用按顺序记录下来，
+ * 测试通过调用记录断言框架访问了哪些 JDBC 方法。通过 FakeDatabase.Driver 也可以交给连接池使用
+ * @Author: 寰宇
+ * @Create: 2024/7/16 09:30
+ * @Version: 1.0
+ */
+public class FakeDatabase {
+
+    public static final String URL_PREFIX = "jdbc:fake:";
+
+    private static final Map<String, FakeDatabase> DATABASES = new ConcurrentHashMap<>();
+    private static final AtomicInteger DATABASE_NUMBER = new AtomicInteger();
+
+    private final String url;
+    // 对驱动的调用记录，例如 "prepare SELECT ..."、"executeBatch INSERT ... 3"、"commit"
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+    // SQL -> 查询结果
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+
+    private final AtomicInteger openedConnections = new AtomicInteger();
+    private final AtomicInteger closedConnections = new AtomicInteger();
+    // 所有结果集一共读取的行数
+    private final AtomicInteger fetchedRows = new AtomicInteger();
+
+    private volatile boolean valid = true;
+    private volatile int updateCount = 1;
+    // 查询执行时挂起的毫秒数，期间调用 Statement.cancel 会让查询以异常结束
+    private volatile long queryLatency;
+    // 建立物理连接时挂起的毫秒数
+    private volatile long connectLatency;
+
+    private FakeDatabase(String url) {
+        this.url = url;
+    }
+
+    public static FakeDatabase create() {
+        FakeDatabase database = new FakeDatabase(URL_PREFIX + "db" + DATABASE_NUMBER.incrementAndGet());
+        DATABASES.put(database.url, database);
+        return database;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * 设置查询结果，SQL 按去掉首尾空白后的全文匹配，没有设置的查询返回空结果集
+     */
+    public FakeDatabase table(String sql, String[] columns, Object[]... rows) {
+        tables.put(normalize(sql), new Table(columns, Arrays.asList(rows)));
+        return this;
+    }
+
+    public Connection newConnection() {
+        openedConnections.incrementAndGet();
+        ConnectionHandler handler = new ConnectionHandler();
+        handler.proxy = (Connection) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+        return handler.proxy;
+    }
+
+    /**
+     * 通过驱动连接该数据库的非池化数据源
+     */
+    public UnpooledDataSource newDataSource() {
+        UnpooledDataSource dataSource = new UnpooledDataSource();
+        dataSource.setDriver(Driver.class.getName());
+        dataSource.setUrl(url);
+        return dataSource;
+    }
+
+    public List<String> getLog() {
+        synchronized (log) {
+            return new ArrayList<>(log);
+        }
+    }
+
+    /**
+     * 以 prefix 开头的调用记录
+     */
+    public List<String> getLog(String prefix) {
+        List<String> entries = new ArrayList<>();
+        for (String entry : getLog()) {
+            if (entry.startsWith(prefix)) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    public int count(String prefix) {
+        return getLog(prefix).size();
+    }
+
+    public void clearLog() {
+        log.clear();
+    }
+
+    public int getOpenedConnections() {
+        return openedConnections.get();
+    }
+
+    public int getClosedConnections() {
+        return closedConnections.get();
+    }
+
+    public int getFetchedRows() {
+        return fetchedRows.get();
+    }
+
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    public void setUpdateCount(int updateCount) {
+        this.updateCount = updateCount;
+    }
+
+    public void setQueryLatency(long queryLatency) {
+        this.queryLatency = queryLatency;
+    }
+
+    public void setConnectLatency(long connectLatency) {
+        this.connectLatency = connectLatency;
+    }
+
+    private static String normalize(String sql) {
+        return sql == null ? "" : sql.trim().replaceAll("\\s+", " ");
+    }
+
+    private void record(String entry) {
+        log.add(entry);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0D;
+        } else if (type == float.class) {
+            return 0F;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        }
+        return null;
+    }
+
+    // hashCode、equals、toString 按代理对象本身处理
+    private static Object objectMethod(Object proxy, Method method, Object[] args, String name) {
+        switch (method.getName()) {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return name + "@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        return method.getDeclaringClass() == Object.class;
+    }
+
+    /**
+     * 一个查询的结果
+     */
+    private static final class Table {
+
+        private final String[] columns;
+        private final List<Object[]> rows;
+
+        Table(String[] columns, List<Object[]> rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+    }
+
+    /**
+     * 物理连接
+     */
+    private class ConnectionHandler implements InvocationHandler {
+
+        private Connection proxy;
+        private boolean autoCommit = true;
+        private int transactionIsolation = Connection.TRANSACTION_READ_COMMITTED;
+        private boolean readOnly;
+        private volatile boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isObjectMethod(method)) {
+                return objectMethod(proxy, method, args, "FakeConnection");
+            }
+            String name = method.getName();
+            if (closed && !"isClosed".equals(name) && !"close".equals(name) && !"isValid".equals(name)) {
+                throw new SQLException("Connection is closed");
+            }
+            switch (name) {
+                case "getAutoCommit":
+                    record("getAutoCommit");
+                    return autoCommit;
+                case "setAutoCommit":
+                    record("setAutoCommit " + args[0]);
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "getTransactionIsolation":
+                    record("getTransactionIsolation");
+                    return transactionIsolation;
+                case "setTransactionIsolation":
+                    record("setTransactionIsolation " + args[0]);
+                    transactionIsolation = (Integer) args[0];
+                    return null;
+                case "isReadOnly":
+                    return readOnly;
+                case "setReadOnly":
+                    record("setReadOnly " + args[0]);
+                    readOnly = (Boolean) args[0];
+                    return null;
+                case "commit":
+                    record("commit");
+                    return null;
+                case "rollback":
+                    record(args == null ? "rollback" : "rollback savepoint");
+                    return null;
+                case "isValid":
+                    record("isValid");
+                    return valid && !closed;
+                case "isClosed":
+                    return closed;
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        closedConnections.incrementAndGet();
+                        record("close");
+                    }
+                    return null;
+                case "createStatement":
+                    return newStatement(null, args != null && args.length >= 2 ? (Integer) args[0] : ResultSet.TYPE_FORWARD_ONLY);
+                case "prepareStatement":
+                case "prepareCall":
+                    String sql = (String) args[0];
+                    record("prepare " + normalize(sql));
+                    int resultSetType = args.length >= 3 && args[1] instanceof Integer && args[2] instanceof Integer
+                            ? (Integer) args[1] : ResultSet.TYPE_FORWARD_ONLY;
+                    return newStatement(sql, resultSetType);
+                case "unwrap":
+                    return proxy;
+                case "isWrapperFor":
+                    return false;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+
+        private Statement newStatement(String sql, int resultSetType) {
+            StatementHandler handler = new StatementHandler(this, sql, resultSetType);
+            handler.proxy = (Statement) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[]{CallableStatement.class}, handler);
+            return handler.proxy;
+        }
+
+    }
+
+    /**
+     * 语句，预编译语句和普通语句共用
+     */
+    private class StatementHandler implements InvocationHandler {
+
+        private final ConnectionHandler connection;
+        private final String sql;
+        private final int resultSetType;
+        private Statement proxy;
+        private final Map<Integer, Object> parameters = new HashMap<>();
+        private int batchSize;
+        private int maxRows;
+        private int fetchSize;
+        private int queryTimeout;
+        private int fetchDirection = ResultSet.FETCH_FORWARD;
+        private ResultSet resultSet;
+        // 最近一次执行打开的结果集，与真实驱动一样再次执行时关闭
+        private ResultSet openResultSet;
+        private int lastUpdateCount = -1;
+        private volatile boolean closed;
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+
+        StatementHandler(ConnectionHandler connection, String sql, int resultSetType) {
+            this.connection = connection;
+            this.sql = sql == null ? null : normalize(sql);
+            this.resultSetType = resultSetType;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isObjectMethod(method)) {
+                return objectMethod(proxy, method, args, "FakeStatement");
+            }
+            String name = method.getName();
+            if ("isClosed".equals(name)) {
+                return closed;
+            }
+            if ("close".equals(name)) {
+                if (!closed) {
+                    closed = true;
+                    record("closeStatement " + sql);
+                }
+                return null;
+            }
+            if ("cancel".equals(name)) {
+                record("cancel " + sql);
+                cancelled.countDown();
+                return null;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], args[1]);
+                return null;
+            }
+            switch (name) {
+                case "executeQuery":
+                    return executeQuery(args == null ? sql : normalize((String) args[0]));
+                case "execute":
+                    String executed = args == null ? sql : normalize((String) args[0]);
+                    if (executed.toUpperCase(Locale.ENGLISH).startsWith("SELECT")) {
+                        resultSet = executeQuery(executed);
+                        lastUpdateCount = -1;
+                        return true;
+                    }
+                    record("execute " + executed);
+                    resultSet = null;
+                    lastUpdateCount = updateCount;
+                    return false;
+                case "executeUpdate":
+                    record("executeUpdate " + (args == null ? sql : normalize((String) args[0])));
+                    return updateCount;
+                case "getResultSet":
+                    ResultSet current = resultSet;
+                    resultSet = null;
+                    return current;
+                case "getUpdateCount":
+                    int count = lastUpdateCount;
+                    lastUpdateCount = -1;
+                    return count;
+                case "getMoreResults":
+                    resultSet = null;
+                    lastUpdateCount = -1;
+                    return false;
+                case "addBatch":
+                    batchSize++;
+                    record("addBatch " + (args == null ? sql : normalize((String) args[0])));
+                    return null;
+                case "clearBatch":
+                    batchSize = 0;
+                    return null;
+                case "executeBatch":
+                    record("executeBatch " + sql + " " + batchSize);
+                    awaitLatency();
+                    int[] counts = new int[batchSize];
+                    Arrays.fill(counts, updateCount);
+                    batchSize = 0;
+                    return counts;
+                case "clearParameters":
+                    record("clearParameters " + sql);
+                    parameters.clear();
+                    return null;
+                case "getGeneratedKeys":
+                    return newResultSet(new Table(new String[0], Collections.emptyList()));
+                case "setMaxRows":
+                    record("setMaxRows " + args[0]);
+                    maxRows = (Integer) args[0];
+                    return null;
+                case "getMaxRows":
+                    return maxRows;
+                case "setFetchSize":
+                    record("setFetchSize " + args[0]);
+                    fetchSize = (Integer) args[0];
+                    return null;
+                case "getFetchSize":
+                    return fetchSize;
+                case "setQueryTimeout":
+                    record("setQueryTimeout " + args[0]);
+                    queryTimeout = (Integer) args[0];
+                    return null;
+                case "getQueryTimeout":
+                    return queryTimeout;
+                case "setFetchDirection":
+                    record("setFetchDirection " + args[0]);
+                    fetchDirection = (Integer) args[0];
+                    return null;
+                case "getFetchDirection":
+                    return fetchDirection;
+                case "getResultSetType":
+                    return resultSetType;
+                case "getResultSetConcurrency":
+                    return ResultSet.CONCUR_READ_ONLY;
+                case "getConnection":
+                    return connection.proxy;
+                case "unwrap":
+                    return proxy;
+                case "isWrapperFor":
+                    return false;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+
+        private ResultSet executeQuery(String query) throws SQLException {
+            if (openResultSet != null) {
+                openResultSet.close();
+            }
+            record("executeQuery " + query);
+            awaitLatency();
+            Table table = tables.get(query);
+            if (table == null) {
+                table = new Table(new String[0], Collections.emptyList());
+            }
+            List<Object[]> rows = table.rows;
+            if (maxRows > 0 && rows.size() > maxRows) {
+                rows = rows.subList(0, maxRows);
+            }
+            openResultSet = newResultSet(new Table(table.columns, rows));
+            return openResultSet;
+        }
+
+        // 按设置的延迟挂起，期间被取消时抛出异常
+        private void awaitLatency() throws SQLException {
+            long latency = queryLatency;
+            if (latency <= 0) {
+                return;
+            }
+            try {
+                if (cancelled.await(latency, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("Query was cancelled", "70100");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while executing", e);
+            }
+        }
+
+        private ResultSet newResultSet(Table table) {
+            ResultSetHandler handler = new ResultSetHandler(this, table);
+            return (ResultSet) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[]{ResultSet.class}, handler);
+        }
+
+    }
+
+    /**
+     * 结果集，支持只进和可滚动两种读取方式
+     */
+    private class ResultSetHandler implements InvocationHandler {
+
+        private final StatementHandler statement;
+        private final Table table;
+        // 当前行号，0 表示第一行之前，rows.size() + 1 表示最后一行之后
+        private int row;
+        private boolean wasNull;
+        private boolean closed;
+
+        ResultSetHandler(StatementHandler statement, Table table) {
+            this.statement = statement;
+            this.table = table;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isObjectMethod(method)) {
+                return objectMethod(proxy, method, args, "FakeResultSet");
+            }
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        record("closeResultSet " + statement.sql);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("ResultSet is closed");
+            }
+            int size = table.rows.size();
+            switch (name) {
+                case "next":
+                    if (row <= size) {
+                        row++;
+                    }
+                    if (row <= size) {
+                        fetchedRows.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                case "absolute":
+                    requireScrollable(name);
+                    int target = (Integer) args[0];
+                    row = Math.max(0, Math.min(target, size + 1));
+                    return row >= 1 && row <= size;
+                case "relative":
+                    requireScrollable(name);
+                    row = Math.max(0, Math.min(row + (Integer) args[0], size + 1));
+                    return row >= 1 && row <= size;
+                case "last":
+                    requireScrollable(name);
+                    row = size;
+                    return size > 0;
+                case "afterLast":
+                    requireScrollable(name);
+                    row = size + 1;
+                    return null;
+                case "beforeFirst":
+                    requireScrollable(name);
+                    row = 0;
+                    return null;
+                case "getRow":
+                    return row >= 1 && row <= size ? row : 0;
+                case "getType":
+                    return statement.resultSetType;
+                case "getStatement":
+                    return statement.proxy;
+                case "getMetaData":
+                    return metaData();
+                case "wasNull":
+                    return wasNull;
+                case "getFetchSize":
+                case "getFetchDirection":
+                case "setFetchSize":
+                case "setFetchDirection":
+                    return defaultValue(method.getReturnType());
+                case "unwrap":
+                    return proxy;
+                case "isWrapperFor":
+                    return false;
+                default:
+                    break;
+            }
+            if (name.startsWith("get") && args != null && args.length >= 1) {
+                return getValue(method.getReturnType(), args[0]);
+            }
+            throw new SQLFeatureNotSupportedException(name);
+        }
+
+        private void requireScrollable(String name) throws SQLException {
+            if (statement.resultSetType == ResultSet.TYPE_FORWARD_ONLY) {
+                throw new SQLException(name + " is not supported on a forward-only result set");
+            }
+        }
+
+        private Object getValue(Class<?> type, Object column) throws SQLException {
+            if (row < 1 || row > table.rows.size()) {
+                throw new SQLException("No current row");
+            }
+            int index;
+            if (column instanceof Integer) {
+                index = (Integer) column - 1;
+            } else {
+                index = Arrays.asList(table.columns).indexOf(column);
+                if (index < 0) {
+                    for (int i = 0; i < table.columns.length; i++) {
+                        if (table.columns[i].equalsIgnoreCase((String) column)) {
+                            index = i;
+                        }
+                    }
+                }
+            }
+            if (index < 0 || index >= table.columns.length) {
+                throw new SQLException("Unknown column " + column);
+            }
+            Object value = table.rows.get(row - 1)[index];
+            wasNull = value == null;
+            if (value == null) {
+                return defaultValue(type);
+            }
+            if (type == long.class || type == Long.class) {
+                return ((Number) value).longValue();
+            } else if (type == int.class || type == Integer.class) {
+                return ((Number) value).intValue();
+            } else if (type == double.class || type == Double.class) {
+                return ((Number) value).doubleValue();
+            } else if (type == float.class || type == Float.class) {
+                return ((Number) value).floatValue();
+            } else if (type == String.class) {
+                return String.valueOf(value);
+            }
+            return value;
+        }
+
+        private ResultSetMetaData metaData() {
+            return (ResultSetMetaData) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                if (isObjectMethod(method)) {
+                    return objectMethod(proxy, method, args, "FakeResultSetMetaData");
+                }
+                switch (method.getName()) {
+                    case "getColumnCount":
+                        return table.columns.length;
+                    case "getColumnLabel":
+                    case "getColumnName":
+                        return table.columns[(Integer) args[0] - 1];
+                    case "getColumnClassName":
+                        return columnClass((Integer) args[0] - 1).getName();
+                    case "getColumnType":
+                        return columnType(columnClass((Integer) args[0] - 1));
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+        }
+
+        private Class<?> columnClass(int index) {
+            for (Object[] values : table.rows) {
+                if (values[index] != null) {
+                    return values[index].getClass();
+                }
+            }
+            return Object.class;
+        }
+
+        private int columnType(Class<?> type) {
+            if (type == Long.class) {
+                return Types.BIGINT;
+            } else if (type == Integer.class) {
+                return Types.INTEGER;
+            } else if (type == String.class) {
+                return Types.VARCHAR;
+            } else if (type == Double.class) {
+                return Types.DOUBLE;
+            }
+            return Types.OTHER;
+        }
+
+    }
+
+    /**
+     * 按 URL 找到对应内存数据库的驱动，供 UnpooledDataSource 和 PooledDataSource 通过驱动类名加载
+     */
+    public static class Driver implements java.sql.Driver {
+
+        // 与其他驱动一样在加载时向 DriverManager 注册，通过 META-INF/services 被发现
+        static {
+            try {
+                DriverManager.registerDriver(new Driver());
+            } catch (SQLException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            FakeDatabase database = DATABASES.get(url);
+            if (database == null) {
+                return null;
+            }
+            long latency = database.connectLatency;
+            if (latency > 0) {
+                try {
+                    Thread.sleep(latency);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while connecting", e);
+                }
+            }
+            return database.newConnection();
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith(URL_PREFIX);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+    }
+
+}
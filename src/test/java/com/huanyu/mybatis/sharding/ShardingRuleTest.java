@@ -0,0 +1,75 @@
+package com.huanyu.mybatis.sharding;
+
+import com.huanyu.mybatis.session.Configuration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ClassName: ShardingRuleTest
+ * Package: com.huanyu.mybatis.sharding
+ * Description: 分片规则和取模分片的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 18:30
+ * @Version: 1.0
+ */
+public class ShardingRuleTest {
+
+    private final Configuration configuration = new Configuration();
+    private final ShardingRule rule = new ShardingRule("userId", new ModShardingStrategy(), Arrays.asList("shard0", "shard1", "shard2"));
+
+    @Test
+    public void test_integerKeysAreRoutedByValue() {
+        ModShardingStrategy strategy = new ModShardingStrategy();
+        Assert.assertEquals(strategy.doSharding(7L, rule.getShards()), "shard1");
+        Assert.assertEquals(strategy.doSharding(8, rule.getShards()), "shard2");
+        // 负数同样落在 [0, 分片数) 之间
+        Assert.assertEquals(strategy.doSharding(-1L, rule.getShards()), "shard2");
+        Assert.assertEquals(strategy.doSharding("user-7", rule.getShards()), strategy.doSharding("user-7", rule.getShards()));
+    }
+
+    @Test
+    public void test_shardKeyIsReadFromBeanAndMap() {
+        Assert.assertEquals(rule.resolveShard(configuration, new Order(4L)), "shard1");
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("userId", 5L);
+        Assert.assertEquals(rule.resolveShard(configuration, parameter), "shard2");
+    }
+
+    @Test
+    public void test_missingShardKeyResolvesToNull() {
+        // 简单类型的参数不当作分片键
+        Assert.assertNull(rule.resolveShard(configuration, 4L));
+        Assert.assertNull(rule.resolveShard(configuration, null));
+        Assert.assertNull(rule.resolveShard(configuration, new Order(null)));
+        Assert.assertNull(rule.resolveShard(configuration, Collections.singletonMap("orderId", 4L)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void test_ruleRequiresShards() {
+        new ShardingRule("userId", new ModShardingStrategy(), Collections.emptyList());
+    }
+
+    public static class Order {
+
+        private Long userId;
+
+        public Order(Long userId) {
+            this.userId = userId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(Long userId) {
+            this.userId = userId;
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.huanyu.mybatis.transaction.routing;
+
+import com.huanyu.mybatis.builder.StaticSqlSource;
+import com.huanyu.mybatis.datasource.pooled.PooledDataSource;
+import com.huanyu.mybatis.datasource.routing.ReadWriteRoutingDataSource;
+import com.huanyu.mybatis.datasource.routing.Replica;
+import com.huanyu.mybatis.datasource.routing.RoundRobinBalancer;
+import com.huanyu.mybatis.jdbc.FakeDatabase;
+import com.huanyu.mybatis.mapping.MappedStatement;
+import com.huanyu.mybatis.mapping.SqlCommandType;
+import com.huanyu.mybatis.session.Configuration;
+import com.huanyu.mybatis.session.TransactionIsolationLevel;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * ClassName: RoutingTransactionTest
+ * Package: com.huanyu.mybatis.transaction.routing
+ * Description: 读写分离事务路由的测试
+ * @Author: 寰宇
+ * @Create: 2024/7/16 11:10
+ * @Version: 1.0
+ */
+public class RoutingTransactionTest {
+
+    private final Configuration configuration = new Configuration();
+    private final MappedStatement select = statement("test.select", SqlCommandType.SELECT, "SELECT id FROM item WHERE id = ?");
+    private final MappedStatement insert = statement("test.insert", SqlCommandType.INSERT, "INSERT INTO item (id) VALUES (?)");
+
+    private FakeDatabase primary;
+    private FakeDatabase replicaDatabase;
+    private PooledDataSource replicaDataSource;
+    private Replica replica;
+    private ReadWriteRoutingDataSource dataSource;
+
+    @BeforeMethod
+    public void setUp() {
+        primary = FakeDatabase.create();
+        replicaDatabase = FakeDatabase.create();
+        // 只有池化的副本连接能在写之后立即归还
+        replicaDataSource = new PooledDataSource();
+        replicaDataSource.setDriver(FakeDatabase.Driver.class.getName());
+        replicaDataSource.setUrl(replicaDatabase.getUrl());
+        replicaDataSource.setPoolRegisterMbeans(false);
+        replica = new Replica("replica-1", replicaDataSource);
+        dataSource = new ReadWriteRoutingDataSource(primary.newDataSource(), Collections.singletonList(replica), new RoundRobinBalancer());
+    }
+
+    @AfterMethod
+    public void shutdown() {
+        replicaDataSource.shutdown();
+    }
+
+    @Test
+    public void test_autoCommitReadsGoToReplicaUntilFirstWrite() throws Exception {
+        RoutingTransaction transaction = new RoutingTransaction(dataSource, TransactionIsolationLevel.READ_COMMITTED, true);
+        Connection read = transaction.getConnection(select, select.getBoundSql(1L));
+        Assert.assertEquals(replicaDatabase.getOpenedConnections(), 1);
+        Assert.assertEquals(primary.getOpenedConnections(), 0);
+        Assert.assertEquals(replicaDatabase.count("setReadOnly true"), 1);
+        Assert.assertSame(transaction.getReplica(), replica);
+        // 同一个会话的查询沿用同一个副本连接
+        Assert.assertSame(transaction.getConnection(select, select.getBoundSql(2L)), read);
+
+        Connection write = transaction.getConnection(insert, insert.getBoundSql(3L));
+        Assert.assertNotSame(write, read);
+        Assert.assertEquals(primary.getOpenedConnections(), 1);
+        Assert.assertTrue(transaction.isWritten());
+        // 写过之后的查询使用主库，副本连接已经归还
+        Assert.assertSame(transaction.getConnection(select, select.getBoundSql(1L)), write);
+        Assert.assertEquals(replica.getInFlight(), 0);
+        Assert.assertNull(transaction.getReplica());
+        transaction.close();
+    }
+
+    @Test
+    public void test_readsInsideTransactionUsePrimary() throws Exception {
+        RoutingTransaction transaction = new RoutingTransaction(dataSource, TransactionIsolationLevel.READ_COMMITTED, false);
+        Connection read = transaction.getConnection(select, select.getBoundSql(1L));
+        Assert.assertEquals(primary.getOpenedConnections(), 1);
+        Assert.assertEquals(replicaDatabase.getOpenedConnections(), 0);
+        Assert.assertNull(transaction.getReplica());
+        Assert.assertSame(transaction.getConnection(insert, insert.getBoundSql(1L)), read);
+        transaction.close();
+    }
+
+    @Test
+    public void test_lockingReadsUsePrimary() throws Exception {
+        String[] lockingReads = {
+                "SELECT id FROM item WHERE id = ? FOR UPDATE",
+                "select id from item where id = ? for update nowait",
+                "SELECT id FROM item WHERE id = ? LOCK IN SHARE MODE",
+                "SELECT id FROM item WHERE id = ? FOR SHARE"
+        };
+        for (String sql : lockingReads) {
+            RoutingTransaction transaction = new RoutingTransaction(dataSource, TransactionIsolationLevel.READ_COMMITTED, true);
+            MappedStatement ms = statement("test.lock", SqlCommandType.SELECT, sql);
+            transaction.getConnection(ms, ms.getBoundSql(1L));
+            Assert.assertNull(transaction.getReplica(), sql);
+            Assert.assertTrue(transaction.isWritten(), sql);
+            transaction.close();
+        }
+        Assert.assertEquals(replicaDatabase.getOpenedConnections(), 0);
+        Assert.assertEquals(primary.getOpenedConnections(), lockingReads.length);
+    }
+
+    @Test
+    public void test_lockingKeywordsInLiteralsAreIgnored() throws Exception {
+        RoutingTransaction transaction = new RoutingTransaction(dataSource, TransactionIsolationLevel.READ_COMMITTED, true);
+        MappedStatement ms = statement("test.literal", SqlCommandType.SELECT, "SELECT id FROM item WHERE note = 'for update'");
+        transaction.getConnection(ms, ms.getBoundSql(null));
+        Assert.assertSame(transaction.getReplica(), replica);
+        transaction.close();
+        Assert.assertEquals(replica.getInFlight(), 0);
+    }
+
+    private MappedStatement statement(String id, SqlCommandType type, String sql) {
+        return new MappedStatement.Builder(configuration, id, type, new StaticSqlSource(configuration, sql), Object.class)
+                .resultMaps(new ArrayList<>()).build();
+    }
+
+}